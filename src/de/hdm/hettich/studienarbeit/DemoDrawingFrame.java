@@ -14,8 +14,8 @@ import de.hdm.hettich.studienarbeit.utile.Coordinate;
 
 /**
  * Die Klasse <code>DemoDrawingFrame</code> soll ein <code>Drawing</code> in
- * Rohform reprsentieren, so wie es beispielsweise aus einer XML-Datei gelesen
- * werden knnte. Die Attribute dieser Klasse beinhalten alle Informationen, die
+ * Rohform repräsentieren, so wie es beispielsweise aus einer XML-Datei gelesen
+ * werden könnte. Die Attribute dieser Klasse beinhalten alle Informationen, die
  * zur Erstellung eines <code>Drawing</code> notwendig sind.
  * 
  * @author Stefan Hettich
@@ -37,7 +37,7 @@ public class DemoDrawingFrame {
 			Arrays.asList(0.5f, 1.0f, 2.0f));
 
 	/**
-	 * Die Kachel-Gren der Tiles der einzelnen Stufen.
+	 * Die Kachel-Größen der Tiles der einzelnen Stufen.
 	 */
 	public final ArrayList<Coordinate> tileSizes = new ArrayList<Coordinate>(
 			Arrays.asList(new Coordinate(200, 200), new Coordinate(200, 200),
@@ -51,27 +51,43 @@ public class DemoDrawingFrame {
 					new Coordinate(40, 40)));
 
 	/**
-	 * Verzeichnis der SD-Karte fr die sptere Verwendung.
+	 * Gibt pro Zoom-Ebene an, ob die Kacheln keine Transparenz enthalten. Die
+	 * Kacheln dieser Ebenen werden mit halbem Speicherbedarf (RGB_565)
+	 * dekodiert.
+	 */
+	public final ArrayList<Boolean> opaqueLevels = new ArrayList<Boolean>(
+			Arrays.asList(true, true, true));
+
+	/**
+	 * Verkleinerungsfaktor (inSampleSize) pro Zoom-Ebene, mit dem die Kacheln
+	 * während eines Zoomstufen-Wechsels zunächst dekodiert werden. Bei 0 wird
+	 * er aus dem Skalierungsfaktor berechnet.
+	 */
+	public final ArrayList<Integer> transitionSampleSizes = new ArrayList<Integer>(
+			Arrays.asList(0, 0, 0));
+
+	/**
+	 * Verzeichnis der SD-Karte für die spätere Verwendung.
 	 */
 	public final URI sdCardDir = Environment.getExternalStorageDirectory()
 			.toURI();
 
 	/**
-	 * Dieses Attribut ist gesetzt, wenn es fr den gesamten Plan nur ein Bild
+	 * Dieses Attribut ist gesetzt, wenn es für den gesamten Plan nur ein Bild
 	 * geben soll. {@link #pngFileEachTileMap} und
-	 * {@link #pngFileEachTile} mssen gleichzeitig null sein.
+	 * {@link #pngFileEachTile} müssen gleichzeitig null sein.
 	 * <p>
-	 * Es soll dadurch ermglicht werden eine Demo-Ansicht der Anwendung zu
+	 * Es soll dadurch ermöglicht werden eine Demo-Ansicht der Anwendung zu
 	 * erzeugen, ohne jedem <code>Tile</code> ein explizietes Bild zuzuordnen.
 	 */
 	public final URI pngFileSingle = null;
 
 	/**
-	 * Dieses Attribut ist gesetzt, wenn es fr jede Plan-Ebene (Zoomstufe) nur
+	 * Dieses Attribut ist gesetzt, wenn es für jede Plan-Ebene (Zoomstufe) nur
 	 * ein Bild geben soll. {@link #pngFileSingle} und
-	 * {@link #pngFileEachTile} mssen gleichzeitig null sein.
+	 * {@link #pngFileEachTile} müssen gleichzeitig null sein.
 	 * <p>
-	 * Es soll dadurch ermglicht werden eine Demo-Ansicht der Anwendung zu
+	 * Es soll dadurch ermöglicht werden eine Demo-Ansicht der Anwendung zu
 	 * erzeugen, ohne jedem <code>Tile</code> ein explizietes Bild zuzuordnen.
 	 * 
 	 */
@@ -81,18 +97,35 @@ public class DemoDrawingFrame {
 					sdCardDir.resolve("tileLayer3.png")));
 
 	/**
-	 * Dieses Attribut ist gesetzt, wenn es fr jedes einzelnes
+	 * Dieses Attribut ist gesetzt, wenn es für jedes einzelnes
 	 * <code>Tile</code> ein Bild geben soll.
 	 * {@link #pngFileSingle} und
-	 * {@link #pngFileEachTileMap} mssen gleichzeitig null sein.
+	 * {@link #pngFileEachTileMap} müssen gleichzeitig null sein.
 	 */
 	public final ArrayList<URI[][]> pngFileEachTile = null;
 
 	/**
-	 * Die Standard-Gre der <code>Defect</code>-Icons. Jedes Icons wird in
-	 * dieser Gre im Plan dargestellt, die Gre der Icons variiert je nach
-	 * Zoomstufe nicht. Das heit die Icons werden immer gleich angezeigt,
-	 * lediglich die Position ndert sich.
+	 * Dieses Attribut ist gesetzt, wenn alle Kacheln in einem
+	 * <code>TileArchive</code> liegen (erstellt mit dem
+	 * <code>TileArchiveBuilder</code>). {@link #pngFileSingle},
+	 * {@link #pngFileEachTileMap} und {@link #pngFileEachTile} müssen
+	 * gleichzeitig null sein.
+	 */
+	public final URI tileArchive = null;
+
+	/**
+	 * Ist dies gesetzt, enthält jedes Bild aus {@link #pngFileEachTileMap} den
+	 * gesamten Plan der Zoomstufe. Die Kacheln werden dann als Ausschnitte
+	 * aus diesem Bild dekodiert, anstatt jeder Kachel das ganze Bild
+	 * zuzuordnen.
+	 */
+	public final boolean decodeRegions = false;
+
+	/**
+	 * Die Standard-Größe der <code>Defect</code>-Icons. Jedes Icons wird in
+	 * dieser Größe im Plan dargestellt, die Größe der Icons variiert je nach
+	 * Zoomstufe nicht. Das heißt die Icons werden immer gleich angezeigt,
+	 * lediglich die Position ändert sich.
 	 */
 	public final Coordinate defectSize = new Coordinate(50, 50);
 
@@ -100,9 +133,9 @@ public class DemoDrawingFrame {
 	 * Die <code>Defect</code>s, also die im Drawing vorhandenen Fehler bzw.
 	 * Notizen. Ein <code>Defect</code> kann von einen bestimmten Typ sein
 	 * (Video, Audio, Text, etc.) dies wird momentan noch durch einen simplen
-	 * <code>String</code> gelst, spter knnen natrlich unterschiedliche
-	 * Icons fr jeden unterschiedlichen Typ verwendet werden. Neben dem Typ
-	 * wird einem Defect noch die Position bei Zoomfaktor 1 und die Gre
+	 * <code>String</code> gelöst, später können natürlich unterschiedliche
+	 * Icons für jeden unterschiedlichen Typ verwendet werden. Neben dem Typ
+	 * wird einem Defect noch die Position bei Zoomfaktor 1 und die Größe
 	 * mitgegeben.
 	 */
 	public final ArrayList<Defect> defects = new ArrayList<Defect>(
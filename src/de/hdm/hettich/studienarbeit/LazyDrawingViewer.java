@@ -4,30 +4,39 @@
  */
 package de.hdm.hettich.studienarbeit;
 
+import java.io.File;
+
 import de.hdm.hettich.studienarbeit.bo.Drawing;
 import de.hdm.hettich.studienarbeit.bo.Viewport;
 import de.hdm.hettich.studienarbeit.factory.DrawingAdministration;
 import de.hdm.hettich.studienarbeit.factory.DrawingCreator;
 import de.hdm.hettich.studienarbeit.loading.LazyLoader;
+import de.hdm.hettich.studienarbeit.service.MemoryGovernor;
+import de.hdm.hettich.studienarbeit.service.TileMapChanger;
 import de.hdm.hettich.studienarbeit.utile.Coordinate;
+import de.hdm.hettich.studienarbeit.bo.TileMap;
 import de.hdm.hettich.studienarbeit.view.HScroll;
-import de.hdm.hettich.studienarbeit.view.TileMapView;
+import de.hdm.hettich.studienarbeit.view.TileCanvasView;
+import de.hdm.hettich.studienarbeit.view.TileLayer;
 import de.hdm.hettich.studienarbeit.view.VScroll;
 
 import android.os.Bundle;
+import android.os.Environment;
 import android.app.Activity;
 import android.util.Log;
 import android.view.Display;
 import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
 import android.widget.RelativeLayout;
 
 /**
- * Die <code>MainAcitvity</code> ist eine ausfhrbare <code>Activity</code> die
- * beim Start der App aufgerufen wird. Sie stt die Generierung eines Demo-
- * <code>Drawing</code>s an und stt die Umwandlung in eine Darstellung an.
+ * Die <code>MainAcitvity</code> ist eine ausführbare <code>Activity</code> die
+ * beim Start der App aufgerufen wird. Sie stößt die Generierung eines Demo-
+ * <code>Drawing</code>s an und stößt die Umwandlung in eine Darstellung an.
  * Zudem wird hier das Touch-Event verarbeitet und an die beiden
  * <code>ScrollView</code>s weitergegeben, dabei wird auch der Nachladeprozess
- * angestoen.
+ * angestoßen.
  * 
  * @author Stefan Hettich
  * 
@@ -37,71 +46,139 @@ import android.widget.RelativeLayout;
 public class LazyDrawingViewer extends Activity {
 
 	/**
-	 * Diese Variablen werden bentigt, um die Touch-Events zu verarbeiten.
-	 * <code>mx</code> stellt die Berhrungsposition in x-Richtung dar.
+	 * Diese Variablen werden benötigt, um die Touch-Events zu verarbeiten.
+	 * <code>mx</code> stellt die Berührungsposition in x-Richtung dar.
 	 */
 	private float mx;
 	/**
-	 * Diese Variablen werden bentigt, um die Touch-Events zu verarbeiten.
-	 * <code>my</code> stellt die Berhrungsposition in y-Richtung dar.
+	 * Diese Variablen werden benötigt, um die Touch-Events zu verarbeiten.
+	 * <code>my</code> stellt die Berührungsposition in y-Richtung dar.
 	 */
 	private float my;
 
+	/**
+	 * Zeitpunkt der letzten verarbeiteten Touch-Bewegung in Millisekunden,
+	 * wird zur Berechnung der Geschwindigkeit benötigt.
+	 */
+	private long lastMoveTime;
+
+	/**
+	 * Geglättete Geschwindigkeit des <code>Viewport</code>s in x-Richtung in
+	 * Pixel pro Millisekunde.
+	 */
+	private float velocityX;
+
+	/**
+	 * Geglättete Geschwindigkeit des <code>Viewport</code>s in y-Richtung in
+	 * Pixel pro Millisekunde.
+	 */
+	private float velocityY;
+
+	/**
+	 * Gewichtung der neuesten Bewegung bei der Glättung der Geschwindigkeit.
+	 */
+	private final static float VELOCITY_SMOOTHING = 0.6f;
+
+	/**
+	 * Name der Plan-Beschreibung auf der SD-Karte (siehe
+	 * <code>DrawingDescriptor</code>). Existiert sie nicht, wird der Plan aus
+	 * dem <code>DemoDrawingFrame</code> erstellt.
+	 */
+	private final static String DRAWING_DESCRIPTOR = "drawing.json";
+
+	/**
+	 * Erkennt Pinch-To-Zoom-Gesten.
+	 */
+	private ScaleGestureDetector scaleDetector;
+
+	/**
+	 * Skalierung der aktuellen Pinch-To-Zoom-Geste relativ zur aktiven
+	 * <code>TileMap</code>.
+	 */
+	private float gestureScale = 1f;
+
+	/**
+	 * Kleinste bzw. größte Skalierung der aktuellen Geste, sodass nicht über
+	 * die gröbste bzw. detaillierteste <code>TileMap</code> hinaus gezoomt
+	 * werden kann.
+	 */
+	private float minGestureScale, maxGestureScale;
+
+	/**
+	 * Mittelpunkt der Pinch-To-Zoom-Geste auf dem Display, wird beim Beginn
+	 * der Geste festgehalten.
+	 */
+	private float focusX, focusY;
+
+	/**
+	 * Gibt an, ob nach dem Ende einer Pinch-To-Zoom-Geste die Position des
+	 * verbleibenden Fingers neu gespeichert werden muss, bevor weiter
+	 * verschoben werden kann.
+	 */
+	private boolean resetTouch = false;
+
 	/**
 	 * <code>Viewport</code> beschreibt den sichtbaren Bereich der Anwendung,
-	 * die Gre des <code>Viewport</code>s berechnet sich aus der
-	 * <code>Display</code>-Gre des Endgerts. Hier muss eventuell geschaut
-	 * werden, wie die Gre der Title- und Notification-Bar berechnet werden
+	 * die Größe des <code>Viewport</code>s berechnet sich aus der
+	 * <code>Display</code>-Größe des Endgeräts. Hier muss eventuell geschaut
+	 * werden, wie die Größe der Title- und Notification-Bar berechnet werden
 	 * kann, um diese dann abzuziehen.
 	 */
 	private Viewport viewport;
 
 	/**
-	 * Der <code>LazyLoader</code> bernimmt das Nachladen der Kacheln, er
-	 * identifiziert die zu ladenden Kacheln und stt den Lade-Prozess an.
+	 * Das angezeigte <code>Drawing</code>.
+	 */
+	private Drawing drawing;
+
+	/**
+	 * Der <code>LazyLoader</code> übernimmt das Nachladen der Kacheln, er
+	 * identifiziert die zu ladenden Kacheln und stößt den Lade-Prozess an.
 	 */
 	private LazyLoader loader;
 
 	/**
-	 * Das <code>RelativeLayout</code> hlt das gesamte "Sandwich" zusammen,
+	 * Das <code>RelativeLayout</code> hält das gesamte "Sandwich" zusammen,
 	 * alle weiteren Views sind Childs dieses Views.
 	 */
 	private RelativeLayout rl;
 
 	/**
-	 * Der <code>HScroll</code> gewhrleistet das horizontale Scrollen, er
+	 * Der <code>HScroll</code> gewährleistet das horizontale Scrollen, er
 	 * leitet sich vom <code>HorizontalScrollView</code> ab und beinhaltet
-	 * einige geringfgige nderungen, so dass diagonales Scrollen mglich wird.
+	 * einige geringfügige Änderungen, so dass diagonales Scrollen möglich wird.
+	 * Beim Zeichnen auf den Canvas gibt es keinen <code>HScroll</code>.
 	 */
 	private HScroll hScroll;
 
 	/**
-	 * Der <code>VScroll</code> gewhrleistet das vertikale Scrollen, er leitet
-	 * sich vom <code>ScrollView</code> ab und beinhaltet einige geringfgige
-	 * nderungen, so dass diagonales Scrollen mglich wird.
+	 * Der <code>VScroll</code> gewährleistet das vertikale Scrollen, er leitet
+	 * sich vom <code>ScrollView</code> ab und beinhaltet einige geringfügige
+	 * Änderungen, so dass diagonales Scrollen möglich wird. Beim Zeichnen auf
+	 * den Canvas gibt es keinen <code>VScroll</code>.
 	 */
 	private VScroll vScroll;
 
 	/**
 	 * Ein weiteres <code>RelativeLayout</code>, das die einzelnen Ebenen des
-	 * Plans zusammenhlt, deshalb auch wrapper.
+	 * Plans zusammenhält, deshalb auch wrapper.
 	 */
 	private RelativeLayout wrapper;
 
 	/**
-	 * Der <code>TileMapView</code> der initial angezeigt wird. Ein
-	 * <code>TileMapView</code> ist wiederrum eine Spezialisierung eines
-	 * <code>RelativeLayout</code> und beinhaltet die Kacheln, die in
-	 * <code>TileView</code>s angzeigt werden.
+	 * Die Ebene, die initial angezeigt wird. Das ist entweder ein
+	 * <code>TileMapView</code>, der die Kacheln in <code>TileView</code>s
+	 * anzeigt, oder ein <code>TileCanvasView</code>, der die Kacheln direkt
+	 * auf den Canvas zeichnet.
 	 */
-	private TileMapView tileMapView;
+	private TileLayer tileLayer;
 
 	/**
 	 * Diese Methode wird beim Erstellen der <code>Activity</code> aufgerufen
 	 * und beinhaltet alle Operationen, die beim Starten der gesamten
-	 * Applikation ausgefhrt werden mssen. Das sind neben dem Abrufen,
-	 * speziellen Hardware-Informationen des Endgerts, auf dem die App
-	 * ausgefhrt wird, vor allem die Erstellung der Grundstruktur des
+	 * Applikation ausgeführt werden müssen. Das sind neben dem Abrufen,
+	 * speziellen Hardware-Informationen des Endgeräts, auf dem die App
+	 * ausgeführt wird, vor allem die Erstellung der Grundstruktur des
 	 * "Sandwichs".
 	 * 
 	 * @param savedInstanceState
@@ -111,23 +188,39 @@ public class LazyDrawingViewer extends Activity {
 		super.onCreate(savedInstanceState);
 
 		/*
-		 * Abrufen des aktuellen Displays, sodass dessen Gre abgerufen werden
+		 * Budgets der Caches an die Speicherklasse des Geräts anpassen und auf
+		 * Speicherengpässe des Systems hören.
+		 */
+		MemoryGovernor.memoryGovernor().init(this);
+
+		/*
+		 * Abrufen des aktuellen Displays, sodass dessen Größe abgerufen werden
 		 * kann.
 		 */
 		Display display = this.getWindowManager().getDefaultDisplay();
 		/*
-		 * Erstellen des Viewport, anhand der Gre des oben abgerufenen
+		 * Erstellen des Viewport, anhand der Größe des oben abgerufenen
 		 * Displays. Die Position des Viewports wird initial auf (0, 0), also
 		 * oben links gesetzt.
 		 */
 		viewport = new Viewport(new Coordinate(0, 0), new Coordinate(
 				display.getWidth(), display.getHeight()));
 
-		// Erstellen des Drawing
-		Drawing drawing = DrawingCreator.createDrawing(new DemoDrawingFrame());
+		/*
+		 * Erstellen des Drawing, bevorzugt aus der Plan-Beschreibung auf der
+		 * SD-Karte.
+		 */
+		File descriptor = new File(Environment.getExternalStorageDirectory(),
+				DRAWING_DESCRIPTOR);
+		if (descriptor.isFile()) {
+			drawing = DrawingCreator.createDrawing(descriptor.toURI());
+		}
+		if (drawing == null) {
+			drawing = DrawingCreator.createDrawing(new DemoDrawingFrame());
+		}
 
 		/*
-		 * Erstellung einer neuen DrawingAdministration, die das bergebene
+		 * Erstellung einer neuen DrawingAdministration, die das übergebene
 		 * Drawing in ein Layout umwandelt.
 		 */
 		DrawingAdministration drawingAdministration = new DrawingAdministration(
@@ -135,39 +228,45 @@ public class LazyDrawingViewer extends Activity {
 
 		/*
 		 * Mit dem Aufruf der getCalculatedView-Methode wird ein RelativeLayout
-		 * erstellt, das die komplette Struktur des Drawing enthlt.
+		 * erstellt, das die komplette Struktur des Drawing enthält.
 		 */
 		this.rl = drawingAdministration.createCalculatedView();
 
-		// HScroll wird als erster Child des RelativeLayouts abgerufen.
-		this.hScroll = (HScroll) this.rl.getChildAt(0);
-		// VScroll wird als erster Child des HScrolls abgerufen.
-		this.vScroll = (VScroll) this.hScroll.getChildAt(0);
-		// wrapper wird als erster Child des VScrolls abgerufen.
-		this.wrapper = (RelativeLayout) this.vScroll.getChildAt(0);
-		// tileMapView wird als zweites Child des wrappers abgerufen.
-		this.tileMapView = (TileMapView) this.wrapper.getChildAt(0);
+		// wrapper wird von der DrawingAdministration abgerufen.
+		this.wrapper = drawingAdministration.getWrapper();
+		if (this.rl.getChildAt(0) instanceof HScroll) {
+			// HScroll wird als erster Child des RelativeLayouts abgerufen.
+			this.hScroll = (HScroll) this.rl.getChildAt(0);
+			// VScroll wird als erster Child des HScrolls abgerufen.
+			this.vScroll = (VScroll) this.hScroll.getChildAt(0);
+		}
+		// Die Ebene der aktiven TileMap wird im wrapper gesucht.
+		this.tileLayer = TileMapChanger.findTileLayer(this.wrapper,
+				drawing.getAcitveTileMap());
 
 		/*
-		 * Instanzierung des LazyLoaders, mit der bergabe des aktuellen
-		 * TileMapView und des Viewports.
+		 * Instanzierung des LazyLoaders, mit der Übergabe der aktuellen Ebene
+		 * und des Viewports.
 		 */
-		loader = LazyLoader.lazyLoader(tileMapView, viewport);
+		loader = LazyLoader.lazyLoader(tileLayer, viewport);
 
 		// Starten des Ladevorgangs durch den LazyLoader.
 		loader.load();
 
+		// Erkennung von Pinch-To-Zoom-Gesten.
+		scaleDetector = new ScaleGestureDetector(this, new ScaleListener());
+
 		// Setzen dieses RelativeLayouts.
 		setContentView(rl);
 	}
 
 	/**
-	 * onTouchEvent wird berschrieben.
+	 * onTouchEvent wird überschrieben.
 	 * 
 	 * Touch-Verschiebungen werden sowohl an vScroll wie auch hScroll
-	 * weitergegeben, somit wird das diagonale Scrollen ermglicht. Davor haben
+	 * weitergegeben, somit wird das diagonale Scrollen ermöglicht. Davor haben
 	 * die beiden View, die Touch-Gesten getrennt von einander registriert, das
-	 * heit wenn es sich um eine horizontale Bewegung handelte wurde nur der
+	 * heißt wenn es sich um eine horizontale Bewegung handelte wurde nur der
 	 * HorizontalScrollView aktiv, anderenfalls nur der ScrollView.
 	 * 
 	 * @param event
@@ -175,21 +274,74 @@ public class LazyDrawingViewer extends Activity {
 	public boolean onTouchEvent(MotionEvent event) {
 		float curX, curY;
 
-		switch (event.getAction()) {
-		// Die Touch-Geste beginnt, durch Berhrung des Displays.
+		// Zuerst prüfen, ob es sich um eine Pinch-To-Zoom-Geste handelt.
+		scaleDetector.onTouchEvent(event);
+
+		switch (event.getActionMasked()) {
+		// Die Touch-Geste beginnt, durch Berührung des Displays.
 		case MotionEvent.ACTION_DOWN:
 			// Initiale Position speichern.
 			mx = event.getX();
 			my = event.getY();
+
+			// Eine neue Touch-Geste beginnt ohne Geschwindigkeit.
+			resetTouch = false;
+			lastMoveTime = event.getEventTime();
+			velocityX = 0;
+			velocityY = 0;
+
+			/*
+			 * Die angezeigte Ebene kann sich durch einen Zoomstufen-Wechsel
+			 * geändert haben, deshalb wird sie hier neu abgerufen.
+			 */
+			this.tileLayer = TileMapChanger.findTileLayer(this.wrapper,
+					drawing.getAcitveTileMap());
+			loader = LazyLoader.lazyLoader(tileLayer, viewport);
 			break;
-		// Bewegung, die whrend dem Touch-Event "passiert"
+		/*
+		 * Ein Finger wird während einer Pinch-To-Zoom-Geste losgelassen, dann
+		 * wird mit dem verbleibenden Finger weiter verschoben.
+		 */
+		case MotionEvent.ACTION_POINTER_UP:
+			int index = event.getActionIndex() == 0 ? 1 : 0;
+			mx = event.getX(index);
+			my = event.getY(index);
+			resetTouch = true;
+			break;
+		// Bewegung, die während dem Touch-Event "passiert"
 		case MotionEvent.ACTION_MOVE:
+			/*
+			 * Während einer Pinch-To-Zoom-Geste wird weder verschoben noch
+			 * geladen, so muss kein Bild der Geste auf die Speicherkarte
+			 * warten.
+			 */
+			if (scaleDetector.isInProgress() || event.getPointerCount() > 1) {
+				break;
+			}
+
 			// Position nach Verschiebung zwischenspeichern.
 			curX = event.getX();
 			curY = event.getY();
 
+			// Nach einer Geste wird die Bewegung neu begonnen.
+			if (resetTouch) {
+				resetTouch = false;
+				mx = curX;
+				my = curY;
+				lastMoveTime = event.getEventTime();
+				break;
+			}
+
 			// Touch-Event verarbeiten.
-			this.handleTouchMove(curX, curY);
+			this.handleTouchMove(curX, curY, event.getEventTime());
+
+			/*
+			 * Neu sichtbar gewordene Kacheln bereits während der Bewegung
+			 * laden. Der LazyLoader bearbeitet nur den Unterschied zum zuletzt
+			 * geladenen Bereich, solange keine neue Kachel sichtbar wird,
+			 * passiert also nichts.
+			 */
+			loader.load();
 
 			// Neue Position speichern.
 			mx = curX;
@@ -201,22 +353,20 @@ public class LazyDrawingViewer extends Activity {
 			curY = event.getY();
 
 			// Touch-Event verarbeiten.
-			this.handleTouchMove(curX, curY);
+			this.handleTouchMove(curX, curY, event.getEventTime());
 
-			Log.e("TEST",
-					"VScroll: " + vScroll.getScrollX() + " / "
-							+ vScroll.getScrollY());
-			Log.e("TEST",
-					"HScroll: " + hScroll.getScrollX() + " / "
-							+ hScroll.getScrollY());
+			if (hScroll != null) {
+				Log.e("TEST",
+						"VScroll: " + vScroll.getScrollX() + " / "
+								+ vScroll.getScrollY());
+				Log.e("TEST",
+						"HScroll: " + hScroll.getScrollX() + " / "
+								+ hScroll.getScrollY());
+			}
 
 			/*
-			 * Anstoen des Ladeprozesses, dieser wird beabsichtigt erst beim
-			 * Loslassen des Bildschirms gestartet, da dieser Prozess sonst zu
-			 * oft angestoen werden wrde.
+			 * Anstoßen des Ladeprozesses für die letzte Verschiebung.
 			 */
-			this.tileMapView = (TileMapView) this.wrapper.getChildAt(0);
-			loader = LazyLoader.lazyLoader(tileMapView, viewport);
 			loader.load();
 
 			break;
@@ -225,28 +375,142 @@ public class LazyDrawingViewer extends Activity {
 		return true;
 	}
 
+	/**
+	 * Setzt die Skalierung der aktuellen Pinch-To-Zoom-Geste. Dabei wird nur
+	 * die bereits angezeigte Darstellung skaliert, ohne etwas zu laden oder
+	 * ein neues Layout zu berechnen. Beim Zeichnen auf den Canvas skaliert der
+	 * <code>TileCanvasView</code> selbst, sonst wird der wrapper mit allen
+	 * Ebenen skaliert.
+	 *
+	 * @param scale
+	 */
+	private void applyGestureScale(float scale) {
+		if (tileLayer instanceof TileCanvasView) {
+			((TileCanvasView) tileLayer).setGestureScale(scale, focusX, focusY);
+			// Die DefectViews liegen direkt über dem Display.
+			View wrapperDefects = wrapper.getChildAt(wrapper.getChildCount() - 1);
+			wrapperDefects.setPivotX(focusX);
+			wrapperDefects.setPivotY(focusY);
+			wrapperDefects.setScaleX(scale);
+			wrapperDefects.setScaleY(scale);
+		} else {
+			// Der wrapper ist um die Position des Viewports verschoben.
+			wrapper.setPivotX(viewport.getPosition().getX() + focusX);
+			wrapper.setPivotY(viewport.getPosition().getY() + focusY);
+			wrapper.setScaleX(scale);
+			wrapper.setScaleY(scale);
+		}
+	}
+
+	/**
+	 * Der <code>ScaleListener</code> verarbeitet die Pinch-To-Zoom-Gesten.
+	 * Während der Geste wird die Darstellung stufenlos skaliert, erst am Ende
+	 * wird die <code>TileMap</code> angezeigt, deren Skalierungsfaktor am
+	 * nächsten liegt (siehe {@link TileMapChanger#zoomTo(float, float, float)}
+	 * ).
+	 */
+	private class ScaleListener extends
+			ScaleGestureDetector.SimpleOnScaleGestureListener {
+
+		@Override
+		public boolean onScaleBegin(ScaleGestureDetector detector) {
+			gestureScale = 1f;
+			focusX = detector.getFocusX();
+			focusY = detector.getFocusY();
+
+			/*
+			 * Die Geste wird auf die gröbste und die detaillierteste TileMap
+			 * begrenzt.
+			 */
+			float activeScaleFactor = drawing.getAcitveTileMap()
+					.getScaleFactor();
+			minGestureScale = 1f;
+			maxGestureScale = 1f;
+			for (TileMap tileMap : drawing.getTileMaps()) {
+				float scale = tileMap.getScaleFactor() / activeScaleFactor;
+				minGestureScale = Math.min(minGestureScale, scale);
+				maxGestureScale = Math.max(maxGestureScale, scale);
+			}
+			return true;
+		}
+
+		@Override
+		public boolean onScale(ScaleGestureDetector detector) {
+			gestureScale = Math.max(minGestureScale, Math.min(maxGestureScale,
+					gestureScale * detector.getScaleFactor()));
+			applyGestureScale(gestureScale);
+			return true;
+		}
+
+		@Override
+		public void onScaleEnd(ScaleGestureDetector detector) {
+			// Die Skalierung der Geste wird zurückgesetzt.
+			applyGestureScale(1f);
+
+			/*
+			 * Erst jetzt wird gegebenenfalls die Zoomstufe gewechselt und
+			 * geladen.
+			 */
+			TileMapChanger changer = new TileMapChanger(wrapper, drawing,
+					viewport, LazyDrawingViewer.this);
+			if (changer.zoomTo(gestureScale, focusX, focusY)) {
+				tileLayer = TileMapChanger.findTileLayer(wrapper,
+						drawing.getAcitveTileMap());
+				loader = LazyLoader.lazyLoader(tileLayer, viewport);
+			}
+			gestureScale = 1f;
+		}
+	}
+
 	/**
 	 * Bearbeitet die Bewegung beim Touch-Event, die bei einer Bewegung und beim
-	 * Loslassen des Displays ausgefhrt werden muss. Die Bewegungen werden an
+	 * Loslassen des Displays ausgeführt werden muss. Die Bewegungen werden an
 	 * <code>HScroll</code>, <code>VScroll</code> und den <code>Viewport</code>
-	 * weitergegeben.
+	 * weitergegeben. Zudem wird die Geschwindigkeit der Bewegung geglättet
+	 * berechnet und an den <code>LazyLoader</code> übergeben, der damit die
+	 * Kacheln in Bewegungsrichtung vorlädt.
 	 * 
 	 * @param curX
 	 * @param curY
+	 * @param eventTime
 	 */
-	private void handleTouchMove(float curX, float curY) {
+	private void handleTouchMove(float curX, float curY, long eventTime) {
 		// Zwischenspeichern der aktuellen Bewegungsweite.
 		int dx = (int) (mx - curX);
 		int dy = (int) (my - curY);
 
-		// Viewport ebenfalls verschieben.
-		viewport.translate(dx, dy, tileMapView.getTileMap().getSize());
+		/*
+		 * Geschwindigkeit berechnen, die neueste Bewegung wird dabei stärker
+		 * gewichtet als die bisherige Geschwindigkeit.
+		 */
+		long dt = eventTime - lastMoveTime;
+		if (dt > 0) {
+			velocityX = VELOCITY_SMOOTHING * dx / dt
+					+ (1 - VELOCITY_SMOOTHING) * velocityX;
+			velocityY = VELOCITY_SMOOTHING * dy / dt
+					+ (1 - VELOCITY_SMOOTHING) * velocityY;
+			lastMoveTime = eventTime;
+			loader.setVelocity(velocityX, velocityY);
+		}
 
-		// Werte an ScrollViews bergeben.
-		vScroll.scrollTo(viewport.getPosition().getX(), viewport.getPosition()
-				.getY());
-		hScroll.scrollTo(viewport.getPosition().getX(), viewport.getPosition()
-				.getY());
+		// Viewport ebenfalls verschieben.
+		viewport.translate(dx, dy, tileLayer.getTileMap().getSize());
+
+		if (hScroll != null) {
+			// Werte an ScrollViews übergeben.
+			vScroll.scrollTo(viewport.getPosition().getX(), viewport
+					.getPosition().getY());
+			hScroll.scrollTo(viewport.getPosition().getX(), viewport
+					.getPosition().getY());
+		} else {
+			/*
+			 * Ohne ScrollViews wird die Ebene neu gezeichnet und die
+			 * DefectViews werden selbst verschoben.
+			 */
+			tileLayer.bindViewport(viewport);
+			wrapper.getChildAt(wrapper.getChildCount() - 1).scrollTo(viewport.getPosition().getX(),
+					viewport.getPosition().getY());
+		}
 	}
 
 }
@@ -7,15 +7,15 @@ package de.hdm.hettich.studienarbeit.bo;
 import de.hdm.hettich.studienarbeit.utile.Coordinate;
 
 /**
- * Die Klasse <code>Defect</code> reprsentiert einen Fehler oder eine Notiz die
- * einem Drawing hinzugefgt werden kann. Ein <code>Defect</code> hat einen
+ * Die Klasse <code>Defect</code> repräsentiert einen Fehler oder eine Notiz die
+ * einem Drawing hinzugefügt werden kann. Ein <code>Defect</code> hat einen
  * bestimmten Typ (z.B. Video-Notiz, Audio-Kommentar, Text-Notiz, etc.) der
  * aktuell lediglich durch einen <code>String</code> gespeichert wird. Dem
  * <code>Defect</code> ist eine Position zugeordnet, die sich stehts auf die
  * initiale Zoomstufe (1) des Plans bezieht, somit lassen sich die Positionen in
- * allen anderen mglichen Zoomstufen durch den Skalierungsfaktor berechnen. Die
- * Gre eines <code>Defect</code>s bei der spteren Anzeige ist immer gleich
- * gro, das reprsentative Icon wird also immer in gleicher Gre mittig zur
+ * allen anderen möglichen Zoomstufen durch den Skalierungsfaktor berechnen. Die
+ * Größe eines <code>Defect</code>s bei der späteren Anzeige ist immer gleich
+ * groß, das repräsentative Icon wird also immer in gleicher Größe mittig zur
  * Position angezeigt.
  * 
  * @author Stefan Hettich
@@ -26,19 +26,19 @@ import de.hdm.hettich.studienarbeit.utile.Coordinate;
 public class Defect extends Document {
 
 	/**
-	 * Beschreibt die Art der Defect-Notiz, kann spter sehr vielseitig sein.
+	 * Beschreibt die Art der Defect-Notiz, kann später sehr vielseitig sein.
 	 * Z.B. Video, Audio, Text, etc.
 	 */
 	private String typeOfNote;
 
 	/**
-	 * Position des Defect im initalen Plan, das heit diese Position muss bei
+	 * Position des Defect im initalen Plan, das heißt diese Position muss bei
 	 * einer unterschiedlichen Zoomstufen neu berechnet werden.
 	 */
 	private Coordinate position;
 
 	/**
-	 * Gre des angezeigten Icons fr den <code>Defect</code>. Standardgem
+	 * Größe des angezeigten Icons für den <code>Defect</code>. Standardgemäß
 	 * ist diese 50x50
 	 */
 	private Coordinate size;
@@ -6,7 +6,7 @@ package de.hdm.hettich.studienarbeit.bo;
 
 /**
  * Diese Klasse ist lediglich vorhanden, um die Vererbungsstruktur des
- * "Elternprojekts" zu bernehmen.
+ * "Elternprojekts" zu übernehmen.
  * 
  * @author Stefan Hettich
  * 
@@ -9,21 +9,36 @@ import java.util.ArrayList;
 import de.hdm.hettich.studienarbeit.utile.Coordinate;
 
 /**
- * Ein <code>Drawing</code> reprsentiert eine Gesamtplan, es enthlt mehrere
+ * Ein <code>Drawing</code> repräsentiert eine Gesamtplan, es enthält mehrere
  * <code>TileMap</code>s, die die einzelnen Zoomstufen des Plans darstellen.
  * Jedem <code>Drawing</code> ist eine aktive <code>TileMap</code> zugeordnet,
- * welche im Moment angezeigt wird. Zudem wird eine Grundgre des Plans
+ * welche im Moment angezeigt wird. Zudem wird eine Grundgröße des Plans
  * gespeichert, anhand der sich die Skalierungsfaktoren ableiten.
+ * <p>
+ * Die <code>TileMap</code>s werden i.d.R. erst aufgebaut, wenn sie angezeigt
+ * werden (siehe {@link #activateTileMap(TileMap)}). Zoomstufen, die weiter
+ * als {@link #RETAINED_LEVELS} Stufen von der aktiven entfernt sind, werden
+ * nicht mehr benötigt (siehe {@link #findUnusedTileMaps(TileMap)}) und geben
+ * ihre Kacheln und ihren Zustand wieder frei (siehe
+ * <code>TileMapChanger</code>).
  * 
  * @author Stefan Hettich
  */
 public class Drawing extends Document {
 
 	/**
-	 * Jedes Drawing-Objekt enthlt beliebig viele TileMaps, diese TileMaps
+	 * Anzahl der Zoomstufen über und unter der aktiven <code>TileMap</code>,
+	 * deren Zustand erhalten bleibt. Das sind die Stufen, auf die als nächstes
+	 * gewechselt werden kann bzw. die beim Wechsel noch als Platzhalter
+	 * angezeigt werden.
+	 */
+	public final static int RETAINED_LEVELS = 1;
+
+	/**
+	 * Jedes Drawing-Objekt enthält beliebig viele TileMaps, diese TileMaps
 	 * stellen die einzelnen Zoomebenen dar. TileMaps beinhalten die einzelnen
-	 * Tiles, die spter angezeigt werden. Die TileMaps sind nach
-	 * Detaillierungsgrad sortiert, das heit die allgemeinste Stufe steht an
+	 * Tiles, die später angezeigt werden. Die TileMaps sind nach
+	 * Detaillierungsgrad sortiert, das heißt die allgemeinste Stufe steht an
 	 * Index 0.
 	 */
 	private ArrayList<TileMap> tileMaps = new ArrayList<TileMap>();
@@ -34,14 +49,14 @@ public class Drawing extends Document {
 	private TileMap acitveTileMap;
 
 	/**
-	 * Die initiale Gre des Drawings, das heit die Gre der TileMap mit
+	 * Die initiale Größe des Drawings, das heißt die Größe der TileMap mit
 	 * Skalierungsfaktor 1.
 	 */
 	private Coordinate initialSize;
 
 	/**
-	 * Jedes Drawing-Objekt enthlt beliebig viele <code>Defect</code>s, das
-	 * heit
+	 * Jedes Drawing-Objekt enthält beliebig viele <code>Defect</code>s, das
+	 * heißt
 	 */
 	private ArrayList<Defect> defects = new ArrayList<Defect>();
 
@@ -63,7 +78,7 @@ public class Drawing extends Document {
 
 	/**
 	 * Konstrukor, der ebenfalls ein Drawing-Objekt instanziiert, die weiteren
-	 * Parameter werden spter gesetzt.
+	 * Parameter werden später gesetzt.
 	 * 
 	 * @param initialSize
 	 */
@@ -132,7 +147,47 @@ public class Drawing extends Document {
 	}
 
 	/**
-	 * Fgt eine TileMap am Ende der ArrayList an.
+	 * Setzt die übergebene <code>TileMap</code> als aktive
+	 * <code>TileMap</code>. Diese wird dazu aufgebaut, sofern das noch nicht
+	 * geschehen ist.
+	 * 
+	 * @param tileMap
+	 * @return TileMap die bisher aktive TileMap oder null
+	 */
+	public TileMap activateTileMap(TileMap tileMap) {
+		tileMap.materialize();
+		TileMap previous = this.acitveTileMap;
+		this.acitveTileMap = tileMap;
+		return previous;
+	}
+
+	/**
+	 * Gibt alle aufgebauten Zoomstufen zurück, die weiter als
+	 * {@link #RETAINED_LEVELS} Stufen von der aktiven <code>TileMap</code>
+	 * entfernt sind. Deren Kacheln werden nicht mehr benötigt und können
+	 * freigegeben werden (siehe {@link TileMap#release()}).
+	 * 
+	 * @param retained
+	 *            TileMap, die zusätzlich erhalten bleibt, z.B. die bisher
+	 *            aktive, die während des Wechsels noch als Platzhalter
+	 *            angezeigt wird, oder null
+	 * @return ArrayList<TileMap> die nicht mehr benötigten TileMaps
+	 */
+	public ArrayList<TileMap> findUnusedTileMaps(TileMap retained) {
+		int active = this.tileMaps.indexOf(this.acitveTileMap);
+		ArrayList<TileMap> unused = new ArrayList<TileMap>();
+		for (int i = 0; i < this.tileMaps.size(); i++) {
+			TileMap tileMap = this.tileMaps.get(i);
+			if (Math.abs(i - active) > RETAINED_LEVELS && tileMap != retained
+					&& tileMap.isMaterialized()) {
+				unused.add(tileMap);
+			}
+		}
+		return unused;
+	}
+
+	/**
+	 * Fügt eine TileMap am Ende der ArrayList an.
 	 * 
 	 * @param tileMap
 	 */
@@ -141,7 +196,7 @@ public class Drawing extends Document {
 	}
 
 	/**
-	 * Fgt eine TileMap an einer bestimmten Position in der ArrayList an.
+	 * Fügt eine TileMap an einer bestimmten Position in der ArrayList an.
 	 * 
 	 * @param tileMap
 	 * @param location
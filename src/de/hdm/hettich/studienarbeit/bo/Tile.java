@@ -9,12 +9,15 @@ import java.net.URI;
 import de.hdm.hettich.studienarbeit.utile.Coordinate;
 
 /**
- * Die Klasse <code>Tile</code> reprsentiert eine Kachel im Plan, sie wird
+ * Die Klasse <code>Tile</code> repräsentiert eine Kachel im Plan, sie wird
  * einer <code>TileMap</code> zugeordnet.
  * <p>
- * Die <code>Tile</code> hat eine bestimmte Gre, einen <code>byte[]</code> in
- * dem das zu ladende Bild hinterlegt ist, sowie eine <code>URI</code> zum auf
- * der SD-Karte befindlichen PNG.
+ * Die <code>Tile</code> hat eine bestimmte Größe sowie eine <code>URI</code>
+ * zum auf der SD-Karte befindlichen PNG. Sie wird von der <code>TileMap</code>
+ * nur bei Bedarf erstellt, die Größe teilen sich alle Kacheln einer Ebene. Ob
+ * die Kachel geladen ist, hält die <code>TileMap</code> selbst (siehe
+ * {@link TileMap#isLoaded(int, int)}), die komprimierten Daten liegen im
+ * <code>CompressedTileCache</code>.
  * 
  * @author Stefan Hettich
  * 
@@ -24,25 +27,18 @@ import de.hdm.hettich.studienarbeit.utile.Coordinate;
 public class Tile extends Document {
 
 	/**
-	 * Gre der Tile.
+	 * Größe der Tile.
 	 */
 	private Coordinate size;
 
-	/**
-	 * Byte-Array, der das Bild, das angezeigt werden soll beinhaltet. Ist
-	 * <code>null</code>, wenn das Bild noch nicht gebraucht (spter: aus der
-	 * Datenbank geladen wurde).
-	 */
-	private byte[] image;
-
 	/**
 	 * URI zur zugeordneten PNG.
 	 */
 	private URI filename;
 
 	/**
-	 * Konstruktor, der ein neues Tile-Objekt erstellt, dabei wird die Gre des
-	 * Tiles, sowie der Dateiname des zu ladenden Bilds bergeben.
+	 * Konstruktor, der ein neues Tile-Objekt erstellt, dabei wird die Größe des
+	 * Tiles, sowie der Dateiname des zu ladenden Bilds übergeben.
 	 * 
 	 * @param size
 	 * @param filename
@@ -67,21 +63,6 @@ public class Tile extends Document {
 		this.size = size;
 	}
 
-	/**
-	 * @return the image
-	 */
-	public byte[] getImage() {
-		return image;
-	}
-
-	/**
-	 * @param image
-	 *            the image to set
-	 */
-	public void setImage(byte[] image) {
-		this.image = image;
-	}
-
 	/**
 	 * @return the filename
 	 */
@@ -98,33 +79,14 @@ public class Tile extends Document {
 	}
 
 	/**
-	 * @return the isLoaded
-	 */
-	public boolean isLoaded() {
-		if (image == null) {
-			return false;
-		}
-		return (image.length > 0);
-	}
-
-	/**
-	 * "Vergisst" eine Tile, das heit das Byte-Array wird geleert und somit die
-	 * Referenz zum Bild entfernt.
-	 */
-	public void forget() {
-		this.image = null;
-	}
-
-	/**
-	 * Gibt zurck, ob zwei <code>Tile</code>-Objekte gleich sind. Dabei wird
-	 * der <code>byte[]</code>, sowie die Gre der Tile verglichen.
+	 * Gibt zurück, ob zwei <code>Tile</code>-Objekte gleich sind. Dabei wird
+	 * die Datei, sowie die Größe der Tile verglichen.
 	 * 
 	 * @param tile
 	 * @return boolean boolean true wenn Werte der Objekte gleich sind, sonst false
 	 */
 	public boolean equals(Tile tile) {
-		return (this.filename.equals(tile.getFilename())
-				&& this.image == tile.getImage() && this.size.equals(tile
-				.getSize()));
+		return (this.filename.equals(tile.getFilename()) && this.size
+				.equals(tile.getSize()));
 	}
 }
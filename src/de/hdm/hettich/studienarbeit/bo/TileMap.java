@@ -4,16 +4,27 @@
  */
 package de.hdm.hettich.studienarbeit.bo;
 
-import java.util.ArrayList;
+import java.net.URI;
 
 import de.hdm.hettich.studienarbeit.utile.Coordinate;
 
 /**
  * Eine <code>TileMap</code> ist ein Teil eines <code>Drawing</code>s und
- * reprsentiert eine einzelne Zoomstufe eines Gesamtplans. Die
- * <code>TileMap</code> enthlt in zweidimensionaler Anordnung mehrere
+ * repräsentiert eine einzelne Zoomstufe eines Gesamtplans. Die
+ * <code>TileMap</code> enthält in zweidimensionaler Anordnung mehrere
  * <code>Tile</code>s. Zudem ist jeder <code>TileMap</code> ein spezieller
  * Skalierungsfaktor zugeordnet.
+ * <p>
+ * Die <code>Tile</code>s werden dabei nicht als einzelne Objekte gehalten:
+ * Die Kachelgröße ist einmal pro Ebene gespeichert, die Datei einer Kachel
+ * wird aus ihrer Position über die {@link TileSource} berechnet (z.B. aus
+ * einem Namensmuster oder dem Index eines Archivs) und ob eine Kachel geladen
+ * ist, steht in einem Bitset. Ein <code>Tile</code>-Objekt wird nur bei
+ * Bedarf erstellt (siehe {@link #getTile(int, int)}). So wächst der Speicher
+ * einer Ebene auch bei zehntausenden Kacheln kaum.
+ * <p>
+ * Die Kacheln werden spaltenweise durchnummeriert, der Index einer Kachel ist
+ * <code>x * Zeilen + y</code>.
  * 
  * @author Stefan Hettich
  * 
@@ -23,250 +34,361 @@ import de.hdm.hettich.studienarbeit.utile.Coordinate;
 public class TileMap extends Document {
 
 	/**
-	 * Zweidimensionaler Tile-Array, der die einzelnen Tile-Elemente hlt, dabei
-	 * ist die Anordnung wichtig: Es wird von einem "normalen" Koordinatensystem
-	 * ausgegangen, das den Ursprung oben links hat. Die horizontale Achse
-	 * stellt die x-Achse dar, die vertikale Achse folglich die y-Achse.
+	 * Eine <code>TileSource</code> berechnet die Dateien der Kacheln einer
+	 * <code>TileMap</code> aus deren Position.
 	 */
-	private Tile[][] tiles;
+	public interface TileSource {
+
+		/**
+		 * Berechnet die Datei der Kachel an der übergebenen Position.
+		 * 
+		 * @param x
+		 * @param y
+		 * @return URI die Datei der Kachel oder null
+		 */
+		URI createTileUri(int x, int y);
+
+	}
+
+	/**
+	 * Anzahl der Kacheln (Spalten mal Zeilen).
+	 */
+	private Coordinate dimension;
+
+	/**
+	 * Größe der Kacheln, alle Kacheln einer Ebene sind gleich groß.
+	 */
+	private Coordinate tileSize;
+
+	/**
+	 * Berechnet die Dateien der Kacheln.
+	 */
+	private TileSource tileSource;
+
+	/**
+	 * Bitset der geladenen Kacheln, je ein Bit pro Kachel (siehe
+	 * {@link #isLoaded(int, int)}). Ist <code>null</code>, solange die Ebene
+	 * nicht aufgebaut ist.
+	 */
+	private volatile long[] loaded;
 
 	/**
-	 * Skalierungsfaktor relativ zur im Drawing angegeben Referenzgre.
+	 * Skalierungsfaktor relativ zur im Drawing angegeben Referenzgröße.
 	 * 
 	 */
 	private float scaleFactor;
 
 	/**
-	 * Konstruktur, der ein neues TileMap-Objekt anhand der bergebenen
-	 * Dimension der TileMap (wie viele Tile - a x b) und dem Skalierungsfaktor
-	 * erstellt.
+	 * Gibt an, ob die Kacheln dieser Ebene keine Transparenz enthalten (z.B.
+	 * Baupläne auf weißem Grund). Solche Kacheln können mit halbem
+	 * Speicherbedarf (RGB_565 statt ARGB_8888) dekodiert werden.
+	 */
+	private boolean opaque = false;
+
+	/**
+	 * Verkleinerungsfaktor (inSampleSize), mit dem die Kacheln dieser Ebene
+	 * während eines Zoomstufen-Wechsels zunächst dekodiert werden. Ist der
+	 * Wert 0, wird er anhand des Skalierungsfaktors berechnet (siehe
+	 * {@link #calculateTransitionSampleSize()}).
+	 */
+	private int transitionSampleSize = 0;
+
+	/**
+	 * Gibt an, ob die Datei jeder <code>Tile</code> die gesamte Ebene enthält.
+	 * Die Kacheln werden dann als Ausschnitte aus diesem Bild dekodiert (siehe
+	 * <code>TileRegionDecoder</code>).
+	 */
+	private boolean regionDecoding = false;
+
+	/**
+	 * <code>TileMap</code> der nächst gröberen Zoomstufe, deren Kacheln als
+	 * Platzhalter für noch nicht geladene Kacheln dieser Ebene dienen können.
+	 */
+	private TileMap parentTileMap;
+
+	/**
+	 * Konstruktor, der ein neues TileMap-Objekt anhand der Dimension (wie
+	 * viele Tile - a x b), der Kachelgröße, dem Skalierungsfaktor und der
+	 * <code>TileSource</code> erstellt, aus der sich die Dateien der Kacheln
+	 * ergeben.
 	 * 
 	 * @param dimension
+	 * @param tileSize
 	 * @param scaleFactor
+	 * @param tileSource
 	 */
-	public TileMap(Coordinate dimension, float scaleFactor) {
-		this.tiles = new Tile[dimension.getX()][dimension.getY()];
+	public TileMap(Coordinate dimension, Coordinate tileSize,
+			float scaleFactor, TileSource tileSource) {
+		this.dimension = dimension;
+		this.tileSize = tileSize;
 		this.scaleFactor = scaleFactor;
+		this.tileSource = tileSource;
+	}
+
+	/**
+	 * @return the scaleFactor
+	 */
+	public float getScaleFactor() {
+		return scaleFactor;
 	}
 
 	/**
-	 * Konstruktor, der ein neues TileMap-Objekt anhand des bergebenes
-	 * Tile-Array und dem Skalierungsfaktor erstellt.
-	 * 
-	 * @param tiles
 	 * @param scaleFactor
+	 *            the scaleFactor to set
 	 */
-	public TileMap(Tile[][] tiles, float scaleFactor) {
-		this.tiles = tiles;
+	public void setScaleFactor(float scaleFactor) {
 		this.scaleFactor = scaleFactor;
 	}
 
 	/**
-	 * @return the tiles
+	 * @return the opaque
 	 */
-	public Tile[][] getTiles() {
-		return tiles;
+	public boolean isOpaque() {
+		return opaque;
 	}
 
 	/**
-	 * @param tiles
-	 *            the tiles to set
+	 * @param opaque
+	 *            the opaque to set
 	 */
-	public void setTiles(Tile[][] tiles) {
-		this.tiles = tiles;
+	public void setOpaque(boolean opaque) {
+		this.opaque = opaque;
 	}
 
 	/**
-	 * @return the scaleFactor
+	 * @return the transitionSampleSize
 	 */
-	public float getScaleFactor() {
-		return scaleFactor;
+	public int getTransitionSampleSize() {
+		return transitionSampleSize;
 	}
 
 	/**
-	 * @param scaleFactor
-	 *            the scaleFactor to set
+	 * @param transitionSampleSize
+	 *            the transitionSampleSize to set
 	 */
-	public void setScaleFactor(float scaleFactor) {
-		this.scaleFactor = scaleFactor;
+	public void setTransitionSampleSize(int transitionSampleSize) {
+		this.transitionSampleSize = transitionSampleSize;
+	}
+
+	/**
+	 * @return the regionDecoding
+	 */
+	public boolean isRegionDecoding() {
+		return regionDecoding;
+	}
+
+	/**
+	 * @param regionDecoding
+	 *            the regionDecoding to set
+	 */
+	public void setRegionDecoding(boolean regionDecoding) {
+		this.regionDecoding = regionDecoding;
+	}
+
+	/**
+	 * @return the parentTileMap
+	 */
+	public TileMap getParentTileMap() {
+		return parentTileMap;
+	}
+
+	/**
+	 * @param parentTileMap
+	 *            the parentTileMap to set
+	 */
+	public void setParentTileMap(TileMap parentTileMap) {
+		this.parentTileMap = parentTileMap;
 	}
 
 	/**
-	 * Diese Methode ermglicht das einfach hinzufgen eines Tile zum
-	 * Tile-Array. Dabei wird die nchste freie Position im Tile-Array gesucht
-	 * und das bergebene Tile dann dort abgelegt. Die Fllung des Tile-Arrays
-	 * luft spaltenweise.
+	 * Prüft, ob diese <code>TileMap</code> bereits aufgebaut wurde.
 	 * 
-	 * @param tile
+	 * @return boolean true wenn das Bitset der geladenen Kacheln existiert
 	 */
-	public void addTile(Tile tile) {
-		// Ermittlen der nchsten freien Position.
-		Coordinate pos = this.getNextFreePosition();
-		/*
-		 * Prfen, ob es berhaupt eine freie Position gibt.
-		 * 
-		 * @see getNextFreePosition
-		 */
-		if (pos != null) {
-			// An diesem freien Platz Tile ablegen.
-			tiles[pos.getX()][pos.getY()] = tile;
-		} else {
-			throw new Error("Tile-Array ist bereits voll.");
+	public boolean isMaterialized() {
+		return loaded != null;
+	}
+
+	/**
+	 * Baut die <code>TileMap</code> auf, sofern dies noch nicht geschehen
+	 * ist. Dazu muss nur das Bitset der geladenen Kacheln angelegt werden,
+	 * einzelne Kacheln werden keine erzeugt.
+	 */
+	public synchronized void materialize() {
+		if (loaded == null) {
+			loaded = new long[(getTileCount() + 63) >>> 6];
 		}
 	}
 
 	/**
-	 * Ermittelt die nchste freie Position im Tile-Array.
+	 * Gibt das Bitset der geladenen Kacheln frei. Die Kacheln der Ebene müssen
+	 * vorher aus den Caches entfernt worden sein (siehe
+	 * <code>TileMapChanger</code>), beim nächsten Zugriff wird das Bitset
+	 * erneut angelegt.
 	 * 
-	 * @return Point nchste freie Position im Tile-Array
-	 */
-	public Coordinate getNextFreePosition() {
-		// Prfung, ob bereits ein Tile-Array initialisiert wurde.
-		if (tiles != null) {
-			/*
-			 * Durchlaufen des Tile-Arrays, bis eine leere Stelle gefunden
-			 * wurde.
-			 */
-			for (int x = 0; x < tiles.length; x++) {
-				for (int y = 0; y < tiles[x].length; y++) {
-					if (tiles[x][y] == null) {
-						return new Coordinate(x, y);
-					}
-				}
-			}
-		} else {
-			/*
-			 * Wenn noch kein Tile-Array initialisiert wurde, kann auch kein
-			 * Tile angefgt werden!
-			 */
-			throw new Error("Tile-Array wurde noch nicht initialisiert.");
+	 * @return boolean true wenn das Bitset freigegeben wurde
+	 */
+	public synchronized boolean release() {
+		if (loaded == null) {
+			return false;
 		}
-		/*
-		 * Wenn es keine freie Stelle gibt wurde bis hier noch kein Point
-		 * zurckgegeben, also wird hier null zurckgegeben.
-		 */
-		return null;
+		loaded = null;
+		return true;
 	}
 
 	/**
-	 * Gibt die Tile an einer bestimmten Position zurck.
+	 * Gibt die Anzahl der Kacheln dieser Ebene zurück.
+	 * 
+	 * @return int Spalten mal Zeilen
+	 */
+	public int getTileCount() {
+		return dimension.getX() * dimension.getY();
+	}
+
+	/**
+	 * Berechnet den Index der Kachel an der übergebenen Position.
 	 * 
 	 * @param x
 	 * @param y
-	 * @return Tile die an Position (x, y) befindliche Tile
+	 * @return int der spaltenweise Index der Kachel
 	 */
-	public Tile getTile(int x, int y) {
-		return this.tiles[x][y];
+	public int indexOf(int x, int y) {
+		return x * dimension.getY() + y;
 	}
 
 	/**
-	 * Setzt eine Tile an einer bestimmten Positon.
+	 * Prüft, ob die Kachel an der übergebenen Position geladen ist, d.h. ob
+	 * ihre komprimierten Daten im Speicher liegen (siehe
+	 * <code>CompressedTileCache</code>).
 	 * 
 	 * @param x
 	 * @param y
-	 * @param tile
+	 * @return boolean true wenn die Kachel geladen ist
 	 */
-	public void setTile(int x, int y, Tile tile) {
-		this.tiles[x][y] = tile;
+	public boolean isLoaded(int x, int y) {
+		long[] loaded = this.loaded;
+		if (loaded == null) {
+			return false;
+		}
+		int index = indexOf(x, y);
+		return (loaded[index >>> 6] & (1L << index)) != 0;
 	}
 
 	/**
-	 * Gibt die Tiles eines definierten Bereich im Plan zurck.
+	 * Setzt, ob die Kachel an der übergebenen Position geladen ist. Eine noch
+	 * nicht aufgebaute <code>TileMap</code> wird dazu aufgebaut.
 	 * 
 	 * @param x
 	 * @param y
-	 * @param dx
-	 * @param dy
-	 * @return ArrayList<Tile> die Kacheln im angegebenen Bereich
+	 * @param isLoaded
 	 */
-	public ArrayList<Tile> getArea(int x, int y, int dx, int dy) {
-		ArrayList<Tile> result = new ArrayList<Tile>();
-
-		for (int i = 0; i < dx; i++) {
-			for (int j = 0; j < dy; j++) {
-				result.add(this.tiles[x + i][y + j]);
+	public synchronized void setLoaded(int x, int y, boolean isLoaded) {
+		if (loaded == null) {
+			if (!isLoaded) {
+				return;
 			}
+			materialize();
+		}
+		int index = indexOf(x, y);
+		if (isLoaded) {
+			loaded[index >>> 6] |= 1L << index;
+		} else {
+			loaded[index >>> 6] &= ~(1L << index);
 		}
+	}
+
+	/**
+	 * Gibt die Datei der Tile an einer bestimmten Position zurück, diese wird
+	 * über die <code>TileSource</code> berechnet.
+	 * 
+	 * @param x
+	 * @param y
+	 * @return URI die Datei der Tile oder null
+	 */
+	public URI getTileUri(int x, int y) {
+		return tileSource.createTileUri(x, y);
+	}
 
-		return result;
+	/**
+	 * Gibt den Verkleinerungsfaktor zurück, mit dem die Kacheln während eines
+	 * Zoomstufen-Wechsels dekodiert werden. Ist keiner gesetzt, wird er aus dem
+	 * Skalierungsfaktor berechnet: Je detaillierter die Ebene, desto stärker
+	 * kann zunächst verkleinert werden (Zweierpotenz, mindestens 1).
+	 * 
+	 * @return int der Verkleinerungsfaktor
+	 */
+	public int calculateTransitionSampleSize() {
+		if (transitionSampleSize > 0) {
+			return transitionSampleSize;
+		}
+		return Math.max(1, Integer.highestOneBit((int) scaleFactor));
 	}
 
 	/**
-	 * Gibt die Gre der <code>TileMap</code> zurck, die sich aus der Anzahl
-	 * der <code>Tile</code>s und der Gre des <code>Tile</code>s berechnet.
+	 * Gibt die Tile an einer bestimmten Position zurück. Die Tile wird bei
+	 * jedem Aufruf neu erstellt und teilt sich die Kachelgröße mit allen
+	 * anderen Kacheln der Ebene, sie sollte daher nur so lange gehalten
+	 * werden, wie sie gebraucht wird.
 	 * 
-	 * Dabei wird davon ausgegangen, dass alle <code>Tile</code>s einer
-	 * </code>TileMap</code> gleich gro sind (dies ist bei der Initialisierung
-	 * einer <code>TileMap</code> gegeben).
+	 * @param x
+	 * @param y
+	 * @return Tile die an Position (x, y) befindliche Tile
+	 */
+	public Tile getTile(int x, int y) {
+		return new Tile(tileSize, getTileUri(x, y));
+	}
+
+	/**
+	 * Gibt die Größe der <code>TileMap</code> zurück, die sich aus der Anzahl
+	 * der <code>Tile</code>s und der Größe des <code>Tile</code>s berechnet.
 	 * 
-	 * @return Coordinate die Gre der TileMap
+	 * @return Coordinate die Größe der TileMap
 	 */
 	public Coordinate getSize() {
 		/*
-		 * Reprsentativ wird die erste Zeile und die erste Tile verwendet. Der
-		 * x-Wert der Gesamtgre ergibt sich durch Multiplikation der Anzahl
-		 * der Spalten wird mit der Gre der Tile in x-Richtung, der y-Wert
-		 * durch Multiplikation der Anzahl der Spalten mit der Gre der Tile in
+		 * Der x-Wert der Gesamtgröße ergibt sich durch Multiplikation der
+		 * Anzahl der Spalten mit der Größe der Tile in x-Richtung, der y-Wert
+		 * durch Multiplikation der Anzahl der Zeilen mit der Größe der Tile in
 		 * y-Richtung.
 		 */
-		return new Coordinate(tiles.length * tiles[0][0].getSize().getX(),
-				tiles[0].length * tiles[0][0].getSize().getY());
+		return new Coordinate(dimension.getX() * tileSize.getX(),
+				dimension.getY() * tileSize.getY());
 	}
 
 	/**
-	 * Gibt die Kachel-Gre dieser Ebene zurck, da durch die Initialisierung
-	 * gewhrleistet ist, dass alle Kacheln gleich gro sind, kann reprsentativ
-	 * die erste Kachel verwendet werden.
-	 * 
-	 * @return Coordinate die Gre der Tiles dieser TileMap
+	 * @return the tileSize
 	 */
 	public Coordinate getTileSize() {
-		return tiles[0][0].getSize();
+		return tileSize;
 	}
 
 	/**
-	 * Gibt die Dimesionen des Plans zurck. Dabei wird einfach die Gre des
-	 * <code>tiles</code>-Arrays geprft.
+	 * Gibt die Anzahl der Spalten zurück, ohne wie
+	 * {@link #getDimension()} eine Kopie zu erstellen.
 	 * 
-	 * @return Coordinate die Dimensionen (Anzahl der Tiles) dieser TileMap
+	 * @return int die Anzahl der Spalten
 	 */
-	public Coordinate getDimension() {
-		return new Coordinate(tiles.length, tiles[0].length);
+	public int getColumns() {
+		return dimension.getX();
 	}
 
 	/**
-	 * Gibt einen zweidimensionalen <code>Tile</code>-Array zurck, der
-	 * grundstzlich dem {@link TileMap#tiles}-Array dieser Klasse entspricht,
-	 * jedoch nur die bereits geladenen <code>Tile</code>s gesetzt sind, die
-	 * noch nicht geladenen <code>Tile</code>s werden einfach <code>null</code>
-	 * gesetzt.
+	 * Gibt die Anzahl der Zeilen zurück, ohne wie {@link #getDimension()}
+	 * eine Kopie zu erstellen.
 	 * 
-	 * @return Tile[][] die bereits geladenen Tiles
+	 * @return int die Anzahl der Zeilen
 	 */
-	public Tile[][] getLoadedTiles() {
-		// Ergebnis ArrayList initialisieren.
-		Tile[][] result = new Tile[tiles.length][tiles[0].length];
-
-		/*
-		 * Durchlaufen des kompletten zweidimensionalen Tile-Arrays, dabei wird
-		 * bei jeder Tile geprft, ob sie geladen ist. Sollte die Tile noch
-		 * nicht geladen sein, dann wird sie aus dem Array entfernt.
-		 */
-		for (int i = 0; i < result.length; i++) {
-			for (int j = 0; j < result[i].length; j++) {
-				// Prfen, ob Kachel geladen ist.
-				if (!tiles[i][j].isLoaded()) {
-					// Wenn nicht, dann wird auch nichts in Array gesetzt (null)
-					result[i][j] = null;
-				} else {
-					// Wenn geladen, dann wird diese Kachel gesetzt.
-					result[i][j] = tiles[i][j];
-				}
-			}
-		}
+	public int getRows() {
+		return dimension.getY();
+	}
 
-		// Ergebnis-Array wird zurckgegeben.
-		return result;
+	/**
+	 * Gibt die Dimesionen des Plans (Anzahl der Tiles) zurück.
+	 * 
+	 * @return Coordinate die Dimensionen (Anzahl der Tiles) dieser TileMap
+	 */
+	public Coordinate getDimension() {
+		return new Coordinate(dimension.getX(), dimension.getY());
 	}
 
 }
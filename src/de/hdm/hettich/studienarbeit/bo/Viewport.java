@@ -7,9 +7,9 @@ package de.hdm.hettich.studienarbeit.bo;
 import de.hdm.hettich.studienarbeit.utile.Coordinate;
 
 /**
- * Die Klasse <code>Viewport</code> reprsentiert den aktuell auf dem Bildschirm
+ * Die Klasse <code>Viewport</code> repräsentiert den aktuell auf dem Bildschirm
  * sichtbaren Auschnitt. Dieser hat eine bestimmte Position im Gesamtplan und
- * eine bestimmte Gre (mit der Bildschirm-Gre gleichzusetzen ist).
+ * eine bestimmte Größe (mit der Bildschirm-Größe gleichzusetzen ist).
  * 
  * @author Stefan Hettich
  * 
@@ -20,15 +20,15 @@ public class Viewport extends Document {
 
 	/**
 	 * Aktuelle Position des <code>Viewport</code>s im Gesamtplan, diese
-	 * Position ndert sich bei jedem Verschieben des <code>Drawing</code>s.
+	 * Position ändert sich bei jedem Verschieben des <code>Drawing</code>s.
 	 */
 	private Coordinate position;
 
 	/**
-	 * Gre des <code>Viewport</code>s, entspricht momentan noch einfach der
-	 * Display-Gre, auch wenn diese je nach Endgert vom tatschlich
-	 * sichtbaren Bereich abweichen kann. Dies ist eine Notlsung, da die
-	 * notwendigen Funktionen zu schlichten Trennung von Gesamt-Bildschirm-Gre
+	 * Größe des <code>Viewport</code>s, entspricht momentan noch einfach der
+	 * Display-Größe, auch wenn diese je nach Endgerät vom tatsächlich
+	 * sichtbaren Bereich abweichen kann. Dies ist eine Notlösung, da die
+	 * notwendigen Funktionen zu schlichten Trennung von Gesamt-Bildschirm-Größe
 	 * und sichtbaren Bereichs erst ab Android-API 17 vorhanden sind und diese
 	 * Applikation mit Android-API 14 entwickelt wurde.
 	 */
@@ -36,7 +36,7 @@ public class Viewport extends Document {
 
 	/**
 	 * Konstruktor der ein neues <code>Viewport</code>-Objekt erstellt, dabei
-	 * werden Position und Gre bergeben.
+	 * werden Position und Größe übergeben.
 	 * 
 	 * @param position
 	 * @param size
@@ -80,52 +80,47 @@ public class Viewport extends Document {
 	}
 
 	/**
-	 * Ermittelt die Mitte des Viewports in Pixel-Gre, dabei wird beachtet,
+	 * Ermittelt die Mitte des Viewports in Pixel-Größe, dabei wird beachtet,
 	 * dass sich die Mitte bei einem Plan, der kleiner als der Bildschirm ist,
-	 * nur durch die Plangre und nicht die Bildschirm-Gre berechenen lsst.
+	 * nur durch die Plangröße und nicht die Bildschirm-Größe berechenen lässt.
 	 * 
 	 * @param tileMapSize
 	 * @return Coordinate die Mitte des Viewports in Pixeln.
 	 */
 	public Coordinate calculateCenter(Coordinate tileMapSize) {
-		// Prfen, ob Plan grer als das Display ist.
-		if (tileMapSize.getX() >= this.size.getX()
-				&& tileMapSize.getY() >= this.size.getY()) {
-			/*
-			 * Wenn ja, kann der Mittelpunkt anhand der Displaymae berechnet
-			 * werden.
-			 */
-			return new Coordinate(this.position.getX() + this.size.getX() / 2,
-					this.position.getY() + this.size.getY() / 2);
-		} else if (tileMapSize.getX() >= this.size.getX()) {
-			/*
-			 * Wenn der Plan nur in x-Richtung grer ist, muss die y-Richtung
-			 * mit der Plan-Gre berechnet werden.
-			 */
-			return new Coordinate(this.position.getX() + this.size.getX() / 2,
-					this.position.getY() + tileMapSize.getY() / 2);
-		} else if (tileMapSize.getY() >= this.size.getY()) {
-			/*
-			 * Wenn der Plan nur in y-Richtung grer ist, muss die x-Richtung
-			 * mit der Plan-Gre berechnet werden.
-			 */
-			return new Coordinate(
-					this.position.getX() + tileMapSize.getX() / 2,
-					this.position.getY() + this.size.getY() / 2);
-		} else {
-			/*
-			 * Wenn der Plan weder in x- noch in y-Richtung grer wie das
-			 * Display ist, berechnet sich der Mittelpunkt nach der Plan-Gre.
-			 */
-			return new Coordinate(
-					this.position.getX() + tileMapSize.getX() / 2,
-					this.position.getY() + tileMapSize.getY() / 2);
-		}
+		return calculateCenter(tileMapSize.getX(), tileMapSize.getY(),
+				new Coordinate());
+	}
+
+	/**
+	 * Ermittelt die Mitte des Viewports wie
+	 * {@link #calculateCenter(Coordinate)}, erstellt dabei aber keine neuen
+	 * Objekte, sondern schreibt das Ergebnis in die übergebene
+	 * <code>Coordinate</code>.
+	 * 
+	 * @param tileMapWidth
+	 * @param tileMapHeight
+	 * @param center
+	 *            hier wird das Ergebnis abgelegt
+	 * @return Coordinate die übergebene Coordinate
+	 */
+	public Coordinate calculateCenter(int tileMapWidth, int tileMapHeight,
+			Coordinate center) {
+		/*
+		 * Ist der Plan in einer Richtung größer als das Display, wird die
+		 * Mitte in dieser Richtung anhand der Displaymaße berechnet, sonst
+		 * anhand der Plan-Größe.
+		 */
+		center.setX(this.position.getX()
+				+ Math.min(tileMapWidth, this.size.getX()) / 2);
+		center.setY(this.position.getY()
+				+ Math.min(tileMapHeight, this.size.getY()) / 2);
+		return center;
 	}
 
 	/**
 	 * Bewegt den Viewport um die angegebenen Integer-Werte. Es sind negative
-	 * Werte mglich.
+	 * Werte möglich.
 	 * 
 	 * @param dx
 	 * @param dy
@@ -136,59 +131,59 @@ public class Viewport extends Document {
 	}
 
 	/**
-	 * Prft anhand der bergebenen <code>TileMap</code>-Gre, ob die Position
+	 * Prüft anhand der übergebenen <code>TileMap</code>-Größe, ob die Position
 	 * des <code>Viewport</code> realistisch ist und passt diese ggf. an. Immer
 	 * wenn der Rand des <code>Drawing</code>s erreicht wird, scrollen die
-	 * beiden <code>ScrollView</code>s weiter, das heit die Position des
-	 * Viewport wrde sich ins negative, oder ins positive immer weiter erhhen,
-	 * durch die Grenzen der <code>TileMap</code>-Gre und null ist es mglich
+	 * beiden <code>ScrollView</code>s weiter, das heißt die Position des
+	 * Viewport würde sich ins negative, oder ins positive immer weiter erhöhen,
+	 * durch die Grenzen der <code>TileMap</code>-Größe und null ist es möglich
 	 * dies abzufangen.
 	 * 
 	 * @param tileMapSize
 	 */
 	public void checkPosition(Coordinate tileMapSize) {
 		/*
-		 * Prfen, ob das Scrollen den Plan in x-Richtung verlassen wrde (weil
-		 * man zu weit nach rechts gescrollt hat, also zu groem x-Wert), sollte
-		 * dies der Fall sein, wird einfach die grtmglichste Position des
+		 * Prüfen, ob das Scrollen den Plan in x-Richtung verlassen würde (weil
+		 * man zu weit nach rechts gescrollt hat, also zu großem x-Wert), sollte
+		 * dies der Fall sein, wird einfach die größtmöglichste Position des
 		 * Viewport im Plan berechnet.
 		 */
 		if (this.getPosition().getX() + this.getSize().getX() > tileMapSize
 				.getX()) {
 			/*
-			 * Der y-Wert bleibt hier gleich, da nur der x-Wert geprft wird.
-			 * Der x-Wert berechnet sich aus der Gre der TileMap, sowie der
-			 * Gre des Viewports.
+			 * Der y-Wert bleibt hier gleich, da nur der x-Wert geprüft wird.
+			 * Der x-Wert berechnet sich aus der Größe der TileMap, sowie der
+			 * Größe des Viewports.
 			 */
 			this.position = new Coordinate(tileMapSize.getX()
 					- this.getSize().getX(), this.getPosition().getY());
 		}
 
 		/*
-		 * Prfen, ob das Scrollen den Plan in x-Richtung verlassen wrde (weil
+		 * Prüfen, ob das Scrollen den Plan in x-Richtung verlassen würde (weil
 		 * man zu weit nach links gescrollt hat, also einem x-Wert kleiner
-		 * null), sollte dies der Fall sein, wird einfach die grtmglichste
+		 * null), sollte dies der Fall sein, wird einfach die größtmöglichste
 		 * Position des Viewport im Plan berechnet.
 		 */
 		if (this.getPosition().getX() < 0) {
 			/*
-			 * Der y-Wert bleibt hier gleich, da nur der x-Wert geprft wird.
+			 * Der y-Wert bleibt hier gleich, da nur der x-Wert geprüft wird.
 			 * Der x-Wert wird auf null gesetzt.
 			 */
 			this.position = new Coordinate(0, this.getPosition().getY());
 		}
 
 		/*
-		 * Prfen, ob das Scrollen den Plan in y-Richtung verlassen wrde,
-		 * sollte dies der Fall sein, wird einfach die grtmglichste Position
+		 * Prüfen, ob das Scrollen den Plan in y-Richtung verlassen würde,
+		 * sollte dies der Fall sein, wird einfach die größtmöglichste Position
 		 * des Viewport im Plan berechnet.
 		 */
 		if (this.getPosition().getY() + this.getSize().getY() > tileMapSize
 				.getY()) {
 			/*
-			 * Der x-Wert bleibt hier gleich, da nur der y-Wert geprft wird.
-			 * Der x-Wert berechnet sich aus der Gre der TileMap, sowie der
-			 * Gre des Viewports.
+			 * Der x-Wert bleibt hier gleich, da nur der y-Wert geprüft wird.
+			 * Der x-Wert berechnet sich aus der Größe der TileMap, sowie der
+			 * Größe des Viewports.
 			 */
 			this.position = new Coordinate(this.getPosition().getX(),
 					tileMapSize.getY() - this.getSize().getY());
@@ -196,14 +191,14 @@ public class Viewport extends Document {
 		}
 
 		/*
-		 * Prfen, ob das Scrollen den Plan in y-Richtung verlassen wrde (weil
+		 * Prüfen, ob das Scrollen den Plan in y-Richtung verlassen würde (weil
 		 * man zu weit nach links gescrollt hat, also einem y-Wert kleiner
-		 * null), sollte dies der Fall sein, wird einfach die grtmglichste
+		 * null), sollte dies der Fall sein, wird einfach die größtmöglichste
 		 * Position des Viewport im Plan berechnet.
 		 */
 		if (this.getPosition().getY() < 0) {
 			/*
-			 * Der x-Wert bleibt hier gleich, da nur der y-Wert geprft wird.
+			 * Der x-Wert bleibt hier gleich, da nur der y-Wert geprüft wird.
 			 * Der y-Wert wird auf null gesetzt.
 			 */
 			this.position = new Coordinate(this.getPosition().getX(), 0);
@@ -15,9 +15,9 @@ import android.widget.LinearLayout;
 import android.widget.RelativeLayout;
 
 /**
- * Die Klasse <code>Defect2ViewFactory.java</code> ist fr die Umwandlung eines
- * <code>Defect</code>s in einen <code>DefectView</code> zustnig. Der
- * <code>DefectView</code> kommt letzendlich auf dem Gert zur Anzeige.
+ * Die Klasse <code>Defect2ViewFactory.java</code> ist für die Umwandlung eines
+ * <code>Defect</code>s in einen <code>DefectView</code> zustänig. Der
+ * <code>DefectView</code> kommt letzendlich auf dem Gerät zur Anzeige.
  * 
  * @author Stefan Hettich
  * 
@@ -32,7 +32,7 @@ public class Defect2ViewFactory {
 	private Context context;
 
 	/**
-	 * Konstruktor, der eine neue Defect2ViewFactory erstellt. Bentigt context
+	 * Konstruktor, der eine neue Defect2ViewFactory erstellt. Benötigt context
 	 * als Parameter.
 	 * 
 	 * @param context
@@ -59,9 +59,9 @@ public class Defect2ViewFactory {
 	/**
 	 * In dieser Methode wird der <code>DefectView</code> erzeugt, als
 	 * Information werden <code>Defect</code> und der aktuelle Skalierungsfaktor
-	 * bergeben. Am Ende wird ein <code>DefectView</code> mit schwarzem
+	 * übergeben. Am Ende wird ein <code>DefectView</code> mit schwarzem
 	 * Hintergrund und einem Margin links und oben, der der Position des
-	 * <code>Defect</code> entspricht, zurckgegeben. Zudem wird dem
+	 * <code>Defect</code> entspricht, zurückgegeben. Zudem wird dem
 	 * <code>DefectView</code> ein <code>OnClickListener</code> zugeordnet, um
 	 * Klicks auf das <code>Defect</code>-Icon abzufangen.
 	 * 
@@ -74,29 +74,19 @@ public class Defect2ViewFactory {
 		DefectView view = new DefectView(context, defect);
 
 		/*
-		 * Setzen der LayoutParams Zunchst Gre des DefectView, dann die
-		 * Abstnde oben und links (dadurch werden die DefectView positioniert).
+		 * Setzen der LayoutParams Zunächst Größe des DefectView, dann die
+		 * Abstände oben und links (dadurch werden die DefectView positioniert).
 		 */
 		RelativeLayout.LayoutParams lp = new RelativeLayout.LayoutParams(
 				LinearLayout.LayoutParams.WRAP_CONTENT,
 				LinearLayout.LayoutParams.WRAP_CONTENT);
-		// Breite und Hhe des ImageViews.
+		// Breite und Höhe des ImageViews.
 		lp.width = defect.getSize().getX();
 		lp.height = defect.getSize().getY();
 
-		/*
-		 * Setzen des Abstands der DefectViews zur Positionierung auf dem
-		 * Display. Die Position ist an der linken oberen Ecke ausgerichtet,
-		 * deshalb muss die Hlfte der Defect-Gre abgezogen werden, um den
-		 * DefectView mittig zu positionieren.
-		 */
-		lp.leftMargin = (int) ((defect.getPosition().getX() * scaleFactor) - defect
-				.getSize().getX() / 2);
-		lp.topMargin = (int) ((defect.getPosition().getY() * scaleFactor) - defect
-				.getSize().getY() / 2);
-
 		// Dem ImageView werden die oben erstellten Parameter zugeordnet.
 		view.setLayoutParams(lp);
+		positionView(view, scaleFactor);
 
 		/*
 		 * Schwarzen Hintergrund setzen, um das Icon zu indentifizieren.
@@ -105,10 +95,10 @@ public class Defect2ViewFactory {
 
 		/*
 		 * Dem DefectView wird ein OnClickListener zugeordnet, damit bei einer
-		 * Berhrung des DefectViews klar wird, das dieser berhrt wurde und
+		 * Berührung des DefectViews klar wird, das dieser berührt wurde und
 		 * nicht etwa der Plan. Dadurch soll eine Schnittstelle geschafft
-		 * werden, die es spter ermglichen soll die Defect-Icons dynamisch zu
-		 * erzeugen bzw. auch wieder zu lschen oder zu bearbeiten.
+		 * werden, die es später ermöglichen soll die Defect-Icons dynamisch zu
+		 * erzeugen bzw. auch wieder zu löschen oder zu bearbeiten.
 		 */
 		view.setOnClickListener(new OnClickListener() {
 
@@ -116,17 +106,17 @@ public class Defect2ViewFactory {
 			public void onClick(View v) {
 				/*
 				 * Erstellen eines Dialog-Builders, der die Erstellung des
-				 * eigentlichen Dialogs bernimmt.
+				 * eigentlichen Dialogs übernimmt.
 				 */
 				AlertDialog.Builder builder = new AlertDialog.Builder(context);
 				/*
-				 * Der View von dem aus das Click-Event ausgelst wurde wird
+				 * Der View von dem aus das Click-Event ausgelöst wurde wird
 				 * abgerufen und in einen DefectView umgewandelt.
 				 */
 				DefectView defectView = (DefectView) v;
 				/*
 				 * Mit Hile des oben abgerufenen DefectView wird eine Nachricht
-				 * erstellt, die spter dem Nutzer bei einem Klick auf das
+				 * erstellt, die später dem Nutzer bei einem Klick auf das
 				 * Defect-Icon angezeigt werden soll. Dabei wird der Typ des
 				 * Defects abgerufen.
 				 */
@@ -135,7 +125,7 @@ public class Defect2ViewFactory {
 				// Die erstellte Nachricht wird dem Dialog zugeordnet.
 				builder.setMessage(message);
 
-				// Ein Button zum besttigen des Dialogs wird angefgt.
+				// Ein Button zum bestätigen des Dialogs wird angefügt.
 				builder.setPositiveButton("ok", null);
 
 				// Der Dialog wird erstellt.
@@ -145,7 +135,33 @@ public class Defect2ViewFactory {
 			}
 		});
 
-		// Zurckgeben des erstellten Views.
+		// Zurückgeben des erstellten Views.
 		return view;
 	}
+
+	/**
+	 * Setzt den Abstand des übergebenen <code>DefectView</code>s oben und
+	 * links für den übergebenen Skalierungsfaktor. Wird auch beim
+	 * Zoomstufen-Wechsel aufgerufen, damit die <code>DefectView</code>s nicht
+	 * neu erstellt werden müssen.
+	 * 
+	 * @param view
+	 * @param scaleFactor
+	 */
+	public static void positionView(DefectView view, float scaleFactor) {
+		Defect defect = view.getDefect();
+		RelativeLayout.LayoutParams lp = (RelativeLayout.LayoutParams) view
+				.getLayoutParams();
+
+		/*
+		 * Setzen des Abstands der DefectViews zur Positionierung auf dem
+		 * Display. Die Position ist an der linken oberen Ecke ausgerichtet,
+		 * deshalb muss die Hälfte der Defect-Größe abgezogen werden, um den
+		 * DefectView mittig zu positionieren.
+		 */
+		lp.leftMargin = (int) ((defect.getPosition().getX() * scaleFactor) - defect
+				.getSize().getX() / 2);
+		lp.topMargin = (int) ((defect.getPosition().getY() * scaleFactor) - defect
+				.getSize().getY() / 2);
+	}
 }
@@ -15,6 +15,8 @@ import de.hdm.hettich.studienarbeit.bo.Defect;
 import de.hdm.hettich.studienarbeit.bo.Drawing;
 import de.hdm.hettich.studienarbeit.bo.TileMap;
 import de.hdm.hettich.studienarbeit.bo.Viewport;
+import de.hdm.hettich.studienarbeit.service.GlobalSettings;
+import de.hdm.hettich.studienarbeit.service.GlobalSettings.RenderingMode;
 import de.hdm.hettich.studienarbeit.service.TileMapChanger;
 import de.hdm.hettich.studienarbeit.view.HScroll;
 import de.hdm.hettich.studienarbeit.view.VScroll;
@@ -24,7 +26,7 @@ import de.hdm.hettich.studienarbeit.view.VScroll;
  * -Objekt in der Android-Sicht ab. Dabei wird die Umwandlung der einzelnen
  * Bestandteile des <code>Drawing</code>s, wie der <code>TileMap</code> und
  * deren <code>Tile</code>s, durch die <code>TileMap2ViewFactory</code> bzw. die
- * <code>Tile2ViewFactory</code> angestoen.
+ * <code>Tile2ViewFactory</code> angestoßen.
  * 
  * @author Stefan Hettich
  * 
@@ -40,8 +42,8 @@ public class DrawingAdministration {
 	private Drawing drawing;
 
 	/**
-	 * Aktueller <code>Viewport</code> des Gesamtplans, der fr die Erstellung
-	 * der Zoom-Buttons bentigt wird.
+	 * Aktueller <code>Viewport</code> des Gesamtplans, der für die Erstellung
+	 * der Zoom-Buttons benötigt wird.
 	 */
 	private Viewport viewport;
 
@@ -51,20 +53,20 @@ public class DrawingAdministration {
 	private Context context;
 
 	/**
-	 * <code>RelativeLayout</code>, das als Wrapper fr die <code>TileMap</code>
+	 * <code>RelativeLayout</code>, das als Wrapper für die <code>TileMap</code>
 	 * und den Defect-Wrapper dient.
 	 */
 	private RelativeLayout wrapper;
 
 	/**
-	 * <code>RelativeLayout</code>, das alle <code>DefectView</code>s hlt.
+	 * <code>RelativeLayout</code>, das alle <code>DefectView</code>s hält.
 	 */
 	private RelativeLayout wrapperDefects;
 
 	/**
 	 * Konstruktor, der eine neue <code>DrawingAdministration</code> erstellt,
 	 * dabei werden das anzuzeigende <code>Drawing</code>, sowie der
-	 * Applikations-Kontext und der <code>Viewport</code> bergeben.
+	 * Applikations-Kontext und der <code>Viewport</code> übergeben.
 	 * 
 	 * @param drawing
 	 * @param context
@@ -159,47 +161,59 @@ public class DrawingAdministration {
 	 * @return RelativeLayout komplettes RelativeLayout
 	 */
 	public RelativeLayout createCalculatedView() {
-		// RelativeLayout, das das ganze Konstrukt zusammenhlt.
+		// RelativeLayout, das das ganze Konstrukt zusammenhält.
 		RelativeLayout totalWrapper = new RelativeLayout(this.context);
 
 		/*
-		 * Angepasster horizontaler und vertikaler ScrollView, um diagonales
-		 * Scrollen zu ermglichen.
+		 * Erstellen des Wrappers, der die Bild-Layer hält.
 		 */
-		HScroll hScroll = new HScroll(this.context);
-		VScroll vScroll = new VScroll(this.context);
+		wrapper = new RelativeLayout(this.context);
 
-		// Hinzufgen von HScroll und VScroll
-		totalWrapper.addView(hScroll);
-		hScroll.addView(vScroll);
+		if (GlobalSettings.RENDERING_MODE == RenderingMode.CANVAS) {
+			/*
+			 * Beim Zeichnen auf den Canvas werden keine ScrollViews benötigt,
+			 * der Wrapper liegt direkt im totalWrapper.
+			 */
+			totalWrapper.addView(wrapper);
+		} else {
+			/*
+			 * Angepasster horizontaler und vertikaler ScrollView, um
+			 * diagonales Scrollen zu ermöglichen.
+			 */
+			HScroll hScroll = new HScroll(this.context);
+			VScroll vScroll = new VScroll(this.context);
 
-		/*
-		 * Erstellen und Hinzufgen eines weiteren Wrapper, der die Bild-Layer
-		 * hlt.
-		 */
-		wrapper = new RelativeLayout(this.context);
-		vScroll.addView(wrapper);
+			// Hinzufügen von HScroll, VScroll und dem Wrapper.
+			totalWrapper.addView(hScroll);
+			hScroll.addView(vScroll);
+			vScroll.addView(wrapper);
+		}
 
 		/*
 		 * Erstellen einer neuen TileMap2LayerFactory, die die TileMaps in einen
-		 * TileMapView zur Anzeige umwandeln.
+		 * TileMapView bzw. TileCanvasView zur Anzeige umwandeln.
 		 */
 		TileMap2ViewFactory viewFactory = new TileMap2ViewFactory(this.context);
 
 		/*
-		 * Initiale Zoom-Stufe ausfindig machen, das heit die TileMap finden,
-		 * deren Gre der im Drawing gespeicherten <code>initialSize</code>
+		 * Initiale Zoom-Stufe ausfindig machen, das heißt die TileMap finden,
+		 * deren Größe der im Drawing gespeicherten <code>initialSize</code>
 		 * entspricht.
 		 */
 		for (TileMap tileMap : drawing.getTileMaps()) {
-			// Prfen, ob diese TileMap die Initiale ist.
+			// Prüfen, ob diese TileMap die Initiale ist.
 			if (tileMap.getSize().equals(drawing.getInitialSize())) {
 				/*
 				 * Wenn diese TileMap die Initiale ist, wird sie dem
-				 * wrapper-RelativeLayout hinzugefgt.
+				 * wrapper-RelativeLayout hinzugefügt.
 				 */
-				wrapper.addView(viewFactory
-						.createCalculatedTileMapView(tileMap));
+				if (GlobalSettings.RENDERING_MODE == RenderingMode.CANVAS) {
+					wrapper.addView(viewFactory.createCalculatedTileCanvasView(
+							tileMap, viewport));
+				} else {
+					wrapper.addView(viewFactory.createCalculatedTileMapView(
+							tileMap, viewport));
+				}
 			}
 		}
 
@@ -209,12 +223,12 @@ public class DrawingAdministration {
 		 */
 		Defect2ViewFactory defectFactory = new Defect2ViewFactory(this.context);
 
-		// Erstellen des RelativeLayout fr die Defects.
+		// Erstellen des RelativeLayout für die Defects.
 		wrapperDefects = new RelativeLayout(this.context);
 		// Alle vorhandenen Defects durchlaufen.
 		for (Defect defect : drawing.getDefects()) {
 			/*
-			 * Erstellen eines neuen DefectViews und hinzufgen zum
+			 * Erstellen eines neuen DefectViews und hinzufügen zum
 			 * wrapperDefects.
 			 */
 			wrapperDefects.addView(defectFactory
@@ -223,25 +237,32 @@ public class DrawingAdministration {
 		wrapper.addView(wrapperDefects);
 
 		/*
-		 * Hinzufgen der Buttons zum Zoom In bzw. Zoom Out. Diese Buttons
-		 * werden erstellt, da momentan ein Zoomen mittels Pinch-To-Zoom noch
-		 * nicht mglich ist, die Methoden fr einen Zoomstufenwechsel aber
-		 * schon geschaffen werden sollen. Die Realisierung findet also durch
-		 * einen Button (+) und einen Button (-) statt. Bei Bettigung dieser
-		 * Buttons erfolgt jeweils ein direkter Wechsel der anzugzeigenden
-		 * TileMap. Stufenloses Zoomen wird zunchst ebenfalls noch nicht
-		 * untersttzt.
+		 * Ohne ScrollViews werden die DefectViews selbst an die Position des
+		 * Viewports verschoben.
+		 */
+		if (GlobalSettings.RENDERING_MODE == RenderingMode.CANVAS) {
+			wrapperDefects.scrollTo(viewport.getPosition().getX(), viewport
+					.getPosition().getY());
+		}
+
+		/*
+		 * Hinzufügen der Buttons zum Zoom In bzw. Zoom Out. Neben dem
+		 * stufenlosen Zoomen mittels Pinch-To-Zoom (siehe LazyDrawingViewer)
+		 * kann so auch direkt auf die nächste Zoomstufe gewechselt werden. Die
+		 * Realisierung findet durch einen Button (+) und einen Button (-)
+		 * statt. Bei Betätigung dieser Buttons erfolgt jeweils ein direkter
+		 * Wechsel der anzugzeigenden TileMap.
 		 */
 		/*
 		 * LinearLayout mit vertikaler Ausrichtung, sodass die Buttons
-		 * untereinander angezeigt werden knnen.
+		 * untereinander angezeigt werden können.
 		 */
 		LinearLayout llButtons = new LinearLayout(context);
 		llButtons.setBackgroundColor(Color.WHITE);
 		llButtons.setOrientation(LinearLayout.VERTICAL);
 
 		/*
-		 * Button Zoom In. Die nchst detailliertere Ebene wird dadurch
+		 * Button Zoom In. Die nächst detailliertere Ebene wird dadurch
 		 * aufgerufen.
 		 */
 		Button btnZoomIn = new Button(context);
@@ -255,11 +276,11 @@ public class DrawingAdministration {
 				changer.zoomIn();
 			}
 		});
-		// Hinzufgen des Buttons zum LinearLayout
+		// Hinzufügen des Buttons zum LinearLayout
 		llButtons.addView(btnZoomIn);
 
 		/*
-		 * Button zum Zoom Out. Die nchst allgemeinere Ebene wird dadurch
+		 * Button zum Zoom Out. Die nächst allgemeinere Ebene wird dadurch
 		 * aufgerufen.
 		 */
 		Button btnZoomOut = new Button(context);
@@ -273,10 +294,10 @@ public class DrawingAdministration {
 				changer.zoomOut();
 			}
 		});
-		// Hinzufgen des Buttons zum LinearLayout
+		// Hinzufügen des Buttons zum LinearLayout
 		llButtons.addView(btnZoomOut);
 
-		// Hinzufgen des LinearLayouts zum totalWrapper-RelativeLayout.
+		// Hinzufügen des LinearLayouts zum totalWrapper-RelativeLayout.
 		totalWrapper.addView(llButtons);
 
 		return totalWrapper;
@@ -4,6 +4,7 @@
  */
 package de.hdm.hettich.studienarbeit.factory;
 
+import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
 
@@ -11,17 +12,17 @@ import android.util.Log;
 
 import de.hdm.hettich.studienarbeit.DemoDrawingFrame;
 import de.hdm.hettich.studienarbeit.bo.Drawing;
-import de.hdm.hettich.studienarbeit.bo.Tile;
 import de.hdm.hettich.studienarbeit.bo.TileMap;
 import de.hdm.hettich.studienarbeit.utile.Coordinate;
 
 /**
  * Die Klasse <code>DrawingCreator</code> erstellt aus einem
- * <code>DemoDrawingFrame</code> ein <code>Drawing</code>, mit dem spter
+ * <code>DemoDrawingFrame</code> ein <code>Drawing</code>, mit dem später
  * gearbeitet wird. Die Informationen die momentan aus dem
- * <code>DemoDrawingFrame</code> stammen knnten spter bspw. auch in einer
- * XML-Datei stehen. Somit soll die Anzeige mehrere Plne etwas einfacher
- * gemacht werden.
+ * <code>DemoDrawingFrame</code> stammen könnten später bspw. auch in einer
+ * XML-Datei stehen. Somit soll die Anzeige mehrere Pläne etwas einfacher
+ * gemacht werden. Alternativ kann der Plan aus einer JSON-Beschreibung (siehe
+ * <code>DrawingDescriptor</code>) erstellt werden.
  * 
  * @author Stefan Hettich
  * 
@@ -32,181 +33,174 @@ public class DrawingCreator {
 
 	/**
 	 * Die Methode erstellt das <code>Drawing</code>-Objekt anhand der, durch
-	 * das <code>DemoDrawingFrame</code> bergebenen Informationen.
+	 * das <code>DemoDrawingFrame</code> übergebenen Informationen. Diese
+	 * werden dazu in eine Beschreibung pro Zoom-Ebene (siehe
+	 * <code>LevelDescriptor</code>) übertragen, die Kacheln werden wie bei
+	 * einer JSON-Beschreibung erst beim Aufbau der jeweiligen TileMap
+	 * erstellt.
 	 * 
 	 * @return Drawing das erstellte Drawing
 	 */
 	public static Drawing createDrawing(DemoDrawingFrame drawingFrame) {
-
-		// Ergebnis Drawing definieren, fr den spteren Zugriff.
-		Drawing drawing;
 		/*
-		 * Prfen, ob die Anzahl der Zoom-Ebenen, der ArrayList-Gre der
-		 * Kachel-Gre und der ArrayList-Gre der Kachel-Anzahl entspricht.
+		 * Prüfen, ob die Anzahl der Zoom-Ebenen, der ArrayList-Größe der
+		 * Kachel-Größe und der ArrayList-Größe der Kachel-Anzahl entspricht.
 		 */
-		if (drawingFrame.countZoomLevels == drawingFrame.tileSizes.size()
-				&& drawingFrame.countZoomLevels == drawingFrame.levelDimensions
+		if (drawingFrame.countZoomLevels != drawingFrame.tileSizes.size()
+				|| drawingFrame.countZoomLevels != drawingFrame.levelDimensions
 						.size()) {
+			Log.e("DrawingCreator",
+					"Die Anzahl der Zoom-Stufen stimmt nicht mit der "
+							+ "Größe der übergebenen Array-Listen überein.");
+			return null;
+		}
 
-			ArrayList<URI[][]> pngFiles = new ArrayList<URI[][]>();
+		/*
+		 * Prüfen, welche Option gesetzt wurde, um die PNG-Kacheln zu
+		 * übergeben. Es sind vier Optionen vorhanden: Ein Bild für das gesamte
+		 * Drawing, ein Bild pro TileMap, ein Bild pro Tile (Produktiveinsatz)
+		 * oder ein TileArchive mit allen Kacheln. Es darf nur genau eine
+		 * Option gesetzt sein.
+		 */
+		int options = 0;
+		if (drawingFrame.tileArchive != null) {
+			options++;
+		}
+		if (drawingFrame.pngFileSingle != null) {
+			options++;
+		}
+		if (drawingFrame.pngFileEachTileMap != null) {
+			options++;
+		}
+		if (drawingFrame.pngFileEachTile != null) {
+			options++;
+		}
+		if (options != 1) {
+			Log.e("DrawingCreator",
+					"PNG-Tiles wurden nicht richtig definiert.");
+			return null;
+		}
 
-			/*
-			 * Prfen, welche Option gesetzt wurde, um die PNG-Kacheln zu
-			 * bergeben. Es sind drei Optionen vorhanden: Ein Bild fr das
-			 * gesamte Drawing, ein Bild pro TileMap, ein Bild pro Tile
-			 * (Produktiveinsatz)
-			 */
-			if (drawingFrame.pngFileSingle != null
-					&& drawingFrame.pngFileEachTileMap == null
-					&& drawingFrame.pngFileEachTile == null) {
-				// Ein Bild fr das gesamte Drawing.
-
-				// Alle Zoom-Stufen durchlaufen.
-				for (int i = 0; i < drawingFrame.countZoomLevels; i++) {
-					// Dimensionen der aktuellen Zoom-Stufe abrufen.
-					Coordinate dimension = drawingFrame.levelDimensions.get(i);
-					/*
-					 * Initialisierung des File-Arrays fr die aktuelle
-					 * Zoom-Ebene.
-					 */
-					URI[][] files = new URI[dimension.getX()][dimension.getY()];
-					/*
-					 * Durchlaufen aller Dimensions-Positionen (in x- und
-					 * y-Richtung)
-					 */
-					for (int x = 0; x < dimension.getX(); x++) {
-						for (int y = 0; y < dimension.getY(); y++) {
-							// Setzen des global gltigen Bildes.
-							files[x][y] = drawingFrame.pngFileSingle;
-						}
-					}
-					/*
-					 * Hinzufgen des Array der Zoom-Ebene zur allgemeinen
-					 * ArrayList.
-					 */
-					pngFiles.add(files);
-				}
-			} else if (drawingFrame.pngFileSingle == null
-					&& drawingFrame.pngFileEachTileMap != null
-					&& drawingFrame.pngFileEachTile == null) {
-				// Ein Bild pro TileMap.
+		/*
+		 * Größe der Ebene mit Zoom-Faktor eins berechnen, damit diese als
+		 * Initial-Ebene gesetzt werden kann. In diesem Fall hat diese Ebene
+		 * den Index 1.
+		 */
+		Coordinate dimension = drawingFrame.levelDimensions.get(1);
+		Coordinate tileSize = drawingFrame.tileSizes.get(1);
+		// Berechnung der initialen TileMap-Referenz-Größe
+		Coordinate initialSize = new Coordinate(dimension.getX()
+				* tileSize.getX(), dimension.getY() * tileSize.getY());
 
-				// Alle Dimensionen durchlaufen.
-				for (int i = 0; i < drawingFrame.countZoomLevels; i++) {
-					// Dimensionen der aktuellen Zoom-Stufe abrufen.
-					Coordinate dimension = drawingFrame.levelDimensions.get(i);
-					/*
-					 * Initialisierung des File-Arrays fr die aktuelle
-					 * Zoom-Ebene.
-					 */
-					URI[][] files = new URI[dimension.getX()][dimension.getY()];
-					/*
-					 * Durchlaufen aller Dimensions-Positionen (in x- und
-					 * y-Richtung)
-					 */
-					for (int x = 0; x < dimension.getX(); x++) {
-						for (int y = 0; y < dimension.getY(); y++) {
-							// Setzen des pro Ebene gltigen Bildes.
-							files[x][y] = drawingFrame.pngFileEachTileMap
-									.get(i);
-						}
-					}
-					/*
-					 * Hinzufgen des Array der Zoom-Ebene zur allgemeinen
-					 * ArrayList.
-					 */
-					pngFiles.add(files);
-				}
-
-			} else if (drawingFrame.pngFileSingle == null
-					&& drawingFrame.pngFileEachTileMap == null
-					&& drawingFrame.pngFileEachTile != null) {
-				// Ein Bild pro Tile.
+		DrawingDescriptor descriptor = new DrawingDescriptor();
 
-				// Einfach die bereits vorhandene ArrayList bergeben.
-				pngFiles = drawingFrame.pngFileEachTile;
-			} else {
-				Log.e("DrawingCreator",
-						"PNG-Tiles wurden nicht richtig definiert.");
-				return null;
-			}
+		// Alle Zoom-Stufen durchlaufen.
+		for (int i = 0; i < drawingFrame.countZoomLevels; i++) {
+			LevelDescriptor level = new LevelDescriptor();
+			level.setScaleFactor(drawingFrame.scaleFactors.get(i));
+			level.setTileSize(drawingFrame.tileSizes.get(i));
+			level.setDimension(drawingFrame.levelDimensions.get(i));
 
 			/*
-			 * Gre der Ebene mit Zoom-Faktor eins berechnen, damit diese als
-			 * Initial-Ebene hinzugefgt werden kann. In diesem Fall hat diese
-			 * Ebene den Index 1.
+			 * Die Dekodier-Einstellungen der Ebene setzen, sofern diese im
+			 * DemoDrawingFrame angegeben sind.
 			 */
-			Coordinate dimension = drawingFrame.levelDimensions.get(1);
-			Coordinate tileSize = drawingFrame.tileSizes.get(1);
-			// Berechnung der initialen TileMap-Referenz-Gre
-			Coordinate initialSize = new Coordinate(dimension.getX()
-					* tileSize.getX(), dimension.getY() * tileSize.getY());
-
-			// Ergebnis-Drawing initialisieren.
-			drawing = new Drawing(initialSize);
+			if (drawingFrame.opaqueLevels != null) {
+				level.setOpaque(drawingFrame.opaqueLevels.get(i));
+			}
+			if (drawingFrame.transitionSampleSizes != null) {
+				level.setTransitionSampleSize(drawingFrame.transitionSampleSizes
+						.get(i));
+			}
 
-			// Setzen der oben initialiserten Defect-ArrayList.
-			drawing.setDefects(drawingFrame.defects);
+			// Die Kacheln der Ebene je nach gesetzter Option zuordnen.
+			if (drawingFrame.tileArchive != null) {
+				// Alle Kacheln in einem TileArchive.
+				level.setArchive(drawingFrame.tileArchive, i);
+			} else if (drawingFrame.pngFileSingle != null) {
+				// Ein Bild für das gesamte Drawing.
+				level.setImage(drawingFrame.pngFileSingle);
+			} else if (drawingFrame.pngFileEachTileMap != null) {
+				// Ein Bild pro TileMap.
+				level.setImage(drawingFrame.pngFileEachTileMap.get(i));
+				level.setRegionDecoding(drawingFrame.decodeRegions);
+			} else {
+				// Ein Bild pro Tile.
+				level.setTileFiles(drawingFrame.pngFileEachTile.get(i));
+			}
+			descriptor.getLevels().add(level);
 
 			/*
-			 * Nochmals alle Zoom-Ebenen durchlaufen, um nun pro Zoom-Ebene eine
-			 * TileMap zu erstellen.
+			 * Prüfen, ob dies die initiale Zoom-Ebene ist, wenn ja wird diese
+			 * in der Beschreibung gesetzt.
 			 */
-			for (int i = 0; i < drawingFrame.countZoomLevels; i++) {
-				/*
-				 * Eine <code>TileMap</code> erstellen @see #createTileMap() und
-				 * diese dem <code>Drawing</code> hinzufgen
-				 */
-				TileMap tileMap = createTileMap(
-						drawingFrame.levelDimensions.get(i),
-						drawingFrame.tileSizes.get(i),
-						drawingFrame.scaleFactors.get(i), pngFiles.get(i));
-				drawing.addTileMap(tileMap);
-				/*
-				 * Prfen, ob dies die initiale TileMap ist, wenn ja wird diese
-				 * im Drawing gesetzt.
-				 */
-				if (tileMap.getSize().equals(initialSize)) {
-					drawing.setAcitveTileMap(tileMap);
-				}
+			if (level.getSize().equals(initialSize)) {
+				descriptor.setInitialLevel(i);
 			}
-		} else {
-			Log.e("DrawingCreator",
-					"Die Anzahl der Zoom-Stufen stimmt nicht mit der "
-							+ "Gre der bergebenen Array-Listen berein.");
-			return null;
 		}
 
-		return drawing;
+		// Setzen der Defects.
+		if (drawingFrame.defects != null) {
+			descriptor.getDefects().addAll(drawingFrame.defects);
+		}
+
+		return createDrawing(descriptor);
 	}
 
 	/**
-	 * Diese Methode erstellt ein <code>TileMap</code>-Objekt, das dann Teil des
-	 * <code>Drawing</code>s ist, anhand der bergebenen Parameter.
+	 * Die Methode erstellt das <code>Drawing</code>-Objekt anhand einer
+	 * Beschreibung als JSON-Datei (siehe <code>DrawingDescriptor</code>), wie
+	 * sie z.B. der <code>PyramidBuilder</code> erstellt.
 	 * 
-	 * @param dimension
-	 * @param size
-	 * @param scaleFactor
-	 * @param pngFile
-	 * @return TileMap die erstellte TileMap
+	 * @param descriptorUri
+	 * @return Drawing das erstellte Drawing oder null, wenn die Beschreibung
+	 *         nicht gelesen werden kann
 	 */
-	private static TileMap createTileMap(Coordinate dimension, Coordinate size,
-			float scaleFactor, URI[][] pngFile) {
-		// Erstellen des TileMap-Objekts
-		TileMap tileMap = new TileMap(dimension, scaleFactor);
+	public static Drawing createDrawing(URI descriptorUri) {
+		DrawingDescriptor descriptor;
+		try {
+			descriptor = DrawingDescriptor.read(descriptorUri);
+		} catch (IOException e) {
+			Log.e("DrawingCreator", "Beschreibung kann nicht gelesen werden: "
+					+ descriptorUri, e);
+			return null;
+		}
+		return createDrawing(descriptor);
+	}
 
-		/*
-		 * Durchlaufen der bergebenen Plangre (dimension) in x- und
-		 * y-Richtung. An jeder Position wird ein neues Tile hinzugefgt.
-		 */
-		for (int x = 0; x < dimension.getX(); x++) {
-			for (int y = 0; y < dimension.getY(); y++) {
-				// Hinzufgen einer neuen Tile an der aktuellen Position.
-				tileMap.addTile(new Tile(size, pngFile[x][y]));
+	/**
+	 * Die Methode erstellt das <code>Drawing</code>-Objekt anhand der
+	 * übergebenen Beschreibung.
+	 * <p>
+	 * Es werden zwar alle <code>TileMap</code>s angelegt, es wird aber nur die
+	 * initiale Zoomstufe aufgebaut. Die übrigen Zoomstufen werden erst
+	 * aufgebaut, wenn sie angezeigt werden (siehe
+	 * {@link Drawing#activateTileMap(TileMap)}), so hängt die Zeit zum Öffnen
+	 * nicht von der Anzahl der Zoomstufen ab.
+	 * 
+	 * @param descriptor
+	 * @return Drawing das erstellte Drawing
+	 */
+	public static Drawing createDrawing(DrawingDescriptor descriptor) {
+		// Die initiale Zoomstufe bestimmt die Referenz-Größe des Drawings.
+		ArrayList<LevelDescriptor> levels = descriptor.getLevels();
+		Drawing drawing = new Drawing(levels.get(descriptor.getInitialLevel())
+				.getSize());
+		drawing.setDefects(descriptor.getDefects());
+
+		for (int i = 0; i < levels.size(); i++) {
+			// Die TileMap wird noch nicht aufgebaut.
+			TileMap tileMap = levels.get(i).createTileMap();
+			if (i > 0) {
+				tileMap.setParentTileMap(drawing.getTileMaps().get(i - 1));
+			}
+			drawing.addTileMap(tileMap);
+			if (i == descriptor.getInitialLevel()) {
+				// Nur die initiale Zoomstufe wird sofort aufgebaut.
+				drawing.activateTileMap(tileMap);
 			}
 		}
-
-		return tileMap;
+		return drawing;
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,299 @@
+/**
+ * @(#)DrawingDescriptor.java
+ * 1.0, 2013-03-04
+ */
+package de.hdm.hettich.studienarbeit.factory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.util.ArrayList;
+
+import android.util.JsonReader;
+import de.hdm.hettich.studienarbeit.bo.Defect;
+import de.hdm.hettich.studienarbeit.utile.Coordinate;
+
+/**
+ * Der <code>DrawingDescriptor</code> ist die Beschreibung eines Plans als
+ * JSON-Datei, wie sie z.B. der <code>PyramidBuilder</code> aus dem Ordner
+ * <code>tools</code> erstellt. Anders als beim <code>DemoDrawingFrame</code>
+ * muss der Plan dazu nicht in die Anwendung kompiliert werden.
+ *
+ * <pre>
+ * {
+ *   "version": 1,
+ *   "initialLevel": 1,
+ *   "archive": "plan.tiles",
+ *   "levels": [
+ *     {"scaleFactor": 0.5, "tileWidth": 256, "tileHeight": 256,
+ *      "columns": 10, "rows": 8, "opaque": true, "tiles": "0/{x}_{y}.png"},
+ *     {"scaleFactor": 1.0, ..., "image": "plan_1.png", "regions": true},
+ *     ...
+ *   ],
+ *   "defects": [
+ *     {"type": "Text", "x": 200, "y": 200, "width": 20, "height": 20},
+ *     ...
+ *   ]
+ * }
+ * </pre>
+ *
+ * Die Zoomstufen sind von der gröbsten zur detailliertesten sortiert. Ist
+ * <code>archive</code> gesetzt, liegen die Kacheln aller Zoomstufen in diesem
+ * <code>TileArchive</code>. Sonst ergeben sie sich aus dem Muster
+ * <code>tiles</code> oder dem Bild <code>image</code> der Zoomstufe, das bei
+ * <code>regions</code> ausschnittsweise dekodiert wird. Ein
+ * <code>image</code> auf oberster Ebene gilt für alle Zoomstufen ohne eigene
+ * Kacheln. Pfade sind relativ zur Beschreibung.
+ * <p>
+ * Die Datei wird mit einem <code>JsonReader</code> in einem Durchgang
+ * gelesen, ohne sie vollständig in den Speicher zu laden. Kacheln werden
+ * dabei noch keine erzeugt, das geschieht erst beim Aufbau der jeweiligen
+ * <code>TileMap</code> (siehe <code>LevelDescriptor</code>).
+ *
+ * @author Stefan Hettich
+ *
+ * @version 1.0, 2013-03-04
+ *
+ */
+public class DrawingDescriptor {
+
+	/**
+	 * Die Zoomstufen, von der gröbsten zur detailliertesten.
+	 */
+	private ArrayList<LevelDescriptor> levels = new ArrayList<LevelDescriptor>();
+
+	/**
+	 * Index der Zoomstufe, die beim Öffnen angezeigt wird.
+	 */
+	private int initialLevel = 0;
+
+	/**
+	 * Die Anmerkungen des Plans.
+	 */
+	private ArrayList<Defect> defects = new ArrayList<Defect>();
+
+	/**
+	 * @return the levels
+	 */
+	public ArrayList<LevelDescriptor> getLevels() {
+		return levels;
+	}
+
+	/**
+	 * @return the initialLevel
+	 */
+	public int getInitialLevel() {
+		return initialLevel;
+	}
+
+	/**
+	 * @param initialLevel
+	 *            the initialLevel to set
+	 */
+	public void setInitialLevel(int initialLevel) {
+		this.initialLevel = initialLevel;
+	}
+
+	/**
+	 * @return the defects
+	 */
+	public ArrayList<Defect> getDefects() {
+		return defects;
+	}
+
+	/**
+	 * Liest die Beschreibung aus der übergebenen Datei.
+	 *
+	 * @param descriptorUri
+	 * @return DrawingDescriptor die gelesene Beschreibung
+	 * @throws IOException
+	 *             wenn die Datei nicht gelesen werden kann, keine Zoomstufe
+	 *             oder eine ungültige Zoomstufe enthält
+	 */
+	public static DrawingDescriptor read(URI descriptorUri) throws IOException {
+		DrawingDescriptor descriptor = new DrawingDescriptor();
+		URI archive = null;
+		URI image = null;
+
+		JsonReader reader = new JsonReader(new InputStreamReader(
+				new FileInputStream(new File(descriptorUri)), "UTF-8"));
+		try {
+			reader.beginObject();
+			while (reader.hasNext()) {
+				String name = reader.nextName();
+				if (name.equals("initialLevel")) {
+					descriptor.initialLevel = reader.nextInt();
+				} else if (name.equals("archive")) {
+					archive = descriptorUri.resolve(reader.nextString());
+				} else if (name.equals("image")) {
+					image = descriptorUri.resolve(reader.nextString());
+				} else if (name.equals("levels")) {
+					reader.beginArray();
+					while (reader.hasNext()) {
+						descriptor.levels.add(readLevel(reader, descriptorUri,
+								descriptor.levels.size()));
+					}
+					reader.endArray();
+				} else if (name.equals("defects")) {
+					reader.beginArray();
+					while (reader.hasNext()) {
+						descriptor.defects.add(readDefect(reader));
+					}
+					reader.endArray();
+				} else {
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+		} finally {
+			reader.close();
+		}
+
+		if (descriptor.levels.isEmpty()) {
+			throw new IOException("Keine Zoomstufen in " + descriptorUri);
+		}
+		if (descriptor.initialLevel < 0
+				|| descriptor.initialLevel >= descriptor.levels.size()) {
+			descriptor.initialLevel = 0;
+		}
+
+		/*
+		 * Archiv und Bild des Plans können vor oder nach den Zoomstufen
+		 * stehen, daher werden sie erst jetzt übernommen.
+		 */
+		for (int i = 0; i < descriptor.levels.size(); i++) {
+			LevelDescriptor level = descriptor.levels.get(i);
+			if (archive != null) {
+				level.setArchive(archive, i);
+			} else if (image != null && level.getImage() == null
+					&& level.createTileUri(0, 0) == null) {
+				level.setImage(image);
+			}
+		}
+		return descriptor;
+	}
+
+	/**
+	 * Liest eine Zoomstufe. Kachelgröße, Anzahl der Spalten und Zeilen sowie
+	 * der Skalierungsfaktor müssen angegeben und größer als 0 sein, sonst
+	 * würde erst beim Anzeigen durch 0 geteilt.
+	 *
+	 * @param reader
+	 * @param base
+	 * @param index
+	 *            Nummer der Zoomstufe, für die Fehlermeldung
+	 * @return LevelDescriptor die gelesene Zoomstufe
+	 * @throws IOException
+	 *             wenn die Zoomstufe nicht gelesen werden kann oder ungültig
+	 *             ist
+	 */
+	private static LevelDescriptor readLevel(JsonReader reader, URI base,
+			int index) throws IOException {
+		LevelDescriptor level = new LevelDescriptor();
+		int tileWidth = 0;
+		int tileHeight = 0;
+		int columns = 0;
+		int rows = 0;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			if (name.equals("scaleFactor")) {
+				level.setScaleFactor((float) reader.nextDouble());
+			} else if (name.equals("tileWidth")) {
+				tileWidth = reader.nextInt();
+			} else if (name.equals("tileHeight")) {
+				tileHeight = reader.nextInt();
+			} else if (name.equals("columns")) {
+				columns = reader.nextInt();
+			} else if (name.equals("rows")) {
+				rows = reader.nextInt();
+			} else if (name.equals("opaque")) {
+				level.setOpaque(reader.nextBoolean());
+			} else if (name.equals("transitionSampleSize")) {
+				level.setTransitionSampleSize(reader.nextInt());
+			} else if (name.equals("tiles")) {
+				level.setTilePattern(base, reader.nextString());
+			} else if (name.equals("image")) {
+				level.setImage(base.resolve(reader.nextString()));
+			} else if (name.equals("regions")) {
+				level.setRegionDecoding(reader.nextBoolean());
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		checkPositive(tileWidth, "tileWidth", index, base);
+		checkPositive(tileHeight, "tileHeight", index, base);
+		checkPositive(columns, "columns", index, base);
+		checkPositive(rows, "rows", index, base);
+		// Die Prüfung schließt auch NaN aus.
+		if (!(level.getScaleFactor() > 0)) {
+			throw new IOException("Ungültiger Wert für scaleFactor in "
+					+ "Zoomstufe " + index + " von " + base);
+		}
+
+		level.setTileSize(new Coordinate(tileWidth, tileHeight));
+		level.setDimension(new Coordinate(columns, rows));
+		return level;
+	}
+
+	/**
+	 * Prüft, ob ein Wert einer Zoomstufe angegeben und größer als 0 ist.
+	 *
+	 * @param value
+	 * @param name
+	 * @param index
+	 * @param base
+	 * @throws IOException
+	 *             wenn der Wert fehlt oder nicht größer als 0 ist
+	 */
+	private static void checkPositive(int value, String name, int index,
+			URI base) throws IOException {
+		if (value <= 0) {
+			throw new IOException("Ungültiger Wert für " + name
+					+ " in Zoomstufe " + index + " von " + base);
+		}
+	}
+
+	/**
+	 * Liest eine Anmerkung.
+	 *
+	 * @param reader
+	 * @return Defect die gelesene Anmerkung
+	 * @throws IOException
+	 */
+	private static Defect readDefect(JsonReader reader) throws IOException {
+		String type = null;
+		int x = 0;
+		int y = 0;
+		int width = 0;
+		int height = 0;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			if (name.equals("type")) {
+				type = reader.nextString();
+			} else if (name.equals("x")) {
+				x = reader.nextInt();
+			} else if (name.equals("y")) {
+				y = reader.nextInt();
+			} else if (name.equals("width")) {
+				width = reader.nextInt();
+			} else if (name.equals("height")) {
+				height = reader.nextInt();
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		return new Defect(type, new Coordinate(x, y), new Coordinate(width,
+				height));
+	}
+
+}
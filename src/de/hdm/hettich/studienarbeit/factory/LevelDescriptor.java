@@ -0,0 +1,290 @@
+/**
+ * @(#)LevelDescriptor.java
+ * 1.0, 2013-03-04
+ */
+package de.hdm.hettich.studienarbeit.factory;
+
+import java.net.URI;
+
+import de.hdm.hettich.studienarbeit.bo.TileMap;
+import de.hdm.hettich.studienarbeit.loading.TileArchive;
+import de.hdm.hettich.studienarbeit.utile.Coordinate;
+
+/**
+ * Der <code>LevelDescriptor</code> beschreibt eine Zoomstufe aus einem
+ * <code>DrawingDescriptor</code>: Skalierungsfaktor, Kachelgröße, Anzahl der
+ * Kacheln und wo die Kacheln liegen. Daraus erstellt der
+ * <code>DrawingCreator</code> die <code>TileMap</code>.
+ * <p>
+ * Die Kacheln liegen entweder einzeln in Dateien, deren Namen sich aus einem
+ * Muster mit den Platzhaltern <code>{x}</code> und <code>{y}</code> ergeben,
+ * in einem <code>TileArchive</code> oder alle in einem Bild (für die Ebene
+ * oder den gesamten Plan), das ggf. ausschnittsweise dekodiert wird.
+ * <p>
+ * Als <code>TileSource</code> berechnet der <code>LevelDescriptor</code> die
+ * Dateien der Kacheln der <code>TileMap</code> aus deren Position, es werden
+ * also keine Kacheln im Voraus erzeugt.
+ *
+ * @author Stefan Hettich
+ *
+ * @version 1.0, 2013-03-04
+ *
+ */
+public class LevelDescriptor implements TileMap.TileSource {
+
+	/**
+	 * Skalierungsfaktor der Zoomstufe.
+	 */
+	private float scaleFactor;
+
+	/**
+	 * Größe der Kacheln in Pixeln.
+	 */
+	private Coordinate tileSize;
+
+	/**
+	 * Anzahl der Kacheln (Spalten mal Zeilen).
+	 */
+	private Coordinate dimension;
+
+	/**
+	 * Gibt an, ob die Kacheln keine Transparenz enthalten.
+	 */
+	private boolean opaque = false;
+
+	/**
+	 * Verkleinerungsfaktor beim Zoomstufen-Wechsel, bei 0 wird er berechnet.
+	 */
+	private int transitionSampleSize = 0;
+
+	/**
+	 * Muster der Dateinamen der Kacheln, aufgelöst gegen {@link #base}.
+	 */
+	private String tilePattern;
+
+	/**
+	 * Verzeichnis, gegen das {@link #tilePattern} aufgelöst wird.
+	 */
+	private URI base;
+
+	/**
+	 * Archiv, in dem die Kacheln liegen, oder <code>null</code>.
+	 */
+	private URI archive;
+
+	/**
+	 * Index der Zoomstufe im Archiv.
+	 */
+	private int archiveLevel;
+
+	/**
+	 * Bild, das alle Kacheln der Zoomstufe enthält, oder <code>null</code>.
+	 */
+	private URI image;
+
+	/**
+	 * Gibt an, ob die Kacheln als Ausschnitte aus {@link #image} dekodiert
+	 * werden.
+	 */
+	private boolean regionDecoding = false;
+
+	/**
+	 * Die Dateien der einzelnen Kacheln, wenn sie sich nicht aus einem Muster
+	 * ergeben, oder <code>null</code>.
+	 */
+	private URI[][] tileFiles;
+
+	/**
+	 * @return the scaleFactor
+	 */
+	public float getScaleFactor() {
+		return scaleFactor;
+	}
+
+	/**
+	 * @param scaleFactor
+	 *            the scaleFactor to set
+	 */
+	public void setScaleFactor(float scaleFactor) {
+		this.scaleFactor = scaleFactor;
+	}
+
+	/**
+	 * @return the tileSize
+	 */
+	public Coordinate getTileSize() {
+		return tileSize;
+	}
+
+	/**
+	 * @param tileSize
+	 *            the tileSize to set
+	 */
+	public void setTileSize(Coordinate tileSize) {
+		this.tileSize = tileSize;
+	}
+
+	/**
+	 * @return the dimension
+	 */
+	public Coordinate getDimension() {
+		return dimension;
+	}
+
+	/**
+	 * @param dimension
+	 *            the dimension to set
+	 */
+	public void setDimension(Coordinate dimension) {
+		this.dimension = dimension;
+	}
+
+	/**
+	 * @return the opaque
+	 */
+	public boolean isOpaque() {
+		return opaque;
+	}
+
+	/**
+	 * @param opaque
+	 *            the opaque to set
+	 */
+	public void setOpaque(boolean opaque) {
+		this.opaque = opaque;
+	}
+
+	/**
+	 * @return the transitionSampleSize
+	 */
+	public int getTransitionSampleSize() {
+		return transitionSampleSize;
+	}
+
+	/**
+	 * @param transitionSampleSize
+	 *            the transitionSampleSize to set
+	 */
+	public void setTransitionSampleSize(int transitionSampleSize) {
+		this.transitionSampleSize = transitionSampleSize;
+	}
+
+	/**
+	 * Setzt das Muster der Dateinamen der Kacheln.
+	 *
+	 * @param base
+	 *            Verzeichnis, gegen das das Muster aufgelöst wird
+	 * @param tilePattern
+	 *            z.B. <code>0/{x}_{y}.png</code>
+	 */
+	public void setTilePattern(URI base, String tilePattern) {
+		this.base = base;
+		this.tilePattern = tilePattern;
+	}
+
+	/**
+	 * Setzt das Archiv, in dem die Kacheln liegen.
+	 *
+	 * @param archive
+	 * @param archiveLevel
+	 *            Index der Zoomstufe im Archiv
+	 */
+	public void setArchive(URI archive, int archiveLevel) {
+		this.archive = archive;
+		this.archiveLevel = archiveLevel;
+	}
+
+	/**
+	 * @return the image
+	 */
+	public URI getImage() {
+		return image;
+	}
+
+	/**
+	 * @param image
+	 *            the image to set
+	 */
+	public void setImage(URI image) {
+		this.image = image;
+	}
+
+	/**
+	 * @return the regionDecoding
+	 */
+	public boolean isRegionDecoding() {
+		return regionDecoding;
+	}
+
+	/**
+	 * @param regionDecoding
+	 *            the regionDecoding to set
+	 */
+	public void setRegionDecoding(boolean regionDecoding) {
+		this.regionDecoding = regionDecoding;
+	}
+
+	/**
+	 * @return the tileFiles
+	 */
+	public URI[][] getTileFiles() {
+		return tileFiles;
+	}
+
+	/**
+	 * @param tileFiles
+	 *            the tileFiles to set
+	 */
+	public void setTileFiles(URI[][] tileFiles) {
+		this.tileFiles = tileFiles;
+	}
+
+	/**
+	 * Gibt die Größe der Zoomstufe in Pixeln zurück.
+	 *
+	 * @return Coordinate die Größe der Zoomstufe
+	 */
+	public Coordinate getSize() {
+		return new Coordinate(dimension.getX() * tileSize.getX(),
+				dimension.getY() * tileSize.getY());
+	}
+
+	/**
+	 * Berechnet die <code>URI</code> der Kachel an der übergebenen Position.
+	 *
+	 * @param x
+	 * @param y
+	 * @return URI die URI der Kachel oder null, wenn weder Archiv, Bild,
+	 *         Dateien noch Muster gesetzt sind
+	 */
+	public URI createTileUri(int x, int y) {
+		if (archive != null) {
+			return TileArchive.createTileUri(archive, archiveLevel, x, y);
+		}
+		if (image != null) {
+			return image;
+		}
+		if (tileFiles != null) {
+			return tileFiles[x][y];
+		}
+		if (tilePattern == null) {
+			return null;
+		}
+		return base.resolve(tilePattern.replace("{x}", String.valueOf(x))
+				.replace("{y}", String.valueOf(y)));
+	}
+
+	/**
+	 * Erstellt die <code>TileMap</code> dieser Zoomstufe.
+	 *
+	 * @return TileMap die noch nicht aufgebaute TileMap
+	 */
+	public TileMap createTileMap() {
+		TileMap tileMap = new TileMap(dimension, tileSize, scaleFactor, this);
+		tileMap.setOpaque(opaque);
+		tileMap.setTransitionSampleSize(transitionSampleSize);
+		tileMap.setRegionDecoding(regionDecoding && image != null);
+		return tileMap;
+	}
+
+}
@@ -4,7 +4,6 @@
  */
 package de.hdm.hettich.studienarbeit.factory;
 
-import de.hdm.hettich.studienarbeit.bo.Tile;
 import de.hdm.hettich.studienarbeit.utile.Coordinate;
 import de.hdm.hettich.studienarbeit.view.TileView;
 import android.content.Context;
@@ -13,9 +12,9 @@ import android.widget.LinearLayout;
 import android.widget.RelativeLayout;
 
 /**
- * Die Klasse <code>Tile2ViewFactory.java</code> ist fr die Umwandlung eines
- * <code>Tile</code>s in einen <code>TileView</code> zustnig. Der
- * <code>TileView</code> kommt letzendlich auf dem Gert zur Anzeige.
+ * Die Klasse <code>Tile2ViewFactory.java</code> ist für die Umwandlung eines
+ * <code>Tile</code>s in einen <code>TileView</code> zustänig. Der
+ * <code>TileView</code> kommt letzendlich auf dem Gerät zur Anzeige.
  * 
  * @author Stefan Hettich
  * 
@@ -30,7 +29,7 @@ public class Tile2ViewFactory {
 	private Context context;
 
 	/**
-	 * Konstruktor, der eine neue Tile2ViewFactory erstellt. Bentigt context
+	 * Konstruktor, der eine neue Tile2ViewFactory erstellt. Benötigt context
 	 * als Parameter.
 	 * 
 	 * @param context
@@ -56,57 +55,54 @@ public class Tile2ViewFactory {
 
 	/**
 	 * In dieser Methode wird der <code>TileView</code> erzeugt, als Information
-	 * werden <code>Tile</code> und die Position in der <code>TileMap</code>
-	 * bergeben. Am Ende wird ein <code>TileView</code> mit grnem Hintergrund
-	 * und einem Margin links und oben, der der Position der <code>Tile</code>
-	 * entspricht, zurckgegeben. Zudem wird dem <code>TileView</code> ein
-	 * Padding von 1px angefgt, damit bei der Anzeige nach dem Laden des Bildes
-	 * ein grner Rahmen zurck bleibt, der es leichter macht die Kacheln
-	 * voneinander abzugrenzen.
+	 * werden die Position der Kachel in der <code>TileMap</code> und die Größe
+	 * der Kacheln übergeben. Am Ende wird ein <code>TileView</code> mit grünem
+	 * Hintergrund zurückgegeben, der an die Position der Kachel verschoben ist.
+	 * Zudem wird dem <code>TileView</code> ein Padding von 1px angefügt, damit
+	 * bei der Anzeige nach dem Laden des Bildes ein grüner Rahmen zurück
+	 * bleibt, der es leichter macht die Kacheln voneinander abzugrenzen.
+	 * <p>
+	 * Der <code>TileView</code> kann später über
+	 * {@link TileView#bind(int, int, Coordinate)} an eine andere Kachel
+	 * gebunden werden.
 	 * 
-	 * @param tile
-	 * @param pos
+	 * @param x
+	 * @param y
+	 * @param tileSize
 	 * @return TileView der erstellte TileView
 	 */
-	public TileView createCalculatedView(Tile tile, Coordinate pos) {
-		// Erstellen eines neuen TileViews.
-		TileView view = new TileView(context, tile);
+	public TileView createCalculatedView(int x, int y, Coordinate tileSize) {
+		/*
+		 * Erstellen eines neuen TileViews. Er wird nicht mehr über Margins,
+		 * sondern über die Translation an die Position der Kachel verschoben.
+		 * Beim Binden an eine andere Kachel muss so kein neues Layout
+		 * berechnet werden.
+		 */
+		TileView view = new TileView(context, x, y, tileSize);
 
 		/*
-		 * Setzen der LayoutParams Zunchst Gre des TileView, dann die
-		 * Abstnde oben und links (dadurch werden die TileView nebeneinander
-		 * angezeigt)
+		 * Setzen der LayoutParams, das heißt der Größe des TileViews.
 		 */
 		RelativeLayout.LayoutParams lp = new RelativeLayout.LayoutParams(
 				LinearLayout.LayoutParams.WRAP_CONTENT,
 				LinearLayout.LayoutParams.WRAP_CONTENT);
-		// Breite und Hhe des ImageViews.
-		lp.width = tile.getSize().getX();
-		lp.height = tile.getSize().getY();
-		/*
-		 * Margins beschreiben den Abstand eines Elements zum Rand. Durch setzen
-		 * eines Margins links und oben kann das ImageView-Objekt im
-		 * RelativeLayout positioniert werden. Durch den bergebenen Parameter
-		 * pos, der die Position in der TileMap beschreibt ist klar, die wie
-		 * vielste Tile dargestellt werden soll. Es ist also lediglich eine
-		 * Multiplizierung des Tile-Position mit der allgemeinen Tile-Gre
-		 * notwendig, um den notwendigen Margin zu berechen.
-		 */
-		lp.leftMargin = pos.getX() * tile.getSize().getX();
-		lp.topMargin = pos.getY() * tile.getSize().getY();
+		// Breite und Höhe des ImageViews.
+		lp.width = tileSize.getX();
+		lp.height = tileSize.getY();
 
 		// Dem ImageView werden die oben erstellten Parameter zugeordnet.
 		view.setLayoutParams(lp);
+
 		/*
-		 * Zu DEMO-Zwecken wird jedem ImageView ein grnen Hintergrund verpasst
-		 * und gleichzeitig ein Padding von 1px angefgt, so dass jeder
+		 * Zu DEMO-Zwecken wird jedem ImageView ein grünen Hintergrund verpasst
+		 * und gleichzeitig ein Padding von 1px angefügt, so dass jeder
 		 * ImageView eine Art "Rahmen" besitzt, um die Abgrenzung zwischen den
 		 * einzelnen ImageViews deutlicher zu machen.
 		 */
 		view.setBackgroundColor(Color.GREEN);
 		view.setPadding(1, 1, 1, 1);
 
-		// Zurckgeben des erstellten TileViews.
+		// Zurückgeben des erstellten TileViews.
 		return view;
 	}
 }
@@ -5,8 +5,11 @@
 package de.hdm.hettich.studienarbeit.factory;
 
 import android.content.Context;
+import android.view.ViewGroup;
+import android.widget.RelativeLayout;
 import de.hdm.hettich.studienarbeit.bo.TileMap;
-import de.hdm.hettich.studienarbeit.utile.Coordinate;
+import de.hdm.hettich.studienarbeit.bo.Viewport;
+import de.hdm.hettich.studienarbeit.view.TileCanvasView;
 import de.hdm.hettich.studienarbeit.view.TileMapView;
 
 /**
@@ -48,33 +51,57 @@ public class TileMap2ViewFactory {
 
 	/**
 	 * Diese Methode erstellt ein neues <code>TileMapView</code>-Objekt, anhand
-	 * der bergebenen <code>TileMap</code>, dabei wird die Erstellung der
-	 * einzelnen <code>TileView</code>s angestoen.
+	 * der übergebenen <code>TileMap</code>. Die einzelnen
+	 * <code>TileView</code>s werden nicht mehr hier für jede
+	 * <code>Tile</code> erstellt, sondern vom <code>TileMapView</code> nur für
+	 * den sichtbaren Bereich (siehe
+	 * {@link TileMapView#bindViewport(Viewport)}).
 	 * 
 	 * @param tileMap
 	 * @return TileMapView der erstellte TileMapView
 	 */
 	public TileMapView createCalculatedTileMapView(TileMap tileMap) {
 		// Erstellen eines neuen TileMapViews.
-		TileMapView view = new TileMapView(getContext(), tileMap);
+		return new TileMapView(getContext(), tileMap);
+	}
 
-		// Erstellen einer neuen Tile2ViewFactory.
-		Tile2ViewFactory viewFactory = new Tile2ViewFactory(getContext());
+	/**
+	 * Diese Methode erstellt ein neues <code>TileMapView</code>-Objekt und
+	 * bindet sofort die <code>TileView</code>s für den sichtbaren Bereich des
+	 * übergebenen <code>Viewport</code>s.
+	 * 
+	 * @param tileMap
+	 * @param viewport
+	 * @return TileMapView der erstellte TileMapView
+	 */
+	public TileMapView createCalculatedTileMapView(TileMap tileMap,
+			Viewport viewport) {
+		TileMapView view = createCalculatedTileMapView(tileMap);
+		view.bindViewport(viewport);
 
-		// Durchlaufen aller vorhandenen Tiles in x- und y-Richtung.
-		for (int x = 0; x < tileMap.getTiles().length; x++) {
-			for (int y = 0; y < tileMap.getTiles()[x].length; y++) {
-				/*
-				 * Hinzufgen, des berechneten TileViews, der bereits die
-				 * notwendigen Margins enthlt, sodass die Kacheln nebeneinander
-				 * angezeigt werden.
-				 */
-				view.addView(viewFactory.createCalculatedView(
-						tileMap.getTiles()[x][y], new Coordinate(x, y)));
-			}
-		}
+		// Zurückgeben des berechneten TileMapViews.
+		return view;
+	}
+
+	/**
+	 * Diese Methode erstellt ein neues <code>TileCanvasView</code>-Objekt, das
+	 * die übergebene <code>TileMap</code> im Bereich des übergebenen
+	 * <code>Viewport</code>s direkt auf den Canvas zeichnet. Der View ist so
+	 * groß wie der Bildschirm, nicht wie die gesamte <code>TileMap</code>.
+	 * 
+	 * @param tileMap
+	 * @param viewport
+	 * @return TileCanvasView der erstellte TileCanvasView
+	 */
+	public TileCanvasView createCalculatedTileCanvasView(TileMap tileMap,
+			Viewport viewport) {
+		TileCanvasView view = new TileCanvasView(getContext(), tileMap);
+		view.setLayoutParams(new RelativeLayout.LayoutParams(
+				ViewGroup.LayoutParams.MATCH_PARENT,
+				ViewGroup.LayoutParams.MATCH_PARENT));
+		view.bindViewport(viewport);
 
-		// Zurckgeben des berechneten TileMapViews.
+		// Zurückgeben des berechneten TileCanvasViews.
 		return view;
 	}
 
@@ -0,0 +1,421 @@
+/**
+ * @(#)AbstractTileCache.java
+ * 1.0, 2013-03-04
+ */
+package de.hdm.hettich.studienarbeit.loading;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import de.hdm.hettich.studienarbeit.bo.TileMap;
+
+/**
+ * Die abstrakte Klasse <code>AbstractTileCache</code> beinhaltet alles, was
+ * die Cache-Ebenen der Kacheln gemeinsam haben: Die Einträge werden über einen
+ * <code>TileKey</code> abgelegt, der belegte Speicher wird in Bytes gezählt
+ * und bei Überschreitung des Budgets werden die am längsten nicht verwendeten
+ * Einträge entfernt (LRU). Treffer, Fehlschläge und entfernte Einträge werden
+ * gezählt.
+ * <p>
+ * Die Unterklassen legen fest, wie groß ein Eintrag ist und was passiert,
+ * wenn ein Eintrag entfernt wurde.
+ *
+ * @author Stefan Hettich
+ *
+ * @version 1.0, 2013-03-04
+ *
+ * @param <V>
+ *            Typ der abgelegten Einträge
+ */
+public abstract class AbstractTileCache<V> {
+
+	/**
+	 * Die Einträge in der Reihenfolge ihrer Verwendung, der am längsten nicht
+	 * verwendete Eintrag steht vorne.
+	 */
+	private LinkedHashMap<TileKey, V> entries = new LinkedHashMap<TileKey, V>(
+			64, 0.75f, true);
+
+	/**
+	 * Budget des Caches in Bytes.
+	 */
+	private long maxBytes;
+
+	/**
+	 * Aktuell belegter Speicher in Bytes.
+	 */
+	private long currentBytes = 0;
+
+	/**
+	 * Anzahl der gefundenen Einträge.
+	 */
+	private int hitCount = 0;
+
+	/**
+	 * Anzahl der nicht gefundenen Einträge.
+	 */
+	private int missCount = 0;
+
+	/**
+	 * Anzahl der entfernten Einträge.
+	 */
+	private int evictionCount = 0;
+
+	/**
+	 * Konstruktor, der einen neuen Cache mit dem übergebenen Budget erstellt.
+	 *
+	 * @param maxBytes
+	 */
+	protected AbstractTileCache(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Berechnet die Größe eines Eintrags in Bytes.
+	 *
+	 * @param value
+	 * @return int die Größe in Bytes
+	 */
+	protected abstract int calculateSize(V value);
+
+	/**
+	 * Berechnet, um wie viele Bytes der belegte Speicher wächst, wenn der
+	 * übergebene Eintrag abgelegt wird. Standardmäßig ist das seine Größe,
+	 * teilen sich mehrere Einträge denselben Wert, kann eine Unterklasse
+	 * diesen nur einmal zählen. Der Aufruf erfolgt innerhalb der Sperre des
+	 * Caches.
+	 *
+	 * @param key
+	 * @param value
+	 * @return int die zu zählenden Bytes
+	 */
+	protected int chargeEntry(TileKey key, V value) {
+		return calculateSize(value);
+	}
+
+	/**
+	 * Berechnet, um wie viele Bytes der belegte Speicher sinkt, wenn der
+	 * übergebene Eintrag entfernt wird (siehe
+	 * {@link #chargeEntry(TileKey, Object)}).
+	 *
+	 * @param key
+	 * @param value
+	 * @return int die freigegebenen Bytes
+	 */
+	protected int releaseEntry(TileKey key, V value) {
+		return calculateSize(value);
+	}
+
+	/**
+	 * Wird aufgerufen, nachdem ein Eintrag entfernt oder ersetzt wurde. Der
+	 * Aufruf erfolgt außerhalb der Sperre des Caches und kann aus jedem Thread
+	 * kommen.
+	 *
+	 * @param key
+	 * @param value
+	 */
+	protected void entryEvicted(TileKey key, V value) {
+	}
+
+	/**
+	 * Wird aufgerufen, nachdem ein Eintrag abgelegt wurde. Der Aufruf erfolgt
+	 * innerhalb der Sperre des Caches, z.B. um einen Index zu pflegen.
+	 *
+	 * @param key
+	 * @param value
+	 */
+	protected void entryAdded(TileKey key, V value) {
+	}
+
+	/**
+	 * Wird aufgerufen, nachdem ein Eintrag entfernt oder ersetzt wurde. Der
+	 * Aufruf erfolgt im Gegensatz zu {@link #entryEvicted(TileKey, Object)}
+	 * innerhalb der Sperre des Caches.
+	 *
+	 * @param key
+	 * @param value
+	 */
+	protected void entryRemoved(TileKey key, V value) {
+	}
+
+	/**
+	 * @return the maxBytes
+	 */
+	public synchronized long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * Setzt das Budget des Caches, ist bereits mehr Speicher belegt, werden
+	 * sofort Einträge entfernt.
+	 *
+	 * @param maxBytes
+	 *            the maxBytes to set
+	 */
+	public void setMaxBytes(long maxBytes) {
+		synchronized (this) {
+			this.maxBytes = maxBytes;
+		}
+		trimToSize(maxBytes);
+	}
+
+	/**
+	 * @return the currentBytes
+	 */
+	public synchronized long getCurrentBytes() {
+		return currentBytes;
+	}
+
+	/**
+	 * @return the hitCount
+	 */
+	public synchronized int getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * @return the missCount
+	 */
+	public synchronized int getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * @return the evictionCount
+	 */
+	public synchronized int getEvictionCount() {
+		return evictionCount;
+	}
+
+	/**
+	 * Gibt die Anzahl der Einträge im Cache zurück.
+	 *
+	 * @return int Anzahl der Einträge
+	 */
+	public synchronized int getCount() {
+		return entries.size();
+	}
+
+	/**
+	 * Gibt den Eintrag zurück und markiert diesen als zuletzt verwendet.
+	 *
+	 * @param key
+	 * @return V der Eintrag oder null, wenn dieser nicht im Cache liegt
+	 */
+	public synchronized V get(TileKey key) {
+		V value = entries.get(key);
+		if (value != null) {
+			hitCount++;
+		} else {
+			missCount++;
+		}
+		return value;
+	}
+
+	/**
+	 * Markiert einen Eintrag als zuletzt verwendet, ohne die Zähler zu
+	 * verändern. Wird z.B. für gerade angezeigte Kacheln aufgerufen, damit
+	 * diese nicht vor unsichtbaren Kacheln entfernt werden.
+	 *
+	 * @param key
+	 * @return V der Eintrag oder null, wenn dieser nicht im Cache liegt
+	 */
+	public synchronized V touch(TileKey key) {
+		return entries.get(key);
+	}
+
+	/**
+	 * Prüft, ob ein Eintrag im Cache liegt, ohne die Reihenfolge oder die
+	 * Zähler zu verändern.
+	 *
+	 * @param key
+	 * @return boolean true wenn der Eintrag im Cache liegt
+	 */
+	public synchronized boolean contains(TileKey key) {
+		return entries.containsKey(key);
+	}
+
+	/**
+	 * Legt einen Eintrag im Cache ab. Wird dadurch das Budget überschritten,
+	 * werden die am längsten nicht verwendeten Einträge entfernt.
+	 *
+	 * @param key
+	 * @param value
+	 */
+	public void put(TileKey key, V value) {
+		V previous;
+		synchronized (this) {
+			currentBytes += chargeEntry(key, value);
+			previous = entries.put(key, value);
+			if (previous != null) {
+				currentBytes -= releaseEntry(key, previous);
+				entryRemoved(key, previous);
+			}
+			entryAdded(key, value);
+		}
+		// Ein ersetzter Eintrag wird ebenfalls als entfernt gemeldet.
+		if (previous != null && previous != value) {
+			entryEvicted(key, previous);
+		}
+		trimToSize(getMaxBytes());
+	}
+
+	/**
+	 * Entfernt einen Eintrag aus dem Cache.
+	 *
+	 * @param key
+	 * @return V der entfernte Eintrag oder null
+	 */
+	public V remove(TileKey key) {
+		V value;
+		synchronized (this) {
+			value = entries.remove(key);
+			if (value == null) {
+				return null;
+			}
+			currentBytes -= releaseEntry(key, value);
+			evictionCount++;
+			entryRemoved(key, value);
+		}
+		entryEvicted(key, value);
+		return value;
+	}
+
+	/**
+	 * Entfernt die übergebenen Einträge aus dem Cache. Im Gegensatz zu
+	 * {@link #remove(TileKey)} werden die freigegebenen Bytes innerhalb der
+	 * Sperre gezählt, sie sind also auch dann richtig, wenn gleichzeitig
+	 * andere Threads Einträge ablegen.
+	 *
+	 * @param keys
+	 * @return long die Anzahl der freigegebenen Bytes
+	 */
+	public long removeAll(ArrayList<TileKey> keys) {
+		// Die entfernten Einträge werden erst außerhalb der Sperre gemeldet.
+		ArrayList<TileKey> evictedKeys = null;
+		ArrayList<V> evictedValues = null;
+		long freed = 0;
+
+		synchronized (this) {
+			for (int i = 0; i < keys.size(); i++) {
+				TileKey key = keys.get(i);
+				V value = entries.remove(key);
+				if (value == null) {
+					continue;
+				}
+				if (evictedKeys == null) {
+					evictedKeys = new ArrayList<TileKey>();
+					evictedValues = new ArrayList<V>();
+				}
+				evictedKeys.add(key);
+				evictedValues.add(value);
+				int released = releaseEntry(key, value);
+				currentBytes -= released;
+				freed += released;
+				evictionCount++;
+				entryRemoved(key, value);
+			}
+		}
+
+		if (evictedKeys != null) {
+			for (int i = 0; i < evictedKeys.size(); i++) {
+				entryEvicted(evictedKeys.get(i), evictedValues.get(i));
+			}
+		}
+		return freed;
+	}
+
+	/**
+	 * Entfernt alle Kacheln der übergebenen <code>TileMap</code> aus dem
+	 * Cache, z.B. wenn deren Zoomstufe nicht mehr benötigt wird.
+	 *
+	 * @param tileMap
+	 * @return long die Anzahl der freigegebenen Bytes
+	 */
+	public long removeAll(TileMap tileMap) {
+		return removeAll(getKeys(tileMap));
+	}
+
+	/**
+	 * Gibt alle Kacheln der übergebenen <code>TileMap</code> zurück, die
+	 * gerade im Cache liegen.
+	 *
+	 * @param tileMap
+	 * @return ArrayList<TileKey> die Kacheln der TileMap im Cache
+	 */
+	public synchronized ArrayList<TileKey> getKeys(TileMap tileMap) {
+		ArrayList<TileKey> result = new ArrayList<TileKey>();
+		for (TileKey key : entries.keySet()) {
+			if (key.getTileMap() == tileMap) {
+				result.add(key);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Entfernt so lange die am längsten nicht verwendeten Einträge, bis der
+	 * belegte Speicher das übergebene Budget nicht mehr überschreitet.
+	 *
+	 * @param maxBytes
+	 * @return long die Anzahl der freigegebenen Bytes
+	 */
+	public long trimToSize(long maxBytes) {
+		// Die entfernten Einträge werden erst außerhalb der Sperre gemeldet.
+		ArrayList<TileKey> evictedKeys = null;
+		ArrayList<V> evictedValues = null;
+		long freed = 0;
+
+		synchronized (this) {
+			Iterator<Map.Entry<TileKey, V>> iterator = entries.entrySet()
+					.iterator();
+			while (currentBytes > maxBytes && iterator.hasNext()) {
+				Map.Entry<TileKey, V> entry = iterator.next();
+				if (evictedKeys == null) {
+					evictedKeys = new ArrayList<TileKey>();
+					evictedValues = new ArrayList<V>();
+				}
+				evictedKeys.add(entry.getKey());
+				evictedValues.add(entry.getValue());
+				int released = releaseEntry(entry.getKey(), entry.getValue());
+				currentBytes -= released;
+				freed += released;
+				evictionCount++;
+				iterator.remove();
+				entryRemoved(entry.getKey(), entry.getValue());
+			}
+		}
+
+		if (evictedKeys != null) {
+			for (int i = 0; i < evictedKeys.size(); i++) {
+				entryEvicted(evictedKeys.get(i), evictedValues.get(i));
+			}
+		}
+		return freed;
+	}
+
+	/**
+	 * Entfernt alle Einträge aus dem Cache.
+	 */
+	public void clear() {
+		trimToSize(-1);
+	}
+
+	/**
+	 * Gibt einen String zurück, der bspw. auf der Konsole angezeigt werden
+	 * kann.
+	 */
+	@Override
+	public synchronized String toString() {
+		int requests = hitCount + missCount;
+		return getClass().getSimpleName() + "[" + entries.size()
+				+ " Kacheln, " + currentBytes + " / " + maxBytes
+				+ " Bytes, Treffer: " + hitCount + ", Fehlschläge: "
+				+ missCount + ", entfernt: " + evictionCount
+				+ ", Trefferquote: "
+				+ (requests > 0 ? 100 * hitCount / requests : 0) + "%]";
+	}
+
+}
@@ -9,17 +9,22 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
-import de.hdm.hettich.studienarbeit.view.TileView;
+import android.os.Build;
+import de.hdm.hettich.studienarbeit.bo.Tile;
+import de.hdm.hettich.studienarbeit.utile.Coordinate;
+import de.hdm.hettich.studienarbeit.view.TileLayer;
 
 /**
- * Die Klasse <code>BitmapConverter</code> stt die Umwandlung eines PNGs zu
+ * Die Klasse <code>BitmapConverter</code> stößt die Umwandlung eines PNGs zu
  * einem Bitmap an, dabei wird ein <code>BitmapWorkerTask</code> erstellt, der
- * die jeweilige Umwandlung bernimmt, sodass die Hauptanwendung nicht blockiert
- * wird.
+ * die jeweilige Umwandlung übernimmt, sodass die Hauptanwendung nicht blockiert
+ * wird. Die Tasks werden durch den <code>TileLoadingExecutor</code> mit
+ * begrenzter Parallelität ausgeführt.
  * 
  * @author Stefan Hettich
  * 
@@ -29,38 +34,92 @@ import de.hdm.hettich.studienarbeit.view.TileView;
 public class BitmapConverter {
 
 	/**
-	 * <code>TileView</code> der geladen werden soll.
+	 * Ebene (z.B. der <code>TileMapView</code>), in der die geladene Kachel
+	 * angezeigt werden soll, sofern sie dort gerade im dargestellten Bereich
+	 * liegt.
 	 */
-	private TileView tileView;
+	private TileLayer tileLayer;
+
+	/**
+	 * Schlüssel der Kachel im <code>TileCache</code>.
+	 */
+	private TileKey key;
+
+	/**
+	 * Die zu ladende <code>Tile</code>, sie wird erst im Lade-Thread und nur
+	 * einmal pro <code>BitmapConverter</code> von der <code>TileMap</code>
+	 * erstellt (siehe {@link #getTile()}).
+	 */
+	private Tile tile;
+
+	/**
+	 * Der zuletzt durch diesen <code>BitmapConverter</code> gestartete Task.
+	 */
+	private BitmapWorkerTask task;
 
 	/**
 	 * Hier werden alle Task gespeichert, die durch den BitmapConverter
-	 * gestartet werden, dadurch ist es mglich alle laufenden Task zu beenden.
+	 * gestartet werden, dadurch ist es möglich alle laufenden Task zu beenden.
 	 */
 	private static ArrayList<BitmapWorkerTask> tasks = new ArrayList<BitmapWorkerTask>();
 
 	/**
 	 * Konstruktor, der einen neuen <code>BitmapConverter</code> erstellt.
 	 * 
-	 * @param tileView
+	 * @param tileLayer
+	 * @param key
 	 */
-	public BitmapConverter(TileView tileView) {
-		this.tileView = tileView;
+	public BitmapConverter(TileLayer tileLayer, TileKey key) {
+		this.tileLayer = tileLayer;
+		this.setKey(key);
 	}
 
 	/**
-	 * @return the tileView
+	 * @return the tileLayer
 	 */
-	public TileView getTileView() {
-		return tileView;
+	public TileLayer getTileLayer() {
+		return tileLayer;
 	}
 
 	/**
-	 * @param tileView
-	 *            the tileView to set
+	 * @param tileLayer
+	 *            the tileLayer to set
 	 */
-	public void setTileView(TileView tileView) {
-		this.tileView = tileView;
+	public void setTileLayer(TileLayer tileLayer) {
+		this.tileLayer = tileLayer;
+	}
+
+	/**
+	 * Gibt die <code>Tile</code> zurück, die geladen werden soll. Sie wird
+	 * beim ersten Aufruf erstellt, dies geschieht im Lade-Thread, sodass beim
+	 * Anstoßen des Ladevorgangs keine <code>URI</code> berechnet werden muss.
+	 * 
+	 * @return Tile die zu ladende Tile
+	 */
+	public synchronized Tile getTile() {
+		if (tile == null) {
+			tile = key.getTileMap().getTile(key.getX(), key.getY());
+		}
+		return tile;
+	}
+
+	/**
+	 * @return the key
+	 */
+	public TileKey getKey() {
+		return key;
+	}
+
+	/**
+	 * Setzt den Schlüssel der zu ladenden Kachel, die zugehörige
+	 * <code>Tile</code> wird beim nächsten Laden neu erstellt.
+	 * 
+	 * @param key
+	 *            the key to set
+	 */
+	public synchronized void setKey(TileKey key) {
+		this.key = key;
+		this.tile = null;
 	}
 
 	/**
@@ -79,12 +138,12 @@ public class BitmapConverter {
 	}
 
 	/**
-	 * Fgt den bergebenen Task der <code>ArrayList</code> hinzu. Der Task kann
+	 * Fügt den übergebenen Task der <code>ArrayList</code> hinzu. Der Task kann
 	 * somit ggf. beendet werden.
 	 * 
 	 * @param task
 	 */
-	public static void addTask(BitmapWorkerTask task) {
+	public static synchronized void addTask(BitmapWorkerTask task) {
 		BitmapConverter.tasks.add(task);
 	}
 
@@ -94,62 +153,262 @@ public class BitmapConverter {
 	 * 
 	 * @param task
 	 */
-	public static void removeTask(BitmapWorkerTask task) {
+	public static synchronized void removeTask(BitmapWorkerTask task) {
 		BitmapConverter.tasks.remove(task);
 	}
 
 	/**
-	 * Diese Methode stt den Ladevorgang an, dabei wird ein
-	 * <code>AsyncTask</code> in Form eines <code>BitmapWorkerTask</code>
-	 * erstellt.
+	 * Diese Methode stößt den Ladevorgang in voller Auflösung an.
+	 * 
+	 * @param priority
+	 *            je kleiner, desto früher wird die Kachel geladen
+	 * @see #loadImage(int, int)
 	 */
-	public void loadImage() {
+	public void loadImage(int priority) {
+		loadImage(priority, 1);
+	}
+
+	/**
+	 * Diese Methode stößt den Ladevorgang an, dabei wird ein
+	 * <code>BitmapWorkerTask</code> erstellt und mit der übergebenen Priorität
+	 * an den <code>TileLoadingExecutor</code> übergeben.
+	 * 
+	 * @param priority
+	 *            je kleiner, desto früher wird die Kachel geladen
+	 * @param sampleSize
+	 *            Verkleinerungsfaktor, bei mehr als 1 wird die Kachel
+	 *            anschließend in voller Auflösung nachgeladen
+	 */
+	public void loadImage(int priority, int sampleSize) {
 		/*
 		 * Der asynchrone Task wird erstellt, in ihm wird der komplette
-		 * Umwandlungsvorgang vorgenommen. Dabei wird zunchst geprft, ob eine
-		 * Tile bereits geladen ist bzw. ein byte[] gesetzt ist. Ist kein byte[]
-		 * gesetzt wird dieser zunchst aus dem bergebenen PNG erstellt. Danach
-		 * wird aus diesem byte[] ein Bitmap erstellt, das dem TileView
-		 * zugeordnet wird.
+		 * Umwandlungsvorgang vorgenommen. Dabei wird zunächst geprüft, ob die
+		 * Kachel bereits im TileCache liegt. Ist dies nicht der Fall, wird der
+		 * byte[] aus dem CompressedTileCache oder, wenn er dort auch nicht
+		 * liegt, aus dem übergebenen PNG erstellt. Danach wird aus diesem
+		 * byte[] ein Bitmap erstellt, das im TileCache abgelegt und, sofern
+		 * die Kachel gerade im dargestellten Bereich liegt, angezeigt wird.
 		 */
-		BitmapWorkerTask task = new BitmapWorkerTask(this);
+		task = new BitmapWorkerTask(this, priority, sampleSize);
 		/*
 		 * Ablegen des Tasks in der ArrayList, damit er bei Bedarf beendet
 		 * werden kann.
 		 */
 		BitmapConverter.addTask(task);
-		// Explizietes Ausfhren des Tasks.
-		task.execute(this.tileView.getTile());
+		// Explizietes Ausführen des Tasks.
+		task.execute();
+	}
+
+	/**
+	 * Gibt zurück, ob der Ladevorgang dieses <code>BitmapConverter</code>s
+	 * noch läuft bzw. noch auf seine Ausführung wartet.
+	 * 
+	 * @return boolean true wenn der Task noch nicht abgeschlossen ist
+	 */
+	public boolean isLoading() {
+		return task != null && !task.isFinished();
+	}
+
+	/**
+	 * Gibt die Priorität des zuletzt gestarteten Tasks zurück.
+	 * 
+	 * @return int die Priorität, je kleiner desto wichtiger
+	 */
+	public int getPriority() {
+		return task != null ? task.getPriority() : Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Beendet den Ladevorgang dieses <code>BitmapConverter</code>s, sofern
+	 * dieser noch nicht abgeschlossen ist.
+	 */
+	public void cancel() {
+		if (isLoading()) {
+			task.cancel(true);
+		}
 	}
 
 	/**
 	 * Beendet alle momentan laufenden Tasks.
 	 */
-	public static void cancelTasks() {
-		// Alle abgelegten Task werden durchlaufen.
-		for (BitmapWorkerTask task : tasks) {
-			// Prfen, ob dieser Task noch vorhanden (nicht null) ist.
+	public static synchronized void cancelTasks() {
+		/*
+		 * Alle abgelegten Task werden durchlaufen. Dabei wird eine Kopie der
+		 * Liste verwendet, da beendete Tasks sich selbst entfernen.
+		 */
+		for (BitmapWorkerTask task : new ArrayList<BitmapWorkerTask>(tasks)) {
+			// Prüfen, ob dieser Task noch vorhanden (nicht null) ist.
 			if (task != null) {
-				// Der Task wird beendet, auch wenn er gerade luft.
+				// Der Task wird beendet, auch wenn er gerade läuft.
 				task.cancel(true);
 			}
 		}
 	}
 
 	/**
-	 * Verarbeitet einen <code>byte[]</code> in ein <code>Bitmap</code>, das
-	 * dann angezeigt werden kann.
+	 * Verarbeitet einen <code>byte[]</code> in voller Auflösung in ein
+	 * <code>Bitmap</code>.
 	 * 
 	 * @param blob
 	 * @return Bitmap das berechnete Bitmap
+	 * @see #processBitmap(byte[], int)
 	 */
 	public Bitmap processBitmap(byte[] blob) {
+		return processBitmap(blob, 1);
+	}
+
+	/**
+	 * Verarbeitet einen <code>byte[]</code> in ein <code>Bitmap</code>, das
+	 * dann angezeigt werden kann (zu den Dekodier-Einstellungen siehe
+	 * {@link #createOptions(int)}).
+	 * 
+	 * @param blob
+	 * @param sampleSize
+	 *            Verkleinerungsfaktor (Zweierpotenz)
+	 * @return Bitmap das berechnete Bitmap
+	 */
+	public Bitmap processBitmap(byte[] blob, int sampleSize) {
 		// Log.d(TAG, "Start processBitmap");
-		Bitmap bitmap = BitmapFactory.decodeByteArray(blob, 0, blob.length);
+		BitmapFactory.Options options = createOptions(sampleSize);
+
+		Bitmap bitmap;
+		try {
+			bitmap = BitmapFactory.decodeByteArray(blob, 0, blob.length,
+					options);
+		} catch (IllegalArgumentException e) {
+			/*
+			 * Passt das Bild doch nicht in das wiederverwendete Bitmap (z.B.
+			 * weil die Datei eine andere Größe hat), wird ein neues angelegt.
+			 */
+			options.inBitmap = null;
+			bitmap = BitmapFactory.decodeByteArray(blob, 0, blob.length,
+					options);
+		}
 		// Log.d(TAG, "Ende processBitmap");
 		return bitmap;
 	}
 
+	/**
+	 * Verarbeitet die komprimierten Daten einer Kachel aus einem
+	 * <code>TileArchive</code> in ein <code>Bitmap</code>. Die Daten werden
+	 * direkt aus dem eingeblendeten Archiv gelesen, ohne vorher in einen
+	 * <code>byte[]</code> kopiert zu werden (siehe
+	 * {@link #processBitmap(byte[], int)}).
+	 * 
+	 * @param data
+	 * @param sampleSize
+	 *            Verkleinerungsfaktor (Zweierpotenz)
+	 * @return Bitmap das berechnete Bitmap
+	 */
+	public Bitmap processBitmap(ByteBuffer data, int sampleSize) {
+		BitmapFactory.Options options = createOptions(sampleSize);
+
+		Bitmap bitmap;
+		try {
+			bitmap = BitmapFactory.decodeStream(new ByteBufferInputStream(
+					data.duplicate()), null, options);
+		} catch (IllegalArgumentException e) {
+			// Siehe processBitmap(byte[], int).
+			options.inBitmap = null;
+			bitmap = BitmapFactory.decodeStream(new ByteBufferInputStream(
+					data.duplicate()), null, options);
+		}
+		return bitmap;
+	}
+
+	/**
+	 * Dekodiert die Kachel als Ausschnitt aus dem Bild der gesamten Zoomstufe
+	 * (siehe <code>TileRegionDecoder</code>).
+	 * 
+	 * @param sampleSize
+	 *            Verkleinerungsfaktor (Zweierpotenz)
+	 * @return Bitmap das berechnete Bitmap
+	 */
+	public Bitmap processRegion(int sampleSize) {
+		/*
+		 * Der BitmapRegionDecoder kann erst ab Android 4.1 in ein vorhandenes
+		 * Bitmap dekodieren.
+		 */
+		BitmapFactory.Options options = createOptions(sampleSize,
+				Build.VERSION.SDK_INT >= 16);
+		TileRegionDecoder decoder = TileRegionDecoder.regionDecoder(this
+				.getTile().getFilename());
+		Coordinate tileSize = key.getTileMap().getTileSize();
+
+		Bitmap bitmap;
+		try {
+			bitmap = decoder.decodeTile(key.getX(), key.getY(), tileSize,
+					options);
+		} catch (IllegalArgumentException e) {
+			// Siehe processBitmap(byte[], int).
+			options.inBitmap = null;
+			bitmap = decoder.decodeTile(key.getX(), key.getY(), tileSize,
+					options);
+		}
+		return bitmap;
+	}
+
+	/**
+	 * Erstellt die Dekodier-Einstellungen für eine Kachel. Das Pixelformat
+	 * hängt davon ab, ob die Kacheln der <code>TileMap</code> Transparenz
+	 * enthalten (siehe {@link #calculateConfig()}). Liegt im
+	 * <code>BitmapPool</code> ein passendes <code>Bitmap</code> einer
+	 * entladenen Kachel, wird in dieses dekodiert, anstatt ein neues
+	 * anzulegen.
+	 * 
+	 * @param sampleSize
+	 * @return BitmapFactory.Options die Dekodier-Einstellungen
+	 */
+	private BitmapFactory.Options createOptions(int sampleSize) {
+		return createOptions(sampleSize, true);
+	}
+
+	/**
+	 * Erstellt die Dekodier-Einstellungen für eine Kachel (siehe
+	 * {@link #createOptions(int)}).
+	 * 
+	 * @param sampleSize
+	 * @param reuse
+	 *            false, wenn kein Bitmap aus dem BitmapPool verwendet werden
+	 *            darf
+	 * @return BitmapFactory.Options die Dekodier-Einstellungen
+	 */
+	private BitmapFactory.Options createOptions(int sampleSize, boolean reuse) {
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		/*
+		 * Die Bitmaps müssen veränderbar sein, damit sie später selbst
+		 * wiederverwendet werden können.
+		 */
+		options.inMutable = true;
+		options.inPreferredConfig = calculateConfig();
+		options.inSampleSize = sampleSize;
+
+		/*
+		 * Alle Kacheln einer TileMap sind gleich groß, deshalb kann anhand
+		 * der Größe der Tile ein passendes Bitmap aus dem Pool geholt werden.
+		 * Vor Android 4.4 ist dies nur ohne Verkleinerung möglich.
+		 */
+		if (reuse && sampleSize == 1) {
+			Coordinate size = key.getTileMap().getTileSize();
+			options.inBitmap = BitmapPool.bitmapPool().get(size.getX(),
+					size.getY(), options.inPreferredConfig);
+		}
+		return options;
+	}
+
+	/**
+	 * Gibt das Pixelformat zurück, in dem die Kachel dekodiert wird. Kacheln
+	 * ohne Transparenz benötigen mit RGB_565 nur halb so viel Speicher.
+	 * 
+	 * @return Bitmap.Config das Pixelformat
+	 */
+	public Bitmap.Config calculateConfig() {
+		if (key != null && key.getTileMap().isOpaque()) {
+			return Bitmap.Config.RGB_565;
+		}
+		return Bitmap.Config.ARGB_8888;
+	}
+
 	/**
 	 * Verarbeitet einen Pfad zu einem PNG in einen <code>byte[]</code>, der
 	 * dann in einer <code>Tile</code> gespeichert wird.
@@ -161,15 +420,15 @@ public class BitmapConverter {
 		// Log.d(TAG, "Start processByteArray");
 
 		/*
-		 * File anhand der bergebenen URI erstellen. File wird bentigt, um
-		 * spter die Gre des byte[] zu bestimmen.
+		 * File anhand der übergebenen URI erstellen. File wird benötigt, um
+		 * später die Größe des byte[] zu bestimmen.
 		 */
 		File file = new File(pngFile);
 
 		/*
-		 * Ergebnis-Byte-Array wird bereits hier erstellt, damit er spter
-		 * zurckgegeben werden kann, auch wenn es im try-Block zu einem Fehler
-		 * kommt. Sollte dies der Fall sein, wird null zurckgegeben,
+		 * Ergebnis-Byte-Array wird bereits hier erstellt, damit er später
+		 * zurückgegeben werden kann, auch wenn es im try-Block zu einem Fehler
+		 * kommt. Sollte dies der Fall sein, wird null zurückgegeben,
 		 * anderenfalls der berechnete byte[].
 		 */
 		byte[] result = null;
@@ -182,23 +441,23 @@ public class BitmapConverter {
 			FileInputStream fis = new FileInputStream(file);
 
 			/*
-			 * Ergebnis-Byte-Array wird mit der Lnge des Files initialisiert.
+			 * Ergebnis-Byte-Array wird mit der Länge des Files initialisiert.
 			 */
 			result = new byte[(int) file.length()];
 
 			/*
-			 * Lesen der Datei und gleichzeitiges bertragen in den oben
+			 * Lesen der Datei und gleichzeitiges übertragen in den oben
 			 * erstellten <code>byte[]</code>.
 			 */
 			fis.read(result);
 
-			// Schlieen des <code>FileInputStreams</code>
+			// Schließen des <code>FileInputStreams</code>
 			fis.close();
 
 		} catch (FileNotFoundException e) {
 			/*
-			 * Sollte die bergebene Datei nicht vorhanden sein, ist
-			 * <code>file</code> gegebenenfalls <code>null</code>, deshalb wrde
+			 * Sollte die übergebene Datei nicht vorhanden sein, ist
+			 * <code>file</code> gegebenenfalls <code>null</code>, deshalb würde
 			 * es zu einem Fehler bei der Erstellung des
 			 * <code>FileInputStreams</code> kommen, dies wird hier abgefangen.
 			 */
@@ -213,7 +472,7 @@ public class BitmapConverter {
 
 		}
 
-		// Rckgabe des <code>byte[]<code>
+		// Rückgabe des <code>byte[]<code>
 		return result;
 	}
 
@@ -0,0 +1,290 @@
+/**
+ * @(#)BitmapPool.java
+ * 1.0, 2013-03-04
+ */
+package de.hdm.hettich.studienarbeit.loading;
+
+import java.util.ArrayList;
+
+import android.graphics.Bitmap;
+
+/**
+ * Der <code>BitmapPool</code> sammelt die <code>Bitmap</code>s entladener
+ * Kacheln, damit diese beim Dekodieren der nächsten Kachel wiederverwendet
+ * werden können (siehe <code>BitmapFactory.Options.inBitmap</code>). Da alle
+ * Kacheln einer <code>TileMap</code> gleich groß sind, wird so beim Verschieben
+ * des Plans kaum noch neuer Speicher angelegt und der Garbage Collector muss
+ * seltener anhalten.
+ * <p>
+ * Die <code>Bitmap</code>s werden nach Breite, Höhe und Pixelformat abgelegt,
+ * da nur genau passende <code>Bitmap</code>s wiederverwendet werden können. Da
+ * es nur wenige verschiedene Kachelgrößen gibt, liegt für jede Größe eine
+ * kleine Liste im Pool, die linear durchsucht wird. So muss beim Dekodieren
+ * kein Schlüssel-Objekt erzeugt werden. Ein <code>Bitmap</code> darf erst in
+ * den Pool gelegt werden, wenn es von keinem <code>TileView</code> mehr
+ * angezeigt wird.
+ * <p>
+ * Da die Ebenen die <code>Bitmap</code>s entfernter Kacheln erst später im
+ * UI-Thread zurückgeben, merken sie sich beim Entfernen die aktuelle
+ * {@link #getTrimGeneration()}. Nach einer Speicherwarnung wird der Pool mit
+ * {@link #trim()} geleert und die Generation erhöht, ältere
+ * <code>Bitmap</code>s werden danach nicht mehr angenommen.
+ *
+ * @author Stefan Hettich
+ *
+ * @version 1.0, 2013-03-04
+ *
+ */
+public class BitmapPool {
+
+	/**
+	 * Standard-Budget des Pools: ein Zweiunddreißigstel des maximal
+	 * verfügbaren Speichers der Anwendung.
+	 */
+	public final static long DEFAULT_MAX_BYTES = Runtime.getRuntime()
+			.maxMemory() / 32;
+
+	/**
+	 * Instanz des <code>BitmapPool</code>s, es gibt einen Pool für die gesamte
+	 * Anwendung.
+	 */
+	private static BitmapPool bitmapPool = null;
+
+	/**
+	 * Die freien <code>Bitmap</code>s, abgelegt nach Größe und Pixelformat.
+	 */
+	private ArrayList<Bucket> buckets = new ArrayList<Bucket>();
+
+	/**
+	 * Budget des Pools in Bytes.
+	 */
+	private long maxBytes;
+
+	/**
+	 * Aktuell belegter Speicher in Bytes.
+	 */
+	private long currentBytes = 0;
+
+	/**
+	 * Wird bei jeder Speicherwarnung erhöht (siehe {@link #trim()}).
+	 */
+	private int trimGeneration = 0;
+
+	/**
+	 * Anzahl der wiederverwendeten <code>Bitmap</code>s.
+	 */
+	private int reuseCount = 0;
+
+	/**
+	 * Anzahl der Anfragen, für die kein passendes <code>Bitmap</code> im Pool
+	 * lag.
+	 */
+	private int missCount = 0;
+
+	/**
+	 * Konstruktor, der einen neuen <code>BitmapPool</code> mit dem übergebenen
+	 * Budget erstellt.
+	 *
+	 * @param maxBytes
+	 */
+	protected BitmapPool(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Gibt die Instanz des <code>BitmapPool</code>s zurück, existiert noch
+	 * keine, wird einer mit {@link #DEFAULT_MAX_BYTES} erstellt.
+	 *
+	 * @return BitmapPool der BitmapPool der Anwendung
+	 */
+	public static synchronized BitmapPool bitmapPool() {
+		if (bitmapPool == null) {
+			bitmapPool = new BitmapPool(DEFAULT_MAX_BYTES);
+		}
+		return bitmapPool;
+	}
+
+	/**
+	 * @return the maxBytes
+	 */
+	public synchronized long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * @param maxBytes
+	 *            the maxBytes to set
+	 */
+	public synchronized void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+		if (currentBytes > maxBytes) {
+			clear();
+		}
+	}
+
+	/**
+	 * @return the currentBytes
+	 */
+	public synchronized long getCurrentBytes() {
+		return currentBytes;
+	}
+
+	/**
+	 * @return the reuseCount
+	 */
+	public synchronized int getReuseCount() {
+		return reuseCount;
+	}
+
+	/**
+	 * @return the missCount
+	 */
+	public synchronized int getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * @return the trimGeneration
+	 */
+	public synchronized int getTrimGeneration() {
+		return trimGeneration;
+	}
+
+	/**
+	 * Legt ein nicht mehr angezeigtes <code>Bitmap</code> in den Pool. Nicht
+	 * veränderbare oder bereits freigegebene <code>Bitmap</code>s können nicht
+	 * wiederverwendet werden, ebenso wird bei vollem Pool nichts abgelegt.
+	 * Wurde das <code>Bitmap</code> vor der letzten Speicherwarnung entfernt,
+	 * wird es ebenfalls nicht abgelegt.
+	 *
+	 * @param bitmap
+	 * @param trimGeneration
+	 *            die {@link #getTrimGeneration()} zum Zeitpunkt, an dem die
+	 *            Kachel aus dem <code>TileCache</code> entfernt wurde
+	 * @return boolean true wenn das Bitmap abgelegt wurde
+	 */
+	public synchronized boolean put(Bitmap bitmap, int trimGeneration) {
+		if (bitmap == null || !bitmap.isMutable() || bitmap.isRecycled()
+				|| trimGeneration != this.trimGeneration) {
+			return false;
+		}
+		int size = TileCache.sizeOf(bitmap);
+		if (currentBytes + size > maxBytes) {
+			return false;
+		}
+
+		Bucket bucket = findBucket(bitmap.getWidth(), bitmap.getHeight(),
+				bitmap.getConfig());
+		if (bucket == null) {
+			bucket = new Bucket(bitmap.getWidth(), bitmap.getHeight(),
+					bitmap.getConfig());
+			buckets.add(bucket);
+		}
+		// Ein Bitmap darf nur einmal im Pool liegen.
+		ArrayList<Bitmap> list = bucket.bitmaps;
+		for (int i = 0; i < list.size(); i++) {
+			if (list.get(i) == bitmap) {
+				return false;
+			}
+		}
+		list.add(bitmap);
+		currentBytes += size;
+		return true;
+	}
+
+	/**
+	 * Gibt ein freies <code>Bitmap</code> der übergebenen Größe und des
+	 * übergebenen Pixelformats zurück und entfernt es aus dem Pool.
+	 *
+	 * @param width
+	 * @param height
+	 * @param config
+	 * @return Bitmap ein wiederverwendbares Bitmap oder null
+	 */
+	public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+		Bucket bucket = findBucket(width, height, config);
+		if (bucket == null || bucket.bitmaps.isEmpty()) {
+			missCount++;
+			return null;
+		}
+		Bitmap bitmap = bucket.bitmaps.remove(bucket.bitmaps.size() - 1);
+		currentBytes -= TileCache.sizeOf(bitmap);
+		reuseCount++;
+		return bitmap;
+	}
+
+	/**
+	 * Entfernt alle <code>Bitmap</code>s aus dem Pool, diese werden dann vom
+	 * Garbage Collector freigegeben.
+	 */
+	public synchronized void clear() {
+		/*
+		 * Die Listen selbst bleiben erhalten, damit sie nach dem Leeren nicht
+		 * neu angelegt werden müssen.
+		 */
+		for (int i = 0; i < buckets.size(); i++) {
+			buckets.get(i).bitmaps.clear();
+		}
+		currentBytes = 0;
+	}
+
+	/**
+	 * Leert den Pool nach einer Speicherwarnung. Die Bitmaps der dabei
+	 * entfernten Kacheln, die die Ebenen erst danach zurückgeben, werden nicht
+	 * mehr angenommen, sonst wäre der Pool sofort wieder gefüllt.
+	 */
+	public synchronized void trim() {
+		clear();
+		trimGeneration++;
+	}
+
+	/**
+	 * Sucht die Liste für die übergebene Größe und das übergebene
+	 * Pixelformat.
+	 *
+	 * @param width
+	 * @param height
+	 * @param config
+	 * @return Bucket die Liste oder null, wenn es noch keine gibt
+	 */
+	private Bucket findBucket(int width, int height, Bitmap.Config config) {
+		for (int i = 0; i < buckets.size(); i++) {
+			Bucket bucket = buckets.get(i);
+			if (bucket.width == width && bucket.height == height
+					&& bucket.config == config) {
+				return bucket;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Gibt einen String zurück, der bspw. auf der Konsole angezeigt werden
+	 * kann.
+	 */
+	@Override
+	public synchronized String toString() {
+		return "BitmapPool[" + currentBytes + " / " + maxBytes
+				+ " Bytes, wiederverwendet: " + reuseCount
+				+ ", Fehlschläge: " + missCount + "]";
+	}
+
+	/**
+	 * Die freien <code>Bitmap</code>s einer Größe und eines Pixelformats.
+	 */
+	private static class Bucket {
+
+		private int width, height;
+
+		private Bitmap.Config config;
+
+		private ArrayList<Bitmap> bitmaps = new ArrayList<Bitmap>();
+
+		private Bucket(int width, int height, Bitmap.Config config) {
+			this.width = width;
+			this.height = height;
+			this.config = config;
+		}
+	}
+
+}
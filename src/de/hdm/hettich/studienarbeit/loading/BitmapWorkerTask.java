@@ -4,38 +4,112 @@
  */
 package de.hdm.hettich.studienarbeit.loading;
 
+import java.nio.ByteBuffer;
+
 import de.hdm.hettich.studienarbeit.bo.Tile;
 import android.graphics.Bitmap;
-import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
 
 /**
- * Die Klasse <code>BitmapWorkerTask</code> ist von <code>AsyncTask</code>
- * abgeleitet und bietet die Mglichkeit Operationen im Hintergrund, ohne den
- * Hauptprogrammfluss zu blockieren, auszufheren. Hier werden die PNGs in
- * Bitmaps konvertiert.
+ * Die Klasse <code>BitmapWorkerTask</code> bietet die Möglichkeit Operationen
+ * im Hintergrund, ohne den Hauptprogrammfluss zu blockieren, auszufüheren. Hier
+ * werden die PNGs in Bitmaps konvertiert.
+ * <p>
+ * Die Tasks werden durch den <code>TileLoadingExecutor</code> ausgeführt,
+ * dessen Warteschlange nach der Priorität der Tasks sortiert ist. Der Aufbau
+ * orientiert sich bewusst an <code>AsyncTask</code>, das Ergebnis wird also
+ * wieder im UI-Thread an {@link #onPostExecute(Bitmap)} bzw.
+ * {@link #onCancelled()} übergeben.
  * 
  * @author Stefan Hettich
  * 
  * @version 1.0, 2013-03-04
  * 
  */
-public class BitmapWorkerTask extends AsyncTask<Tile, Void, Bitmap> {
+public class BitmapWorkerTask implements Runnable,
+		Comparable<BitmapWorkerTask> {
+
+	/**
+	 * <code>Handler</code> des UI-Threads, über den die Ergebnisse der Tasks
+	 * zurückgegeben werden.
+	 */
+	private static final Handler handler = new Handler(Looper.getMainLooper());
+
+	/**
+	 * Fortlaufende Nummer, die bei gleicher Priorität die Reihenfolge der
+	 * Übergabe sicherstellt.
+	 */
+	private static long sequenceCounter = 0;
 
 	/**
 	 * BitmapConverter, der diesen <code>BitmapWorkerTask</code> erstellt hat.
-	 * Die Referenz wird bentigt, um auf die process-Methoden zugreifen zu
-	 * knnen und den <code>BitmapWorkerTask</code> nicht als NestedClass des
-	 * <code>BitmapConverter</code> implementierren zu mssen.
+	 * Die Referenz wird benötigt, um auf die process-Methoden zugreifen zu
+	 * können und den <code>BitmapWorkerTask</code> nicht als NestedClass des
+	 * <code>BitmapConverter</code> implementierren zu müssen.
 	 */
 	private BitmapConverter converter;
 
+	/**
+	 * Priorität des Tasks, je kleiner der Wert, desto früher wird der Task
+	 * ausgeführt. Entspricht dem quadrierten Abstand der Kachel zur mittleren
+	 * Kachel.
+	 */
+	private int priority;
+
+	/**
+	 * Verkleinerungsfaktor, mit dem die Kachel dekodiert wird. Ist er größer
+	 * als 1, wird die Kachel anschließend in voller Auflösung nachgeladen.
+	 */
+	private int sampleSize;
+
+	/**
+	 * Nummer des Tasks, siehe {@link #sequenceCounter}.
+	 */
+	private long sequence;
+
+	/**
+	 * Gibt an, ob der Task beendet wurde.
+	 */
+	private volatile boolean cancelled = false;
+
+	/**
+	 * Gibt an, ob das Ergebnis des Tasks bereits im UI-Thread verarbeitet
+	 * wurde (egal ob erfolgreich oder abgebrochen).
+	 */
+	private volatile boolean finished = false;
+
+	/**
+	 * Thread, in dem der Task gerade ausgeführt wird, oder <code>null</code>.
+	 */
+	private Thread runner;
+
+	/**
+	 * Konstruktor, der einen neuen <code>BitmapWorkerTask</code> erstellt, der
+	 * die Kachel in voller Auflösung lädt.
+	 * 
+	 * @param converter
+	 * @param priority
+	 */
+	public BitmapWorkerTask(BitmapConverter converter, int priority) {
+		this(converter, priority, 1);
+	}
+
 	/**
 	 * Konstruktor, der einen neuen <code>BitmapWorkerTask</code> erstellt.
 	 * 
 	 * @param converter
+	 * @param priority
+	 * @param sampleSize
 	 */
-	public BitmapWorkerTask(BitmapConverter converter) {
+	public BitmapWorkerTask(BitmapConverter converter, int priority,
+			int sampleSize) {
 		this.converter = converter;
+		this.priority = priority;
+		this.sampleSize = sampleSize;
+		synchronized (BitmapWorkerTask.class) {
+			this.sequence = sequenceCounter++;
+		}
 	}
 
 	/**
@@ -53,91 +127,308 @@ public class BitmapWorkerTask extends AsyncTask<Tile, Void, Bitmap> {
 		this.converter = converter;
 	}
 
+	/**
+	 * @return the priority
+	 */
+	public int getPriority() {
+		return priority;
+	}
+
+	/**
+	 * @return the sampleSize
+	 */
+	public int getSampleSize() {
+		return sampleSize;
+	}
+
+	/**
+	 * @return the cancelled
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * @return the finished
+	 */
+	public boolean isFinished() {
+		return finished;
+	}
+
+	/**
+	 * Übergibt den Task an den <code>TileLoadingExecutor</code>. Die zu
+	 * ladende <code>Tile</code> wird erst bei der Ausführung ermittelt.
+	 */
+	public void execute() {
+		TileLoadingExecutor.tileLoadingExecutor().execute(this);
+	}
+
+	/**
+	 * Beendet den Task. Wartet der Task noch in der Warteschlange, wird er dort
+	 * entfernt, läuft er bereits, wird er ggf. unterbrochen.
+	 * 
+	 * @param mayInterruptIfRunning
+	 */
+	public void cancel(boolean mayInterruptIfRunning) {
+		cancelled = true;
+
+		// Prüfen, ob der Task noch nicht gestartet wurde.
+		if (TileLoadingExecutor.tileLoadingExecutor().remove(this)) {
+			/*
+			 * Der Task wird nie ausgeführt, also muss hier das Beenden
+			 * gemeldet werden.
+			 */
+			handler.post(new Runnable() {
+
+				@Override
+				public void run() {
+					onCancelled();
+				}
+			});
+		} else if (mayInterruptIfRunning) {
+			synchronized (this) {
+				if (runner != null) {
+					runner.interrupt();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Wird durch einen Lade-Thread des <code>TileLoadingExecutor</code>s
+	 * aufgerufen, das Ergebnis wird anschließend an den UI-Thread übergeben.
+	 */
 	@Override
+	public void run() {
+		synchronized (this) {
+			runner = Thread.currentThread();
+		}
+
+		Bitmap bitmap = null;
+		if (!isCancelled()) {
+			/*
+			 * Die Datei der Kachel wird erst hier im Lade-Thread berechnet und
+			 * am TileKey vermerkt, bevor die Kachel in einem Cache abgelegt
+			 * wird.
+			 */
+			Tile tile = converter.getTile();
+			converter.getKey().setSource(tile.getFilename());
+			bitmap = doInBackground(tile);
+		}
+
+		synchronized (this) {
+			runner = null;
+			/*
+			 * Eine eventuelle Unterbrechung darf nicht am Thread hängen
+			 * bleiben, da dieser den nächsten Task ausführt.
+			 */
+			Thread.interrupted();
+		}
+
+		TileLoadingExecutor.tileLoadingExecutor().taskFinished(bitmap != null);
+
+		// Ergebnis im UI-Thread verarbeiten.
+		final Bitmap result = bitmap;
+		handler.post(new Runnable() {
+
+			@Override
+			public void run() {
+				if (isCancelled()) {
+					onCancelled();
+				} else {
+					onPostExecute(result);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Vergleicht die Priorität zweier Tasks, bei gleicher Priorität wird der
+	 * früher erstellte Task zuerst ausgeführt.
+	 * 
+	 * @param another
+	 * @return int negativ, wenn dieser Task vor dem übergebenen Task ausgeführt
+	 *         werden soll
+	 */
+	@Override
+	public int compareTo(BitmapWorkerTask another) {
+		if (this.priority != another.priority) {
+			return this.priority < another.priority ? -1 : 1;
+		}
+		if (this.sequence != another.sequence) {
+			return this.sequence < another.sequence ? -1 : 1;
+		}
+		return 0;
+	}
+
 	/**
 	 * Diese Methode beinhaltet den Teil der Berechnung, die asynchron 
-	 * im Hintergrund ausgefhrt wird.
+	 * im Hintergrund ausgeführt wird.
 	 * 
-	 * @param params
+	 * @param tile
 	 */
-	protected Bitmap doInBackground(Tile... params) {
+	protected Bitmap doInBackground(Tile tile) {
 
 		/*
-		 * Erster bergebener Parameter wird ausgelesen, hier gibt es immer nur
-		 * einen!
+		 * Prüfen, ob die Kachel bereits dekodiert im TileCache liegt, dann
+		 * muss sie nicht erneut geladen werden.
 		 */
-		Tile tile = params[0];
+		TileCache cache = TileCache.tileCache();
+		Bitmap bitmap = cache.get(this.converter.getKey());
+		if (bitmap != null && cache.isSufficient(bitmap, sampleSize)) {
+			return bitmap;
+		}
 
-		// Instanziierung eines byte[] zur spteren Befllung.
-		byte[] blob = null;
+		/*
+		 * Prüfen, ob der Task bereits beendet wurde, wenn ja die Ausführung
+		 * dieser Methode abbrechen.
+		 */
+		if (isCancelled()) {
+			return null;
+		}
 
-		// Prfen, ob Tile bereits geladen ist.
-		if (!tile.isLoaded()) {
-			/*
-			 * Prfen, ob der Task bereits beendet wurde, wenn ja die Ausfhrung
-			 * dieser Methode abbrechen.
-			 */
-			if (!isCancelled()) {
-				/*
-				 * Tile ist nicht geladen, das heit der byte[] muss zunchst
-				 * noch aus dem PNG erzeugt werden.
-				 */
-				blob = this.converter.processByteArray(tile.getFilename());
-				// Berechnetes byte[] wird dem Tile gesetzt.
-				tile.setImage(blob);
-
-				/*
-				 * Achtung, diese Pause wird nur aus Demo-Zwecken eingefhrt,
-				 * damit das expliziete nacheinander stattfindende Lade besser
-				 * sichtbar wird.
-				 */
-				try {
-					// Der Thread wird fr 500ms angehalten.
-					Thread.sleep(500);
-				} catch (InterruptedException e) {
-					/*
-					 * Hier muss eine Exception abgefangen werden, die geworfen
-					 * werden kann, wenn ein schlafender Task beendet wird.
-					 */
-				}
+		/*
+		 * Liegt die Kachel in einem TileArchive, wird sie direkt aus dem
+		 * eingeblendeten Archiv dekodiert. Der CompressedTileCache wird dafür
+		 * nicht gebraucht, die Daten liegen bereits im Speicher bzw. im
+		 * Seiten-Cache des Systems.
+		 */
+		if (TileArchive.isTileUri(tile.getFilename())) {
+			ByteBuffer data = TileArchive.readTile(tile.getFilename());
+			LatencyInjector.latencyInjector().delay();
+			if (isCancelled() || data == null) {
+				return null;
+			}
+			bitmap = this.converter.processBitmap(data, sampleSize);
+			if (bitmap != null) {
+				cache.put(this.converter.getKey(), bitmap, sampleSize);
+			}
+			return bitmap;
+		}
 
-			} else {
+		/*
+		 * Enthält die Datei die gesamte Zoomstufe, wird nur der Ausschnitt
+		 * der Kachel dekodiert.
+		 */
+		if (tile.getFilename() != null
+				&& this.converter.getKey().getTileMap().isRegionDecoding()) {
+			bitmap = this.converter.processRegion(sampleSize);
+			LatencyInjector.latencyInjector().delay();
+			if (isCancelled() || bitmap == null) {
 				return null;
 			}
+			cache.put(this.converter.getKey(), bitmap, sampleSize);
+			return bitmap;
+		}
 
+		/*
+		 * Verweisen mehrere Kacheln auf dieselbe Datei, wurde diese
+		 * vielleicht schon für eine andere Kachel dekodiert. Dann wird dieses
+		 * Bitmap gemeinsam verwendet.
+		 */
+		bitmap = cache.findShared(this.converter.getKey(), sampleSize,
+				this.converter.calculateConfig());
+		if (bitmap != null) {
+			cache.put(this.converter.getKey(), bitmap, sampleSize);
+			return bitmap;
 		}
 
 		/*
-		 * Prfen, ob der Task bereits beendet wurde, wenn ja die Ausfhrung
-		 * dieser Methode abbrechen.
+		 * Die Kachel ist nicht dekodiert im Cache, vielleicht liegen aber
+		 * noch ihre komprimierten Daten im CompressedTileCache. Dann muss
+		 * nicht erneut von der Speicherkarte gelesen werden. Das gilt auch,
+		 * wenn eine andere Kachel derselben Datei bereits gelesen wurde. Ob
+		 * die Kachel dort liegt, vermerkt die TileMap, so muss der Cache für
+		 * nicht geladene Kacheln nicht gesperrt werden.
 		 */
-		if (!isCancelled()) {
+		CompressedTileCache compressedCache = CompressedTileCache
+				.compressedTileCache();
+		TileKey key = this.converter.getKey();
+		byte[] blob = null;
+		if (key.getTileMap().isLoaded(key.getX(), key.getY())) {
+			blob = compressedCache.getImage(key);
+		}
+		if (blob == null) {
+			blob = compressedCache.findImage(tile.getFilename());
+			if (blob != null) {
+				compressedCache.putImage(this.converter.getKey(), blob);
+			}
+		}
+
+		if (blob == null) {
 			/*
-			 * Jetzt ist der byte[] auf jeden Fall vorhanden, somit kann jetzt
-			 * anhand diesem das Bitmap erstellt werden.
+			 * Die Kachel ist in keinem Cache, das heißt der byte[] muss
+			 * zunächst noch aus dem PNG erzeugt werden und wird im
+			 * CompressedTileCache abgelegt.
 			 */
-			return this.converter.processBitmap(tile.getImage());
-		} else {
+			blob = this.converter.processByteArray(tile.getFilename());
+			if (blob != null) {
+				compressedCache.putImage(this.converter.getKey(), blob);
+			}
+
+			/*
+			 * Künstliche Verzögerung, damit das expliziete nacheinander
+			 * stattfindende Laden besser sichtbar wird bzw. unter Last
+			 * getestet werden kann. Standardmäßig ausgeschaltet und nur in
+			 * Debug-Builds wirksam, siehe LatencyInjector.
+			 */
+			LatencyInjector.latencyInjector().delay();
+		}
+
+		/*
+		 * Prüfen, ob der Task bereits beendet wurde oder das Lesen der Datei
+		 * fehlgeschlagen ist, wenn ja die Ausführung dieser Methode abbrechen.
+		 */
+		if (isCancelled() || blob == null) {
 			return null;
 		}
+
+		/*
+		 * Jetzt ist der byte[] vorhanden, somit kann jetzt anhand diesem das
+		 * Bitmap erstellt und im Cache abgelegt werden.
+		 */
+		bitmap = this.converter.processBitmap(blob, sampleSize);
+		if (bitmap != null) {
+			cache.put(this.converter.getKey(), bitmap, sampleSize);
+		}
+		return bitmap;
 	}
 
-	@Override
 	/**
 	 * Dieser Teil wird nach Abschluss der <code>doInBackground</code>-Methode 
-	 * ausgefhrt, hier wird das berechnete <code>Bitmap</code> im 
+	 * ausgeführt, hier wird das berechnete <code>Bitmap</code> im 
 	 * <code>TileView</code> gesetzt.
 	 * 
 	 * @param bitmap
 	 */
 	protected void onPostExecute(Bitmap bitmap) {
+		finished = true;
 		/*
-		 * Prfen, ob Bitmap wirklich gesetzt ist, es knnte ja bei
+		 * Prüfen, ob Bitmap wirklich gesetzt ist, es könnte ja bei
 		 * Hintergrund-Prozess zu Schwierigkeiten gekommen sein.
 		 */
-		if (bitmap != null) {
-			// Das Bitmap in den TileView laden.
-			this.converter.getTileView().setImageBitmap(bitmap);
+		if (bitmap != null
+				&& TileCache.tileCache().touch(this.converter.getKey()) == bitmap) {
+			/*
+			 * Das Bitmap in den TileView laden. Wurde die Kachel inzwischen
+			 * aus dem TileCache entfernt, liegt das Bitmap möglicherweise
+			 * schon im BitmapPool und darf nicht mehr angezeigt werden.
+			 */
+			this.converter.getTileLayer().showTile(this.converter.getKey(),
+					bitmap);
+
+			/*
+			 * Wurde die Kachel verkleinert dekodiert, wird sie jetzt mit
+			 * geringerer Priorität in voller Auflösung nachgeladen. Ob das
+			 * Bitmap verkleinert ist, vermerkt der TileCache, da Kacheln am
+			 * Rand eines Bilds (siehe TileRegionDecoder) auch in voller
+			 * Auflösung schmaler sein können.
+			 */
+			if (sampleSize > 1
+					&& !TileCache.tileCache().isSufficient(bitmap, 1)) {
+				this.converter.loadImage(LazyLoader.REFINE_PRIORITY
+						+ priority);
+			}
 		}
 		/*
 		 * Da der Task abgeschlossen ist, kann er aus der Liste im
@@ -146,11 +437,11 @@ public class BitmapWorkerTask extends AsyncTask<Tile, Void, Bitmap> {
 		BitmapConverter.removeTask(this);
 	}
 
-	@Override
 	/**
-	 * Dieser Teil wird ausgefhrt, wenn ein Task beendet wird.
+	 * Dieser Teil wird ausgeführt, wenn ein Task beendet wird.
 	 */
 	protected void onCancelled() {
+		finished = true;
 		/*
 		 * Da der Task abgeschlossen (abgebrochen) ist, kann er aus der Liste im
 		 * BitmapConverter entfernet werden.
@@ -0,0 +1,87 @@
+/**
+ * @(#)ByteBufferInputStream.java
+ * 1.0, 2013-03-04
+ */
+package de.hdm.hettich.studienarbeit.loading;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Der <code>ByteBufferInputStream</code> liest aus einem
+ * <code>ByteBuffer</code>, so kann eine Kachel aus einem
+ * <code>TileArchive</code> direkt mit <code>BitmapFactory.decodeStream</code>
+ * dekodiert werden, ohne sie vorher in einen <code>byte[]</code> zu kopieren.
+ *
+ * @author Stefan Hettich
+ *
+ * @version 1.0, 2013-03-04
+ *
+ */
+public class ByteBufferInputStream extends InputStream {
+
+	/**
+	 * Der Puffer, aus dem gelesen wird.
+	 */
+	private ByteBuffer buffer;
+
+	/**
+	 * Konstruktor, der einen neuen <code>ByteBufferInputStream</code> über
+	 * dem übergebenen Puffer erstellt. Gelesen wird ab dessen aktueller
+	 * Position.
+	 *
+	 * @param buffer
+	 */
+	public ByteBufferInputStream(ByteBuffer buffer) {
+		this.buffer = buffer;
+	}
+
+	@Override
+	public int read() {
+		if (!buffer.hasRemaining()) {
+			return -1;
+		}
+		return buffer.get() & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) {
+		if (len == 0) {
+			return 0;
+		}
+		if (!buffer.hasRemaining()) {
+			return -1;
+		}
+		int count = Math.min(len, buffer.remaining());
+		buffer.get(b, off, count);
+		return count;
+	}
+
+	@Override
+	public long skip(long n) {
+		int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+		buffer.position(buffer.position() + count);
+		return count;
+	}
+
+	@Override
+	public int available() {
+		return buffer.remaining();
+	}
+
+	@Override
+	public boolean markSupported() {
+		return true;
+	}
+
+	@Override
+	public synchronized void mark(int readlimit) {
+		buffer.mark();
+	}
+
+	@Override
+	public synchronized void reset() {
+		buffer.reset();
+	}
+
+}
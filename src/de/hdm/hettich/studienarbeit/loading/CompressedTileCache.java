@@ -0,0 +1,159 @@
+/**
+ * @(#)CompressedTileCache.java
+ * 1.0, 2013-03-04
+ */
+package de.hdm.hettich.studienarbeit.loading;
+
+import java.net.URI;
+
+/**
+ * Der <code>CompressedTileCache</code> ist die zweite Cache-Ebene hinter dem
+ * <code>TileCache</code>. Hier werden die komprimierten Daten (der
+ * <code>byte[]</code> des PNGs) der zuletzt geladenen Kacheln gehalten. Ein
+ * dekodiertes <code>Bitmap</code> ist etwa 20-mal größer als das PNG, bei
+ * gleichem Budget passen hier also deutlich mehr Kacheln hinein. Wird eine
+ * Kachel aus dem <code>TileCache</code> entfernt, kann sie aus diesen Daten
+ * erneut dekodiert werden, ohne die Speicherkarte zu lesen.
+ * <p>
+ * Der Cache hält die Daten direkt, ohne <code>Tile</code>-Objekte. Ob die
+ * Daten einer Kachel im Speicher liegen, wird zusätzlich im Bitset ihrer
+ * <code>TileMap</code> vermerkt (siehe
+ * <code>TileMap#isLoaded(int, int)</code>).
+ *
+ * @author Stefan Hettich
+ *
+ * @version 1.0, 2013-03-04
+ *
+ */
+public class CompressedTileCache extends AbstractTileCache<byte[]> {
+
+	/**
+	 * Standard-Budget des Caches: ein Sechzehntel des maximal verfügbaren
+	 * Speichers der Anwendung.
+	 */
+	public final static long DEFAULT_MAX_BYTES = Runtime.getRuntime()
+			.maxMemory() / 16;
+
+	/**
+	 * Instanz des <code>CompressedTileCache</code>s, es gibt einen Cache für
+	 * die gesamte Anwendung.
+	 */
+	private static CompressedTileCache compressedTileCache = null;
+
+	/**
+	 * Referenzzähler der komprimierten Daten, die sich mehrere Kacheln
+	 * derselben Datei teilen.
+	 */
+	private SharedSources<byte[]> sharedImages = new SharedSources<byte[]>();
+
+	/**
+	 * Konstruktor, der einen neuen <code>CompressedTileCache</code> mit dem
+	 * übergebenen Budget erstellt.
+	 *
+	 * @param maxBytes
+	 */
+	protected CompressedTileCache(long maxBytes) {
+		super(maxBytes);
+	}
+
+	/**
+	 * Gibt die Instanz des <code>CompressedTileCache</code>s zurück, existiert
+	 * noch keine, wird einer mit {@link #DEFAULT_MAX_BYTES} erstellt.
+	 *
+	 * @return CompressedTileCache der CompressedTileCache der Anwendung
+	 */
+	public static synchronized CompressedTileCache compressedTileCache() {
+		if (compressedTileCache == null) {
+			compressedTileCache = new CompressedTileCache(DEFAULT_MAX_BYTES);
+		}
+		return compressedTileCache;
+	}
+
+	/**
+	 * Gibt die komprimierten Daten einer Kachel zurück und markiert diese als
+	 * zuletzt verwendet.
+	 *
+	 * @param key
+	 * @return byte[] die Daten der Kachel oder null, wenn diese nicht im Cache
+	 *         liegt
+	 */
+	public byte[] getImage(TileKey key) {
+		return get(key);
+	}
+
+	/**
+	 * Legt die komprimierten Daten einer Kachel im Cache ab.
+	 *
+	 * @param key
+	 * @param image
+	 */
+	public void putImage(TileKey key, byte[] image) {
+		put(key, image);
+	}
+
+	/**
+	 * Gibt die komprimierten Daten der übergebenen Datei zurück, sofern sie
+	 * bereits für eine andere Kachel gelesen wurden.
+	 *
+	 * @param source
+	 * @return byte[] die Daten der Datei oder null
+	 */
+	public synchronized byte[] findImage(URI source) {
+		return source != null ? sharedImages.find(source) : null;
+	}
+
+	/**
+	 * Gibt die Datei zurück, aus der die übergebene Kachel geladen wird. Sie
+	 * wird beim Laden am <code>TileKey</code> vermerkt und hier nicht neu
+	 * berechnet.
+	 *
+	 * @param key
+	 * @return URI die Datei der Kachel oder null
+	 */
+	private static URI sourceOf(TileKey key) {
+		return key.getSource();
+	}
+
+	/**
+	 * Zählt die Daten einer Datei nur für die erste Kachel, die sie verwendet.
+	 */
+	@Override
+	protected int chargeEntry(TileKey key, byte[] image) {
+		return sharedImages.acquire(sourceOf(key), image) ? image.length : 0;
+	}
+
+	/**
+	 * Gibt die Daten einer Datei erst frei, wenn sie von keiner Kachel mehr
+	 * verwendet werden.
+	 */
+	@Override
+	protected int releaseEntry(TileKey key, byte[] image) {
+		return sharedImages.release(image) ? image.length : 0;
+	}
+
+	/**
+	 * Die Größe einer Kachel entspricht der Länge ihres <code>byte[]</code>.
+	 */
+	@Override
+	protected int calculateSize(byte[] image) {
+		return image.length;
+	}
+
+	/**
+	 * Vermerkt die Kachel als geladen in ihrer <code>TileMap</code>.
+	 */
+	@Override
+	protected void entryAdded(TileKey key, byte[] image) {
+		key.getTileMap().setLoaded(key.getX(), key.getY(), true);
+	}
+
+	/**
+	 * Vermerkt die Kachel als nicht mehr geladen in ihrer
+	 * <code>TileMap</code>.
+	 */
+	@Override
+	protected void entryRemoved(TileKey key, byte[] image) {
+		key.getTileMap().setLoaded(key.getX(), key.getY(), false);
+	}
+
+}
@@ -0,0 +1,219 @@
+/**
+ * @(#)LatencyInjector.java
+ * 1.0, 2013-03-04
+ */
+package de.hdm.hettich.studienarbeit.loading;
+
+import java.util.Random;
+
+import de.hdm.hettich.studienarbeit.BuildConfig;
+
+/**
+ * Der <code>LatencyInjector</code> verzögert das Laden einer Kachel künstlich,
+ * um langsame Speichermedien oder eine spätere Übertragung über das Netzwerk
+ * zu simulieren. So lässt sich das nacheinander stattfindende Laden der
+ * Kacheln beobachten und das Nachladeverhalten unter Last testen.
+ * <p>
+ * Die Verzögerung ist standardmäßig ausgeschaltet und wirkt ausschließlich in
+ * Debug-Builds, im Produktiveinsatz entsteht also keinerlei Wartezeit. Die
+ * Verzögerung pro Kachel setzt sich aus einer festen Grundverzögerung und
+ * einer Streuung zusammen, deren Verteilung einstellbar ist.
+ *
+ * @author Stefan Hettich
+ *
+ * @version 1.0, 2013-03-04
+ *
+ */
+public class LatencyInjector {
+
+	/**
+	 * Die möglichen Verteilungen der Streuung.
+	 */
+	public enum Distribution {
+		/**
+		 * Keine Streuung, jede Kachel wird genau um die Grundverzögerung
+		 * verzögert.
+		 */
+		CONSTANT,
+		/**
+		 * Gleichverteilte Streuung im Bereich +/- Streuung um die
+		 * Grundverzögerung.
+		 */
+		UNIFORM,
+		/**
+		 * Normalverteilte Streuung, die Streuung entspricht der
+		 * Standardabweichung.
+		 */
+		GAUSSIAN,
+		/**
+		 * Exponentialverteilter Zuschlag auf die Grundverzögerung, die
+		 * Streuung entspricht dem Mittelwert. Bildet einzelne "Ausreißer" ab,
+		 * wie sie bei Speicherkarten vorkommen.
+		 */
+		EXPONENTIAL
+	}
+
+	/**
+	 * Instanz des <code>LatencyInjector</code>s, die Einstellungen gelten für
+	 * die gesamte Anwendung.
+	 */
+	private static LatencyInjector latencyInjector = null;
+
+	/**
+	 * Gibt an, ob die Verzögerung aktiv ist.
+	 */
+	private volatile boolean enabled = false;
+
+	/**
+	 * Grundverzögerung pro Kachel in Millisekunden.
+	 */
+	private volatile long delayMillis = 500;
+
+	/**
+	 * Streuung der Verzögerung in Millisekunden.
+	 */
+	private volatile long jitterMillis = 0;
+
+	/**
+	 * Verteilung der Streuung.
+	 */
+	private volatile Distribution distribution = Distribution.CONSTANT;
+
+	/**
+	 * Zufallsgenerator für die Streuung.
+	 */
+	private Random random = new Random();
+
+	/**
+	 * Konstruktor, der einen neuen, deaktivierten
+	 * <code>LatencyInjector</code> erstellt.
+	 */
+	protected LatencyInjector() {
+	}
+
+	/**
+	 * Gibt die Instanz des <code>LatencyInjector</code>s zurück.
+	 *
+	 * @return LatencyInjector der LatencyInjector der Anwendung
+	 */
+	public static synchronized LatencyInjector latencyInjector() {
+		if (latencyInjector == null) {
+			latencyInjector = new LatencyInjector();
+		}
+		return latencyInjector;
+	}
+
+	/**
+	 * Gibt zurück, ob die Verzögerung tatsächlich wirkt, dazu muss sie
+	 * eingeschaltet sein und es muss sich um einen Debug-Build handeln.
+	 *
+	 * @return the enabled
+	 */
+	public boolean isEnabled() {
+		return enabled && BuildConfig.DEBUG;
+	}
+
+	/**
+	 * @param enabled
+	 *            the enabled to set
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * @return the delayMillis
+	 */
+	public long getDelayMillis() {
+		return delayMillis;
+	}
+
+	/**
+	 * @param delayMillis
+	 *            the delayMillis to set
+	 */
+	public void setDelayMillis(long delayMillis) {
+		this.delayMillis = delayMillis;
+	}
+
+	/**
+	 * @return the jitterMillis
+	 */
+	public long getJitterMillis() {
+		return jitterMillis;
+	}
+
+	/**
+	 * @param jitterMillis
+	 *            the jitterMillis to set
+	 */
+	public void setJitterMillis(long jitterMillis) {
+		this.jitterMillis = jitterMillis;
+	}
+
+	/**
+	 * @return the distribution
+	 */
+	public Distribution getDistribution() {
+		return distribution;
+	}
+
+	/**
+	 * @param distribution
+	 *            the distribution to set
+	 */
+	public void setDistribution(Distribution distribution) {
+		this.distribution = distribution;
+	}
+
+	/**
+	 * Berechnet die Verzögerung für eine einzelne Kachel anhand der
+	 * Grundverzögerung, der Streuung und deren Verteilung.
+	 *
+	 * @return long die Verzögerung in Millisekunden, niemals negativ
+	 */
+	public long nextDelay() {
+		double delay = delayMillis;
+
+		synchronized (random) {
+			switch (distribution) {
+			case UNIFORM:
+				delay += (random.nextDouble() * 2 - 1) * jitterMillis;
+				break;
+			case GAUSSIAN:
+				delay += random.nextGaussian() * jitterMillis;
+				break;
+			case EXPONENTIAL:
+				delay += -Math.log(1 - random.nextDouble()) * jitterMillis;
+				break;
+			default:
+				break;
+			}
+		}
+
+		return Math.max(0, Math.round(delay));
+	}
+
+	/**
+	 * Hält den aufrufenden Lade-Thread für die berechnete Verzögerung an,
+	 * sofern diese aktiv ist. Wird der Thread währenddessen unterbrochen (z.B.
+	 * weil der Task beendet wurde), endet die Verzögerung sofort.
+	 */
+	public void delay() {
+		// Ohne aktive Verzögerung passiert hier nichts.
+		if (!isEnabled()) {
+			return;
+		}
+
+		try {
+			Thread.sleep(nextDelay());
+		} catch (InterruptedException e) {
+			/*
+			 * Die Unterbrechung wird wieder gesetzt, damit der Task sie
+			 * ebenfalls bemerkt.
+			 */
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -4,23 +4,28 @@
  */
 package de.hdm.hettich.studienarbeit.loading;
 
-import java.util.ArrayList;
-
+import android.graphics.Bitmap;
 import android.util.Log;
+import android.util.SparseArray;
 
+import de.hdm.hettich.studienarbeit.bo.TileMap;
 import de.hdm.hettich.studienarbeit.bo.Viewport;
 import de.hdm.hettich.studienarbeit.service.TileGarbageService;
 import de.hdm.hettich.studienarbeit.utile.Coordinate;
 import de.hdm.hettich.studienarbeit.utile.Tools;
-import de.hdm.hettich.studienarbeit.view.TileMapView;
-import de.hdm.hettich.studienarbeit.view.TileView;
+import de.hdm.hettich.studienarbeit.view.TileLayer;
 
 /**
- * Die Klasse <code>LazyLoader</code> bernimmt den kompletten Nachlade-Prozess,
+ * Die Klasse <code>LazyLoader</code> übernimmt den kompletten Nachlade-Prozess,
  * hier werden die zuladenden <code>Tile</code>s identifiziert und das Laden
- * dieser angestoen. Der Ladeprozess ist in eine extra <code>Thread</code>
- * ausgelagert, sodass dieser jederzeit (bspw. bei einer erneuten Verschiebung
- * des Plans) beendet werden kann.
+ * dieser angestoßen.
+ * <p>
+ * Der <code>LazyLoader</code> merkt sich, welche Kacheln bereits angezeigt
+ * werden oder gerade geladen werden. Bei einer Verschiebung des Plans wird
+ * nur der Unterschied zum vorherigen sichtbaren Bereich bearbeitet: Nur die
+ * neu sichtbar gewordenen Kacheln werden geladen und nur die Ladevorgänge der
+ * nicht mehr sichtbaren Kacheln werden beendet. Das eigentliche Laden
+ * übernimmt der <code>TileLoadingExecutor</code> im Hintergrund.
  * 
  * @author Stefan Hettich
  * 
@@ -30,83 +35,217 @@ import de.hdm.hettich.studienarbeit.view.TileView;
 public class LazyLoader {
 
 	/**
-	 * Der <code>TileMapView</code>, in dem die <code>TileView</code>s geladen
-	 * werden sollen.
+	 * Die Ebene (z.B. der <code>TileMapView</code>), in der die Kacheln
+	 * geladen werden sollen.
 	 */
-	private TileMapView tileMapView;
+	private TileLayer tileLayer;
 
 	/**
-	 * Der Viewport stellt die aktuelle sichtbare Flche auf dem Bildschirm dar,
+	 * Der Viewport stellt die aktuelle sichtbare Fläche auf dem Bildschirm dar,
 	 * er wird bei Verschiebung des Gesamtplans immer mit verschoben.
 	 */
 	private Viewport viewport;
 
 	/**
-	 * Thread in den der Ladevorgang ausgefhrt wird, dies muss so geschehen, da
-	 * es mglich sein soll diesen Vorgang jederzeit (z.B. beim erneuten
-	 * Verschieben der Anzeige) zu stoppen.
+	 * Die Kacheln, die aktuell angezeigt werden oder gerade geladen werden.
+	 * Der Schlüssel ist die Position der Kachel im eindimensionalen Array der
+	 * <code>TileView</code>s (siehe
+	 * {@link Tools#convertMatrixPos2Int(Coordinate, Coordinate)}), der Wert
+	 * der zugehörige <code>BitmapConverter</code>. Die
+	 * <code>SparseArray</code> kommt ohne <code>Integer</code>-Objekte für
+	 * die Schlüssel aus.
+	 */
+	private SparseArray<BitmapConverter> requestedTiles = new SparseArray<BitmapConverter>();
+
+	/**
+	 * Durchläuft die Kacheln des zu ladenden Bereichs von der Mitte nach
+	 * außen, wird bei jedem Ladevorgang wiederverwendet.
+	 */
+	private TileSpiral spiral = new TileSpiral();
+
+	/**
+	 * Priorität, die auf die Priorität jeder Kachel des Vorlade-Rands
+	 * aufgeschlagen wird, sodass diese immer nach den sichtbaren Kacheln
+	 * geladen werden.
+	 */
+	public final static int PREFETCH_PRIORITY = 1 << 20;
+
+	/**
+	 * Priorität, die auf die Priorität einer verkleinert dekodierten Kachel
+	 * aufgeschlagen wird, wenn diese in voller Auflösung nachgeladen wird.
+	 * Dies geschieht nach allen sichtbaren, aber vor den vorzuladenden
+	 * Kacheln.
+	 */
+	public final static int REFINE_PRIORITY = 1 << 19;
+
+	/**
+	 * Priorität, die auf die Priorität einer sichtbaren Kachel aufgeschlagen
+	 * wird, für die bereits ein Platzhalter aus einer gröberen Zoomstufe
+	 * angezeigt wird. Leere Kacheln werden so zuerst geladen, danach die
+	 * Platzhalter von der Mitte nach außen ersetzt.
+	 */
+	public final static int PLACEHOLDER_PRIORITY = 1 << 18;
+
+	/**
+	 * Gibt an, ob der nächste Ladevorgang zu einem Zoomstufen-Wechsel gehört.
+	 * Dann werden die sichtbaren Kacheln zunächst verkleinert dekodiert
+	 * (siehe {@link TileMap#calculateTransitionSampleSize()}).
+	 */
+	private boolean transition = false;
+
+	/**
+	 * Breite des Vorlade-Rands um den sichtbaren Bereich in Kacheln.
+	 */
+	private int prefetchWidth = 1;
+
+	/**
+	 * Zeitspanne in Millisekunden, für die die Bewegung des Plans
+	 * vorausberechnet wird, um den Vorlade-Rand in Bewegungsrichtung zu
+	 * erweitern.
+	 */
+	private int lookaheadMillis = 400;
+
+	/**
+	 * Maximale Anzahl an Kacheln, um die der Vorlade-Rand in
+	 * Bewegungsrichtung erweitert wird.
+	 */
+	private int maxLookaheadTiles = 3;
+
+	/**
+	 * Aktuelle Geschwindigkeit des Viewports in x-Richtung in Pixel pro
+	 * Millisekunde.
+	 */
+	private float velocityX = 0;
+
+	/**
+	 * Aktuelle Geschwindigkeit des Viewports in y-Richtung in Pixel pro
+	 * Millisekunde.
+	 */
+	private float velocityY = 0;
+
+	/**
+	 * Gibt an, ob bereits ein Bereich geladen wurde, mit dem der nächste
+	 * Ladevorgang verglichen werden kann.
+	 */
+	private boolean areaLoaded = false;
+
+	/**
+	 * Linke, obere Kachel des zuletzt geladenen Bereichs.
+	 */
+	private Coordinate firstTile = new Coordinate();
+
+	/**
+	 * Rechte, untere Kachel des zuletzt geladenen Bereichs.
+	 */
+	private Coordinate lastTile = new Coordinate();
+
+	/**
+	 * Linke, obere Kachel des zuletzt sichtbaren Bereichs.
+	 */
+	private Coordinate firstVisibleTile = new Coordinate();
+
+	/**
+	 * Rechte, untere Kachel des zuletzt sichtbaren Bereichs.
+	 */
+	private Coordinate lastVisibleTile = new Coordinate();
+
+	/*
+	 * Bereiche und Kacheln, die bei jedem Ladevorgang neu berechnet werden.
+	 * Sie werden wiederverwendet, damit beim Laden keine Objekte entstehen.
+	 */
+	private Coordinate visibleFirst = new Coordinate();
+	private Coordinate visibleLast = new Coordinate();
+	private Coordinate first = new Coordinate();
+	private Coordinate last = new Coordinate();
+	private Coordinate center = new Coordinate();
+	private Coordinate centerTile = new Coordinate();
+	private Coordinate predictedCenterTile = new Coordinate();
+
+	/**
+	 * Schlüssel für die Abfragen im <code>TileCache</code> und in der Ebene,
+	 * wird für jede Kachel wiederverwendet (siehe
+	 * {@link TileKey#set(TileMap, int, int)}). Nur für neu zu ladende
+	 * Kacheln wird ein eigener <code>TileKey</code> erstellt.
 	 */
-	private static Thread loadingThread;
+	private TileKey lookupKey = new TileKey();
+
+	/**
+	 * Gibt an, ob jeder Ladevorgang mit dem Zustand der Caches protokolliert
+	 * wird. Standardmäßig ausgeschaltet, da dafür bei jedem Ladevorgang
+	 * Strings erstellt werden.
+	 */
+	public final static boolean LOG_LOADING = false;
+
+	/**
+	 * Anzahl der aus dem <code>TileCache</code> entfernten Kacheln beim
+	 * letzten Ladevorgang (siehe {@link TileCache#getEvictionCount()}).
+	 */
+	private int evictionCount;
 
 	/**
 	 * Instanz des <code>LazyLoader</code>s zwischenspeichern, um sicher zu
 	 * stellen, das dieser nur genau einmal initialisiert ist. Durch den
-	 * Bezeichner <code>static</code> ist diese Variable fr jede andere
+	 * Bezeichner <code>static</code> ist diese Variable für jede andere
 	 * eventuelle Instanz dieser Klasse gleich gesetzt.
 	 */
 	private static LazyLoader lazyLoader = null;
 
 	/**
 	 * Konstruktor, der eine neue Instanz des <code>LazyLoader</code>s erstellt,
-	 * dabei wird der zu ladende <code>TileMapView</code>, sowie der aktuelle
-	 * <code>Viewport</code> bergeben.
+	 * dabei wird die zu ladende <code>TileLayer</code>, sowie der aktuelle
+	 * <code>Viewport</code> übergeben.
 	 * 
-	 * @param tileMapView
+	 * @param tileLayer
 	 * @param viewport
 	 */
-	protected LazyLoader(TileMapView tileMapView, Viewport viewport) {
-		this.tileMapView = tileMapView;
+	protected LazyLoader(TileLayer tileLayer, Viewport viewport) {
+		this.tileLayer = tileLayer;
 		this.viewport = viewport;
 	}
 
 	/**
 	 * Statische Methode, die aufgerufen werden kann, um eine Instanz des
-	 * <code>LazyLoader</code>s zurck zubekommen, dabei wird entweder die
-	 * bereits vorhandene Instanz zurckgegeben, oder wenn noch keine exisitiert
+	 * <code>LazyLoader</code>s zurück zubekommen, dabei wird entweder die
+	 * bereits vorhandene Instanz zurückgegeben, oder wenn noch keine exisitiert
 	 * eine neue angelegt und diese in der Klassenvariable
 	 * {@link LazyLoader#lazyLoader} abgelegt.
 	 * 
-	 * @param tileMapView
+	 * @param tileLayer
 	 * @param viewport
 	 * @return LazyLoader entweder den bereits vorhandenen, oder einen neuen
 	 *         LazyLoader
 	 */
-	public static LazyLoader lazyLoader(TileMapView tileMapView,
+	public static LazyLoader lazyLoader(TileLayer tileLayer,
 			Viewport viewport) {
 		if (lazyLoader == null) {
-			lazyLoader = new LazyLoader(tileMapView, viewport);
+			lazyLoader = new LazyLoader(tileLayer, viewport);
 		}
-		if (!lazyLoader.getTileMapView().equals(tileMapView)
+		if (!lazyLoader.getTileLayer().equals(tileLayer)
 				|| !lazyLoader.getViewport().equals(viewport)) {
 			Log.e("LazyLoader", "Neuer LazyLoader erstellt.");
-			lazyLoader = new LazyLoader(tileMapView, viewport);
+			/*
+			 * Die Ladevorgänge des alten LazyLoaders werden nicht mehr
+			 * benötigt.
+			 */
+			lazyLoader.cancel();
+			lazyLoader = new LazyLoader(tileLayer, viewport);
 		}
 		return lazyLoader;
 	}
 
 	/**
-	 * @return the tileMapView
+	 * @return the tileLayer
 	 */
-	public TileMapView getTileMapView() {
-		return tileMapView;
+	public TileLayer getTileLayer() {
+		return tileLayer;
 	}
 
 	/**
-	 * @param tileMapView
-	 *            the tileMapView to set
+	 * @param tileLayer
+	 *            the tileLayer to set
 	 */
-	public void setTileMapView(TileMapView tileMapView) {
-		this.tileMapView = tileMapView;
+	public void setTileLayer(TileLayer tileLayer) {
+		this.tileLayer = tileLayer;
 	}
 
 	/**
@@ -125,305 +264,487 @@ public class LazyLoader {
 	}
 
 	/**
-	 * Initialisiert den Ladevorgang fr den bergebenen
-	 * <code>TileMapView</code>. Es werden die zu ladenden <code>Tile</code>s
-	 * ermittelt und anschlieend deren Laden angestoen.
+	 * @return the transition
 	 */
-	public void load() {
-
-		/*
-		 * Wenn bereits ein Thread luft, oder vorhanden ist, dann ist
-		 * loadingTask nicht null, deshalb muss der laufende Task zunchst
-		 * unterbrochen werden und dann null gesetzt werden. Das expliziete
-		 * Stoppen eines Thread ist in Android nicht mglich. Zudem mssen alle
-		 * bereits gestarteten asnychronen Lade-Tasks gestoppt werden.
-		 */
-		if (loadingThread != null) {
-			// "Stoppen" des Threads.
-			loadingThread.interrupt();
-			// "Lschen" des Threads.
-			loadingThread = null;
-			// Beenden des AsyncTasks.
-			BitmapConverter.cancelTasks();
-		}
-
-		// Erstellen eines neuen Threads.
-		loadingThread = new Thread() {
+	public boolean isTransition() {
+		return transition;
+	}
 
-			@Override
-			public void run() {
-				// Dimensionen der TileMap (des Plans) abrufen.
-				Coordinate dimension = tileMapView.getTileMap().getDimension();
+	/**
+	 * @param transition
+	 *            the transition to set
+	 */
+	public void setTransition(boolean transition) {
+		this.transition = transition;
+	}
 
-				// Gre der einzelnen Tiles der Ebene abrufen.
-				Coordinate tileSize = tileMapView.getTileMap().getTileSize();
+	/**
+	 * @return the prefetchWidth
+	 */
+	public int getPrefetchWidth() {
+		return prefetchWidth;
+	}
 
-				// Bildschirm-Mitte in Pixel abrufen.
-				Coordinate center = viewport.calculateCenter(tileMapView
-						.getTileMap().getSize());
+	/**
+	 * @param prefetchWidth
+	 *            the prefetchWidth to set
+	 */
+	public void setPrefetchWidth(int prefetchWidth) {
+		this.prefetchWidth = prefetchWidth;
+	}
 
-				/*
-				 * Berechnung der Anzahl der Level, die geladen werden mssen,
-				 * damit der Bildschirm komplett gefllt ist.
-				 */
-				int loadingLevel = calculateLoadingLevel(tileSize);
+	/**
+	 * @return the lookaheadMillis
+	 */
+	public int getLookaheadMillis() {
+		return lookaheadMillis;
+	}
 
-				/*
-				 * Mittlere Kachel anhand der Bildschirm-Mitte und der
-				 * Kachel-Gre berechen.
-				 */
-				Coordinate centerTile = calculateCenterTile(center, tileSize);
-
-				// Alle Nachbarn der Reihenfolge nach abarbeiten.
-				for (Coordinate tilePos : calculateNeighbours(centerTile,
-						dimension, loadingLevel)) {
-					if (!loadingThread.isInterrupted()) {
-						/*
-						 * Neuer TileGarbageService wird instanziert und bei
-						 * Bedarf werden Tiles vergessen, damit Platz fr das
-						 * Laden neuer Tiles ist.
-						 */
-						new TileGarbageService().cleanIfNecessary(tileMapView,
-								tilePos);
-
-						/*
-						 * Den zugehrigen TileView ausfindig machen (siehe auch
-						 * convertMatrixPos2Index) und den Ladeprozess an dieser
-						 * Stelle anstoen.
-						 */
-						TileView tileView = (TileView) tileMapView
-								.getChildAt(Tools.convertMatrixPos2Int(tilePos,
-										dimension));
-
-						/*
-						 * Diesen TileView laden. Dazu wird ein neuer
-						 * BitmapConverter instanziert und diesem den zu
-						 * ladenden TileView als Parameter bergeben.
-						 */
-						BitmapConverter converter = new BitmapConverter(
-								tileView);
-
-						// Start des Ladevorgangs.
-						converter.loadImage();
-					} else {
-						BitmapConverter.cancelTasks();
-					}
-				}
+	/**
+	 * @param lookaheadMillis
+	 *            the lookaheadMillis to set
+	 */
+	public void setLookaheadMillis(int lookaheadMillis) {
+		this.lookaheadMillis = lookaheadMillis;
+	}
 
-				Log.e("LazyLoader", "LazyLoader ist fertig!");
-			}
-		};
+	/**
+	 * @return the maxLookaheadTiles
+	 */
+	public int getMaxLookaheadTiles() {
+		return maxLookaheadTiles;
+	}
 
-		// Starten des erstellten Threads.
-		loadingThread.start();
+	/**
+	 * @param maxLookaheadTiles
+	 *            the maxLookaheadTiles to set
+	 */
+	public void setMaxLookaheadTiles(int maxLookaheadTiles) {
+		this.maxLookaheadTiles = maxLookaheadTiles;
 	}
 
 	/**
-	 * Gibt die Koordinaten der mittleren Kachel zurck.
+	 * Setzt die aktuelle Geschwindigkeit des <code>Viewport</code>s, diese
+	 * wird für die Erweiterung des Vorlade-Rands in Bewegungsrichtung
+	 * verwendet.
 	 * 
-	 * @param center
-	 * @param tileSize
-	 * @return Coordinate die Position der mittleren Kachel
+	 * @param velocityX
+	 *            Geschwindigkeit in x-Richtung in Pixel pro Millisekunde
+	 * @param velocityY
+	 *            Geschwindigkeit in y-Richtung in Pixel pro Millisekunde
 	 */
-	public Coordinate calculateCenterTile(Coordinate center, Coordinate tileSize) {
-		return new Coordinate(center.getX() / tileSize.getX(), center.getY()
-				/ tileSize.getY());
+	public void setVelocity(float velocityX, float velocityY) {
+		this.velocityX = velocityX;
+		this.velocityY = velocityY;
 	}
 
 	/**
-	 * Gibt die Anzahl der Level zurck, die geladen werden mssen, damit das
-	 * komplette Display gefllt ist.
-	 * 
-	 * @param tileSize
-	 * @return int das LoadingLevel bis zu dem geladen werden muss
+	 * Initialisiert den Ladevorgang für den übergebenen
+	 * <code>TileLayer</code>. Es wird der aktuell zu ladende Bereich
+	 * ermittelt, dieser besteht aus dem sichtbaren Bereich und einem
+	 * Vorlade-Rand (siehe {@link #calculatePrefetchArea(Coordinate, Coordinate,
+	 * Coordinate, int, int, Coordinate, Coordinate)}), und mit dem zuletzt geladenen Bereich
+	 * verglichen. Kacheln, die den Bereich verlassen haben, werden nicht mehr
+	 * geladen, Kacheln die neu hinzugekommen sind, werden geladen. Haben sich
+	 * weder der Bereich noch der sichtbare Bereich verändert (z.B. bei einer
+	 * Verschiebung um weniger als eine Kachel) und wurde seitdem keine Kachel aus dem <code>TileCache</code>
+	 * entfernt, passiert nichts. Sonst werden die entfernten Kacheln des
+	 * Bereichs erneut geladen.
+	 * <p>
+	 * Sichtbare Kacheln werden immer vor den Kacheln des Vorlade-Rands
+	 * geladen. Außer für neu zu ladende Kacheln werden dabei keine Objekte
+	 * erstellt, die Bereiche und der <code>TileKey</code> für die Abfragen
+	 * werden wiederverwendet.
 	 */
-	public int calculateLoadingLevel(Coordinate tileSize) {
-		int viewportX = this.viewport.getSize().getX();
-		int viewportY = this.viewport.getSize().getY();
+	public void load() {
+		/*
+		 * Zunächst die Ebene an den sichtbaren Bereich anpassen, bereits
+		 * geladene Kacheln werden dabei sofort angezeigt.
+		 */
+		tileLayer.bindViewport(viewport);
 
-		double tempLoadingLevel = 0;
+		// Dimensionen der TileMap (des Plans) abrufen.
+		TileMap tileMap = tileLayer.getTileMap();
+		int columns = tileMap.getColumns();
+		int rows = tileMap.getRows();
+
+		// Größe der einzelnen Tiles der Ebene abrufen.
+		Coordinate tileSize = tileMap.getTileSize();
+
+		// Sichtbaren Bereich in Kacheln berechnen.
+		calculateFirstVisibleTile(tileSize, visibleFirst);
+		calculateLastVisibleTile(tileSize, columns, rows, visibleLast);
+
+		// Zu ladenden Bereich inklusive Vorlade-Rand berechnen.
+		calculatePrefetchArea(visibleFirst, visibleLast, tileSize, columns,
+				rows, first, last);
 
 		/*
-		 * Prfen, welche Ausrichtung der Viewport hat, das heit welche Seite
-		 * die Grere ist. Anhand dieser wird das Lade-Level berechnet.
+		 * Prüfen, ob sich der zu ladende Bereich seit dem letzten Aufruf
+		 * verändert hat, wenn nicht muss auch nichts geladen werden. Auch der
+		 * sichtbare Bereich wird verglichen, da sich dieser innerhalb eines
+		 * unveränderten Bereichs verschieben kann (z.B. am Rand des Plans).
+		 * Zum Vorladen eingereihte Kacheln, die dabei sichtbar werden, müssen
+		 * mit höherer Priorität neu eingereiht werden. Wurden
+		 * zwischenzeitlich Kacheln aus dem TileCache entfernt (z.B. durch den
+		 * TileGarbageService oder den MemoryGovernor), können auch Kacheln im
+		 * Bereich betroffen sein, dann wird der Bereich erneut geprüft.
 		 */
-		if (viewportX > viewportY) {
-			tempLoadingLevel = (viewportX / 2) / tileSize.getX();
-		} else {
-			tempLoadingLevel = (viewportY / 2) / tileSize.getY();
+		TileCache cache = TileCache.tileCache();
+		int evictions = cache.getEvictionCount();
+		if (areaLoaded && firstTile.equals(first) && lastTile.equals(last)
+				&& firstVisibleTile.equals(visibleFirst)
+				&& lastVisibleTile.equals(visibleLast)
+				&& evictionCount == evictions) {
+			return;
 		}
+		areaLoaded = true;
+		firstTile.set(first.getX(), first.getY());
+		lastTile.set(last.getX(), last.getY());
+		firstVisibleTile.set(visibleFirst.getX(), visibleFirst.getY());
+		lastVisibleTile.set(visibleLast.getX(), visibleLast.getY());
+		evictionCount = evictions;
 
-		return (int) Math.floor(tempLoadingLevel);
-	}
+		/*
+		 * Alle Kacheln, die den Bereich verlassen haben, werden nicht mehr
+		 * benötigt. Noch laufende Ladevorgänge werden beendet.
+		 */
+		for (int i = requestedTiles.size() - 1; i >= 0; i--) {
+			int x = requestedTiles.keyAt(i) / rows;
+			int y = requestedTiles.keyAt(i) % rows;
+			if (!isInArea(x, y, first, last)) {
+				requestedTiles.valueAt(i).cancel();
+				requestedTiles.removeAt(i);
+			}
+		}
 
-	/**
-	 * Gibt die Koordinaten der Nachbarn der bergebenen mittleren
-	 * <code>Tile</code> auf dem EINEN bergebenen Level zurck. Mit Hilfe der
-	 * Dimensionen der <code>TileMap</code> wird abgefangen, wenn ein
-	 * potentieller Nachbar auerhalb des Plans liegen wrde.
-	 * 
-	 * @param level
-	 * @return ArrayList<Coordinate> die Nachbarn auf einem bestimmten Level
-	 */
-	public ArrayList<Coordinate> calculateNeighboursOfLevel(
-			Coordinate centerTile, Coordinate dimension, int level) {
-		// Ergebnis ArrayList initialisieren.
-		ArrayList<Coordinate> neighbours = new ArrayList<Coordinate>();
+		// Bildschirm-Mitte in Pixel abrufen.
+		viewport.calculateCenter(columns * tileSize.getX(),
+				rows * tileSize.getY(), center);
 
 		/*
-		 * Start-Werte initialieren. Die Werte sind relative Werte zur mittleren
-		 * Kachel (0, 0). Es wird mit der rechten, oberen Ecke (level, -level)
-		 * begonnen, von dort wird zur rechten, unteren Ecke (level, level)
-		 * gegangen. Von dort weiter zur linken, unteren Ecke (-level, level),
-		 * dann weiter zur linken, oberen Ecke (-level, -level) und von dort
-		 * wieder zum Start. Die Startecke wird natrlich nur genau einmal
-		 * hinzugefgt
+		 * Mittlere Kachel anhand der Bildschirm-Mitte und der Kachel-Größe
+		 * berechen.
 		 */
-		int x = level;
-		int y = -level;
+		calculateCenterTile(center, tileSize, centerTile);
 
 		/*
-		 * Die Koordinate, dienen zur Zwischenberechnung der absoulten
-		 * Koordinaten. Diese Koordinaten mssen ja nochmals geprft werden, ob
-		 * sie wirklich im Plan liegen.
+		 * Die voraussichtliche mittlere Kachel, wenn sich der Plan mit der
+		 * aktuellen Geschwindigkeit weiterbewegt. Die Kacheln des
+		 * Vorlade-Rands werden nach dem Abstand zu dieser Kachel geladen.
 		 */
-		Coordinate tempCoordinate;
+		predictedCenterTile.set(
+				centerTile.getX()
+						+ calculateLookaheadTiles(velocityX, tileSize.getX()),
+				centerTile.getY()
+						+ calculateLookaheadTiles(velocityY, tileSize.getY()));
 
 		/*
-		 * Nun sind die Werte:
-		 * 
-		 * x = level
-		 * 
-		 * y = -level
-		 * 
-		 * Von der rechten, oberen Ecke noch unten zur rechten, unteren Ecke
-		 * arbeiten.
+		 * Berechnung der Anzahl der Level, die durchlaufen werden müssen,
+		 * damit der zu ladende Bereich komplett abgedeckt ist.
 		 */
-		for (; y < level; y++) {
-			tempCoordinate = new Coordinate(x + centerTile.getX(), y
-					+ centerTile.getY());
-			// Prfen, ob Koordinate im Plan liegt, nur dann hinzufgen.
-			if (checkCoordinate(tempCoordinate, dimension)) {
-				neighbours.add(new Coordinate(tempCoordinate.getX(),
-						tempCoordinate.getY()));
-			}
-		}
+		int loadingLevel = Math.max(
+				Math.max(centerTile.getX() - first.getX(), last.getX()
+						- centerTile.getX()),
+				Math.max(centerTile.getY() - first.getY(), last.getY()
+						- centerTile.getY()));
 
 		/*
-		 * Nun sind die Werte:
-		 * 
-		 * x = level
-		 * 
-		 * y = level
-		 * 
-		 * Von der rechten, unteren Ecke nach links zur linken, unteren Ecke
-		 * arbeiten.
+		 * Alle Nachbarn der Reihenfolge nach abarbeiten, dadurch werden die
+		 * neuen Kacheln von der Mitte nach außen geladen. Die TileSpiral
+		 * liefert dabei nur Kacheln im zu ladenden Bereich und erzeugt keine
+		 * Objekte.
 		 */
-		for (; x > -level; x--) {
-			tempCoordinate = new Coordinate(x + centerTile.getX(), y
-					+ centerTile.getY());
-			// Prfen, ob Koordinate im Plan liegt, nur dann hinzufgen.
-			if (checkCoordinate(tempCoordinate, dimension)) {
-				neighbours.add(new Coordinate(tempCoordinate.getX(),
-						tempCoordinate.getY()));
+		int newTiles = 0;
+		spiral.reset(centerTile.getX(), centerTile.getY(), first, last,
+				loadingLevel, rows);
+		while (spiral.next()) {
+			int x = spiral.getX();
+			int y = spiral.getY();
+
+			/*
+			 * Priorität der Kachel berechnen. Sichtbare Kacheln werden nach
+			 * dem Abstand zur mittleren Kachel geladen, Kacheln des
+			 * Vorlade-Rands erst danach und zwar nach dem Abstand zur
+			 * voraussichtlichen mittleren Kachel.
+			 */
+			int priority;
+			int sampleSize = 1;
+			if (isInArea(x, y, visibleFirst, visibleLast)) {
+				priority = calculatePriority(x, y, centerTile);
+				/*
+				 * Während eines Zoomstufen-Wechsels werden die sichtbaren
+				 * Kacheln zunächst verkleinert dekodiert.
+				 */
+				if (transition) {
+					sampleSize = tileMap.calculateTransitionSampleSize();
+				}
+			} else {
+				priority = PREFETCH_PRIORITY
+						+ calculatePriority(x, y, predictedCenterTile);
 			}
-		}
 
-		/*
-		 * Nun sind die Werte:
-		 * 
-		 * x = -level
-		 * 
-		 * y = level
-		 * 
-		 * Von der linken, unteren Ecke nach oben zur linken, oberen Ecke
-		 * arbeiten.
-		 */
-		for (; y > -level; y--) {
-			tempCoordinate = new Coordinate(x + centerTile.getX(), y
-					+ centerTile.getY());
-			// Prfen, ob Koordinate im Plan liegt, nur dann hinzufgen.
-			if (checkCoordinate(tempCoordinate, dimension)) {
-				neighbours.add(new Coordinate(tempCoordinate.getX(),
-						tempCoordinate.getY()));
+			/*
+			 * Prüfen, ob die Kachel bereits angezeigt oder geladen wird. Eine
+			 * Kachel, deren Ladevorgang abgeschlossen ist, die aber trotzdem
+			 * nicht im TileCache liegt (z.B. weil sie zwischenzeitlich
+			 * entladen wurde), muss erneut geladen werden. Für die Abfragen
+			 * wird der TileKey wiederverwendet.
+			 */
+			int index = spiral.getIndex();
+			BitmapConverter requested = requestedTiles.get(index);
+			TileKey key = lookupKey.set(tileMap, x, y);
+			Bitmap cached;
+			if (tileLayer.isShowing(key)) {
+				/*
+				 * Angezeigte Kacheln werden im TileCache als zuletzt verwendet
+				 * markiert, damit zuerst unsichtbare Kacheln entfernt werden.
+				 */
+				cached = cache.touch(key);
+			} else {
+				/*
+				 * Liegt die Kachel noch im TileCache, kann sie sofort
+				 * angezeigt werden, ohne sie erneut zu laden. Kacheln des
+				 * Vorlade-Rands werden dabei nicht angezeigt, sondern nur im
+				 * TileCache gehalten.
+				 */
+				cached = cache.get(key);
+				if (cached != null) {
+					tileLayer.showTile(key, cached);
+				}
 			}
+
+			if (cached == null && priority < PREFETCH_PRIORITY
+					&& tileLayer.isShowingPlaceholder(key)) {
+				priority += PLACEHOLDER_PRIORITY;
+			}
+
+			if (cached != null) {
+				/*
+				 * Eine geladene Kachel muss nur noch geladen werden, wenn sie
+				 * verkleinert dekodiert wurde und ihr Nachladen in voller
+				 * Auflösung (z.B. durch Verlassen des Bereichs) abgebrochen
+				 * wurde.
+				 */
+				if (transition || cache.isSufficient(cached, 1)
+						|| (requested != null && requested.isLoading())) {
+					continue;
+				}
+				priority = REFINE_PRIORITY + priority % REFINE_PRIORITY;
+				sampleSize = 1;
+			}
+
+			if (requested != null && requested.isLoading()) {
+				/*
+				 * Eine zum Vorladen eingereihte Kachel, die jetzt sichtbar
+				 * ist, wird mit der höheren Priorität neu eingereiht.
+				 */
+				if (priority >= PREFETCH_PRIORITY
+						|| requested.getPriority() < PREFETCH_PRIORITY) {
+					continue;
+				}
+				requested.cancel();
+			}
+
+			/*
+			 * Über den TileGarbageService werden bei Bedarf Tiles vergessen,
+			 * damit Platz für das Laden neuer Tiles ist.
+			 */
+			TileGarbageService.tileGarbageService().cleanIfNecessary(
+					tileLayer, x, y);
+
+			/*
+			 * Diese Kachel laden. Dazu wird ein neuer BitmapConverter
+			 * instanziert und diesem die Ebene und die zu ladende Kachel als
+			 * Parameter übergeben. Der BitmapConverter behält den TileKey,
+			 * deshalb wird hier ein eigener erstellt.
+			 */
+			BitmapConverter converter = new BitmapConverter(tileLayer,
+					new TileKey(tileMap, x, y));
+
+			/*
+			 * Start des Ladevorgangs mit der oben berechneten Priorität, der
+			 * TileLoadingExecutor lädt die Kacheln mit der kleinsten Priorität
+			 * zuerst.
+			 */
+			converter.loadImage(priority, sampleSize);
+			requestedTiles.put(index, converter);
+			newTiles++;
 		}
 
+		// Der Zoomstufen-Wechsel ist mit dem ersten Ladevorgang abgeschlossen.
+		transition = false;
+
+		if (LOG_LOADING) {
+			Log.d("LazyLoader", newTiles + " Kacheln zum Laden übergeben, "
+					+ requestedTiles.size() + " Kacheln im Ladebereich, "
+					+ cache + ", " + CompressedTileCache.compressedTileCache()
+					+ ", " + BitmapPool.bitmapPool());
+		}
+	}
+
+	/**
+	 * Berechnet den zu ladenden Bereich, dieser besteht aus dem sichtbaren
+	 * Bereich, der in alle Richtungen um {@link #prefetchWidth} Kacheln
+	 * erweitert wird. Zusätzlich wird der Bereich in Bewegungsrichtung um so
+	 * viele Kacheln erweitert, wie der Plan bei der aktuellen Geschwindigkeit
+	 * in {@link #lookaheadMillis} zurücklegt (höchstens
+	 * {@link #maxLookaheadTiles}).
+	 * 
+	 * @param visibleFirst
+	 * @param visibleLast
+	 * @param tileSize
+	 * @param columns
+	 * @param rows
+	 * @param first
+	 *            hier wird die linke, obere Kachel des Bereichs abgelegt
+	 * @param last
+	 *            hier wird die rechte, untere Kachel des Bereichs abgelegt
+	 */
+	public void calculatePrefetchArea(Coordinate visibleFirst,
+			Coordinate visibleLast, Coordinate tileSize, int columns,
+			int rows, Coordinate first, Coordinate last) {
+		// Vorlade-Rand in Kacheln, abhängig von der Bewegungsrichtung.
+		int lookaheadX = calculateLookaheadTiles(velocityX, tileSize.getX());
+		int lookaheadY = calculateLookaheadTiles(velocityY, tileSize.getY());
+
 		/*
-		 * Nun sind die Werte:
-		 * 
-		 * x = -level
-		 * 
-		 * y = -level
-		 * 
-		 * Von der linken, oberen Ecke nach rechts zur rechten, oberen Ecke
-		 * arbeiten. Dabei wird die Start-Koordinate NICHT erneunt hinzugefgt,
-		 * deshalb luft die Schleife nur bis kleiner 'level' und nicht bis
-		 * kleiner gleich 'level'.
+		 * Bewegt sich der Plan in eine Richtung, wird der Rand auf dieser
+		 * Seite vergrößert, die gegenüberliegende Seite behält den
+		 * Standard-Rand.
 		 */
-		for (; x < level; x++) {
-			tempCoordinate = new Coordinate(x + centerTile.getX(), y
-					+ centerTile.getY());
-			// Prfen, ob Koordinate im Plan liegt, nur dann hinzufgen.
-			if (checkCoordinate(tempCoordinate, dimension)) {
-				neighbours.add(new Coordinate(tempCoordinate.getX(),
-						tempCoordinate.getY()));
-			}
+		int firstX = visibleFirst.getX() - prefetchWidth
+				+ Math.min(0, lookaheadX);
+		int firstY = visibleFirst.getY() - prefetchWidth
+				+ Math.min(0, lookaheadY);
+		int lastX = visibleLast.getX() + prefetchWidth + Math.max(0, lookaheadX);
+		int lastY = visibleLast.getY() + prefetchWidth + Math.max(0, lookaheadY);
+
+		// Der Bereich darf den Plan nicht verlassen.
+		first.set(Math.max(0, firstX), Math.max(0, firstY));
+		last.set(Math.min(columns - 1, lastX), Math.min(rows - 1, lastY));
+	}
+
+	/**
+	 * Berechnet, um wie viele Kacheln sich der Plan bei der übergebenen
+	 * Geschwindigkeit innerhalb von {@link #lookaheadMillis} bewegt.
+	 * 
+	 * @param velocity
+	 *            Geschwindigkeit in Pixel pro Millisekunde
+	 * @param tileSize
+	 * @return int Anzahl der Kacheln, negativ bei Bewegung nach links bzw. oben
+	 */
+	public int calculateLookaheadTiles(float velocity, int tileSize) {
+		int tiles = Math.round(velocity * lookaheadMillis / tileSize);
+		return Math.max(-maxLookaheadTiles, Math.min(maxLookaheadTiles, tiles));
+	}
+
+	/**
+	 * Beendet alle laufenden Ladevorgänge dieses <code>LazyLoader</code>s und
+	 * vergisst den zuletzt geladenen Bereich, sodass der nächste Aufruf von
+	 * {@link #load()} wieder alle sichtbaren Kacheln prüft.
+	 */
+	public void cancel() {
+		for (int i = 0; i < requestedTiles.size(); i++) {
+			requestedTiles.valueAt(i).cancel();
 		}
+		requestedTiles.clear();
+		areaLoaded = false;
+	}
 
-		return neighbours;
+	/**
+	 * Berechnet die linke, obere Kachel des sichtbaren Bereichs.
+	 * 
+	 * @param tileSize
+	 * @param result
+	 *            hier wird die Position der Kachel abgelegt
+	 * @return Coordinate die Position der linken, oberen sichtbaren Kachel
+	 */
+	public Coordinate calculateFirstVisibleTile(Coordinate tileSize,
+			Coordinate result) {
+		result.set(Math.max(0, viewport.getPosition().getX() / tileSize.getX()),
+				Math.max(0, viewport.getPosition().getY() / tileSize.getY()));
+		return result;
 	}
 
 	/**
-	 * Gibt die Koordinaten der Nachbarn der bergebenen mittleren
-	 * <code>Tile</code> und zwar auf allen Ebenen bis zum bergebenen Level.
-	 * Dabei wird jede Ebene durch den Aufruf der Methode @see
-	 * {@link LazyLoader#calculateNeighboursOfLevel(Coordinate, Coordinate, int)}
-	 * ermittelt und dann zu einer gesamten <code>ArrayList</code>
-	 * zusammengefgt. Dabei wird auf die mittlere Kachel selbst hinzugefgt, da
-	 * diese ebenfalls geladen werden muss.
+	 * Berechnet die rechte, untere Kachel des sichtbaren Bereichs. Dabei
+	 * wird beachtet, dass der Plan kleiner als der Bildschirm sein kann.
 	 * 
-	 * @param centerTile
-	 * @param dimension
-	 * @param level
-	 * @return ArrayList<Coordinate> die Nachbarn bis zu einem bestimmten Level
+	 * @param tileSize
+	 * @param columns
+	 * @param rows
+	 * @param result
+	 *            hier wird die Position der Kachel abgelegt
+	 * @return Coordinate die Position der rechten, unteren sichtbaren Kachel
 	 */
-	public ArrayList<Coordinate> calculateNeighbours(Coordinate centerTile,
-			Coordinate dimension, int level) {
-		// Ergebis ArrayList initialisieren.
-		ArrayList<Coordinate> neighbours = new ArrayList<Coordinate>();
+	public Coordinate calculateLastVisibleTile(Coordinate tileSize,
+			int columns, int rows, Coordinate result) {
+		int x = (viewport.getPosition().getX() + viewport.getSize().getX() - 1)
+				/ tileSize.getX();
+		int y = (viewport.getPosition().getY() + viewport.getSize().getY() - 1)
+				/ tileSize.getY();
+		result.set(Math.min(x, columns - 1), Math.min(y, rows - 1));
+		return result;
+	}
 
-		// Mittlere Kachel hinzufgen.
-		neighbours.add(centerTile);
+	/**
+	 * Prüft, ob eine Kachel innerhalb des durch die linke, obere und die
+	 * rechte, untere Kachel beschriebenen Bereichs liegt.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param first
+	 * @param last
+	 * @return boolean true wenn die Kachel im Bereich liegt
+	 */
+	public boolean isInArea(int x, int y, Coordinate first, Coordinate last) {
+		return x >= first.getX() && x <= last.getX() && y >= first.getY()
+				&& y <= last.getY();
+	}
 
-		// Alle Ebenen, ab Ebene 1 bis zum bergebenen Level hinzufgen.
-		for (int i = 1; i <= level; i++) {
-			/*
-			 * Aufruf der Methode, die alle Nachbarn einer speziellen Ebene (i)
-			 * zurckgibt, danach hinzufgen der ArrayList zur
-			 * Ergebnis-ArrayList.
-			 */
-			neighbours.addAll(calculateNeighboursOfLevel(centerTile, dimension,
-					i));
-		}
+	/**
+	 * Berechnet die Koordinaten der mittleren Kachel.
+	 * 
+	 * @param center
+	 * @param tileSize
+	 * @param result
+	 *            hier wird die Position der Kachel abgelegt
+	 * @return Coordinate die Position der mittleren Kachel
+	 */
+	public Coordinate calculateCenterTile(Coordinate center,
+			Coordinate tileSize, Coordinate result) {
+		result.set(center.getX() / tileSize.getX(), center.getY()
+				/ tileSize.getY());
+		return result;
+	}
 
-		return neighbours;
+	/**
+	 * Berechnet die Lade-Priorität einer Kachel, dies ist der quadrierte
+	 * Abstand zur mittleren Kachel (die Wurzel wird für den Vergleich nicht
+	 * benötigt).
+	 * 
+	 * @param tilePos
+	 * @param centerTile
+	 * @return int die Priorität, je kleiner desto wichtiger
+	 */
+	public int calculatePriority(Coordinate tilePos, Coordinate centerTile) {
+		return calculatePriority(tilePos.getX(), tilePos.getY(), centerTile);
 	}
 
 	/**
-	 * Prft, ob eine bergebene <code>Coordinate</code> in den bergebenen
-	 * Dimensionen liegt. Das heit, dass die <code>Coordinate</code> weder im
-	 * negativen Bereich (kleiner null), noch grer als die Dimesionen der
-	 * <code>TileMap</code>.
+	 * Berechnet die Lade-Priorität der Kachel an der übergebenen Position
+	 * (siehe {@link #calculatePriority(Coordinate, Coordinate)}).
 	 * 
-	 * @param tempCoordinate
-	 * @param dimension
-	 * @return boolean true wenn die Koordinate noch im Plan liegt
-	 */
-	public boolean checkCoordinate(Coordinate tempCoordinate,
-			Coordinate dimension) {
-		return (tempCoordinate.getX() < dimension.getX()
-				&& tempCoordinate.getY() < dimension.getY()
-				&& tempCoordinate.getX() >= 0 && tempCoordinate.getY() >= 0);
+	 * @param x
+	 * @param y
+	 * @param centerTile
+	 * @return int die Priorität, je kleiner desto wichtiger
+	 */
+	public int calculatePriority(int x, int y, Coordinate centerTile) {
+		int dx = x - centerTile.getX();
+		int dy = y - centerTile.getY();
+		return dx * dx + dy * dy;
 	}
+
 }
@@ -0,0 +1,149 @@
+/**
+ * @(#)SharedSources.java
+ * 1.0, 2013-03-04
+ */
+package de.hdm.hettich.studienarbeit.loading;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.WeakHashMap;
+
+/**
+ * Die Klasse <code>SharedSources</code> führt für einen Cache Buch darüber,
+ * welche Einträge sich denselben Wert teilen. Verweisen mehrere Kacheln auf
+ * dieselbe Datei (z.B. ein Bild für die gesamte <code>TileMap</code>), wird
+ * die Datei nur einmal gelesen bzw. dekodiert und der Wert von allen Kacheln
+ * gemeinsam verwendet.
+ * <p>
+ * Jeder Wert wird über einen Referenzzähler verwaltet: Sein Speicher wird nur
+ * beim ersten Eintrag gezählt und erst freigegeben, wenn der letzte Eintrag
+ * entfernt wurde. Solange ein Wert verwendet wird, kann er über die
+ * <code>URI</code> seiner Datei gefunden werden. Die Datei wird beim ersten
+ * Eintrag vermerkt, beim Entfernen muss sie nicht erneut berechnet werden.
+ * <p>
+ * Die Klasse ist nicht synchronisiert, sie wird nur innerhalb der Sperre des
+ * jeweiligen Caches verwendet.
+ *
+ * @author Stefan Hettich
+ *
+ * @version 1.0, 2013-03-04
+ *
+ * @param <V>
+ *            Typ der gemeinsam verwendeten Werte
+ */
+public class SharedSources<V> {
+
+	/**
+	 * Anzahl der Einträge, die auf einen Wert verweisen. Verglichen wird über
+	 * die Identität, nicht über <code>equals</code>.
+	 */
+	private IdentityHashMap<V, Integer> references = new IdentityHashMap<V, Integer>();
+
+	/**
+	 * Der zuletzt abgelegte Wert jeder Datei.
+	 */
+	private HashMap<URI, V> sources = new HashMap<URI, V>();
+
+	/**
+	 * Die Datei jedes Werts, der über {@link #find(URI)} gefunden werden kann.
+	 */
+	private IdentityHashMap<V, URI> sourcesByValue = new IdentityHashMap<V, URI>();
+
+	/**
+	 * Werte, die bereits für mehrere Einträge herausgegeben wurden. Sie
+	 * dürfen auch nach dem Entfernen des letzten Eintrags nicht
+	 * wiederverwendet werden, da sie gerade erneut abgelegt werden könnten.
+	 */
+	private WeakHashMap<V, Boolean> shared = new WeakHashMap<V, Boolean>();
+
+	/**
+	 * Zählt einen neuen Eintrag für den übergebenen Wert.
+	 *
+	 * @param source
+	 *            die Datei des Werts oder null
+	 * @param value
+	 * @return boolean true wenn dies der erste Eintrag des Werts ist, nur dann
+	 *         muss sein Speicher gezählt werden
+	 */
+	public boolean acquire(URI source, V value) {
+		Integer count = references.get(value);
+		if (count != null) {
+			references.put(value, count + 1);
+			return false;
+		}
+		references.put(value, 1);
+		if (source != null) {
+			sources.put(source, value);
+			sourcesByValue.put(value, source);
+		}
+		return true;
+	}
+
+	/**
+	 * Zählt einen entfernten Eintrag für den übergebenen Wert.
+	 *
+	 * @param value
+	 * @return boolean true wenn dies der letzte Eintrag des Werts war, nur
+	 *         dann wird sein Speicher frei
+	 */
+	public boolean release(V value) {
+		Integer count = references.get(value);
+		if (count == null) {
+			return false;
+		}
+		if (count > 1) {
+			references.put(value, count - 1);
+			return false;
+		}
+		references.remove(value);
+		URI source = sourcesByValue.remove(value);
+		if (source != null && sources.get(source) == value) {
+			sources.remove(source);
+		}
+		return true;
+	}
+
+	/**
+	 * Gibt den Wert zurück, der für die übergebene Datei gerade verwendet
+	 * wird.
+	 *
+	 * @param source
+	 * @return V der Wert oder null
+	 */
+	public V find(URI source) {
+		return sources.get(source);
+	}
+
+	/**
+	 * Markiert den übergebenen Wert als gemeinsam verwendet, bevor er für
+	 * einen weiteren Eintrag herausgegeben wird.
+	 *
+	 * @param value
+	 */
+	public void share(V value) {
+		shared.put(value, Boolean.TRUE);
+	}
+
+	/**
+	 * Prüft, ob der übergebene Wert gemeinsam verwendet wurde.
+	 *
+	 * @param value
+	 * @return boolean true wenn der Wert über {@link #share(Object)} markiert
+	 *         wurde
+	 */
+	public boolean isShared(V value) {
+		return shared.containsKey(value);
+	}
+
+	/**
+	 * Prüft, ob noch ein Eintrag auf den übergebenen Wert verweist.
+	 *
+	 * @param value
+	 * @return boolean true wenn der Wert noch verwendet wird
+	 */
+	public boolean isReferenced(V value) {
+		return references.containsKey(value);
+	}
+
+}
@@ -0,0 +1,239 @@
+/**
+ * @(#)TileArchive.java
+ * 1.0, 2013-03-04
+ */
+package de.hdm.hettich.studienarbeit.loading;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+
+import de.hdm.hettich.studienarbeit.utile.Coordinate;
+
+/**
+ * Ein <code>TileArchive</code> ist eine Datei, in der die komprimierten
+ * Kacheln aller Zoomstufen eines Plans hintereinander liegen. Anstatt für jede
+ * Kachel eine eigene Datei zu öffnen und in einen neuen <code>byte[]</code>
+ * zu lesen, wird das Archiv einmal als <code>MappedByteBuffer</code>
+ * eingeblendet. Eine Kachel abzurufen bedeutet dann nur noch, ihren Eintrag im
+ * Index nachzuschlagen und einen Ausschnitt des Puffers zu bilden, die Daten
+ * werden dabei nicht kopiert.
+ * <p>
+ * Aufbau der Datei (alle Zahlen als <code>int</code>, Big-Endian):
+ *
+ * <pre>
+ * MAGIC, VERSION, Anzahl der Zoomstufen
+ * je Zoomstufe: Spalten, Zeilen
+ * je Zoomstufe, je Kachel (x außen, y innen): Offset, Länge
+ * komprimierte Kacheln
+ * </pre>
+ *
+ * Eine Kachel im Archiv wird über eine <code>URI</code> mit dem Fragment
+ * <code>zoomstufe/x/y</code> adressiert (siehe
+ * {@link #createTileUri(URI, int, int, int)}). Erstellt werden Archive mit dem
+ * <code>TileArchiveBuilder</code> aus dem Ordner <code>tools</code>.
+ *
+ * @author Stefan Hettich
+ *
+ * @version 1.0, 2013-03-04
+ *
+ */
+public class TileArchive {
+
+	/**
+	 * Kennung am Anfang jedes Archivs ("TARC").
+	 */
+	public final static int MAGIC = 0x54415243;
+
+	/**
+	 * Version des Dateiformats.
+	 */
+	public final static int VERSION = 1;
+
+	/**
+	 * Bereits geöffnete Archive, Schlüssel ist die <code>URI</code> der Datei.
+	 * Ein Archiv wird nur einmal eingeblendet und bleibt bis zum Ende der
+	 * Anwendung geöffnet.
+	 */
+	private static HashMap<URI, TileArchive> archives = new HashMap<URI, TileArchive>();
+
+	/**
+	 * Das eingeblendete Archiv. Position und Limit werden nie verändert, so
+	 * kann der Puffer von mehreren Lade-Threads gleichzeitig gelesen werden.
+	 */
+	private MappedByteBuffer buffer;
+
+	/**
+	 * Anzahl der Kacheln jeder Zoomstufe.
+	 */
+	private Coordinate[] dimensions;
+
+	/**
+	 * Position des ersten Index-Eintrags jeder Zoomstufe im Archiv.
+	 */
+	private int[] indexPositions;
+
+	/**
+	 * Konstruktor, der das übergebene Archiv einblendet und dessen Kopf
+	 * einliest.
+	 *
+	 * @param file
+	 * @throws IOException
+	 *             wenn die Datei nicht gelesen werden kann oder kein Archiv
+	 *             ist
+	 */
+	public TileArchive(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+		} finally {
+			// Die Einblendung bleibt auch nach dem Schließen gültig.
+			raf.close();
+		}
+
+		if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+			throw new IOException("Kein TileArchive: " + file);
+		}
+		int levelCount = buffer.getInt(8);
+		dimensions = new Coordinate[levelCount];
+		indexPositions = new int[levelCount];
+
+		int indexPosition = 12 + levelCount * 8;
+		for (int i = 0; i < levelCount; i++) {
+			int columns = buffer.getInt(12 + i * 8);
+			int rows = buffer.getInt(16 + i * 8);
+			dimensions[i] = new Coordinate(columns, rows);
+			indexPositions[i] = indexPosition;
+			indexPosition += columns * rows * 8;
+		}
+	}
+
+	/**
+	 * Gibt das Archiv unter der übergebenen <code>URI</code> zurück, ist es
+	 * noch nicht geöffnet, wird es eingeblendet.
+	 *
+	 * @param archiveUri
+	 * @return TileArchive das Archiv
+	 * @throws IOException
+	 */
+	public static synchronized TileArchive open(URI archiveUri)
+			throws IOException {
+		TileArchive archive = archives.get(archiveUri);
+		if (archive == null) {
+			archive = new TileArchive(new File(archiveUri));
+			archives.put(archiveUri, archive);
+		}
+		return archive;
+	}
+
+	/**
+	 * Erstellt die <code>URI</code> einer Kachel im übergebenen Archiv.
+	 *
+	 * @param archiveUri
+	 * @param level
+	 * @param x
+	 * @param y
+	 * @return URI die URI der Kachel
+	 */
+	public static URI createTileUri(URI archiveUri, int level, int x, int y) {
+		try {
+			return new URI(archiveUri.getScheme(),
+					archiveUri.getSchemeSpecificPart(), level + "/" + x + "/"
+							+ y);
+		} catch (URISyntaxException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	/**
+	 * Prüft, ob die übergebene <code>URI</code> auf eine Kachel in einem
+	 * Archiv verweist.
+	 *
+	 * @param uri
+	 * @return boolean true wenn die URI ein Fragment hat
+	 */
+	public static boolean isTileUri(URI uri) {
+		return uri != null && uri.getFragment() != null;
+	}
+
+	/**
+	 * Gibt die komprimierten Daten der Kachel unter der übergebenen
+	 * <code>URI</code> zurück (siehe {@link #getTile(int, int, int)}).
+	 *
+	 * @param tileUri
+	 * @return ByteBuffer die Daten der Kachel oder null, wenn das Archiv nicht
+	 *         gelesen werden kann
+	 */
+	public static ByteBuffer readTile(URI tileUri) {
+		String[] parts = tileUri.getFragment().split("/");
+		try {
+			URI archiveUri = new URI(tileUri.getScheme(),
+					tileUri.getSchemeSpecificPart(), null);
+			return open(archiveUri).getTile(Integer.parseInt(parts[0]),
+					Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+		} catch (URISyntaxException e) {
+			e.printStackTrace();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	/**
+	 * @return die Anzahl der Zoomstufen im Archiv
+	 */
+	public int getLevelCount() {
+		return dimensions.length;
+	}
+
+	/**
+	 * Gibt die Anzahl der Kacheln der übergebenen Zoomstufe zurück.
+	 *
+	 * @param level
+	 * @return Coordinate Spalten und Zeilen der Zoomstufe
+	 */
+	public Coordinate getDimension(int level) {
+		return dimensions[level];
+	}
+
+	/**
+	 * Gibt die komprimierten Daten einer Kachel als Ausschnitt des
+	 * eingeblendeten Archivs zurück, die Daten werden dabei nicht kopiert.
+	 *
+	 * @param level
+	 * @param x
+	 * @param y
+	 * @return ByteBuffer die Daten der Kachel oder null, wenn die Kachel nicht
+	 *         im Archiv liegt
+	 */
+	public ByteBuffer getTile(int level, int x, int y) {
+		Coordinate dimension = dimensions[level];
+		if (x < 0 || y < 0 || x >= dimension.getX() || y >= dimension.getY()) {
+			return null;
+		}
+		int entry = indexPositions[level] + (x * dimension.getY() + y) * 8;
+		int offset = buffer.getInt(entry);
+		int length = buffer.getInt(entry + 4);
+		if (length <= 0) {
+			return null;
+		}
+
+		/*
+		 * Der gemeinsame Puffer wird dupliziert, damit Position und Limit nur
+		 * für diesen Ausschnitt gesetzt werden.
+		 */
+		ByteBuffer tile = buffer.duplicate();
+		tile.position(offset);
+		tile.limit(offset + length);
+		return tile.slice();
+	}
+
+}
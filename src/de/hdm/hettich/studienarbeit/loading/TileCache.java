@@ -0,0 +1,345 @@
+/**
+ * @(#)TileCache.java
+ * 1.0, 2013-03-04
+ */
+package de.hdm.hettich.studienarbeit.loading;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+import android.graphics.Bitmap;
+import de.hdm.hettich.studienarbeit.bo.TileMap;
+
+/**
+ * Der <code>TileCache</code> hält die dekodierten <code>Bitmap</code>s der
+ * zuletzt verwendeten Kacheln (erste Cache-Ebene). Jede Kachel ist nur einmal
+ * dekodiert im Speicher vorhanden, der <code>TileView</code> zeigt genau das
+ * <code>Bitmap</code> an, das hier abgelegt ist. Verweisen mehrere Kacheln
+ * auf dieselbe Datei, teilen sie sich ein <code>Bitmap</code>, dessen Speicher
+ * nur einmal gezählt wird (siehe <code>SharedSources</code>).
+ * <p>
+ * Der Cache hat ein Budget in Bytes, dabei wird die tatsächliche Größe der
+ * <code>Bitmap</code>s gezählt. Wird das Budget überschritten, werden die am
+ * längsten nicht verwendeten Kacheln entfernt (LRU). Über einen
+ * <code>EvictionListener</code> werden z.B. die <code>TileMapView</code>s
+ * informiert, damit diese das <code>Bitmap</code> ebenfalls freigeben. Die
+ * komprimierten Daten einer entfernten Kachel liegen meist noch im
+ * <code>CompressedTileCache</code>, sodass sie ohne Zugriff auf die
+ * Speicherkarte erneut dekodiert werden kann.
+ * <p>
+ * Zu jedem <code>Bitmap</code> wird der Verkleinerungsfaktor vermerkt, mit dem
+ * es dekodiert wurde. Ob eine Kachel in voller Auflösung vorliegt, lässt sich
+ * nicht an der Breite ablesen, da die Kacheln am Rand eines Bilds schmaler
+ * sein können (siehe <code>TileRegionDecoder</code>).
+ * <p>
+ * Zur Abstimmung des Budgets werden Treffer, Fehlschläge und entfernte
+ * Kacheln gezählt.
+ *
+ * @author Stefan Hettich
+ *
+ * @version 1.0, 2013-03-04
+ *
+ */
+public class TileCache extends AbstractTileCache<Bitmap> {
+
+	/**
+	 * Schnittstelle, über die mitgeteilt wird, dass eine Kachel aus dem Cache
+	 * entfernt wurde. Die Methode kann aus jedem Thread aufgerufen werden.
+	 */
+	public interface EvictionListener {
+
+		/**
+		 * Wird aufgerufen, sobald eine Kachel aus dem Cache entfernt wurde.
+		 *
+		 * @param key
+		 * @param bitmap
+		 */
+		void onTileEvicted(TileKey key, Bitmap bitmap);
+	}
+
+	/**
+	 * Standard-Budget des Caches: ein Achtel des maximal verfügbaren Speichers
+	 * der Anwendung.
+	 */
+	public final static long DEFAULT_MAX_BYTES = Runtime.getRuntime()
+			.maxMemory() / 8;
+
+	/**
+	 * Instanz des <code>TileCache</code>s, es gibt einen Cache für die gesamte
+	 * Anwendung.
+	 */
+	private static TileCache tileCache = null;
+
+	/**
+	 * Die registrierten <code>EvictionListener</code>.
+	 */
+	private ArrayList<EvictionListener> listeners = new ArrayList<EvictionListener>();
+
+	/**
+	 * Räumlicher Index über die Kacheln im Cache, über den die am weitesten
+	 * entfernten Kacheln gefunden werden (siehe
+	 * {@link #removeFarthest(TileMap, int, int, long)}).
+	 */
+	private TileIndex index = new TileIndex();
+
+	/**
+	 * Referenzzähler der <code>Bitmap</code>s, die sich mehrere Kacheln
+	 * derselben Datei teilen.
+	 */
+	private SharedSources<Bitmap> sharedBitmaps = new SharedSources<Bitmap>();
+
+	/**
+	 * Verkleinerungsfaktor, mit dem die <code>Bitmap</code>s im Cache
+	 * dekodiert wurden. Ein Eintrag wird entfernt, sobald keine Kachel mehr
+	 * das <code>Bitmap</code> verwendet.
+	 */
+	private IdentityHashMap<Bitmap, Integer> sampleSizes = new IdentityHashMap<Bitmap, Integer>();
+
+	/**
+	 * Konstruktor, der einen neuen <code>TileCache</code> mit dem übergebenen
+	 * Budget erstellt.
+	 *
+	 * @param maxBytes
+	 */
+	protected TileCache(long maxBytes) {
+		super(maxBytes);
+	}
+
+	/**
+	 * Gibt die Instanz des <code>TileCache</code>s zurück, existiert noch
+	 * keine, wird einer mit {@link #DEFAULT_MAX_BYTES} erstellt.
+	 *
+	 * @return TileCache der TileCache der Anwendung
+	 */
+	public static synchronized TileCache tileCache() {
+		if (tileCache == null) {
+			tileCache = new TileCache(DEFAULT_MAX_BYTES);
+		}
+		return tileCache;
+	}
+
+	/**
+	 * Registriert einen <code>EvictionListener</code>.
+	 *
+	 * @param listener
+	 */
+	public synchronized void addEvictionListener(EvictionListener listener) {
+		if (!listeners.contains(listener)) {
+			listeners.add(listener);
+		}
+	}
+
+	/**
+	 * Entfernt einen <code>EvictionListener</code>.
+	 *
+	 * @param listener
+	 */
+	public synchronized void removeEvictionListener(EvictionListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Berechnet die tatsächliche Größe eines <code>Bitmap</code>s in Bytes.
+	 *
+	 * @param bitmap
+	 * @return int die Größe in Bytes
+	 */
+	public static int sizeOf(Bitmap bitmap) {
+		return bitmap.getRowBytes() * bitmap.getHeight();
+	}
+
+	/**
+	 * @see #sizeOf(Bitmap)
+	 */
+	@Override
+	protected int calculateSize(Bitmap bitmap) {
+		return sizeOf(bitmap);
+	}
+
+	/**
+	 * Zählt den Speicher eines <code>Bitmap</code>s nur für die erste Kachel,
+	 * die es verwendet (siehe {@link #findShared(TileKey, int, Bitmap.Config)}).
+	 */
+	@Override
+	protected int chargeEntry(TileKey key, Bitmap bitmap) {
+		return sharedBitmaps.acquire(sourceOf(key), bitmap) ? sizeOf(bitmap)
+				: 0;
+	}
+
+	/**
+	 * Gibt den Speicher eines <code>Bitmap</code>s erst frei, wenn es von
+	 * keiner Kachel mehr verwendet wird.
+	 */
+	@Override
+	protected int releaseEntry(TileKey key, Bitmap bitmap) {
+		if (!sharedBitmaps.release(bitmap)) {
+			return 0;
+		}
+		sampleSizes.remove(bitmap);
+		return sizeOf(bitmap);
+	}
+
+	/**
+	 * Legt eine Kachel im Cache ab und vermerkt, mit welchem
+	 * Verkleinerungsfaktor ihr <code>Bitmap</code> dekodiert wurde. Ist für
+	 * ein gemeinsam verwendetes <code>Bitmap</code> bereits ein Faktor
+	 * vermerkt, bleibt dieser erhalten.
+	 *
+	 * @param key
+	 * @param bitmap
+	 * @param sampleSize
+	 *            Verkleinerungsfaktor, mit dem das Bitmap dekodiert wurde
+	 */
+	public void put(TileKey key, Bitmap bitmap, int sampleSize) {
+		synchronized (this) {
+			if (!sampleSizes.containsKey(bitmap)) {
+				sampleSizes.put(bitmap, sampleSize);
+			}
+		}
+		put(key, bitmap);
+	}
+
+	/**
+	 * Gibt den Verkleinerungsfaktor zurück, mit dem das übergebene
+	 * <code>Bitmap</code> dekodiert wurde. Ist keiner vermerkt, wurde es ohne
+	 * Verkleinerung abgelegt.
+	 *
+	 * @param bitmap
+	 * @return int der Verkleinerungsfaktor
+	 */
+	public synchronized int getSampleSize(Bitmap bitmap) {
+		Integer sampleSize = sampleSizes.get(bitmap);
+		return sampleSize != null ? sampleSize : 1;
+	}
+
+	/**
+	 * Prüft, ob ein <code>Bitmap</code> des Caches für den übergebenen
+	 * Verkleinerungsfaktor ausreichend aufgelöst ist.
+	 *
+	 * @param bitmap
+	 * @param sampleSize
+	 * @return boolean true wenn das Bitmap mindestens die geforderte Auflösung
+	 *         hat
+	 */
+	public synchronized boolean isSufficient(Bitmap bitmap, int sampleSize) {
+		return getSampleSize(bitmap) <= sampleSize;
+	}
+
+	/**
+	 * Gibt die Datei zurück, aus der die übergebene Kachel geladen wird. Sie
+	 * wird beim Laden im Lade-Thread am <code>TileKey</code> vermerkt, so
+	 * wird beim Ablegen innerhalb der Sperre keine <code>URI</code> erstellt.
+	 *
+	 * @param key
+	 * @return URI die Datei der Kachel oder null
+	 */
+	private static URI sourceOf(TileKey key) {
+		// Ausschnitte eines Bilds sind unterschiedliche Kacheln.
+		if (key.getTileMap().isRegionDecoding()) {
+			return null;
+		}
+		return key.getSource();
+	}
+
+	/**
+	 * Sucht ein bereits dekodiertes <code>Bitmap</code> derselben Datei, die
+	 * auch die übergebene Kachel verwendet, z.B. wenn es nur ein Bild für die
+	 * gesamte <code>TileMap</code> gibt. Das gefundene <code>Bitmap</code>
+	 * wird als gemeinsam verwendet markiert und danach nie im
+	 * <code>BitmapPool</code> wiederverwendet (siehe
+	 * {@link #isShared(Bitmap)}).
+	 *
+	 * @param key
+	 * @param sampleSize
+	 *            das Bitmap muss mindestens diese Auflösung haben
+	 * @param config
+	 *            das Bitmap muss dieses Pixelformat haben
+	 * @return Bitmap das gefundene Bitmap oder null
+	 */
+	public synchronized Bitmap findShared(TileKey key, int sampleSize,
+			Bitmap.Config config) {
+		URI source = sourceOf(key);
+		if (source == null) {
+			return null;
+		}
+		Bitmap bitmap = sharedBitmaps.find(source);
+		if (bitmap == null || bitmap.isRecycled()
+				|| bitmap.getConfig() != config
+				|| !isSufficient(bitmap, sampleSize)) {
+			return null;
+		}
+		sharedBitmaps.share(bitmap);
+		return bitmap;
+	}
+
+	/**
+	 * Prüft, ob das übergebene <code>Bitmap</code> von mehreren Kacheln
+	 * verwendet wird oder wurde. Ein solches <code>Bitmap</code> darf nicht
+	 * im <code>BitmapPool</code> abgelegt werden, da es noch angezeigt werden
+	 * kann, auch wenn eine der Kacheln entfernt wurde.
+	 *
+	 * @param bitmap
+	 * @return boolean true wenn das Bitmap gemeinsam verwendet wird
+	 */
+	public synchronized boolean isShared(Bitmap bitmap) {
+		return sharedBitmaps.isShared(bitmap);
+	}
+
+	/**
+	 * Nimmt die Kachel in den räumlichen Index auf.
+	 */
+	@Override
+	protected void entryAdded(TileKey key, Bitmap bitmap) {
+		index.add(key, sizeOf(bitmap));
+	}
+
+	/**
+	 * Entfernt die Kachel aus dem räumlichen Index.
+	 */
+	@Override
+	protected void entryRemoved(TileKey key, Bitmap bitmap) {
+		index.remove(key);
+	}
+
+	/**
+	 * Entfernt die am weitesten von der übergebenen Position entfernten
+	 * Kacheln der übergebenen <code>TileMap</code> aus dem Cache, bis
+	 * mindestens <code>bytes</code> freigegeben sind oder keine Kachel der
+	 * <code>TileMap</code> mehr im Cache liegt.
+	 *
+	 * @param tileMap
+	 * @param x
+	 * @param y
+	 * @param bytes
+	 * @return long die Anzahl der freigegebenen Bytes
+	 */
+	public long removeFarthest(TileMap tileMap, int x, int y, long bytes) {
+		ArrayList<TileKey> keys;
+		synchronized (this) {
+			keys = index.findFarthest(tileMap, x, y, bytes);
+		}
+		/*
+		 * Gemeinsam verwendete Bitmaps werden erst mit der letzten Kachel
+		 * frei, gezählt wird deshalb, was beim Entfernen tatsächlich
+		 * freigegeben wurde.
+		 */
+		return removeAll(keys);
+	}
+
+	/**
+	 * Informiert alle registrierten <code>EvictionListener</code> über eine
+	 * entfernte Kachel.
+	 */
+	@Override
+	protected void entryEvicted(TileKey key, Bitmap bitmap) {
+		ArrayList<EvictionListener> copy;
+		synchronized (this) {
+			copy = new ArrayList<EvictionListener>(listeners);
+		}
+		for (EvictionListener listener : copy) {
+			listener.onTileEvicted(key, bitmap);
+		}
+	}
+
+}
@@ -0,0 +1,245 @@
+/**
+ * @(#)TileIndex.java
+ * 1.0, 2013-03-04
+ */
+package de.hdm.hettich.studienarbeit.loading;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+
+import de.hdm.hettich.studienarbeit.bo.TileMap;
+
+/**
+ * Der <code>TileIndex</code> ist ein räumlicher Index über die Kacheln im
+ * <code>TileCache</code>. Die Kacheln jeder <code>TileMap</code> werden dazu
+ * in quadratische Bereiche von {@link #BUCKET_SIZE} x {@link #BUCKET_SIZE}
+ * Kacheln einsortiert.
+ * <p>
+ * So können die am weitesten von einer Position entfernten Kacheln gefunden
+ * werden, ohne alle Kacheln durchlaufen zu müssen: Die Bereiche werden nach
+ * ihrem größtmöglichen Abstand sortiert und nur so lange durchsucht, bis
+ * genügend Kacheln gefunden sind, die weiter entfernt sind als jede Kachel
+ * der restlichen Bereiche.
+ * <p>
+ * Der Index ist nicht synchronisiert, er wird nur innerhalb der Sperre des
+ * <code>TileCache</code>s verwendet.
+ *
+ * @author Stefan Hettich
+ *
+ * @version 1.0, 2013-03-04
+ *
+ */
+public class TileIndex {
+
+	/**
+	 * Kantenlänge eines Bereichs in Kacheln.
+	 */
+	public final static int BUCKET_SIZE = 8;
+
+	/**
+	 * Die Bereiche jeder <code>TileMap</code>. Der Schlüssel eines Bereichs
+	 * wird aus seiner Position berechnet (siehe
+	 * {@link #calculateBucketKey(int, int)}).
+	 */
+	private HashMap<TileMap, HashMap<Integer, ArrayList<TileKey>>> buckets = new HashMap<TileMap, HashMap<Integer, ArrayList<TileKey>>>();
+
+	/**
+	 * Die Größe jeder Kachel im Index in Bytes.
+	 */
+	private HashMap<TileKey, Integer> sizes = new HashMap<TileKey, Integer>();
+
+	/**
+	 * Nimmt eine Kachel in den Index auf, liegt sie bereits im Index, wird nur
+	 * ihre Größe aktualisiert.
+	 *
+	 * @param key
+	 * @param size
+	 */
+	public void add(TileKey key, int size) {
+		if (sizes.put(key, size) != null) {
+			return;
+		}
+		HashMap<Integer, ArrayList<TileKey>> tileMapBuckets = buckets.get(key
+				.getTileMap());
+		if (tileMapBuckets == null) {
+			tileMapBuckets = new HashMap<Integer, ArrayList<TileKey>>();
+			buckets.put(key.getTileMap(), tileMapBuckets);
+		}
+		Integer bucketKey = calculateBucketKey(key.getX() / BUCKET_SIZE,
+				key.getY() / BUCKET_SIZE);
+		ArrayList<TileKey> bucket = tileMapBuckets.get(bucketKey);
+		if (bucket == null) {
+			bucket = new ArrayList<TileKey>();
+			tileMapBuckets.put(bucketKey, bucket);
+		}
+		bucket.add(key);
+	}
+
+	/**
+	 * Entfernt eine Kachel aus dem Index.
+	 *
+	 * @param key
+	 */
+	public void remove(TileKey key) {
+		if (sizes.remove(key) == null) {
+			return;
+		}
+		HashMap<Integer, ArrayList<TileKey>> tileMapBuckets = buckets.get(key
+				.getTileMap());
+		Integer bucketKey = calculateBucketKey(key.getX() / BUCKET_SIZE,
+				key.getY() / BUCKET_SIZE);
+		ArrayList<TileKey> bucket = tileMapBuckets.get(bucketKey);
+		bucket.remove(key);
+
+		// Leere Bereiche werden nicht aufgehoben.
+		if (bucket.isEmpty()) {
+			tileMapBuckets.remove(bucketKey);
+			if (tileMapBuckets.isEmpty()) {
+				buckets.remove(key.getTileMap());
+			}
+		}
+	}
+
+	/**
+	 * Entfernt alle Kacheln aus dem Index.
+	 */
+	public void clear() {
+		buckets.clear();
+		sizes.clear();
+	}
+
+	/**
+	 * Gibt die Anzahl der Kacheln im Index zurück.
+	 *
+	 * @return int Anzahl der Kacheln
+	 */
+	public int getCount() {
+		return sizes.size();
+	}
+
+	/**
+	 * Gibt die am weitesten von der übergebenen Position entfernten Kacheln
+	 * der übergebenen <code>TileMap</code> zurück, die am weitesten entfernte
+	 * zuerst. Es werden so viele Kacheln zurückgegeben, bis deren Größe
+	 * zusammen mindestens <code>bytes</code> beträgt oder keine Kachel mehr
+	 * übrig ist.
+	 *
+	 * @param tileMap
+	 * @param x
+	 * @param y
+	 * @param bytes
+	 * @return ArrayList<TileKey> die am weitesten entfernten Kacheln
+	 */
+	public ArrayList<TileKey> findFarthest(TileMap tileMap, int x, int y,
+			long bytes) {
+		ArrayList<TileKey> result = new ArrayList<TileKey>();
+		HashMap<Integer, ArrayList<TileKey>> tileMapBuckets = buckets
+				.get(tileMap);
+		if (tileMapBuckets == null || bytes <= 0) {
+			return result;
+		}
+
+		// Bereiche nach ihrem größtmöglichen Abstand absteigend sortieren.
+		ArrayList<Bucket> sorted = new ArrayList<Bucket>(tileMapBuckets.size());
+		for (ArrayList<TileKey> keys : tileMapBuckets.values()) {
+			TileKey first = keys.get(0);
+			int left = first.getX() / BUCKET_SIZE * BUCKET_SIZE;
+			int top = first.getY() / BUCKET_SIZE * BUCKET_SIZE;
+			int dx = Math.max(Math.abs(x - left),
+					Math.abs(x - (left + BUCKET_SIZE - 1)));
+			int dy = Math.max(Math.abs(y - top),
+					Math.abs(y - (top + BUCKET_SIZE - 1)));
+			sorted.add(new Bucket(keys, dx * dx + dy * dy));
+		}
+		Collections.sort(sorted);
+
+		/*
+		 * Die Kacheln der Bereiche werden nach ihrem Abstand sortiert
+		 * gesammelt. Eine gesammelte Kachel kann gewählt werden, sobald sie
+		 * weiter entfernt ist, als jede Kachel der noch nicht durchsuchten
+		 * Bereiche.
+		 */
+		PriorityQueue<Candidate> candidates = new PriorityQueue<Candidate>();
+		long found = 0;
+		for (Bucket bucket : sorted) {
+			while (!candidates.isEmpty()
+					&& candidates.peek().distance >= bucket.maxDistance) {
+				TileKey key = candidates.poll().key;
+				result.add(key);
+				found += sizes.get(key);
+				if (found >= bytes) {
+					return result;
+				}
+			}
+			for (TileKey key : bucket.keys) {
+				int dx = x - key.getX();
+				int dy = y - key.getY();
+				candidates.add(new Candidate(key, dx * dx + dy * dy));
+			}
+		}
+		while (!candidates.isEmpty() && found < bytes) {
+			TileKey key = candidates.poll().key;
+			result.add(key);
+			found += sizes.get(key);
+		}
+		return result;
+	}
+
+	/**
+	 * Berechnet den Schlüssel eines Bereichs aus seiner Position.
+	 *
+	 * @param bucketX
+	 * @param bucketY
+	 * @return Integer der Schlüssel
+	 */
+	private static Integer calculateBucketKey(int bucketX, int bucketY) {
+		return Integer.valueOf((bucketX << 16) | (bucketY & 0xffff));
+	}
+
+	/**
+	 * Ein Bereich mit seinem größtmöglichen (quadrierten) Abstand zur
+	 * gesuchten Position, sortiert wird absteigend nach diesem Abstand.
+	 */
+	private static class Bucket implements Comparable<Bucket> {
+
+		private ArrayList<TileKey> keys;
+
+		private int maxDistance;
+
+		private Bucket(ArrayList<TileKey> keys, int maxDistance) {
+			this.keys = keys;
+			this.maxDistance = maxDistance;
+		}
+
+		@Override
+		public int compareTo(Bucket other) {
+			return other.maxDistance < maxDistance ? -1
+					: (other.maxDistance == maxDistance ? 0 : 1);
+		}
+	}
+
+	/**
+	 * Eine Kachel mit ihrem (quadrierten) Abstand zur gesuchten Position,
+	 * sortiert wird absteigend nach diesem Abstand.
+	 */
+	private static class Candidate implements Comparable<Candidate> {
+
+		private TileKey key;
+
+		private int distance;
+
+		private Candidate(TileKey key, int distance) {
+			this.key = key;
+			this.distance = distance;
+		}
+
+		@Override
+		public int compareTo(Candidate other) {
+			return other.distance < distance ? -1
+					: (other.distance == distance ? 0 : 1);
+		}
+	}
+
+}
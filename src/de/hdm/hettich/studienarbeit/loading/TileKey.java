@@ -0,0 +1,158 @@
+/**
+ * @(#)TileKey.java
+ * 1.0, 2013-03-04
+ */
+package de.hdm.hettich.studienarbeit.loading;
+
+import java.net.URI;
+
+import de.hdm.hettich.studienarbeit.bo.TileMap;
+
+/**
+ * Die Klasse <code>TileKey</code> identifiziert eine Kachel eindeutig über die
+ * <code>TileMap</code>, zu der sie gehört, und ihre Position in dieser
+ * <code>TileMap</code>. Sie wird als Schlüssel im <code>TileCache</code>
+ * verwendet.
+ * <p>
+ * Für reine Abfragen (z.B. beim Zeichnen jeder sichtbaren Kachel) kann ein
+ * einzelner <code>TileKey</code> über {@link #set(TileMap, int, int)}
+ * wiederverwendet werden. Ein solcher <code>TileKey</code> darf nie als
+ * Schlüssel abgelegt werden, da sich sonst sein Hashwert ändert.
+ * <p>
+ * Die Datei der Kachel wird erst beim Laden im Lade-Thread ermittelt und am
+ * <code>TileKey</code> vermerkt (siehe {@link #setSource(URI)}), sodass die
+ * Caches sie nicht bei jedem Ablegen und Entfernen neu berechnen müssen.
+ * 
+ * @author Stefan Hettich
+ * 
+ * @version 1.0, 2013-03-04
+ * 
+ */
+public class TileKey {
+
+	/**
+	 * <code>TileMap</code>, zu der die Kachel gehört.
+	 */
+	private TileMap tileMap;
+
+	/**
+	 * x-Position der Kachel in der <code>TileMap</code>.
+	 */
+	private int x;
+
+	/**
+	 * y-Position der Kachel in der <code>TileMap</code>.
+	 */
+	private int y;
+
+	/**
+	 * Datei, aus der die Kachel geladen wird, oder null, solange sie nicht
+	 * ermittelt wurde. Sie gehört nicht zur Identität des
+	 * <code>TileKey</code>s.
+	 */
+	private volatile URI source;
+
+	/**
+	 * Konstruktor, der einen neuen <code>TileKey</code> erstellt.
+	 * 
+	 * @param tileMap
+	 * @param x
+	 * @param y
+	 */
+	public TileKey(TileMap tileMap, int x, int y) {
+		this.tileMap = tileMap;
+		this.x = x;
+		this.y = y;
+	}
+
+	/**
+	 * Konstruktor, der einen leeren <code>TileKey</code> für Abfragen
+	 * erstellt (siehe {@link #set(TileMap, int, int)}).
+	 */
+	public TileKey() {
+	}
+
+	/**
+	 * Setzt die Kachel dieses <code>TileKey</code>s neu, damit dieser für die
+	 * nächste Abfrage wiederverwendet werden kann.
+	 * 
+	 * @param tileMap
+	 * @param x
+	 * @param y
+	 * @return TileKey dieser TileKey
+	 */
+	public TileKey set(TileMap tileMap, int x, int y) {
+		this.tileMap = tileMap;
+		this.x = x;
+		this.y = y;
+		return this;
+	}
+
+	/**
+	 * @return the tileMap
+	 */
+	public TileMap getTileMap() {
+		return tileMap;
+	}
+
+	/**
+	 * @return the x
+	 */
+	public int getX() {
+		return x;
+	}
+
+	/**
+	 * @return the y
+	 */
+	public int getY() {
+		return y;
+	}
+
+	/**
+	 * @return the source
+	 */
+	public URI getSource() {
+		return source;
+	}
+
+	/**
+	 * @param source
+	 *            the source to set
+	 */
+	public void setSource(URI source) {
+		this.source = source;
+	}
+
+	/**
+	 * Zwei <code>TileKey</code>s sind gleich, wenn sie auf die selbe
+	 * <code>TileMap</code> und die selbe Position verweisen.
+	 */
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof TileKey)) {
+			return false;
+		}
+		TileKey key = (TileKey) o;
+		return this.tileMap == key.tileMap && this.x == key.x
+				&& this.y == key.y;
+	}
+
+	@Override
+	public int hashCode() {
+		return (System.identityHashCode(tileMap) * 31 + x) * 31 + y;
+	}
+
+	/**
+	 * Gibt einen String zurück, der bspw. auf der Konsole angezeigt werden
+	 * kann.
+	 */
+	@Override
+	public String toString() {
+		return "[" + tileMap.getScaleFactor() + ": " + x + " / " + y + "]";
+	}
+
+}
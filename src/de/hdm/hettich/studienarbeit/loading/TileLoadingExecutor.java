@@ -0,0 +1,275 @@
+/**
+ * @(#)TileLoadingExecutor.java
+ * 1.0, 2013-03-04
+ */
+package de.hdm.hettich.studienarbeit.loading;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Der <code>TileLoadingExecutor</code> führt alle <code>BitmapWorkerTask</code>
+ * s aus. Anstatt sich auf den Standard-Executor von <code>AsyncTask</code> zu
+ * verlassen, der je nach Android-Version seriell oder unbegrenzt parallel
+ * arbeitet, werden die Kacheln hier von einer festen Anzahl an Threads
+ * geladen. Die wartenden Tasks liegen in einer Prioritäts-Warteschlange, die
+ * nach dem Abstand zur Bildschirm-Mitte sortiert ist, sodass immer zuerst die
+ * mittleren Kacheln geladen werden.
+ * <p>
+ * Optional kann der Durchsatz gemessen werden, dabei wird für jeden
+ * "Lade-Schub" (vom ersten Task auf einem leeren Executor bis zum letzten
+ * abgeschlossenen Task) die Anzahl der Kacheln und die benötigte Zeit
+ * festgehalten.
+ *
+ * @author Stefan Hettich
+ *
+ * @version 1.0, 2013-03-04
+ *
+ */
+public class TileLoadingExecutor {
+
+	/**
+	 * Standard-Anzahl der Lade-Threads, entspricht der Anzahl der
+	 * Prozessorkerne des Endgeräts.
+	 */
+	public final static int DEFAULT_POOL_SIZE = Runtime.getRuntime()
+			.availableProcessors();
+
+	/**
+	 * Zeit in Sekunden, nach der ein unbeschäftigter Lade-Thread beendet wird.
+	 */
+	private final static long KEEP_ALIVE_SECONDS = 30;
+
+	/**
+	 * Instanz des <code>TileLoadingExecutor</code>s, es gibt für die gesamte
+	 * Anwendung genau einen, damit die Anzahl der Lade-Threads tatsächlich
+	 * begrenzt ist.
+	 */
+	private static TileLoadingExecutor tileLoadingExecutor = null;
+
+	/**
+	 * Der eigentliche <code>ThreadPoolExecutor</code>, dessen Warteschlange
+	 * nach Priorität der Tasks sortiert ist.
+	 */
+	private ThreadPoolExecutor executor;
+
+	/**
+	 * Gibt an, ob der Durchsatz gemessen werden soll. Das Flag wird vom
+	 * UI-Thread gesetzt und von den Lade-Threads gelesen, daher volatile.
+	 */
+	private volatile boolean measureThroughput = false;
+
+	/*
+	 * Die folgenden Felder werden von den Lade-Threads in taskFinished()
+	 * geschrieben und vom UI-Thread gelesen, sie werden nur innerhalb von
+	 * synchronized (this) verwendet.
+	 */
+
+	/**
+	 * Anzahl der übergebenen, aber noch nicht abgeschlossenen Tasks.
+	 */
+	private int pendingTasks = 0;
+
+	/**
+	 * Startzeitpunkt des aktuellen Lade-Schubs in Millisekunden.
+	 */
+	private long batchStart;
+
+	/**
+	 * Anzahl der im aktuellen Lade-Schub abgeschlossenen Tasks.
+	 */
+	private int batchTiles;
+
+	/**
+	 * Dauer des letzten vollständigen Lade-Schubs in Millisekunden.
+	 */
+	private long lastBatchDuration;
+
+	/**
+	 * Anzahl der im letzten vollständigen Lade-Schub geladenen Kacheln.
+	 */
+	private int lastBatchTiles;
+
+	/**
+	 * Konstruktor, der einen neuen <code>TileLoadingExecutor</code> mit der
+	 * übergebenen Anzahl an Lade-Threads erstellt.
+	 *
+	 * @param poolSize
+	 */
+	protected TileLoadingExecutor(int poolSize) {
+		this.executor = new ThreadPoolExecutor(poolSize, poolSize,
+				KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+				new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+
+					private int count = 0;
+
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "TileLoader-" + count++);
+						/*
+						 * Die Lade-Threads sollen den UI-Thread nicht
+						 * ausbremsen.
+						 */
+						thread.setPriority(Thread.NORM_PRIORITY - 1);
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		// Unbeschäftigte Threads dürfen beendet werden.
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Gibt die einzige Instanz des <code>TileLoadingExecutor</code>s zurück,
+	 * existiert noch keine, wird eine mit {@link #DEFAULT_POOL_SIZE}
+	 * Lade-Threads erstellt.
+	 *
+	 * @return TileLoadingExecutor der TileLoadingExecutor der Anwendung
+	 */
+	public static synchronized TileLoadingExecutor tileLoadingExecutor() {
+		if (tileLoadingExecutor == null) {
+			tileLoadingExecutor = new TileLoadingExecutor(DEFAULT_POOL_SIZE);
+		}
+		return tileLoadingExecutor;
+	}
+
+	/**
+	 * @return the poolSize
+	 */
+	public int getPoolSize() {
+		return executor.getMaximumPoolSize();
+	}
+
+	/**
+	 * Setzt die Anzahl der Lade-Threads. Die Reihenfolge der Aufrufe hängt
+	 * davon ab, ob vergrößert oder verkleinert wird, da die Kern-Anzahl nie
+	 * größer als die maximale Anzahl sein darf.
+	 *
+	 * @param poolSize
+	 *            the poolSize to set
+	 */
+	public void setPoolSize(int poolSize) {
+		if (poolSize < 1) {
+			throw new IllegalArgumentException(
+					"Es wird mindestens ein Lade-Thread benötigt.");
+		}
+		if (poolSize > executor.getMaximumPoolSize()) {
+			executor.setMaximumPoolSize(poolSize);
+			executor.setCorePoolSize(poolSize);
+		} else {
+			executor.setCorePoolSize(poolSize);
+			executor.setMaximumPoolSize(poolSize);
+		}
+	}
+
+	/**
+	 * @return the measureThroughput
+	 */
+	public boolean isMeasureThroughput() {
+		return measureThroughput;
+	}
+
+	/**
+	 * @param measureThroughput
+	 *            the measureThroughput to set
+	 */
+	public void setMeasureThroughput(boolean measureThroughput) {
+		this.measureThroughput = measureThroughput;
+	}
+
+	/**
+	 * @return the lastBatchDuration
+	 */
+	public synchronized long getLastBatchDuration() {
+		return lastBatchDuration;
+	}
+
+	/**
+	 * @return the lastBatchTiles
+	 */
+	public synchronized int getLastBatchTiles() {
+		return lastBatchTiles;
+	}
+
+	/**
+	 * Berechnet den Durchsatz des letzten vollständigen Lade-Schubs.
+	 *
+	 * @return float geladene Kacheln pro Sekunde
+	 */
+	public synchronized float getTilesPerSecond() {
+		if (lastBatchDuration <= 0) {
+			return 0;
+		}
+		return lastBatchTiles * 1000f / lastBatchDuration;
+	}
+
+	/**
+	 * Übergibt einen Task zur Ausführung. Der Task wird entsprechend seiner
+	 * Priorität in die Warteschlange eingereiht.
+	 *
+	 * @param task
+	 */
+	public void execute(BitmapWorkerTask task) {
+		synchronized (this) {
+			/*
+			 * Ist der Executor leer, beginnt mit diesem Task ein neuer
+			 * Lade-Schub.
+			 */
+			if (pendingTasks == 0) {
+				batchStart = SystemClock.uptimeMillis();
+				batchTiles = 0;
+			}
+			pendingTasks++;
+		}
+		executor.execute(task);
+	}
+
+	/**
+	 * Entfernt einen noch wartenden Task aus der Warteschlange.
+	 *
+	 * @param task
+	 * @return boolean true wenn der Task noch nicht gestartet war und entfernt
+	 *         wurde
+	 */
+	public boolean remove(BitmapWorkerTask task) {
+		boolean removed = executor.remove(task);
+		if (removed) {
+			taskFinished(false);
+		}
+		return removed;
+	}
+
+	/**
+	 * Wird von einem <code>BitmapWorkerTask</code> aufgerufen, sobald dieser
+	 * seine Arbeit im Hintergrund abgeschlossen hat. Hier wird ggf. der
+	 * Durchsatz des Lade-Schubs festgehalten.
+	 *
+	 * @param loaded
+	 *            true wenn eine Kachel tatsächlich geladen wurde
+	 */
+	protected synchronized void taskFinished(boolean loaded) {
+		pendingTasks--;
+		if (loaded) {
+			batchTiles++;
+		}
+
+		// Prüfen, ob der Lade-Schub abgeschlossen ist.
+		if (pendingTasks == 0 && batchTiles > 0) {
+			lastBatchDuration = SystemClock.uptimeMillis() - batchStart;
+			lastBatchTiles = batchTiles;
+
+			if (measureThroughput) {
+				Log.i("TileLoadingExecutor", lastBatchTiles + " Kacheln in "
+						+ lastBatchDuration + "ms geladen ("
+						+ getTilesPerSecond() + " Kacheln/s, "
+						+ getPoolSize() + " Threads).");
+			}
+		}
+	}
+
+}
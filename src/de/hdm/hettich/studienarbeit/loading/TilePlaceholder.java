@@ -0,0 +1,166 @@
+/**
+ * @(#)TilePlaceholder.java
+ * 1.0, 2013-03-04
+ */
+package de.hdm.hettich.studienarbeit.loading;
+
+import java.util.HashMap;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import de.hdm.hettich.studienarbeit.bo.TileMap;
+import de.hdm.hettich.studienarbeit.utile.Coordinate;
+
+/**
+ * Die Klasse <code>TilePlaceholder</code> sucht für eine noch nicht geladene
+ * Kachel einen Platzhalter in den gröberen Zoomstufen. Eine Kachel der
+ * gröberen Zoomstufe deckt denselben Bereich des Plans ab und liegt oft
+ * bereits dekodiert im <code>TileCache</code>. Der passende Ausschnitt wird
+ * vergrößert angezeigt, bis die eigentliche Kachel geladen ist. Dabei wird
+ * das <code>Bitmap</code> der gröberen Kachel über den Ausschnitt gezeichnet,
+ * nicht kopiert. Damit es nicht im <code>BitmapPool</code> überschrieben
+ * wird, während es noch als Platzhalter angezeigt wird, wird es über
+ * {@link #acquire(Bitmap)} als verwendet markiert.
+ * <p>
+ * Alle Methoden müssen im UI-Thread aufgerufen werden, da nur dort
+ * sichergestellt ist, dass ein <code>Bitmap</code> aus dem
+ * <code>TileCache</code> nicht gleichzeitig im <code>BitmapPool</code>
+ * wiederverwendet wird.
+ *
+ * @author Stefan Hettich
+ *
+ * @version 1.0, 2013-03-04
+ *
+ */
+public class TilePlaceholder {
+
+	/**
+	 * Schlüssel für die Abfrage der gröberen Kacheln im
+	 * <code>TileCache</code>, wird wiederverwendet, da alle Methoden im
+	 * UI-Thread laufen.
+	 */
+	private static TileKey parentKey = new TileKey();
+
+	/**
+	 * Die <code>Bitmap</code>s, die gerade als Platzhalter angezeigt werden,
+	 * mit der Anzahl der Platzhalter, die diese anzeigen.
+	 */
+	private static HashMap<Bitmap, Integer> usedSources = new HashMap<Bitmap, Integer>();
+
+	/**
+	 * Die Klasse hat nur statische Methoden.
+	 */
+	private TilePlaceholder() {
+	}
+
+	/**
+	 * Sucht in den gröberen Zoomstufen eine geladene Kachel, die den Bereich
+	 * der übergebenen Kachel vollständig abdeckt. Es wird mit der nächst
+	 * gröberen Zoomstufe begonnen. Der abgedeckte Ausschnitt wird in Pixeln
+	 * des gefundenen <code>Bitmap</code>s in <code>src</code> geschrieben.
+	 *
+	 * @param key
+	 * @param src
+	 * @return Bitmap die gefundene Kachel oder null, wenn keine passende
+	 *         Kachel im TileCache liegt
+	 */
+	public static Bitmap findSource(TileKey key, Rect src) {
+		TileMap tileMap = key.getTileMap();
+		Coordinate tileSize = tileMap.getTileSize();
+		TileCache cache = TileCache.tileCache();
+
+		for (TileMap parent = tileMap.getParentTileMap(); parent != null; parent = parent
+				.getParentTileMap()) {
+			// Bereich der Kachel in Pixeln der gröberen Zoomstufe.
+			float ratio = parent.getScaleFactor() / tileMap.getScaleFactor();
+			float left = key.getX() * tileSize.getX() * ratio;
+			float top = key.getY() * tileSize.getY() * ratio;
+			float width = tileSize.getX() * ratio;
+			float height = tileSize.getY() * ratio;
+
+			// Kachel der gröberen Zoomstufe, in der dieser Bereich liegt.
+			Coordinate parentTileSize = parent.getTileSize();
+			int x = (int) (left / parentTileSize.getX());
+			int y = (int) (top / parentTileSize.getY());
+			if (x >= parent.getColumns() || y >= parent.getRows()) {
+				continue;
+			}
+
+			/*
+			 * Nur Kacheln verwenden, die den Bereich vollständig abdecken,
+			 * sonst würde der Platzhalter verzerrt angezeigt.
+			 */
+			float offsetX = left - x * parentTileSize.getX();
+			float offsetY = top - y * parentTileSize.getY();
+			if (offsetX + width > parentTileSize.getX() + 0.5f
+					|| offsetY + height > parentTileSize.getY() + 0.5f) {
+				continue;
+			}
+
+			Bitmap bitmap = cache.touch(parentKey.set(parent, x, y));
+			if (bitmap == null || bitmap.isRecycled()) {
+				continue;
+			}
+
+			/*
+			 * Die Kachel kann verkleinert dekodiert sein, deshalb wird der
+			 * Ausschnitt in Pixel des Bitmaps umgerechnet.
+			 */
+			float scale = (float) bitmap.getWidth() / parentTileSize.getX();
+			int srcLeft = Math.min(bitmap.getWidth() - 1,
+					Math.round(offsetX * scale));
+			int srcTop = Math.min(bitmap.getHeight() - 1,
+					Math.round(offsetY * scale));
+			src.set(srcLeft, srcTop, Math.min(bitmap.getWidth(), srcLeft
+					+ Math.max(1, Math.round(width * scale))), Math.min(
+					bitmap.getHeight(),
+					srcTop + Math.max(1, Math.round(height * scale))));
+			return bitmap;
+		}
+		return null;
+	}
+
+	/**
+	 * Markiert das übergebene <code>Bitmap</code> als Platzhalter. So bleibt
+	 * der Platzhalter gültig, auch wenn die gröbere Kachel inzwischen aus dem
+	 * <code>TileCache</code> entfernt wurde, da ihr <code>Bitmap</code> erst
+	 * nach {@link #release(Bitmap)} wiederverwendet werden darf.
+	 *
+	 * @param bitmap
+	 */
+	public static void acquire(Bitmap bitmap) {
+		Integer count = usedSources.get(bitmap);
+		usedSources.put(bitmap, count == null ? 1 : count + 1);
+	}
+
+	/**
+	 * Hebt die Markierung als Platzhalter auf (siehe
+	 * {@link #acquire(Bitmap)}).
+	 *
+	 * @param bitmap
+	 */
+	public static void release(Bitmap bitmap) {
+		Integer count = usedSources.get(bitmap);
+		if (count == null) {
+			return;
+		}
+		if (count > 1) {
+			usedSources.put(bitmap, count - 1);
+		} else {
+			usedSources.remove(bitmap);
+		}
+	}
+
+	/**
+	 * Prüft, ob das übergebene <code>Bitmap</code> gerade als Platzhalter
+	 * angezeigt wird. Ein solches <code>Bitmap</code> darf nicht an den
+	 * <code>BitmapPool</code> übergeben werden.
+	 *
+	 * @param bitmap
+	 * @return boolean true wenn das Bitmap als Platzhalter angezeigt wird
+	 */
+	public static boolean isInUse(Bitmap bitmap) {
+		return usedSources.containsKey(bitmap);
+	}
+
+}
@@ -0,0 +1,145 @@
+/**
+ * @(#)TileRegionDecoder.java
+ * 1.0, 2013-03-04
+ */
+package de.hdm.hettich.studienarbeit.loading;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.HashMap;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import de.hdm.hettich.studienarbeit.utile.Coordinate;
+
+/**
+ * Der <code>TileRegionDecoder</code> dekodiert die Kacheln einer Zoomstufe
+ * direkt aus einem großen Bild, das die gesamte Zoomstufe enthält. Das Bild
+ * wird einmal mit einem <code>BitmapRegionDecoder</code> geöffnet, jede
+ * Kachel ist danach ein Ausschnitt ab (x * Kachelbreite, y * Kachelhöhe). So
+ * müssen die Pläne nicht vorher in Kacheln zerschnitten werden und es liegen
+ * immer nur die Kacheln dekodiert im Speicher, die auch gebraucht werden.
+ * <p>
+ * Es gibt einen <code>TileRegionDecoder</code> pro Bild (siehe
+ * {@link #regionDecoder(URI)}). Die Lade-Threads greifen nacheinander auf den
+ * gemeinsamen <code>BitmapRegionDecoder</code> zu.
+ *
+ * @author Stefan Hettich
+ *
+ * @version 1.0, 2013-03-04
+ *
+ */
+public class TileRegionDecoder {
+
+	/**
+	 * Die <code>TileRegionDecoder</code> aller bisher verwendeten Bilder.
+	 */
+	private static HashMap<URI, TileRegionDecoder> regionDecoders = new HashMap<URI, TileRegionDecoder>();
+
+	/**
+	 * Das Bild der Zoomstufe.
+	 */
+	private URI source;
+
+	/**
+	 * Der geöffnete <code>BitmapRegionDecoder</code> oder <code>null</code>,
+	 * wenn das Bild noch nicht bzw. nicht mehr geöffnet ist.
+	 */
+	private BitmapRegionDecoder decoder;
+
+	/**
+	 * Konstruktor, der einen neuen <code>TileRegionDecoder</code> für das
+	 * übergebene Bild erstellt. Geöffnet wird das Bild erst beim Dekodieren
+	 * der ersten Kachel.
+	 *
+	 * @param source
+	 */
+	private TileRegionDecoder(URI source) {
+		this.source = source;
+	}
+
+	/**
+	 * Gibt den <code>TileRegionDecoder</code> des übergebenen Bilds zurück,
+	 * existiert noch keiner, wird einer erstellt.
+	 *
+	 * @param source
+	 * @return TileRegionDecoder der TileRegionDecoder des Bilds
+	 */
+	public static synchronized TileRegionDecoder regionDecoder(URI source) {
+		TileRegionDecoder regionDecoder = regionDecoders.get(source);
+		if (regionDecoder == null) {
+			regionDecoder = new TileRegionDecoder(source);
+			regionDecoders.put(source, regionDecoder);
+		}
+		return regionDecoder;
+	}
+
+	/**
+	 * Schließt alle geöffneten Bilder, z.B. wenn das System Speicher
+	 * anfordert. Sie werden bei Bedarf erneut geöffnet.
+	 */
+	public static synchronized void closeAll() {
+		for (TileRegionDecoder regionDecoder : regionDecoders.values()) {
+			regionDecoder.close();
+		}
+	}
+
+	/**
+	 * @return the source
+	 */
+	public URI getSource() {
+		return source;
+	}
+
+	/**
+	 * Dekodiert die Kachel an der übergebenen Position. Die Aufrufe werden
+	 * nacheinander ausgeführt, da sich alle Lade-Threads den
+	 * <code>BitmapRegionDecoder</code> teilen.
+	 *
+	 * @param x
+	 * @param y
+	 * @param tileSize
+	 * @param options
+	 * @return Bitmap die Kachel oder null, wenn das Bild nicht geöffnet
+	 *         werden kann oder die Kachel außerhalb des Bilds liegt
+	 */
+	public synchronized Bitmap decodeTile(int x, int y, Coordinate tileSize,
+			BitmapFactory.Options options) {
+		if (decoder == null || decoder.isRecycled()) {
+			try {
+				decoder = BitmapRegionDecoder.newInstance(
+						new File(source).getAbsolutePath(), false);
+			} catch (IOException e) {
+				e.printStackTrace();
+				return null;
+			}
+		}
+
+		/*
+		 * Die Kacheln am rechten und unteren Rand werden auf das Bild
+		 * beschnitten.
+		 */
+		Rect region = new Rect(x * tileSize.getX(), y * tileSize.getY(),
+				Math.min(decoder.getWidth(), (x + 1) * tileSize.getX()),
+				Math.min(decoder.getHeight(), (y + 1) * tileSize.getY()));
+		if (region.isEmpty()) {
+			return null;
+		}
+		return decoder.decodeRegion(region, options);
+	}
+
+	/**
+	 * Schließt das Bild und gibt den Speicher des
+	 * <code>BitmapRegionDecoder</code>s frei.
+	 */
+	public synchronized void close() {
+		if (decoder != null) {
+			decoder.recycle();
+			decoder = null;
+		}
+	}
+
+}
@@ -0,0 +1,238 @@
+/**
+ * @(#)TileSpiral.java
+ * 1.0, 2013-03-04
+ */
+package de.hdm.hettich.studienarbeit.loading;
+
+import de.hdm.hettich.studienarbeit.utile.Coordinate;
+
+/**
+ * Die <code>TileSpiral</code> durchläuft die Kacheln eines Bereichs von einer
+ * mittleren Kachel aus ringförmig nach außen, so werden die Kacheln beim
+ * Laden von der Mitte nach außen abgearbeitet. Jeder Ring wird wie bisher an
+ * der rechten, oberen Ecke begonnen und im Uhrzeigersinn durchlaufen: rechte
+ * Seite nach unten, untere Seite nach links, linke Seite nach oben und obere
+ * Seite nach rechts.
+ * <p>
+ * Anders als eine Liste von <code>Coordinate</code>s erzeugt die
+ * <code>TileSpiral</code> beim Durchlaufen keine Objekte. Sie wird einmal
+ * pro <code>LazyLoader</code> erstellt und bei jedem Ladevorgang über
+ * {@link #reset(int, int, Coordinate, Coordinate, int, int)} neu gesetzt.
+ * Die aktuelle Kachel steht danach in {@link #getX()}, {@link #getY()} bzw.
+ * als spaltenweiser Index in {@link #getIndex()}. Seiten eines Rings, die
+ * vollständig außerhalb des Bereichs liegen, werden übersprungen.
+ *
+ * <pre>
+ * spiral.reset(centerX, centerY, first, last, levels, rows);
+ * while (spiral.next()) {
+ * 	load(spiral.getX(), spiral.getY());
+ * }
+ * </pre>
+ *
+ * @author Stefan Hettich
+ *
+ * @version 1.0, 2013-03-04
+ *
+ */
+public class TileSpiral {
+
+	/**
+	 * Die mittlere Kachel.
+	 */
+	private int centerX, centerY;
+
+	/**
+	 * Linke, obere und rechte, untere Kachel des Bereichs.
+	 */
+	private int firstX, firstY, lastX, lastY;
+
+	/**
+	 * Anzahl der Zeilen des Plans, für die Berechnung des Index.
+	 */
+	private int rows;
+
+	/**
+	 * Anzahl der Ringe um die mittlere Kachel.
+	 */
+	private int levels;
+
+	/**
+	 * Aktueller Ring, 0 ist die mittlere Kachel selbst.
+	 */
+	private int level;
+
+	/**
+	 * Aktuelle Seite des Rings: 0 rechts, 1 unten, 2 links, 3 oben.
+	 */
+	private int side;
+
+	/**
+	 * Anzahl der Kacheln, die auf der aktuellen Seite noch folgen.
+	 */
+	private int remaining;
+
+	/**
+	 * Nächste Kachel relativ zur mittleren Kachel.
+	 */
+	private int dx, dy;
+
+	/**
+	 * Die aktuelle Kachel.
+	 */
+	private int x, y;
+
+	/**
+	 * Setzt die <code>TileSpiral</code> auf einen neuen Durchlauf.
+	 *
+	 * @param centerX
+	 * @param centerY
+	 * @param first
+	 *            linke, obere Kachel des Bereichs
+	 * @param last
+	 *            rechte, untere Kachel des Bereichs
+	 * @param levels
+	 *            Anzahl der Ringe um die mittlere Kachel
+	 * @param rows
+	 *            Anzahl der Zeilen des Plans
+	 */
+	public void reset(int centerX, int centerY, Coordinate first,
+			Coordinate last, int levels, int rows) {
+		this.centerX = centerX;
+		this.centerY = centerY;
+		this.firstX = first.getX();
+		this.firstY = first.getY();
+		this.lastX = last.getX();
+		this.lastY = last.getY();
+		this.levels = levels;
+		this.rows = rows;
+
+		/*
+		 * Die mittlere Kachel wird wie eine letzte Seite mit einer Kachel
+		 * behandelt, danach beginnt der erste Ring.
+		 */
+		this.level = 0;
+		this.side = 3;
+		this.remaining = 1;
+		this.dx = 0;
+		this.dy = 0;
+	}
+
+	/**
+	 * Geht zur nächsten Kachel im Bereich weiter.
+	 *
+	 * @return boolean true wenn es eine weitere Kachel gibt, false wenn alle
+	 *         Ringe durchlaufen sind
+	 */
+	public boolean next() {
+		while (true) {
+			if (remaining == 0) {
+				if (side == 3) {
+					// Nächster Ring, beginnend an der rechten, oberen Ecke.
+					if (level >= levels) {
+						return false;
+					}
+					level++;
+					side = 0;
+					dx = level;
+					dy = -level;
+				} else {
+					side++;
+				}
+				remaining = 2 * level;
+
+				// Liegt die ganze Seite außerhalb, wird sie übersprungen.
+				if (skipSide()) {
+					remaining = 0;
+					continue;
+				}
+			}
+
+			int nextX = centerX + dx;
+			int nextY = centerY + dy;
+			switch (side) {
+			case 0:
+				dy++;
+				break;
+			case 1:
+				dx--;
+				break;
+			case 2:
+				dy--;
+				break;
+			default:
+				dx++;
+				break;
+			}
+			remaining--;
+
+			if (nextX >= firstX && nextX <= lastX && nextY >= firstY
+					&& nextY <= lastY) {
+				x = nextX;
+				y = nextY;
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Prüft, ob die gerade begonnene Seite des Rings vollständig außerhalb
+	 * des Bereichs liegt. Ist das der Fall, wird die relative Position auf das
+	 * Ende der Seite gesetzt.
+	 *
+	 * @return boolean true wenn die Seite übersprungen werden kann
+	 */
+	private boolean skipSide() {
+		switch (side) {
+		case 0:
+			if (centerX + level >= firstX && centerX + level <= lastX) {
+				return false;
+			}
+			dy = level;
+			return true;
+		case 1:
+			if (centerY + level >= firstY && centerY + level <= lastY) {
+				return false;
+			}
+			dx = -level;
+			return true;
+		case 2:
+			if (centerX - level >= firstX && centerX - level <= lastX) {
+				return false;
+			}
+			dy = -level;
+			return true;
+		default:
+			if (centerY - level >= firstY && centerY - level <= lastY) {
+				return false;
+			}
+			dx = level;
+			return true;
+		}
+	}
+
+	/**
+	 * @return the x
+	 */
+	public int getX() {
+		return x;
+	}
+
+	/**
+	 * @return the y
+	 */
+	public int getY() {
+		return y;
+	}
+
+	/**
+	 * Gibt den Index der aktuellen Kachel zurück, die Kacheln werden dabei
+	 * spaltenweise durchnummeriert (siehe
+	 * <code>Tools#convertMatrixPos2Int(Coordinate, Coordinate)</code>).
+	 *
+	 * @return int der Index der aktuellen Kachel
+	 */
+	public int getIndex() {
+		return x * rows + y;
+	}
+
+}
@@ -4,10 +4,16 @@
  */
 package de.hdm.hettich.studienarbeit.service;
 
+import de.hdm.hettich.studienarbeit.loading.TileCache;
+
 /**
- * Die Klasse <code>GlobalSettings</code> fhrt Buch ber die aktuelle
- * Auslastung des Arbeitsspeichers und schlgt ab der berschreitung einer hier
- * definierten Grenze Alarm.
+ * Die Klasse <code>GlobalSettings</code> führt Buch über die aktuelle
+ * Auslastung des Arbeitsspeichers und schlägt ab der Überschreitung einer hier
+ * definierten Grenze Alarm. Als Auslastung zählt der Speicher, den die
+ * dekodierten Kacheln im Verhältnis zum Budget des <code>TileCache</code>s
+ * belegen. Nur dort gibt der <code>TileGarbageService</code> Speicher frei,
+ * der <code>CompressedTileCache</code> und der <code>BitmapPool</code> halten
+ * ihr Budget selbst ein (siehe <code>MemoryGovernor</code>).
  * 
  * @author Stefan Hettich
  * 
@@ -18,34 +24,127 @@ public class GlobalSettings {
 
 	/**
 	 * Konstante die den maximalen Wert der prozentualen Speicherbelegung
-	 * angibt.
+	 * angibt. Ab dieser Belegung (High-Water-Mark) wird mit dem Entladen von
+	 * Kacheln begonnen.
 	 */
 	public final static float MAX_MEMORY_USAGE = 0.75f;
 
 	/**
-	 * Diese gibt zurck, ob aktuell wenig freier Arbeitsspeicher vorhanden ist.
-	 * Dabei wird der gesamt verfgbare Speicher mit dem belegten Speicher
-	 * verglichen. {@link GlobalSettings#MAX_MEMORY_USAGE} entscheidet bei wie
+	 * Konstante die den Standardwert der prozentualen Speicherbelegung angibt,
+	 * bis zu der beim Entladen Kacheln freigegeben werden (Low-Water-Mark).
+	 */
+	public final static float TARGET_MEMORY_USAGE = 0.6f;
+
+	/**
+	 * Prozentuale Speicherbelegung, ab der der Speicher als "gering"
+	 * angesehen wird.
+	 */
+	private float highWaterMark = MAX_MEMORY_USAGE;
+
+	/**
+	 * Prozentuale Speicherbelegung, bis zu der beim Entladen Kacheln
+	 * freigegeben werden.
+	 */
+	private float lowWaterMark = TARGET_MEMORY_USAGE;
+
+	/**
+	 * Instanz der <code>GlobalSettings</code>, es gibt eine für die gesamte
+	 * Anwendung.
+	 */
+	private static GlobalSettings globalSettings = null;
+
+	/**
+	 * Art der Darstellung der Kacheln.
+	 */
+	public enum RenderingMode {
+		/**
+		 * Jede sichtbare Kachel hat einen eigenen <code>TileView</code> in
+		 * einem <code>TileMapView</code>, gescrollt wird über
+		 * <code>HScroll</code> und <code>VScroll</code>.
+		 */
+		VIEWS,
+		/**
+		 * Ein einziger <code>TileCanvasView</code> zeichnet die sichtbaren
+		 * Kacheln direkt auf den Canvas, es gibt keine ScrollViews.
+		 */
+		CANVAS
+	}
+
+	/**
+	 * Konstante, die die Art der Darstellung der Kacheln festlegt.
+	 */
+	public final static RenderingMode RENDERING_MODE = RenderingMode.VIEWS;
+
+	/**
+	 * Gibt die Instanz der <code>GlobalSettings</code> zurück, existiert noch
+	 * keine, wird eine erstellt.
+	 * 
+	 * @return GlobalSettings die GlobalSettings der Anwendung
+	 */
+	public static synchronized GlobalSettings globalSettings() {
+		if (globalSettings == null) {
+			globalSettings = new GlobalSettings();
+		}
+		return globalSettings;
+	}
+
+	/**
+	 * @return the highWaterMark
+	 */
+	public float getHighWaterMark() {
+		return highWaterMark;
+	}
+
+	/**
+	 * @param highWaterMark
+	 *            the highWaterMark to set
+	 */
+	public void setHighWaterMark(float highWaterMark) {
+		this.highWaterMark = highWaterMark;
+	}
+
+	/**
+	 * @return the lowWaterMark
+	 */
+	public float getLowWaterMark() {
+		return lowWaterMark;
+	}
+
+	/**
+	 * @param lowWaterMark
+	 *            the lowWaterMark to set
+	 */
+	public void setLowWaterMark(float lowWaterMark) {
+		this.lowWaterMark = lowWaterMark;
+	}
+
+	/**
+	 * Diese gibt zurück, ob aktuell wenig freier Arbeitsspeicher vorhanden ist.
+	 * Dabei wird das Budget des <code>TileCache</code>s mit dem von den
+	 * dekodierten Kacheln belegten Speicher verglichen. {@link GlobalSettings#MAX_MEMORY_USAGE} entscheidet bei wie
 	 * viel Prozent Belegung der Speicher als "gering" angesehen werden soll.
-	 * (Aktuell 75%, das heit wenn 75% des Speichers belegt sind gibt diese
-	 * Funktion <code>true</code>).
+	 * (Aktuell 75%, das heißt wenn 75% des Speichers belegt sind gibt diese
+	 * Funktion <code>true</code>). Die Grenze kann über
+	 * {@link #setHighWaterMark(float)} angepasst werden.
 	 * 
-	 * @return boolean true wenn die Speicherbelegung eine Grenze berschritten
+	 * @return boolean true wenn die Speicherbelegung eine Grenze überschritten
 	 *         hat.
 	 */
 	public boolean isLowMemory() {
 
-		// Maximal verfgbarer Speicher.
-		float maxMem = Runtime.getRuntime().maxMemory();
+		TileCache cache = TileCache.tileCache();
 
-		// Aktuell belegter Speicher.
-		float usedMem = Runtime.getRuntime().totalMemory();
+		// Budget des TileCaches.
+		float maxMem = cache.getMaxBytes();
+
+		// Aktuell von den dekodierten Kacheln belegter Speicher.
+		float usedMem = cache.getCurrentBytes();
 
 		/*
 		 * Entscheidung ob belgeter Speicher geteilt durch den gesamten Speicher
-		 * grer der oben gesetzten Konstante ist.
+		 * größer der oben gesetzten Konstante ist.
 		 */
-		boolean result = ((usedMem / maxMem) >= MAX_MEMORY_USAGE);
+		boolean result = ((usedMem / maxMem) >= highWaterMark);
 
 		// Log.e("Memory", "is low: " + result + " Speicherstand: " + usedMem
 		// + " / " + maxMem);
@@ -53,4 +152,19 @@ public class GlobalSettings {
 		return result;
 	}
 
+	/**
+	 * Berechnet, wie viele Bytes aus dem <code>TileCache</code> freigegeben
+	 * werden müssen, damit die Speicherbelegung wieder bei der Low-Water-Mark
+	 * liegt.
+	 * 
+	 * @return long die freizugebenden Bytes, 0 wenn die Belegung bereits
+	 *         darunter liegt
+	 */
+	public long calculateBytesToFree() {
+		TileCache cache = TileCache.tileCache();
+		long maxMem = cache.getMaxBytes();
+		long usedMem = cache.getCurrentBytes();
+		return Math.max(0, usedMem - (long) (maxMem * lowWaterMark));
+	}
+
 }
@@ -0,0 +1,280 @@
+/**
+ * @(#)MemoryGovernor.java
+ * 1.0, 2013-03-04
+ */
+package de.hdm.hettich.studienarbeit.service;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Build;
+import android.util.Log;
+import de.hdm.hettich.studienarbeit.loading.BitmapPool;
+import de.hdm.hettich.studienarbeit.loading.CompressedTileCache;
+import de.hdm.hettich.studienarbeit.loading.TileCache;
+import de.hdm.hettich.studienarbeit.loading.TileRegionDecoder;
+
+/**
+ * Der <code>MemoryGovernor</code> führt Buch über den Speicher, den die
+ * geladenen Kacheln tatsächlich belegen. Dazu werden die belegten Bytes des
+ * <code>TileCache</code>s, des <code>CompressedTileCache</code>s und des
+ * <code>BitmapPool</code>s zusammengezählt und mit deren gemeinsamem Budget
+ * verglichen. Die Speicherbelegung, ab der der
+ * <code>TileGarbageService</code> Kacheln entlädt, bezieht sich dagegen nur
+ * auf den <code>TileCache</code> (siehe <code>GlobalSettings</code>).
+ * <p>
+ * Das Budget wird an die Speicherklasse des Geräts angepasst
+ * (<code>ActivityManager.getMemoryClass()</code>). Ab Android 4.0 meldet das
+ * System zusätzlich über <code>ComponentCallbacks2.onTrimMemory</code>, wie
+ * knapp der Speicher gerade ist, die Caches werden dann entsprechend
+ * verkleinert.
+ *
+ * @author Stefan Hettich
+ *
+ * @version 1.0, 2013-03-04
+ *
+ */
+public class MemoryGovernor {
+
+	/**
+	 * Anteil der Speicherklasse für den <code>TileCache</code>: ein Achtel.
+	 */
+	public final static int TILE_CACHE_SHARE = 8;
+
+	/**
+	 * Anteil der Speicherklasse für den <code>CompressedTileCache</code>: ein
+	 * Sechzehntel.
+	 */
+	public final static int COMPRESSED_CACHE_SHARE = 16;
+
+	/**
+	 * Anteil der Speicherklasse für den <code>BitmapPool</code>: ein
+	 * Zweiunddreißigstel.
+	 */
+	public final static int BITMAP_POOL_SHARE = 32;
+
+	/**
+	 * Instanz des <code>MemoryGovernor</code>s, es gibt einen für die gesamte
+	 * Anwendung.
+	 */
+	private static MemoryGovernor memoryGovernor = null;
+
+	/**
+	 * Gibt an, ob jede Speicherwarnung mit dem Zustand der Caches
+	 * protokolliert wird. Standardmäßig ausgeschaltet.
+	 */
+	public final static boolean LOG_TRIMMING = false;
+
+	/**
+	 * Speicherklasse der Anwendung in Bytes. Bis {@link #init(Context)}
+	 * aufgerufen wurde, wird der maximal verfügbare Speicher verwendet.
+	 */
+	private long memoryClassBytes = Runtime.getRuntime().maxMemory();
+
+	/**
+	 * Gibt an, ob bereits beim System auf <code>onTrimMemory</code> gehört
+	 * wird.
+	 */
+	private boolean registered = false;
+
+	/**
+	 * Zuletzt vom System gemeldete Stufe aus <code>onTrimMemory</code>.
+	 */
+	private int lastTrimLevel = 0;
+
+	/**
+	 * Anzahl der bisher vom System gemeldeten Speicherengpässe.
+	 */
+	private int trimCount = 0;
+
+	/**
+	 * Der <code>MemoryGovernor</code> wird über {@link #memoryGovernor()}
+	 * abgerufen.
+	 */
+	private MemoryGovernor() {
+	}
+
+	/**
+	 * Gibt die Instanz des <code>MemoryGovernor</code>s zurück, existiert noch
+	 * keine, wird eine erstellt.
+	 *
+	 * @return MemoryGovernor der MemoryGovernor der Anwendung
+	 */
+	public static synchronized MemoryGovernor memoryGovernor() {
+		if (memoryGovernor == null) {
+			memoryGovernor = new MemoryGovernor();
+		}
+		return memoryGovernor;
+	}
+
+	/**
+	 * Passt die Budgets der Caches an die Speicherklasse des Geräts an und
+	 * meldet den <code>MemoryGovernor</code> beim System an, um über
+	 * Speicherengpässe informiert zu werden. Kann mehrfach aufgerufen werden
+	 * (z.B. in jedem <code>onCreate</code>), angemeldet wird nur einmal.
+	 *
+	 * @param context
+	 */
+	public synchronized void init(Context context) {
+		ActivityManager activityManager = (ActivityManager) context
+				.getSystemService(Context.ACTIVITY_SERVICE);
+		if (activityManager != null && activityManager.getMemoryClass() > 0) {
+			memoryClassBytes = activityManager.getMemoryClass() * 1024L * 1024L;
+		}
+		applyBudgets();
+
+		/*
+		 * ComponentCallbacks2 gibt es erst ab API 14, die Klasse
+		 * TrimMemoryCallbacks darf auf älteren Geräten nicht geladen werden.
+		 */
+		if (!registered
+				&& Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+			context.getApplicationContext().registerComponentCallbacks(
+					new TrimMemoryCallbacks());
+			registered = true;
+		}
+	}
+
+	/**
+	 * Setzt die Budgets der Caches entsprechend ihrem Anteil an der
+	 * Speicherklasse.
+	 */
+	private void applyBudgets() {
+		TileCache.tileCache().setMaxBytes(memoryClassBytes / TILE_CACHE_SHARE);
+		CompressedTileCache.compressedTileCache().setMaxBytes(
+				memoryClassBytes / COMPRESSED_CACHE_SHARE);
+		BitmapPool.bitmapPool().setMaxBytes(
+				memoryClassBytes / BITMAP_POOL_SHARE);
+	}
+
+	/**
+	 * @return the memoryClassBytes
+	 */
+	public synchronized long getMemoryClassBytes() {
+		return memoryClassBytes;
+	}
+
+	/**
+	 * @return the lastTrimLevel
+	 */
+	public synchronized int getLastTrimLevel() {
+		return lastTrimLevel;
+	}
+
+	/**
+	 * @return the trimCount
+	 */
+	public synchronized int getTrimCount() {
+		return trimCount;
+	}
+
+	/**
+	 * Gibt die Bytes zurück, die die geladenen Kacheln aktuell belegen, also
+	 * die dekodierten und komprimierten Kacheln sowie die Bitmaps im Pool.
+	 *
+	 * @return long die belegten Bytes
+	 */
+	public long getUsedBytes() {
+		return TileCache.tileCache().getCurrentBytes()
+				+ CompressedTileCache.compressedTileCache().getCurrentBytes()
+				+ BitmapPool.bitmapPool().getCurrentBytes();
+	}
+
+	/**
+	 * Gibt das gemeinsame Budget der Caches in Bytes zurück.
+	 *
+	 * @return long das Budget
+	 */
+	public long getBudgetBytes() {
+		return TileCache.tileCache().getMaxBytes()
+				+ CompressedTileCache.compressedTileCache().getMaxBytes()
+				+ BitmapPool.bitmapPool().getMaxBytes();
+	}
+
+	/**
+	 * Verkleinert die Caches entsprechend der vom System gemeldeten Stufe.
+	 * Die Budgets selbst bleiben unverändert, die Caches füllen sich beim
+	 * Nachladen wieder.
+	 *
+	 * @param level
+	 *            eine der <code>TRIM_MEMORY_*</code> Konstanten aus
+	 *            <code>ComponentCallbacks2</code>
+	 */
+	public void trimMemory(int level) {
+		synchronized (this) {
+			lastTrimLevel = level;
+			trimCount++;
+		}
+		TileCache tileCache = TileCache.tileCache();
+		CompressedTileCache compressedTileCache = CompressedTileCache
+				.compressedTileCache();
+
+		if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+			// Die Anwendung wird als nächstes beendet, alles freigeben.
+			tileCache.clear();
+			compressedTileCache.clear();
+			TileRegionDecoder.closeAll();
+		} else if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+			/*
+			 * Die Oberfläche ist nicht mehr sichtbar, die Hälfte reicht, um
+			 * beim Zurückkehren schnell wieder etwas anzeigen zu können.
+			 */
+			tileCache.trimToSize(tileCache.getMaxBytes() / 2);
+			compressedTileCache.trimToSize(compressedTileCache.getMaxBytes() / 2);
+		} else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+			/*
+			 * Die Anwendung ist im Vordergrund, nur die komprimierten Kacheln
+			 * werden verkleinert, die dekodierten werden weiterhin angezeigt.
+			 */
+			compressedTileCache.trimToSize(compressedTileCache.getMaxBytes() / 2);
+		}
+
+		/*
+		 * Der Pool hält keine angezeigten Bitmaps, er wird immer geleert. Die
+		 * Ebenen übergeben die Bitmaps der eben entfernten Kacheln erst
+		 * später im UI-Thread an den Pool, diese werden danach nicht mehr
+		 * angenommen.
+		 */
+		BitmapPool.bitmapPool().trim();
+
+		if (LOG_TRIMMING) {
+			Log.d("MemoryGovernor", this.toString());
+		}
+	}
+
+	/**
+	 * Gibt einen String zurück, der bspw. auf der Konsole angezeigt werden
+	 * kann.
+	 */
+	@Override
+	public String toString() {
+		return "MemoryGovernor[belegt: " + getUsedBytes() + " / "
+				+ getBudgetBytes() + " Bytes, Speicherklasse: "
+				+ getMemoryClassBytes() + " Bytes, letzte Stufe: "
+				+ getLastTrimLevel() + "]";
+	}
+
+	/**
+	 * Leitet die Meldungen des Systems an den <code>MemoryGovernor</code>
+	 * weiter. Die Klasse wird nur ab API 14 geladen.
+	 */
+	private static class TrimMemoryCallbacks implements ComponentCallbacks2 {
+
+		@Override
+		public void onTrimMemory(int level) {
+			memoryGovernor().trimMemory(level);
+		}
+
+		@Override
+		public void onLowMemory() {
+			memoryGovernor().trimMemory(
+					ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+		}
+
+		@Override
+		public void onConfigurationChanged(Configuration newConfig) {
+		}
+	}
+
+}
@@ -4,16 +4,20 @@
  */
 package de.hdm.hettich.studienarbeit.service;
 
-import de.hdm.hettich.studienarbeit.bo.Tile;
-import de.hdm.hettich.studienarbeit.utile.Coordinate;
-import de.hdm.hettich.studienarbeit.utile.Tools;
-import de.hdm.hettich.studienarbeit.view.TileMapView;
-import de.hdm.hettich.studienarbeit.view.TileView;
+import android.util.Log;
+import de.hdm.hettich.studienarbeit.loading.TileCache;
+import de.hdm.hettich.studienarbeit.view.TileLayer;
 
 /**
- * Die Klasse <code>TileGarbageService</code> bernimmt das ggf. notwendige
+ * Die Klasse <code>TileGarbageService</code> übernimmt das ggf. notwendige
  * Entladen der Kacheln, sobald <code>GlobalSettings</code> wegen einem
- * Speicherberlauf Alarm schlgt.
+ * Speicherüberlauf Alarm schlägt.
+ * <p>
+ * Damit nicht bei jeder weiteren Kachel erneut geprüft und entladen werden
+ * muss, wird nicht nur eine Kachel entladen, sondern in einem Durchgang so
+ * viele, bis die Speicherbelegung von der High-Water-Mark bis zur
+ * Low-Water-Mark gesunken ist (siehe <code>GlobalSettings</code>). Für jeden
+ * Durchgang wird gezählt, wie viele Bytes freigegeben wurden.
  * 
  * @author Stefan Hettich
  * 
@@ -25,15 +29,56 @@ public class TileGarbageService {
 	/**
 	 * <code>GlobalSettings</code> beinhaltet die Informationen zur Auslastung
 	 * des Arbeitsspeichers, diese werden zur Entscheidungsfindung, ob Kacheln
-	 * entladen werden mssen oder nicht, gebraucht.
+	 * entladen werden müssen oder nicht, gebraucht.
 	 */
 	private GlobalSettings settings;
 
+	/**
+	 * Gibt an, ob jeder Entlade-Durchgang protokolliert wird. Standardmäßig
+	 * ausgeschaltet, da die Prüfung bei jeder neuen Kachel auf dem UI-Thread
+	 * läuft.
+	 */
+	public final static boolean LOG_CLEANING = false;
+
+	/**
+	 * Instanz des <code>TileGarbageService</code>s, es gibt einen für die
+	 * gesamte Anwendung, damit die Zähler erhalten bleiben.
+	 */
+	private static TileGarbageService tileGarbageService = null;
+
+	/**
+	 * Anzahl der bisherigen Entlade-Durchgänge.
+	 */
+	private int cycleCount = 0;
+
+	/**
+	 * Im letzten Entlade-Durchgang freigegebene Bytes.
+	 */
+	private long lastFreedBytes = 0;
+
+	/**
+	 * Insgesamt freigegebene Bytes.
+	 */
+	private long totalFreedBytes = 0;
+
 	/**
 	 * Konstruktor, der ein neuen <code>TileGarbageService</code> erstellt.
 	 */
 	public TileGarbageService() {
-		this.settings = new GlobalSettings();
+		this.settings = GlobalSettings.globalSettings();
+	}
+
+	/**
+	 * Gibt die Instanz des <code>TileGarbageService</code>s zurück, existiert
+	 * noch keine, wird eine erstellt.
+	 * 
+	 * @return TileGarbageService der TileGarbageService der Anwendung
+	 */
+	public static synchronized TileGarbageService tileGarbageService() {
+		if (tileGarbageService == null) {
+			tileGarbageService = new TileGarbageService();
+		}
+		return tileGarbageService;
 	}
 
 	/**
@@ -52,96 +97,95 @@ public class TileGarbageService {
 	}
 
 	/**
-	 * Die Methode wird ausgefhrt und prft zunchst, ob es notwendig ist
-	 * bereits geladene Kacheln zu entladen (wenn der Speicher volluft). Ist
-	 * die Speicherauslastung noch in Ordnung passiert nichts, anderenfalls wird
-	 * das Entladen einer Kachel angestoen. Dabei wird die, am weistesten von
-	 * der zu ladenden Kachel entfernteste, Kachel identifieziert und wieder
-	 * entladen, d.h. das <code>Bitmap</code> aus dem <code>TileView</code> und
-	 * der <code>byte[]</code> aus dem <code>Tile</code> entfernt.
+	 * @return the cycleCount
+	 */
+	public int getCycleCount() {
+		return cycleCount;
+	}
+
+	/**
+	 * @return the lastFreedBytes
+	 */
+	public long getLastFreedBytes() {
+		return lastFreedBytes;
+	}
+
+	/**
+	 * @return the totalFreedBytes
+	 */
+	public long getTotalFreedBytes() {
+		return totalFreedBytes;
+	}
+
+	/**
+	 * Die Methode wird ausgeführt und prüft zunächst, ob es notwendig ist
+	 * bereits geladene Kacheln zu entladen (wenn der Speicher die
+	 * High-Water-Mark erreicht). Ist die Speicherauslastung noch in Ordnung
+	 * passiert nichts, anderenfalls werden so viele Kacheln entladen, bis die
+	 * Low-Water-Mark wieder erreicht ist. Dabei werden zuerst die, am
+	 * weitesten von der zu ladenden Kachel entfernten, Kacheln dieser
+	 * <code>TileMap</code> aus dem <code>TileCache</code> entfernt. Reichen
+	 * diese nicht aus, werden die am längsten nicht verwendeten Kacheln
+	 * (z.B. anderer Zoomstufen) entfernt. Die Ebene (z.B. der
+	 * <code>TileMapView</code>) wird darüber vom Cache informiert und gibt das
+	 * <code>Bitmap</code> frei.
 	 * 
-	 * @param tileMapView
-	 * @param tilePos
+	 * @param tileLayer
+	 * @param x
+	 *            x-Position der zu ladenden Kachel
+	 * @param y
+	 *            y-Position der zu ladenden Kachel
+	 * @return long die in diesem Durchgang freigegebenen Bytes
 	 */
-	public void cleanIfNecessary(TileMapView tileMapView, Coordinate tilePos) {
-		// Prfen, ob der aktuelle Platz im Arbeitsspeicher niederig ist.
-		if (settings.isLowMemory()) {
-			/*
-			 * Die bereits geladenen Tiles werden mit der Methode getLoadedTiles
-			 * der Klasse TileMap ermittlet, dabei wird einfach der komplette
-			 * Tile-Array zurckgegeben, die nicht geladenen Tiles werden null
-			 * gesetzt.
-			 */
-			Tile[][] tiles = tileMapView.getTileMap().getLoadedTiles();
-
-			double maxTileGap = 0;
-			Coordinate mostDistantTilePos = null;
-
-			// Komplettes Array durchlaufen
-			for (int x = 0; x < tiles.length; x++) {
-				for (int y = 0; y < tiles[x].length; y++) {
-					/*
-					 * Prfen, ob die Tile an der aktuellen Position nicht null
-					 * ist.
-					 */
-					if (tiles[x][y] != null) {
-						/*
-						 * Berechnung des Abstands von zu ladender Tile und
-						 * aktueller Tile.
-						 */
-						double tempTileGap = Tools
-								.calculateVectorLength(new Coordinate(tilePos
-										.getX() - x, tilePos.getY() - y));
-						/*
-						 * Prfen, ob aktuell maximaler Abstand bertroffen
-						 * wird.
-						 */
-						if (tempTileGap > maxTileGap) {
-							/*
-							 * Wenn aktuell maximaler Abstand bertroffen wird,
-							 * dann den neuen Abstand als maximalen setzen und
-							 * die Position dieser Kachel zwischenspeichern.
-							 */
-							maxTileGap = tempTileGap;
-							mostDistantTilePos = new Coordinate(x, y);
-						}
-					}
-				}
-			}
-
-			/*
-			 * Prfen, ob eine "am weitesten entfernteste" Kachel gefunden
-			 * wurde. Wenn ja, wird der "Entlade"-Prozess angestoen, das heit
-			 * aus dem TileView wird das Bitmap entfernt und aus der Tile wird
-			 * der byte[] entfernt.
-			 */
-			if (mostDistantTilePos != null) {
-				// Log.e("Entladen", "Lade Kachel (" + tilePos.getX() + ","
-				// + tilePos.getY() + ") Entlade Kachel ("
-				// + mostDistantTilePos.getX() + ", "
-				// + mostDistantTilePos.getY() + ")");
-				/*
-				 * Anhand der oben berechneten Koordinaten wird der zugehrige
-				 * TileView ermittelt, sodass das geladene Bitmap dort entfernt
-				 * werden kann und wieder das Platzhalter-Bild gesetzt wird.
-				 */
-				TileView tileView = (TileView) tileMapView.getChildAt(Tools
-						.convertMatrixPos2Int(mostDistantTilePos, tileMapView
-								.getTileMap().getDimension()));
-				// TileView leeren.
-				tileView.setImageBitmap(null);
-
-				/*
-				 * Anhand der oben berechneten Koordinaten wird der zugehrige
-				 * Tile ermittelt, sodass der geladene byte[] dort entfernt
-				 * werden kann.
-				 */
-				Tile tile = tiles[mostDistantTilePos.getX()][mostDistantTilePos
-						.getY()];
-				// Tile "vergessen", das heit byte[] entfernen.
-				tile.forget();
-			}
+	public long cleanIfNecessary(TileLayer tileLayer, int x, int y) {
+		// Prüfen, ob der aktuelle Platz im Arbeitsspeicher niederig ist.
+		if (!settings.isLowMemory()) {
+			return 0;
 		}
+
+		long bytesToFree = settings.calculateBytesToFree();
+		TileCache cache = TileCache.tileCache();
+
+		/*
+		 * Die am weitesten entfernten Kacheln dieser TileMap werden über den
+		 * räumlichen Index des TileCaches gefunden und entfernt, ohne alle
+		 * geladenen Kacheln durchlaufen zu müssen. Es wird mindestens eine
+		 * Kachel entfernt.
+		 */
+		long freed = cache.removeFarthest(tileLayer.getTileMap(), x, y,
+				Math.max(1, bytesToFree));
+
+		/*
+		 * Reicht das nicht, wird der Rest nach LRU entfernt. Gezählt wird,
+		 * was der Cache tatsächlich entfernt hat, da die Lade-Threads
+		 * gleichzeitig weitere Kacheln ablegen können.
+		 */
+		if (freed < bytesToFree) {
+			freed += cache.trimToSize(Math.max(0, cache.getCurrentBytes()
+					- (bytesToFree - freed)));
+		}
+
+		synchronized (this) {
+			cycleCount++;
+			lastFreedBytes = freed;
+			totalFreedBytes += freed;
+		}
+		if (LOG_CLEANING) {
+			Log.d("TileGarbageService", this.toString());
+		}
+		return freed;
+	}
+
+	/**
+	 * Gibt einen String zurück, der bspw. auf der Konsole angezeigt werden
+	 * kann.
+	 */
+	@Override
+	public synchronized String toString() {
+		return "TileGarbageService[Durchgänge: " + cycleCount
+				+ ", zuletzt freigegeben: " + lastFreedBytes
+				+ " Bytes, insgesamt freigegeben: " + totalFreedBytes
+				+ " Bytes]";
 	}
 
 }
@@ -4,27 +4,34 @@
  */
 package de.hdm.hettich.studienarbeit.service;
 
-import de.hdm.hettich.studienarbeit.bo.Defect;
 import de.hdm.hettich.studienarbeit.bo.Drawing;
 import de.hdm.hettich.studienarbeit.bo.TileMap;
 import de.hdm.hettich.studienarbeit.bo.Viewport;
 import de.hdm.hettich.studienarbeit.factory.Defect2ViewFactory;
 import de.hdm.hettich.studienarbeit.factory.TileMap2ViewFactory;
+import de.hdm.hettich.studienarbeit.loading.CompressedTileCache;
 import de.hdm.hettich.studienarbeit.loading.LazyLoader;
+import de.hdm.hettich.studienarbeit.loading.TileCache;
 import de.hdm.hettich.studienarbeit.utile.Coordinate;
+import de.hdm.hettich.studienarbeit.view.DefectView;
 import de.hdm.hettich.studienarbeit.view.HScroll;
+import de.hdm.hettich.studienarbeit.view.TileCanvasView;
+import de.hdm.hettich.studienarbeit.view.TileLayer;
 import de.hdm.hettich.studienarbeit.view.TileMapView;
 import de.hdm.hettich.studienarbeit.view.VScroll;
 import android.content.Context;
-import android.os.Handler;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+import android.view.ViewTreeObserver.OnGlobalLayoutListener;
 import android.widget.RelativeLayout;
 import android.widget.Toast;
 
 /**
- * Die Klasse <code>TileMapChanger</code> ist fr den Zoomstufen-Wechsel bei der
- * Anzeige eines <code>Drawing</code>s zustndig. Sowohl das Drcken des
+ * Die Klasse <code>TileMapChanger</code> ist für den Zoomstufen-Wechsel bei der
+ * Anzeige eines <code>Drawing</code>s zuständig. Sowohl das Drücken des
  * ZoomIn-, als auch des ZoomOut-Buttons wird hier bearbeitet, dabei wird die
- * aktuelle Zoomstufe vergessen und die neue Zoomstufen angezeigt.
+ * aktuelle Zoomstufe ausgeblendet und die neue Zoomstufen angezeigt.
  * 
  * @author Stefan Hettich
  * 
@@ -34,9 +41,9 @@ import android.widget.Toast;
 public class TileMapChanger {
 
 	/**
-	 * <code>RelativeLayout</code>, das den </code>TileMapView</code> hlt und
-	 * zunchst geleert werden muss, um dann wieder mit dem aktuellen
-	 * <code>TileMapView</code> gefllt zu werden.
+	 * <code>RelativeLayout</code>, das die </code>TileMapView</code>s aller
+	 * bisher angezeigten Zoomstufen und als letztes Child die
+	 * <code>DefectView</code>s hält.
 	 */
 	private RelativeLayout wrapper;
 
@@ -136,8 +143,8 @@ public class TileMapChanger {
 
 	/**
 	 * Diese Methode wird aufgerufen, wenn ein Reinzoomen stattfinden soll.
-	 * Dabei wird die nchst detailliertere TileMap zur Anzeige gebracht, sofern
-	 * diese verfgbar ist.
+	 * Dabei wird die nächst detailliertere TileMap zur Anzeige gebracht, sofern
+	 * diese verfügbar ist.
 	 */
 	public void zoomIn() {
 		// Aktuell aktive TileMap abrufen.
@@ -147,9 +154,9 @@ public class TileMapChanger {
 		if (posInList < drawing.getTileMaps().size() - 1) {
 			TileMap newTileMap = drawing.getTileMaps().get(posInList + 1);
 			/*
-			 * bergabe an die Methode initZoom, die Operationen vornimmt, die
-			 * sowohl beim Reinzommen, als auch beim Rauszoomen ausgefhrt
-			 * werden mssen.
+			 * Übergabe an die Methode initZoom, die Operationen vornimmt, die
+			 * sowohl beim Reinzommen, als auch beim Rauszoomen ausgeführt
+			 * werden müssen.
 			 */
 			initZoom(newTileMap);
 		} else {
@@ -161,8 +168,8 @@ public class TileMapChanger {
 
 	/**
 	 * Diese Methode wird aufgerufen, wenn ein Rauszoomen stattfinden soll.
-	 * Dabei wird die nchst allgemeinere TileMap zur Anzeige gebracht, sofern
-	 * diese verfgbar ist.
+	 * Dabei wird die nächst allgemeinere TileMap zur Anzeige gebracht, sofern
+	 * diese verfügbar ist.
 	 */
 	public void zoomOut() {
 		// Aktuell aktive TileMap abrufen.
@@ -170,16 +177,16 @@ public class TileMapChanger {
 		// Position der TileMap in Array-List abrufen.
 		int posInList = drawing.getTileMaps().indexOf(activeTileMap);
 		/*
-		 * Prfen, ob aktuelle Zoomebene an einer greren Position als 0 steht,
-		 * das heit, ob es noch weitere allgemeinere TileMaps gibt.
+		 * Prüfen, ob aktuelle Zoomebene an einer größeren Position als 0 steht,
+		 * das heißt, ob es noch weitere allgemeinere TileMaps gibt.
 		 */
 		if (posInList > 0) {
-			// Die nchst allgemeinere TileMap wird abgerufen.
+			// Die nächst allgemeinere TileMap wird abgerufen.
 			TileMap newTileMap = drawing.getTileMaps().get(posInList - 1);
 			/*
-			 * bergabe an die Methode initZoom, die Operationen vornimmt, die
-			 * sowohl beim Reinzommen, als auch beim Rauszoomen ausgefhrt
-			 * werden mssen.
+			 * Übergabe an die Methode initZoom, die Operationen vornimmt, die
+			 * sowohl beim Reinzommen, als auch beim Rauszoomen ausgeführt
+			 * werden müssen.
 			 */
 			initZoom(newTileMap);
 		} else {
@@ -194,53 +201,192 @@ public class TileMapChanger {
 	}
 
 	/**
-	 * Hier werden die Operationen zusammengefasst, die sowohl beim ZoomIn, als
-	 * auch beim ZoomOut bentigt werden.
+	 * Diese Methode wird am Ende einer Pinch-To-Zoom-Geste aufgerufen. Es wird
+	 * die <code>TileMap</code> angezeigt, deren Skalierungsfaktor dem durch
+	 * die Geste erreichten Skalierungsfaktor am nächsten liegt. Die Grenze
+	 * zwischen zwei Zoomstufen liegt dabei in deren geometrischer Mitte.
+	 * 
+	 * @param gestureScale
+	 *            Skalierung durch die Geste relativ zur aktiven TileMap
+	 * @param focusX
+	 *            Mittelpunkt der Geste auf dem Display in x-Richtung
+	 * @param focusY
+	 *            Mittelpunkt der Geste auf dem Display in y-Richtung
+	 * @return boolean true wenn die Zoomstufe gewechselt wurde
+	 */
+	public boolean zoomTo(float gestureScale, float focusX, float focusY) {
+		TileMap activeTileMap = drawing.getAcitveTileMap();
+		float targetScaleFactor = activeTileMap.getScaleFactor() * gestureScale;
+
+		// Die TileMap mit dem nächstgelegenen Skalierungsfaktor suchen.
+		TileMap nearest = activeTileMap;
+		double nearestDistance = Math.abs(Math.log(targetScaleFactor
+				/ activeTileMap.getScaleFactor()));
+		for (TileMap tileMap : drawing.getTileMaps()) {
+			double distance = Math.abs(Math.log(targetScaleFactor
+					/ tileMap.getScaleFactor()));
+			if (distance < nearestDistance) {
+				nearestDistance = distance;
+				nearest = tileMap;
+			}
+		}
+
+		if (nearest == activeTileMap) {
+			return false;
+		}
+		initZoom(nearest, focusX, focusY);
+		return true;
+	}
+
+	/**
+	 * Wechselt auf die übergebene <code>TileMap</code>, dabei wird um die
+	 * Mitte des Displays gezoomt.
 	 * 
 	 * @param tileMap
+	 * @see #initZoom(TileMap, float, float)
 	 */
 	public void initZoom(TileMap tileMap) {
+		initZoom(tileMap, viewport.getSize().getX() / 2, viewport.getSize()
+				.getY() / 2);
+	}
 
+	/**
+	 * Hier werden die Operationen zusammengefasst, die sowohl beim ZoomIn, als
+	 * auch beim ZoomOut benötigt werden. Der übergebene Punkt auf dem Display
+	 * zeigt vor und nach dem Wechsel dieselbe Stelle des Plans.
+	 * <p>
+	 * Die Ansicht wird dabei nicht mehr komplett neu aufgebaut: Für jede
+	 * Zoomstufe gibt es höchstens einen <code>TileMapView</code>, der beim
+	 * Verlassen der Zoomstufe nur ausgeblendet und bei der Rückkehr wieder
+	 * angezeigt wird. Die <code>DefectView</code>s werden nur neu
+	 * positioniert. Die bisherige Zoomstufe bleibt skaliert als Platzhalter
+	 * über der neuen liegen, bis deren sichtbare Kacheln geladen sind (siehe
+	 * {@link TileMapView#setPlaceholder(TileMapView)}).
+	 * 
+	 * @param tileMap
+	 * @param focusX
+	 * @param focusY
+	 */
+	public void initZoom(TileMap tileMap, float focusX, float focusY) {
+
+		// Abrufen der "alten" TileMap.
+		TileMap oldTileMap = drawing.getAcitveTileMap();
 		// Abrufen des "alten" Skalierungsfaktors.
-		float oldScaleFactor = drawing.getAcitveTileMap().getScaleFactor();
+		float oldScaleFactor = oldTileMap.getScaleFactor();
 		// Abrufen des "neuen" Skalierungsfaktors.
 		float newScaleFactor = tileMap.getScaleFactor();
 		// Berechnung des "relativen" Skalierungsfaktors.
 		float scaleFactor = newScaleFactor / oldScaleFactor;
 
-		// Setzen der neuen aktiven TileMap.
-		drawing.setAcitveTileMap(tileMap);
+		/*
+		 * Setzen der neuen aktiven TileMap, diese wird dabei aufgebaut, falls
+		 * sie zum ersten Mal angezeigt wird. Weit entfernte Zoomstufen geben
+		 * ihre Kacheln und ihren Zustand frei.
+		 */
+		drawing.activateTileMap(tileMap);
+		releaseUnusedTileMaps(oldTileMap);
 
 		// "Alte" Position des Viewport abrufen.
 		Coordinate oldPos = viewport.getPosition();
 
 		// Berechnen der neuen Position des Viewports.
-		Coordinate newPos = calculateNewPosition(oldPos, scaleFactor,
-				viewport.getSize());
+		Coordinate newPos = calculateNewPosition(oldPos, scaleFactor, focusX,
+				focusY);
 
 		// Setzen der neuen Position des Viewports.
 		viewport.setPosition(newPos, tileMap.getSize());
 
-		// Alle vorhandenen TileMapViews werden entfernt.
-		this.wrapper.removeAllViews();
+		// Die DefectViews werden an die neue Zoomstufe angepasst.
+		RelativeLayout wrapperDefects = (RelativeLayout) wrapper
+				.getChildAt(wrapper.getChildCount() - 1);
+		positionDefects(wrapperDefects, newScaleFactor);
 
-		// Anhand der neuen TileMap wird ein neuer TileMapView erstellt.
-		TileMap2ViewFactory viewFactory = new TileMap2ViewFactory(context);
-		wrapper.addView(viewFactory.createCalculatedTileMapView(tileMap));
+		if (wrapper.getChildAt(0) instanceof TileCanvasView) {
+			/*
+			 * Beim Zeichnen auf den Canvas wird der vorhandene
+			 * TileCanvasView weiterverwendet und die DefectViews werden
+			 * selbst verschoben.
+			 */
+			TileCanvasView canvasView = (TileCanvasView) wrapper.getChildAt(0);
+			canvasView.setTileMap(tileMap);
+			canvasView.bindViewport(viewport);
+			wrapperDefects.scrollTo(viewport.getPosition().getX(), viewport
+					.getPosition().getY());
+			startLoading(canvasView);
+			return;
+		}
+
+		TileMapView oldView = (TileMapView) findTileLayer(wrapper, oldTileMap);
+		TileMapView newView = (TileMapView) findTileLayer(wrapper, tileMap);
 
 		/*
-		 * Dieser Handler muss erstellt werden, da die ScrollViews (hScroll und
-		 * vScroll) die Vernderugen ihre Childs nur mit Verzgerung
-		 * registieren. Die nderung des TileMapViews wird also nicht sofort
-		 * behandelt und das fhrte zu Fehler beim scrollen in den ScrollViews,
-		 * da diese nur bis zu den alten Grenzen scrollten. Jetzt wurde ein
-		 * kleiner Delay von 100ms eingebaut, der die Verschiebung somit erst
-		 * verzgert beginnen lsst, was das Problem lst.
+		 * Alle übrigen Zoomstufen ausblenden, z.B. den Platzhalter eines noch
+		 * nicht abgeschlossenen Wechsels.
 		 */
-		new Handler().postDelayed(new Runnable() {
+		oldView.clearPlaceholder();
+		for (int i = 0; i < wrapper.getChildCount(); i++) {
+			View child = wrapper.getChildAt(i);
+			if (child instanceof TileMapView && child != oldView
+					&& child != newView) {
+				((TileMapView) child).hide();
+			}
+		}
+
+		if (newView == null) {
+			/*
+			 * Für diese Zoomstufe gibt es noch keinen TileMapView, also wird
+			 * anhand der neuen TileMap einer erstellt.
+			 */
+			TileMap2ViewFactory viewFactory = new TileMap2ViewFactory(context);
+			newView = viewFactory.createCalculatedTileMapView(tileMap,
+					viewport);
+		} else {
+			/*
+			 * Den vorhandenen TileMapView wieder anzeigen, seine TileViews
+			 * zeigen noch alle Kacheln an, die im TileCache liegen.
+			 */
+			wrapper.removeView(newView);
+			newView.setScaleX(1f);
+			newView.setScaleY(1f);
+			newView.setVisibility(View.VISIBLE);
+		}
+		/*
+		 * Die neue Zoomstufe wird ganz unten eingefügt, damit der Platzhalter
+		 * über ihr liegt.
+		 */
+		wrapper.addView(newView, 0);
+
+		/*
+		 * Die alte Zoomstufe wird so skaliert, dass sie sich mit der neuen
+		 * deckt. Da die Position des Viewports ebenfalls mit dem relativen
+		 * Skalierungsfaktor umgerechnet wird, muss dafür nur um die linke,
+		 * obere Ecke skaliert werden.
+		 */
+		oldView.setPivotX(0);
+		oldView.setPivotY(0);
+		oldView.setScaleX(scaleFactor);
+		oldView.setScaleY(scaleFactor);
+		newView.setPlaceholder(oldView);
+
+		/*
+		 * Die ScrollViews (hScroll und vScroll) kennen die Größe der neuen
+		 * Zoomstufe erst nach dem nächsten Layout und würden vorher nur bis zu
+		 * den alten Grenzen scrollen. Deshalb wird erst gescrollt, sobald das
+		 * Layout abgeschlossen ist.
+		 */
+		final ViewTreeObserver observer = wrapper.getViewTreeObserver();
+		observer.addOnGlobalLayoutListener(new OnGlobalLayoutListener() {
 
 			@Override
-			public void run() {
+			public void onGlobalLayout() {
+				// Nur einmal scrollen, danach wird der Listener entfernt.
+				if (observer.isAlive()) {
+					observer.removeGlobalOnLayoutListener(this);
+				} else {
+					wrapper.getViewTreeObserver()
+							.removeGlobalOnLayoutListener(this);
+				}
+
 				// hScroll und vScroll werden abgerufen.
 				VScroll vScroll = (VScroll) wrapper.getParent();
 				HScroll hScroll = (HScroll) vScroll.getParent();
@@ -251,37 +397,99 @@ public class TileMapChanger {
 				hScroll.scrollTo(viewport.getPosition().getX(), viewport
 						.getPosition().getY());
 			}
+		});
 
-		}, 100);
-
-		/*
-		 * Erstellen einer neuen Defect2ViewFactory, die die Defects in mehrere
-		 * DefectViews zur Anzegie umwandelt.
-		 */
-		Defect2ViewFactory defectFactory = new Defect2ViewFactory(this.context);
+		// Initialisieren des Ladevorgangs in neuem TileMapView.
+		startLoading(newView);
+	}
 
-		// Erstellen des RelativeLayout fr die Defects.
-		RelativeLayout wrapperDefects = new RelativeLayout(this.context);
-		// Alle vorhandenen Defects durchlaufen.
-		for (Defect defect : drawing.getDefects()) {
+	/**
+	 * Gibt alle Zoomstufen frei, die nicht mehr benötigt werden (siehe
+	 * <code>Drawing.findUnusedTileMaps(TileMap)</code>). Zuerst werden ihre
+	 * Kacheln aus dem <code>TileCache</code> und dem
+	 * <code>CompressedTileCache</code> entfernt, dann wird ihr ausgeblendeter
+	 * <code>TileMapView</code> geleert und entfernt. Erst danach gibt die
+	 * <code>TileMap</code> ihr Bitset frei.
+	 * 
+	 * @param retained
+	 *            TileMap, die zusätzlich erhalten bleibt
+	 */
+	private void releaseUnusedTileMaps(TileMap retained) {
+		TileCache tileCache = TileCache.tileCache();
+		CompressedTileCache compressedTileCache = CompressedTileCache
+				.compressedTileCache();
+		for (TileMap tileMap : drawing.findUnusedTileMaps(retained)) {
 			/*
-			 * Erstellen eines neuen DefectViews und hinzufgen zum
-			 * wrapperDefects.
+			 * Die TileMapViews werden über das Entfernen informiert, solange
+			 * sie noch angezeigt werden, und geben die Bitmaps danach an den
+			 * BitmapPool.
 			 */
-			wrapperDefects.addView(defectFactory.createCalculatedView(defect,
-					newScaleFactor));
+			tileCache.removeAll(tileMap);
+			compressedTileCache.removeAll(tileMap);
+
+			TileLayer tileLayer = findTileLayer(wrapper, tileMap);
+			if (tileLayer instanceof TileMapView) {
+				((TileMapView) tileLayer).unbindAll();
+				wrapper.removeView((TileMapView) tileLayer);
+			}
+			tileMap.release();
 		}
-		wrapper.addView(wrapperDefects);
+	}
 
-		// Initialisieren des Ladevorgangs in neuem TileMapView.
-		TileMapView tileMapView = (TileMapView) wrapper.getChildAt(0);
-		LazyLoader loader = LazyLoader.lazyLoader(tileMapView, viewport);
+	/**
+	 * Gibt die Ebene im übergebenen Wrapper zurück, die die übergebene
+	 * <code>TileMap</code> darstellt.
+	 * 
+	 * @param wrapper
+	 * @param tileMap
+	 * @return TileLayer die Ebene oder null, wenn es für die TileMap keine
+	 *         Ebene gibt
+	 */
+	public static TileLayer findTileLayer(ViewGroup wrapper, TileMap tileMap) {
+		for (int i = 0; i < wrapper.getChildCount(); i++) {
+			View child = wrapper.getChildAt(i);
+			if (child instanceof TileLayer
+					&& ((TileLayer) child).getTileMap() == tileMap) {
+				return (TileLayer) child;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Positioniert alle <code>DefectView</code>s im übergebenen
+	 * <code>RelativeLayout</code> für den übergebenen Skalierungsfaktor neu.
+	 * 
+	 * @param wrapperDefects
+	 * @param scaleFactor
+	 */
+	private void positionDefects(RelativeLayout wrapperDefects,
+			float scaleFactor) {
+		for (int i = 0; i < wrapperDefects.getChildCount(); i++) {
+			Defect2ViewFactory.positionView(
+					(DefectView) wrapperDefects.getChildAt(i), scaleFactor);
+		}
+		wrapperDefects.requestLayout();
+	}
+
+	/**
+	 * Stößt den Ladevorgang in der übergebenen Ebene an.
+	 * 
+	 * @param tileLayer
+	 */
+	private void startLoading(TileLayer tileLayer) {
+		LazyLoader loader = LazyLoader.lazyLoader(tileLayer, viewport);
+		/*
+		 * Die sichtbaren Kacheln der neuen Ebene werden zunächst verkleinert
+		 * dekodiert und danach in voller Auflösung nachgeladen.
+		 */
+		loader.setTransition(true);
 		loader.load();
 	}
 
 	/**
 	 * Diese Methode berechnet die neue Position des <code>Viewport</code> bei
-	 * einer Vergrerung bzw. einer Verkleinerung.
+	 * einer Vergrößerung bzw. einer Verkleinerung.
 	 * 
 	 * @param oldPos
 	 * @param scaleFactor
@@ -290,26 +498,43 @@ public class TileMapChanger {
 	 */
 	public Coordinate calculateNewPosition(Coordinate oldPos,
 			float scaleFactor, Coordinate displaySize) {
+		return calculateNewPosition(oldPos, scaleFactor,
+				displaySize.getX() / 2, displaySize.getY() / 2);
+	}
+
+	/**
+	 * Diese Methode berechnet die neue Position des <code>Viewport</code> bei
+	 * einer Vergrößerung bzw. einer Verkleinerung um den übergebenen Punkt auf
+	 * dem Display.
+	 * 
+	 * @param oldPos
+	 * @param scaleFactor
+	 * @param focusX
+	 * @param focusY
+	 * @return Coordinate die neue Position des Viewports
+	 */
+	public Coordinate calculateNewPosition(Coordinate oldPos,
+			float scaleFactor, float focusX, float focusY) {
 		/*
 		 * Alte Position wird mit dem Skalierungsfaktor multipliziert, dadurch
-		 * wird der Viewport zunchst an die linken oberen Ecke gleichgesetzt.
+		 * wird der Viewport zunächst an die linken oberen Ecke gleichgesetzt.
 		 */
 		float x = oldPos.getX() * scaleFactor;
 		float y = oldPos.getY() * scaleFactor;
 
 		/*
 		 * Nun muss der Viewport noch so verschoben werden, dass sich der
-		 * Mittelpunkt der alten Zoomstufe mit dem Mittelpunkt in der neuen
-		 * Zoomstufe deckt. Dazu wird die Hlfte des Displays mit der relativen
-		 * Skalierung multipliziert (das heit wenn von Zoomstufe 1 auf
-		 * Zoomstufe 2 umgeschalten wird ist der relative Zoomfaktor 1; wenn von
-		 * Zoomstufe 2 auf Zoomstufe 1 umgeschalten wird ist der relative
-		 * Zoomfaktor 0,5).
+		 * übergebene Punkt der alten Zoomstufe mit dem Punkt in der neuen
+		 * Zoomstufe deckt (bei den Buttons ist das die Mitte des Displays).
+		 * Dazu wird der Punkt mit der relativen Skalierung multipliziert (das
+		 * heißt wenn von Zoomstufe 1 auf Zoomstufe 2 umgeschalten wird ist der
+		 * relative Zoomfaktor 1; wenn von Zoomstufe 2 auf Zoomstufe 1
+		 * umgeschalten wird ist der relative Zoomfaktor 0,5).
 		 */
-		x += (displaySize.getX() / 2 * (scaleFactor - 1));
-		y += (displaySize.getY() / 2 * (scaleFactor - 1));
+		x += (focusX * (scaleFactor - 1));
+		y += (focusY * (scaleFactor - 1));
 
-		// Rckgabe der berechneten Position.
+		// Rückgabe der berechneten Position.
 		return new Coordinate((int) x, (int) y);
 	}
 
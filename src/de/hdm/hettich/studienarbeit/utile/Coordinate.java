@@ -7,7 +7,7 @@ package de.hdm.hettich.studienarbeit.utile;
 /**
  * Diese Klasse dient dazu ein einfaches Integer-Wertepaar darzustellen. Dabei
  * kann entweder eine Position (also ein Punkt) dargestellt werden, oder auch
- * eine Gre (Hhe und Breite).
+ * eine Größe (Höhe und Breite).
  * 
  * @author Stefan Hettich
  * 
@@ -17,12 +17,12 @@ package de.hdm.hettich.studienarbeit.utile;
 public class Coordinate {
 
 	/**
-	 * x-Wert der Koordinate; Negative-Werte knnen verwendet werden.
+	 * x-Wert der Koordinate; Negative-Werte können verwendet werden.
 	 */
 	private int x;
 
 	/**
-	 * y-Wert der Koordinate; Negative-Werte knnen verwendet werden.
+	 * y-Wert der Koordinate; Negative-Werte können verwendet werden.
 	 */
 	private int y;
 
@@ -36,7 +36,7 @@ public class Coordinate {
 
 	/**
 	 * Konstruktor, der eine Instanz von <code>Coordinate</code> erstellt, deren
-	 * x- und y-Wert der bergebenen Coordinate entspricht.
+	 * x- und y-Wert der übergebenen Coordinate entspricht.
 	 * 
 	 * @param c
 	 */
@@ -45,7 +45,7 @@ public class Coordinate {
 	}
 
 	/**
-	 * Konstruktor, der eine Instanz von <code>Coordinate</code> mit bergebenem
+	 * Konstruktor, der eine Instanz von <code>Coordinate</code> mit übergebenem
 	 * x- und y-Wert erstellt.
 	 * 
 	 * @param x
@@ -86,6 +86,18 @@ public class Coordinate {
 		this.y = y;
 	}
 
+	/**
+	 * Setzt x- und y-Wert, so kann eine <code>Coordinate</code>
+	 * wiederverwendet werden, statt eine neue zu erstellen.
+	 * 
+	 * @param x
+	 * @param y
+	 */
+	public void set(int x, int y) {
+		this.x = x;
+		this.y = y;
+	}
+
 	/**
 	 * Vergleicht zwei <code>Coordinate</code>-Objekte miteinander. Die Objekte
 	 * sind gleich, wenn deren x- und y-Werte gleich sind.
@@ -98,8 +110,8 @@ public class Coordinate {
 	}
 
 	/**
-	 * Erhht das Wertepaar um die bergebenen Integer-Werte. Es sind negative
-	 * Werte mglich.
+	 * Erhöht das Wertepaar um die übergebenen Integer-Werte. Es sind negative
+	 * Werte möglich.
 	 * 
 	 * @param dx
 	 * @param dy
@@ -110,7 +122,7 @@ public class Coordinate {
 	}
 
 	/**
-	 * Gibt einen String zurck, der bspw. auf der Konsole angezeigt werden
+	 * Gibt einen String zurück, der bspw. auf der Konsole angezeigt werden
 	 * kann.
 	 */
 	public String toString() {
@@ -6,9 +6,9 @@ package de.hdm.hettich.studienarbeit.utile;
 
 /**
  * Die Klasse <code>Tools</code> beinhaltet einige allgemeine mathematische
- * Operationen, die keiner anderen Klasse speziell zugeordnet werden knnen,
- * durch die ffentlichen, statischen Methoden ist ein direkter Zugriff von
- * auen mglich.
+ * Operationen, die keiner anderen Klasse speziell zugeordnet werden können,
+ * durch die öffentlichen, statischen Methoden ist ein direkter Zugriff von
+ * außen möglich.
  * 
  * @author Stefan Hettich
  * 
@@ -18,7 +18,7 @@ package de.hdm.hettich.studienarbeit.utile;
 public class Tools {
 
 	/**
-	 * Bestimmt anhand der bergebenen Koordinaten der mittleren
+	 * Bestimmt anhand der übergebenen Koordinaten der mittleren
 	 * <code>Tile</code> und den Dimensionen der <code>TileMap</code> die
 	 * Position im eindimensionalen Array der <code>TileView</code>s des
 	 * <code>TileMapView</code>.
@@ -29,15 +29,19 @@ public class Tools {
 	 */
 	public static int convertMatrixPos2Int(Coordinate centerTile,
 			Coordinate dimension) {
-		return centerTile.getX() * dimension.getX() + centerTile.getY();
+		/*
+		 * Die TileViews werden spaltenweise angelegt, eine Spalte enthält also
+		 * so viele TileViews, wie die TileMap in y-Richtung Kacheln hat.
+		 */
+		return centerTile.getX() * dimension.getY() + centerTile.getY();
 	}
 
 	/**
-	 * Berechnet die Lnge eines bergebenen Vektors, der hier in Form einer
-	 * <code>Coordinate</code> bergeben wird.
+	 * Berechnet die Länge eines übergebenen Vektors, der hier in Form einer
+	 * <code>Coordinate</code> übergeben wird.
 	 * 
 	 * @param c
-	 * @return double Lnge des Vektors
+	 * @return double Länge des Vektors
 	 */
 	public static double calculateVectorLength(Coordinate c) {
 		return Math.sqrt(c.getX() * c.getX() + c.getY() * c.getY());
@@ -10,7 +10,7 @@ import android.widget.ImageView;
 
 /**
  * Die Klasse <code>DefectView</code> erbt von <code>ImageView</code> und
- * bernimmt die Darstellung eines <code>Defect</code>s.
+ * übernimmt die Darstellung eines <code>Defect</code>s.
  * 
  * @author Stefan Hettich
  * 
@@ -28,7 +28,7 @@ public class DefectView extends ImageView {
 	/**
 	 * Konstruktor, der verhanden sein muss, da <code>DefectView</code> von
 	 * <code>ImageView</code> erbt. Die Sichtbarkeit ist auf protected gesetzt,
-	 * sodass ein Zugriff von auen nicht mglich ist und stattdessen der
+	 * sodass ein Zugriff von außen nicht möglich ist und stattdessen der
 	 * Konstruktor mit mehreren Parametern verwendet werden muss.
 	 * 
 	 * @param context
@@ -39,7 +39,7 @@ public class DefectView extends ImageView {
 
 	/**
 	 * Konstruktor, der ein neuen <code>DefectView</code> erstellt, dabei wird
-	 * der zugehrige <code>Defect</code> gesetzt.
+	 * der zugehörige <code>Defect</code> gesetzt.
 	 * 
 	 * @param context
 	 * @param defect
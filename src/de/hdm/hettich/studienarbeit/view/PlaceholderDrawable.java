@@ -0,0 +1,98 @@
+/**
+ * @(#)PlaceholderDrawable.java
+ * 1.0, 2013-03-04
+ */
+package de.hdm.hettich.studienarbeit.view;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+/**
+ * Das <code>PlaceholderDrawable</code> zeichnet den Ausschnitt einer Kachel
+ * einer gröberen Zoomstufe vergrößert auf die Größe eines
+ * <code>TileView</code>s (siehe <code>TilePlaceholder</code>). Wie beim
+ * Zeichnen im <code>TileCanvasView</code> wird das <code>Bitmap</code> der
+ * gröberen Kachel dabei direkt über einen Quellbereich gezeichnet, es werden
+ * keine Pixel kopiert.
+ * <p>
+ * Solange das <code>PlaceholderDrawable</code> ein <code>Bitmap</code>
+ * anzeigt, ist dieses über <code>TilePlaceholder#acquire(Bitmap)</code> als
+ * verwendet markiert und wird nicht im <code>BitmapPool</code>
+ * wiederverwendet.
+ *
+ * @author Stefan Hettich
+ *
+ * @version 1.0, 2013-03-04
+ *
+ */
+public class PlaceholderDrawable extends Drawable {
+
+	/**
+	 * <code>Bitmap</code> der gröberen Kachel.
+	 */
+	private Bitmap bitmap;
+
+	/**
+	 * Ausschnitt der Kachel in Pixeln des <code>Bitmap</code>s.
+	 */
+	private Rect src = new Rect();
+
+	/**
+	 * <code>Paint</code> zum Zeichnen, der Ausschnitt wird gefiltert
+	 * vergrößert.
+	 */
+	private Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+	/**
+	 * @return the bitmap
+	 */
+	public Bitmap getBitmap() {
+		return bitmap;
+	}
+
+	/**
+	 * Setzt das <code>Bitmap</code> und den anzuzeigenden Ausschnitt, der
+	 * Ausschnitt wird dabei kopiert.
+	 *
+	 * @param bitmap
+	 * @param src
+	 */
+	public void set(Bitmap bitmap, Rect src) {
+		this.bitmap = bitmap;
+		if (src != null) {
+			this.src.set(src);
+		}
+		invalidateSelf();
+	}
+
+	@Override
+	public void draw(Canvas canvas) {
+		if (bitmap != null && !bitmap.isRecycled()) {
+			canvas.drawBitmap(bitmap, src, getBounds(), paint);
+		}
+	}
+
+	@Override
+	public void setAlpha(int alpha) {
+		paint.setAlpha(alpha);
+		invalidateSelf();
+	}
+
+	@Override
+	public void setColorFilter(ColorFilter colorFilter) {
+		paint.setColorFilter(colorFilter);
+		invalidateSelf();
+	}
+
+	@Override
+	public int getOpacity() {
+		return bitmap == null || bitmap.hasAlpha() ? PixelFormat.TRANSLUCENT
+				: PixelFormat.OPAQUE;
+	}
+
+}
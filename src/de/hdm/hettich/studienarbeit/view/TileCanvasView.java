@@ -0,0 +1,413 @@
+/**
+ * @(#)TileCanvasView.java
+ * 1.0, 2013-03-04
+ */
+package de.hdm.hettich.studienarbeit.view;
+
+import java.util.ArrayList;
+
+import de.hdm.hettich.studienarbeit.bo.TileMap;
+import de.hdm.hettich.studienarbeit.bo.Viewport;
+import de.hdm.hettich.studienarbeit.loading.BitmapPool;
+import de.hdm.hettich.studienarbeit.loading.TileCache;
+import de.hdm.hettich.studienarbeit.loading.TileKey;
+import de.hdm.hettich.studienarbeit.loading.TilePlaceholder;
+import de.hdm.hettich.studienarbeit.utile.Coordinate;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.view.View;
+
+/**
+ * Die Klasse <code>TileCanvasView</code> ist die Alternative zum
+ * <code>TileMapView</code>, die ohne <code>HScroll</code>, <code>VScroll</code>
+ * und <code>TileView</code>s auskommt (siehe
+ * <code>GlobalSettings.RENDERING_MODE</code>). Es gibt nur einen einzigen
+ * <code>View</code> in Größe des Bildschirms, der die sichtbaren Kacheln direkt
+ * aus dem <code>TileCache</code> auf den Canvas zeichnet, verschoben um die
+ * Position des <code>Viewport</code>s.
+ * <p>
+ * Beim Verschieben des Plans muss so weder gemessen noch ein Layout berechnet
+ * werden, es wird nur neu gezeichnet. Kacheln, die noch nicht geladen sind,
+ * werden wenn möglich durch den vergrößerten Ausschnitt einer geladenen Kachel
+ * einer gröberen Zoomstufe ersetzt (siehe <code>TilePlaceholder</code>), sonst
+ * als grüne Fläche gezeichnet. Verkleinert dekodierte Kacheln werden beim
+ * Zeichnen auf die volle Kachelgröße gestreckt.
+ *
+ * @author Stefan Hettich
+ *
+ * @version 1.0, 2013-03-04
+ *
+ */
+public class TileCanvasView extends View implements TileLayer,
+		TileCache.EvictionListener {
+
+	/**
+	 * <code>TileMap</code>, die in diesem <code>TileCanvasView</code>
+	 * dargestellt wird.
+	 */
+	private TileMap tileMap;
+
+	/**
+	 * <code>Viewport</code>, dessen Bereich gezeichnet wird.
+	 */
+	private Viewport viewport;
+
+	/**
+	 * <code>Paint</code> zum Zeichnen der Kacheln, verkleinerte Kacheln werden
+	 * dabei gefiltert gestreckt.
+	 */
+	private Paint tilePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+	/**
+	 * <code>Paint</code> zum Zeichnen noch nicht geladener Kacheln.
+	 */
+	private Paint placeholderPaint = new Paint();
+
+	/**
+	 * Zielbereich der gerade gezeichneten Kachel, wird für jede Kachel
+	 * wiederverwendet, damit beim Zeichnen keine Objekte erstellt werden.
+	 */
+	private Rect dst = new Rect();
+
+	/**
+	 * Ausschnitt eines Platzhalters aus einer gröberen Zoomstufe, wird
+	 * ebenfalls wiederverwendet.
+	 */
+	private Rect src = new Rect();
+
+	/**
+	 * Schlüssel für die Abfrage der gerade gezeichneten Kachel im
+	 * <code>TileCache</code>, wird ebenfalls wiederverwendet.
+	 */
+	private TileKey drawKey = new TileKey();
+
+	/**
+	 * Die aus dem <code>TileCache</code> entfernten <code>Bitmap</code>s, die
+	 * nach dem nächsten Zeichnen an den <code>BitmapPool</code> übergeben
+	 * werden.
+	 */
+	private ArrayList<Bitmap> evictedBitmaps = new ArrayList<Bitmap>();
+
+	/**
+	 * Die in <code>onDraw(Canvas)</code> gerade abgearbeiteten
+	 * <code>Bitmap</code>s. Die Liste wird zu Beginn des Zeichnens mit
+	 * {@link #evictedBitmaps} getauscht, so muss beim Zeichnen keine neue
+	 * Liste erstellt werden.
+	 */
+	private ArrayList<Bitmap> drawnEvictedBitmaps = new ArrayList<Bitmap>();
+
+	/**
+	 * Generation des <code>BitmapPool</code>s, als das erste
+	 * <code>Bitmap</code> in {@link #evictedBitmaps} vorgemerkt wurde (siehe
+	 * <code>BitmapPool.getTrimGeneration()</code>).
+	 */
+	private int evictedTrimGeneration;
+
+	/**
+	 * Sperre für {@link #evictedBitmaps}, da die Listen getauscht werden und
+	 * deshalb nicht selbst als Sperre dienen können.
+	 */
+	private final Object evictionLock = new Object();
+
+	/**
+	 * Skalierung während einer Pinch-To-Zoom-Geste, die bereits geladenen
+	 * Kacheln werden dabei nur skaliert gezeichnet.
+	 */
+	private float gestureScale = 1f;
+
+	/**
+	 * Mittelpunkt der Pinch-To-Zoom-Geste in x-Richtung.
+	 */
+	private float gestureFocusX;
+
+	/**
+	 * Mittelpunkt der Pinch-To-Zoom-Geste in y-Richtung.
+	 */
+	private float gestureFocusY;
+
+	/**
+	 * Konstruktor, der verhanden sein muss, da <code>TileCanvasView</code> von
+	 * <code>View</code> erbt. Die Sichtbarkeit ist auf protected gesetzt,
+	 * sodass ein Zugriff von außen nicht möglich ist und stattdessen der
+	 * Konstruktor mit mehreren Parametern verwendet werden muss.
+	 *
+	 * @param context
+	 */
+	protected TileCanvasView(Context context) {
+		super(context);
+	}
+
+	/**
+	 * Konstruktor, der einen <code>TileCanvasView</code> erstellt und die
+	 * anzuzeigende <code>TileMap</code> setzt.
+	 *
+	 * @param context
+	 * @param tileMap
+	 */
+	public TileCanvasView(Context context, TileMap tileMap) {
+		super(context);
+		this.tileMap = tileMap;
+		placeholderPaint.setColor(Color.GREEN);
+	}
+
+	/**
+	 * @return the tileMap
+	 */
+	@Override
+	public TileMap getTileMap() {
+		return tileMap;
+	}
+
+	/**
+	 * Setzt die darzustellende <code>TileMap</code>, z.B. bei einem
+	 * Zoomstufen-Wechsel.
+	 *
+	 * @param tileMap
+	 *            the tileMap to set
+	 */
+	public void setTileMap(TileMap tileMap) {
+		this.tileMap = tileMap;
+		invalidate();
+	}
+
+	/**
+	 * @return the viewport
+	 */
+	public Viewport getViewport() {
+		return viewport;
+	}
+
+	/**
+	 * Merkt sich den <code>Viewport</code> und zeichnet neu. Im Gegensatz zum
+	 * <code>TileMapView</code> muss hier nichts gebunden werden.
+	 */
+	@Override
+	public void bindViewport(Viewport viewport) {
+		this.viewport = viewport;
+		invalidate();
+	}
+
+	/**
+	 * Setzt die Skalierung während einer Pinch-To-Zoom-Geste und zeichnet neu.
+	 * Es wird dabei nichts geladen, am Ende der Geste wird die Skalierung auf
+	 * 1 zurückgesetzt und gegebenenfalls die Zoomstufe gewechselt.
+	 *
+	 * @param scale
+	 * @param focusX
+	 * @param focusY
+	 */
+	public void setGestureScale(float scale, float focusX, float focusY) {
+		this.gestureScale = scale;
+		this.gestureFocusX = focusX;
+		this.gestureFocusY = focusY;
+		invalidate();
+	}
+
+	/**
+	 * Eine Kachel wird angezeigt, wenn sie im <code>TileCache</code> liegt und
+	 * den sichtbaren Bereich schneidet.
+	 */
+	@Override
+	public boolean isShowing(TileKey key) {
+		if (viewport == null || key.getTileMap() != tileMap) {
+			return false;
+		}
+		return isVisible(key.getX(), key.getY())
+				&& TileCache.tileCache().contains(key);
+	}
+
+	/**
+	 * Für eine sichtbare Kachel wird ein Platzhalter gezeichnet, wenn sie
+	 * nicht im <code>TileCache</code> liegt, aber eine passende Kachel einer
+	 * gröberen Zoomstufe.
+	 */
+	@Override
+	public boolean isShowingPlaceholder(TileKey key) {
+		if (viewport == null || key.getTileMap() != tileMap
+				|| !isVisible(key.getX(), key.getY())
+				|| TileCache.tileCache().contains(key)) {
+			return false;
+		}
+		return TilePlaceholder.findSource(key, src) != null;
+	}
+
+	/**
+	 * Zeichnet neu, sofern die geladene Kachel sichtbar ist. Das
+	 * <code>Bitmap</code> selbst wird beim Zeichnen aus dem
+	 * <code>TileCache</code> geholt.
+	 */
+	@Override
+	public void showTile(TileKey key, Bitmap bitmap) {
+		if (viewport != null && key.getTileMap() == tileMap
+				&& isVisible(key.getX(), key.getY())) {
+			invalidate();
+		}
+	}
+
+	/**
+	 * Prüft, ob die Kachel an der übergebenen Position den sichtbaren Bereich
+	 * schneidet.
+	 *
+	 * @param x
+	 * @param y
+	 * @return boolean true wenn die Kachel sichtbar ist
+	 */
+	private boolean isVisible(int x, int y) {
+		Coordinate tileSize = tileMap.getTileSize();
+		Coordinate position = viewport.getPosition();
+		Coordinate size = viewport.getSize();
+		return (x + 1) * tileSize.getX() > position.getX()
+				&& x * tileSize.getX() < position.getX() + size.getX()
+				&& (y + 1) * tileSize.getY() > position.getY()
+				&& y * tileSize.getY() < position.getY() + size.getY();
+	}
+
+	/**
+	 * Zeichnet alle sichtbaren Kacheln. Dabei wird jede Kachel im
+	 * <code>TileCache</code> als zuletzt verwendet markiert, damit zuerst
+	 * unsichtbare Kacheln entfernt werden.
+	 */
+	@Override
+	protected void onDraw(Canvas canvas) {
+		/*
+		 * Die bis jetzt entfernten Bitmaps werden in diesem Durchlauf nicht
+		 * mehr gezeichnet und können danach wiederverwendet werden.
+		 */
+		int trimGeneration;
+		synchronized (evictionLock) {
+			ArrayList<Bitmap> swap = evictedBitmaps;
+			evictedBitmaps = drawnEvictedBitmaps;
+			drawnEvictedBitmaps = swap;
+			trimGeneration = evictedTrimGeneration;
+		}
+		ArrayList<Bitmap> evicted = drawnEvictedBitmaps;
+
+		if (tileMap != null && viewport != null) {
+			TileCache cache = TileCache.tileCache();
+			Coordinate tileSize = tileMap.getTileSize();
+			int offsetX = viewport.getPosition().getX();
+			int offsetY = viewport.getPosition().getY();
+
+			/*
+			 * Sichtbarer Bereich in Pixeln der TileMap. Während einer
+			 * Pinch-To-Zoom-Geste wird um deren Mittelpunkt skaliert, beim
+			 * Verkleinern werden dabei mehr Kacheln sichtbar.
+			 */
+			float visibleLeft = offsetX;
+			float visibleTop = offsetY;
+			float visibleRight = offsetX + viewport.getSize().getX();
+			float visibleBottom = offsetY + viewport.getSize().getY();
+			if (gestureScale != 1f) {
+				canvas.save();
+				canvas.scale(gestureScale, gestureScale, gestureFocusX,
+						gestureFocusY);
+				visibleLeft += gestureFocusX - gestureFocusX / gestureScale;
+				visibleTop += gestureFocusY - gestureFocusY / gestureScale;
+				visibleRight = visibleLeft + viewport.getSize().getX()
+						/ gestureScale;
+				visibleBottom = visibleTop + viewport.getSize().getY()
+						/ gestureScale;
+			}
+
+			// Bereich der sichtbaren Kacheln berechnen.
+			int firstX = Math.max(0, (int) (visibleLeft / tileSize.getX()));
+			int firstY = Math.max(0, (int) (visibleTop / tileSize.getY()));
+			int lastX = Math.min(tileMap.getColumns() - 1,
+					(int) ((visibleRight - 1) / tileSize.getX()));
+			int lastY = Math.min(tileMap.getRows() - 1,
+					(int) ((visibleBottom - 1) / tileSize.getY()));
+
+			for (int x = firstX; x <= lastX; x++) {
+				for (int y = firstY; y <= lastY; y++) {
+					int left = x * tileSize.getX() - offsetX;
+					int top = y * tileSize.getY() - offsetY;
+					dst.set(left, top, left + tileSize.getX(),
+							top + tileSize.getY());
+
+					TileKey key = drawKey.set(tileMap, x, y);
+					Bitmap bitmap = cache.touch(key);
+					if (bitmap != null && !bitmap.isRecycled()) {
+						canvas.drawBitmap(bitmap, null, dst, tilePaint);
+						continue;
+					}
+
+					// Platzhalter aus einer gröberen Zoomstufe zeichnen.
+					bitmap = TilePlaceholder.findSource(key, src);
+					if (bitmap != null) {
+						canvas.drawBitmap(bitmap, src, dst, tilePaint);
+					} else {
+						canvas.drawRect(dst, placeholderPaint);
+					}
+				}
+			}
+
+			if (gestureScale != 1f) {
+				canvas.restore();
+			}
+		}
+
+		if (!evicted.isEmpty()) {
+			BitmapPool pool = BitmapPool.bitmapPool();
+			for (int i = 0; i < evicted.size(); i++) {
+				Bitmap bitmap = evicted.get(i);
+				// Ein Bitmap mehrerer Kacheln kann noch angezeigt werden.
+				if (!TileCache.tileCache().isShared(bitmap)) {
+					pool.put(bitmap, trimGeneration);
+				}
+			}
+			evicted.clear();
+		}
+	}
+
+	/**
+	 * Registriert den <code>TileCanvasView</code> beim <code>TileCache</code>,
+	 * sobald er angezeigt wird.
+	 */
+	@Override
+	protected void onAttachedToWindow() {
+		super.onAttachedToWindow();
+		TileCache.tileCache().addEvictionListener(this);
+	}
+
+	/**
+	 * Meldet den <code>TileCanvasView</code> beim <code>TileCache</code> ab,
+	 * sobald er nicht mehr angezeigt wird.
+	 */
+	@Override
+	protected void onDetachedFromWindow() {
+		TileCache.tileCache().removeEvictionListener(this);
+		super.onDetachedFromWindow();
+	}
+
+	/**
+	 * Wird vom <code>TileCache</code> aufgerufen, wenn eine Kachel entfernt
+	 * wurde. Das <code>Bitmap</code> wird vorgemerkt und nach dem nächsten
+	 * Zeichnen an den <code>BitmapPool</code> übergeben, da es bis dahin noch
+	 * auf dem Bildschirm zu sehen sein kann.
+	 */
+	@Override
+	public void onTileEvicted(TileKey key, Bitmap bitmap) {
+		// Kacheln anderer TileMaps interessieren hier nicht.
+		if (key.getTileMap() != tileMap) {
+			return;
+		}
+		/*
+		 * Wurde der Pool seit dem ersten vorgemerkten Bitmap nach einer
+		 * Speicherwarnung geleert, werden alle vorgemerkten Bitmaps nicht
+		 * mehr angenommen.
+		 */
+		int trimGeneration = BitmapPool.bitmapPool().getTrimGeneration();
+		synchronized (evictionLock) {
+			if (evictedBitmaps.isEmpty()) {
+				evictedTrimGeneration = trimGeneration;
+			}
+			evictedBitmaps.add(bitmap);
+		}
+		postInvalidate();
+	}
+
+}
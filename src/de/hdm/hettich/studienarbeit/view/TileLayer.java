@@ -0,0 +1,68 @@
+/**
+ * @(#)TileLayer.java
+ * 1.0, 2013-03-04
+ */
+package de.hdm.hettich.studienarbeit.view;
+
+import android.graphics.Bitmap;
+import de.hdm.hettich.studienarbeit.bo.TileMap;
+import de.hdm.hettich.studienarbeit.bo.Viewport;
+import de.hdm.hettich.studienarbeit.loading.TileKey;
+
+/**
+ * Die Schnittstelle <code>TileLayer</code> beschreibt eine Ebene, die eine
+ * <code>TileMap</code> darstellt. Der <code>LazyLoader</code> arbeitet nur
+ * gegen diese Schnittstelle, so kann die Darstellung entweder über einzelne
+ * <code>TileView</code>s (<code>TileMapView</code>) oder direkt auf einem
+ * Canvas (<code>TileCanvasView</code>) erfolgen (siehe
+ * <code>GlobalSettings.RENDERING_MODE</code>).
+ *
+ * @author Stefan Hettich
+ *
+ * @version 1.0, 2013-03-04
+ *
+ */
+public interface TileLayer {
+
+	/**
+	 * Gibt die dargestellte <code>TileMap</code> zurück.
+	 *
+	 * @return TileMap die dargestellte TileMap
+	 */
+	TileMap getTileMap();
+
+	/**
+	 * Passt die Darstellung an den übergebenen <code>Viewport</code> an.
+	 *
+	 * @param viewport
+	 */
+	void bindViewport(Viewport viewport);
+
+	/**
+	 * Prüft, ob die übergebene Kachel gerade angezeigt wird.
+	 *
+	 * @param key
+	 * @return boolean true wenn die Kachel angezeigt wird
+	 */
+	boolean isShowing(TileKey key);
+
+	/**
+	 * Prüft, ob für die übergebene Kachel gerade ein Platzhalter aus einer
+	 * gröberen Zoomstufe angezeigt wird (siehe <code>TilePlaceholder</code>).
+	 *
+	 * @param key
+	 * @return boolean true wenn ein Platzhalter angezeigt wird
+	 */
+	boolean isShowingPlaceholder(TileKey key);
+
+	/**
+	 * Zeigt das <code>Bitmap</code> einer geladenen Kachel an, sofern diese
+	 * gerade im dargestellten Bereich liegt. Muss im UI-Thread aufgerufen
+	 * werden.
+	 *
+	 * @param key
+	 * @param bitmap
+	 */
+	void showTile(TileKey key, Bitmap bitmap);
+
+}
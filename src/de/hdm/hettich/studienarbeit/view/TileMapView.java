@@ -7,19 +7,52 @@ package de.hdm.hettich.studienarbeit.view;
 import java.util.ArrayList;
 
 import de.hdm.hettich.studienarbeit.bo.TileMap;
+import de.hdm.hettich.studienarbeit.bo.Viewport;
+import de.hdm.hettich.studienarbeit.factory.Tile2ViewFactory;
+import de.hdm.hettich.studienarbeit.loading.BitmapPool;
+import de.hdm.hettich.studienarbeit.loading.TileCache;
+import de.hdm.hettich.studienarbeit.loading.TileKey;
+import de.hdm.hettich.studienarbeit.loading.TilePlaceholder;
+import de.hdm.hettich.studienarbeit.utile.Coordinate;
 import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.util.SparseArray;
 import android.widget.RelativeLayout;
 
 /**
  * Die Klasse <code>TileMapView</code> erbt von <code>RelativeLayout</code> und
- * bernimmt die Darstellung einer <code>TileMap</code>.
- * 
+ * übernimmt die Darstellung einer <code>TileMap</code>.
+ * <p>
+ * Es wird nicht mehr für jede <code>Tile</code> ein eigener
+ * <code>TileView</code> erstellt, sondern nur so viele, wie für den sichtbaren
+ * Bereich plus einem Rand von {@link #margin} Kacheln benötigt werden. Wird
+ * der <code>Viewport</code> verschoben, werden die <code>TileView</code>s der
+ * nicht mehr benötigten Kacheln an die neu hinzugekommenen Kacheln gebunden
+ * und verschoben (siehe {@link #bindViewport(Viewport)}). Die Anzahl der
+ * <code>TileView</code>s und damit der Aufwand für Layout und Speicher bleibt
+ * so unabhängig von der Größe des Plans.
+ * <p>
+ * Solange der <code>TileMapView</code> angezeigt wird, ist er beim
+ * <code>TileCache</code> registriert. Wird eine Kachel seiner
+ * <code>TileMap</code> aus dem Cache entfernt, wird auch der zugehörige
+ * <code>TileView</code> geleert und das <code>Bitmap</code> zur
+ * Wiederverwendung an den <code>BitmapPool</code> übergeben.
+ * <p>
+ * Beim Zoomstufen-Wechsel wird der <code>TileMapView</code> nicht verworfen,
+ * sondern nur ausgeblendet (siehe <code>TileMapChanger</code>). Bis die
+ * sichtbaren Kacheln der neuen Zoomstufe geladen sind, bleibt die alte
+ * Zoomstufe skaliert als Platzhalter sichtbar. Erst wenn die Zoomstufe nicht
+ * mehr benötigt wird, werden seine <code>TileView</code>s freigegeben (siehe
+ * {@link #unbindAll()}).
+ *
  * @author Stefan Hettich
- * 
+ *
  * @version 1.0, 2013-03-04
- * 
+ *
  */
-public class TileMapView extends RelativeLayout {
+public class TileMapView extends RelativeLayout implements TileLayer,
+		TileCache.EvictionListener {
 
 	/**
 	 * <code>TileMap</code>, die in diesem <code>TileMapView</code> dargestellt
@@ -27,12 +60,70 @@ public class TileMapView extends RelativeLayout {
 	 */
 	private TileMap tileMap;
 
+	/**
+	 * Breite des Rands um den sichtbaren Bereich in Kacheln, für den ebenfalls
+	 * <code>TileView</code>s gebunden werden.
+	 */
+	private int margin = 1;
+
+	/**
+	 * Die aktuell an eine Kachel gebundenen <code>TileView</code>s. Der
+	 * Schlüssel ist der Index der Kachel (siehe
+	 * {@link TileMap#indexOf(int, int)}), die <code>SparseArray</code> kommt
+	 * beim Nachschlagen ohne <code>Integer</code>-Objekte aus.
+	 */
+	private SparseArray<TileView> boundViews = new SparseArray<TileView>();
+
+	/**
+	 * Die aktuell nicht benötigten <code>TileView</code>s, die beim nächsten
+	 * Verschieben wieder gebunden werden können.
+	 */
+	private ArrayList<TileView> freeViews = new ArrayList<TileView>();
+
+	/**
+	 * Gibt an, ob bereits ein Bereich gebunden wurde.
+	 */
+	private boolean bound = false;
+
+	/**
+	 * Linke, obere Kachel des zuletzt gebundenen Bereichs.
+	 */
+	private Coordinate firstBound = new Coordinate();
+
+	/**
+	 * Rechte, untere Kachel des zuletzt gebundenen Bereichs.
+	 */
+	private Coordinate lastBound = new Coordinate();
+
+	/**
+	 * Schlüssel für die Abfrage neu gebundener Kacheln im
+	 * <code>TileCache</code>, wird für jede Kachel wiederverwendet.
+	 */
+	private TileKey lookupKey = new TileKey();
+
+	/**
+	 * Der zuletzt gebundene <code>Viewport</code>.
+	 */
+	private Viewport viewport;
+
+	/**
+	 * <code>TileMapView</code> der vorherigen Zoomstufe, der skaliert über
+	 * diesem liegt, bis alle sichtbaren Kacheln geladen sind.
+	 */
+	private TileMapView placeholder;
+
+	/**
+	 * Ausschnitt eines Platzhalters aus einer gröberen Zoomstufe, wird für
+	 * jeden Platzhalter wiederverwendet.
+	 */
+	private Rect placeholderSrc = new Rect();
+
 	/**
 	 * Konstruktor, der verhanden sein muss, da <code>TileMapView</code> von
 	 * <code>RelativeLayout</code> erbt. Die Sichtbarkeit ist auf protected
-	 * gesetzt, sodass ein Zugriff von auen nicht mglich ist und stattdessen
+	 * gesetzt, sodass ein Zugriff von außen nicht möglich ist und stattdessen
 	 * der Konstruktor mit mehreren Parametern verwendet werden muss.
-	 * 
+	 *
 	 * @param context
 	 */
 	protected TileMapView(Context context) {
@@ -42,7 +133,7 @@ public class TileMapView extends RelativeLayout {
 	/**
 	 * Konstruktor, der einen <code>TileMapView</code> erstellt und die
 	 * anzuzeigende <code>TileMap</code> setzt.
-	 * 
+	 *
 	 * @param context
 	 * @param tileMap
 	 */
@@ -54,6 +145,7 @@ public class TileMapView extends RelativeLayout {
 	/**
 	 * @return the tileMap
 	 */
+	@Override
 	public TileMap getTileMap() {
 		return tileMap;
 	}
@@ -67,25 +159,367 @@ public class TileMapView extends RelativeLayout {
 	}
 
 	/**
-	 * Gibt alle <code>TileView</code>s des <code>TileMapView</code>s zurck,
-	 * dazu werden einfach alle Childs des <code>TileMapView</code>s abgerufen.
-	 * 
-	 * @return ArrayList<TileView> alle TileViews
+	 * @return the margin
+	 */
+	public int getMargin() {
+		return margin;
+	}
+
+	/**
+	 * @param margin
+	 *            the margin to set
+	 */
+	public void setMargin(int margin) {
+		this.margin = margin;
+	}
+
+	/**
+	 * @return the placeholder
+	 */
+	public TileMapView getPlaceholder() {
+		return placeholder;
+	}
+
+	/**
+	 * Setzt den <code>TileMapView</code> der vorherigen Zoomstufe als
+	 * Platzhalter. Sind bereits alle sichtbaren Kacheln geladen, wird er
+	 * sofort wieder ausgeblendet.
+	 *
+	 * @param placeholder
+	 *            the placeholder to set
+	 */
+	public void setPlaceholder(TileMapView placeholder) {
+		this.placeholder = placeholder;
+		checkPlaceholder();
+	}
+
+	/**
+	 * Blendet den Platzhalter aus, sofern einer gesetzt ist.
+	 */
+	public void clearPlaceholder() {
+		if (placeholder != null) {
+			placeholder.hide();
+			placeholder = null;
+		}
+	}
+
+	/**
+	 * Blendet den <code>TileMapView</code> aus und setzt eine eventuelle
+	 * Skalierung als Platzhalter zurück. Die <code>TileView</code>s bleiben
+	 * gebunden, sodass der <code>TileMapView</code> beim nächsten Wechsel auf
+	 * diese Zoomstufe sofort wieder angezeigt werden kann.
+	 */
+	public void hide() {
+		clearPlaceholder();
+		setVisibility(GONE);
+		setScaleX(1f);
+		setScaleY(1f);
+	}
+
+	/**
+	 * Gibt alle <code>TileView</code>s frei und entfernt sie, z.B. wenn die
+	 * Zoomstufe nicht mehr benötigt wird. Die <code>TileView</code>s zeigen
+	 * danach keine <code>Bitmap</code>s und keine Platzhalter mehr an, beim
+	 * nächsten {@link #bindViewport(Viewport)} werden neue erstellt.
+	 */
+	public void unbindAll() {
+		clearPlaceholder();
+		for (int i = 0; i < boundViews.size(); i++) {
+			TileView tileView = boundViews.valueAt(i);
+			tileView.setImageBitmap(null);
+			tileView.unbind();
+		}
+		boundViews.clear();
+		freeViews.clear();
+		removeAllViews();
+		bound = false;
+	}
+
+	/**
+	 * Blendet den Platzhalter aus, sobald alle Kacheln im sichtbaren Bereich
+	 * des zuletzt gebundenen <code>Viewport</code>s ein Bild haben.
+	 */
+	private void checkPlaceholder() {
+		if (placeholder == null || viewport == null) {
+			return;
+		}
+		Coordinate tileSize = tileMap.getTileSize();
+		int lastX = Math.min(tileMap.getColumns() - 1, (viewport.getPosition()
+				.getX() + viewport.getSize().getX() - 1)
+				/ tileSize.getX());
+		int lastY = Math.min(tileMap.getRows() - 1, (viewport.getPosition()
+				.getY() + viewport.getSize().getY() - 1)
+				/ tileSize.getY());
+		for (int x = viewport.getPosition().getX() / tileSize.getX(); x <= lastX; x++) {
+			for (int y = viewport.getPosition().getY() / tileSize.getY(); y <= lastY; y++) {
+				TileView tileView = getTileView(x, y);
+				if (tileView == null || tileView.getDrawable() == null) {
+					return;
+				}
+			}
+		}
+		clearPlaceholder();
+	}
+
+	/**
+	 * Gibt alle aktuell gebundenen <code>TileView</code>s des
+	 * <code>TileMapView</code>s zurück.
+	 *
+	 * @return ArrayList<TileView> alle gebundenen TileViews
 	 */
 	public ArrayList<TileView> getTileViews() {
-		// Ergebnis ArrayList initialisieren
-		ArrayList<TileView> result = new ArrayList<TileView>();
-
-		// Durchlaufen aller Childs.
-		for (int i = 0; i < this.getChildCount(); i++) {
-			/*
-			 * Hinzufgen des aktuellen Childs zur Ergebis-ArrayList und die
-			 * Konvertierung in einen TileView
-			 */
-			result.add((TileView) this.getChildAt(i));
+		ArrayList<TileView> tileViews = new ArrayList<TileView>(
+				boundViews.size());
+		for (int i = 0; i < boundViews.size(); i++) {
+			tileViews.add(boundViews.valueAt(i));
+		}
+		return tileViews;
+	}
+
+	/**
+	 * Gibt den <code>TileView</code> zurück, der gerade an die Kachel an der
+	 * übergebenen Position gebunden ist.
+	 *
+	 * @param x
+	 * @param y
+	 * @return TileView der gebundene TileView oder null, wenn die Kachel
+	 *         gerade keinen TileView hat
+	 */
+	public TileView getTileView(int x, int y) {
+		return boundViews.get(tileMap.indexOf(x, y));
+	}
+
+	/**
+	 * Der <code>TileMapView</code> ist immer so groß wie die gesamte
+	 * <code>TileMap</code>, auch wenn nur für einen Teil der Kacheln
+	 * <code>TileView</code>s vorhanden sind. Nur so können die ScrollViews
+	 * über den ganzen Plan scrollen.
+	 */
+	@Override
+	protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+		Coordinate size = tileMap.getSize();
+		super.onMeasure(
+				MeasureSpec.makeMeasureSpec(size.getX(), MeasureSpec.EXACTLY),
+				MeasureSpec.makeMeasureSpec(size.getY(), MeasureSpec.EXACTLY));
+	}
+
+	/**
+	 * Bindet die <code>TileView</code>s an die Kacheln im sichtbaren Bereich
+	 * des übergebenen <code>Viewport</code>s (plus Rand). Kacheln, die den
+	 * Bereich verlassen haben, geben ihren <code>TileView</code> frei, neu
+	 * hinzugekommene Kacheln übernehmen einen freien <code>TileView</code>.
+	 * Nur wenn keiner mehr frei ist, wird ein neuer erstellt. Gebunden wird
+	 * nur über die Position der Kachel, für bereits vorhandene
+	 * <code>TileView</code>s werden dabei keine Objekte erstellt. Liegt eine
+	 * neu gebundene Kachel bereits im <code>TileCache</code>, wird sie sofort
+	 * angezeigt.
+	 *
+	 * @param viewport
+	 */
+	@Override
+	public void bindViewport(Viewport viewport) {
+		int rows = tileMap.getRows();
+		Coordinate tileSize = tileMap.getTileSize();
+
+		this.viewport = viewport;
+
+		// Zu bindenden Bereich inklusive Rand berechnen.
+		int firstX = Math.max(0, viewport.getPosition().getX()
+				/ tileSize.getX() - margin);
+		int firstY = Math.max(0, viewport.getPosition().getY()
+				/ tileSize.getY() - margin);
+		int lastX = Math.min(tileMap.getColumns() - 1, (viewport.getPosition()
+				.getX() + viewport.getSize().getX() - 1)
+				/ tileSize.getX() + margin);
+		int lastY = Math.min(rows - 1, (viewport.getPosition().getY()
+				+ viewport.getSize().getY() - 1)
+				/ tileSize.getY() + margin);
+
+		/*
+		 * Prüfen, ob sich der Bereich seit dem letzten Aufruf verändert hat,
+		 * wenn nicht muss auch nichts gebunden werden.
+		 */
+		if (bound && firstBound.getX() == firstX
+				&& firstBound.getY() == firstY && lastBound.getX() == lastX
+				&& lastBound.getY() == lastY) {
+			checkPlaceholder();
+			return;
 		}
+		bound = true;
+		firstBound.set(firstX, firstY);
+		lastBound.set(lastX, lastY);
+
+		/*
+		 * Alle TileViews, deren Kachel den Bereich verlassen hat, werden
+		 * freigegeben.
+		 */
+		for (int i = boundViews.size() - 1; i >= 0; i--) {
+			int x = boundViews.keyAt(i) / rows;
+			int y = boundViews.keyAt(i) % rows;
+			if (x < firstX || x > lastX || y < firstY || y > lastY) {
+				TileView tileView = boundViews.valueAt(i);
+				tileView.setImageBitmap(null);
+				tileView.unbind();
+				freeViews.add(tileView);
+				boundViews.removeAt(i);
+			}
+		}
+
+		// Alle neu hinzugekommenen Kacheln binden.
+		Tile2ViewFactory viewFactory = null;
+		for (int x = firstX; x <= lastX; x++) {
+			for (int y = firstY; y <= lastY; y++) {
+				int index = tileMap.indexOf(x, y);
+				if (boundViews.get(index) != null) {
+					continue;
+				}
+
+				TileView tileView;
+				if (!freeViews.isEmpty()) {
+					// Einen freien TileView wiederverwenden.
+					tileView = freeViews.remove(freeViews.size() - 1);
+					tileView.bind(x, y, tileSize);
+				} else {
+					// Nur wenn keiner frei ist, wird ein neuer erstellt.
+					if (viewFactory == null) {
+						viewFactory = new Tile2ViewFactory(getContext());
+					}
+					tileView = viewFactory.createCalculatedView(x, y,
+							tileSize);
+					this.addView(tileView);
+				}
+
+				/*
+				 * Bereits geladene Kacheln sofort anzeigen, sonst wenn möglich
+				 * einen Platzhalter aus einer gröberen Zoomstufe.
+				 */
+				showCachedOrPlaceholder(tileView,
+						lookupKey.set(tileMap, x, y));
+				boundViews.put(index, tileView);
+			}
+		}
+		checkPlaceholder();
+	}
+
+	/**
+	 * Zeigt die Kachel an, sofern sie im <code>TileCache</code> liegt. Sonst
+	 * wird der passende Ausschnitt einer geladenen Kachel einer gröberen
+	 * Zoomstufe als Platzhalter angezeigt, gibt es keine, bleibt der
+	 * <code>TileView</code> leer.
+	 *
+	 * @param tileView
+	 * @param key
+	 */
+	private void showCachedOrPlaceholder(TileView tileView, TileKey key) {
+		Bitmap bitmap = TileCache.tileCache().touch(key);
+		if (bitmap == null) {
+			Bitmap source = TilePlaceholder.findSource(key, placeholderSrc);
+			if (source != null) {
+				tileView.setPlaceholder(source, placeholderSrc);
+				return;
+			}
+		}
+		tileView.setImageBitmap(bitmap);
+	}
+
+	/**
+	 * Eine Kachel wird angezeigt, wenn sie an einen <code>TileView</code>
+	 * gebunden ist, der ein Bild hat, das kein Platzhalter ist.
+	 */
+	@Override
+	public boolean isShowing(TileKey key) {
+		TileView tileView = getTileView(key.getX(), key.getY());
+		return tileView != null && tileView.getDrawable() != null
+				&& !tileView.isPlaceholder();
+	}
+
+	@Override
+	public boolean isShowingPlaceholder(TileKey key) {
+		TileView tileView = getTileView(key.getX(), key.getY());
+		return tileView != null && tileView.isPlaceholder();
+	}
+
+	/**
+	 * Zeigt das <code>Bitmap</code> einer geladenen Kachel an, sofern die
+	 * Kachel gerade an einen <code>TileView</code> gebunden ist.
+	 */
+	@Override
+	public void showTile(TileKey key, Bitmap bitmap) {
+		TileView tileView = getTileView(key.getX(), key.getY());
+		if (tileView != null) {
+			tileView.setImageBitmap(bitmap);
+			checkPlaceholder();
+		}
+	}
+
+	/**
+	 * Registriert den <code>TileMapView</code> beim <code>TileCache</code>,
+	 * sobald er angezeigt wird.
+	 */
+	@Override
+	protected void onAttachedToWindow() {
+		super.onAttachedToWindow();
+		TileCache.tileCache().addEvictionListener(this);
+	}
+
+	/**
+	 * Meldet den <code>TileMapView</code> beim <code>TileCache</code> ab,
+	 * sobald er nicht mehr angezeigt wird.
+	 */
+	@Override
+	protected void onDetachedFromWindow() {
+		TileCache.tileCache().removeEvictionListener(this);
+		super.onDetachedFromWindow();
+	}
+
+	/**
+	 * Wird vom <code>TileCache</code> aufgerufen, wenn eine Kachel entfernt
+	 * wurde. Gehört die Kachel zu dieser <code>TileMap</code>, wird der
+	 * zugehörige <code>TileView</code> im UI-Thread geleert, sofern er noch
+	 * genau dieses <code>Bitmap</code> anzeigt. Danach kann das
+	 * <code>Bitmap</code> im <code>BitmapPool</code> abgelegt werden.
+	 */
+	@Override
+	public void onTileEvicted(final TileKey key, final Bitmap bitmap) {
+		// Kacheln anderer TileMaps interessieren hier nicht.
+		if (key.getTileMap() != tileMap) {
+			return;
+		}
+
+		/*
+		 * Views dürfen nur im UI-Thread verändert werden. Bis dahin kann der
+		 * Pool nach einer Speicherwarnung geleert worden sein, deshalb wird
+		 * sich die aktuelle Generation gemerkt.
+		 */
+		final int trimGeneration = BitmapPool.bitmapPool()
+				.getTrimGeneration();
+		this.post(new Runnable() {
+
+			@Override
+			public void run() {
+				TileView tileView = getTileView(key.getX(), key.getY());
+				if (tileView != null && tileView.isShowing(bitmap)) {
+					/*
+					 * Wurde die Kachel nur ersetzt (z.B. durch die Version in
+					 * voller Auflösung), wird gleich das neue Bitmap gesetzt,
+					 * sonst wenn möglich ein Platzhalter.
+					 */
+					showCachedOrPlaceholder(tileView, key);
+				}
 
-		return result;
+				/*
+				 * Das Bitmap wird jetzt nicht mehr angezeigt und kann für das
+				 * Dekodieren der nächsten Kachel wiederverwendet werden. Ein
+				 * Bitmap mehrerer Kacheln kann noch angezeigt werden, ebenso
+				 * ein Bitmap, das als Platzhalter einer feineren Zoomstufe
+				 * angezeigt wird.
+				 */
+				if (!TileCache.tileCache().isShared(bitmap)
+						&& !TilePlaceholder.isInUse(bitmap)) {
+					BitmapPool.bitmapPool().put(bitmap, trimGeneration);
+				}
+			}
+		});
 	}
 
 }
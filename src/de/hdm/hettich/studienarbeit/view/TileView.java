@@ -4,13 +4,20 @@
  */
 package de.hdm.hettich.studienarbeit.view;
 
-import de.hdm.hettich.studienarbeit.bo.Tile;
+import de.hdm.hettich.studienarbeit.loading.TilePlaceholder;
+import de.hdm.hettich.studienarbeit.utile.Coordinate;
 import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
 import android.widget.ImageView;
 
 /**
  * Die Klasse <code>TileView</code> erbt von <code>ImageView</code> und
- * bernimmt die Darstellung eines <code>Tile</code>s.
+ * übernimmt die Darstellung eines <code>Tile</code>s. Gebunden wird er nur
+ * über die Position der Kachel, ohne dafür eine <code>Tile</code> oder eine
+ * <code>Coordinate</code> zu erstellen.
  * 
  * @author Stefan Hettich
  * 
@@ -20,14 +27,33 @@ import android.widget.ImageView;
 public class TileView extends ImageView {
 
 	/**
-	 * <code>Tile</code>, die in diesem <code>TileView</code> dargestellt wird.
+	 * x-Position der dargestellten Kachel in der <code>TileMap</code> oder -1,
+	 * wenn der <code>TileView</code> nicht gebunden ist.
 	 */
-	private Tile tile;
+	private int tileX = -1;
+
+	/**
+	 * y-Position der dargestellten Kachel in der <code>TileMap</code> oder -1,
+	 * wenn der <code>TileView</code> nicht gebunden ist.
+	 */
+	private int tileY = -1;
+
+	/**
+	 * Gibt an, ob gerade ein Platzhalter aus einer gröberen Zoomstufe statt
+	 * der eigentlichen Kachel angezeigt wird.
+	 */
+	private boolean placeholder = false;
+
+	/**
+	 * Zeichnet den Platzhalter, wird für jeden Platzhalter dieses
+	 * <code>TileView</code>s wiederverwendet.
+	 */
+	private PlaceholderDrawable placeholderDrawable;
 
 	/**
 	 * Konstruktor, der verhanden sein muss, da <code>TileView</code> von
 	 * <code>ImageView</code> erbt. Die Sichtbarkeit ist auf protected gesetzt,
-	 * sodass ein Zugriff von auen nicht mglich ist und stattdessen der
+	 * sodass ein Zugriff von außen nicht möglich ist und stattdessen der
 	 * Konstruktor mit mehreren Parametern verwendet werden muss.
 	 * 
 	 * @param context
@@ -38,29 +64,124 @@ public class TileView extends ImageView {
 
 	/**
 	 * Konstruktor, der im Applikationskontext einen neuen <code>TileView</code>
-	 * erstellt und die bergebene <code>Tile</code> setzt.
+	 * erstellt und an die Kachel an der übergebenen Position bindet.
 	 * 
 	 * @param context
-	 * @param tile
+	 * @param x
+	 * @param y
+	 * @param tileSize
+	 *            die Größe der Kacheln der TileMap
 	 */
-	public TileView(Context context, Tile tile) {
+	public TileView(Context context, int x, int y, Coordinate tileSize) {
 		super(context);
-		this.setTile(tile);
+		this.bind(x, y, tileSize);
+	}
+
+	/**
+	 * @return the tileX
+	 */
+	public int getTileX() {
+		return tileX;
+	}
+
+	/**
+	 * @return the tileY
+	 */
+	public int getTileY() {
+		return tileY;
+	}
+
+	/**
+	 * Bindet den <code>TileView</code> an die Kachel an der übergebenen
+	 * Position und verschiebt ihn dorthin. Die Verschiebung erfolgt über die
+	 * Translation, dadurch ist kein erneutes Layout des
+	 * <code>TileMapView</code>s notwendig.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param tileSize
+	 *            die Größe der Kacheln der TileMap
+	 */
+	public void bind(int x, int y, Coordinate tileSize) {
+		this.tileX = x;
+		this.tileY = y;
+		this.setTranslationX(x * tileSize.getX());
+		this.setTranslationY(y * tileSize.getY());
+	}
+
+	/**
+	 * Löst den <code>TileView</code> von seiner Kachel, er kann danach an eine
+	 * andere gebunden werden.
+	 */
+	public void unbind() {
+		this.tileX = -1;
+		this.tileY = -1;
+	}
+
+	/**
+	 * @return the placeholder
+	 */
+	public boolean isPlaceholder() {
+		return placeholder;
 	}
 
 	/**
-	 * @return the tile
+	 * Zeigt einen Platzhalter aus einer gröberen Zoomstufe an (siehe
+	 * <code>TilePlaceholder</code>). Der Ausschnitt des <code>Bitmap</code>s
+	 * wird dabei auf die Größe des <code>TileView</code>s vergrößert
+	 * gezeichnet, ohne ihn zu kopieren.
+	 * 
+	 * @param bitmap
+	 *            die Kachel der gröberen Zoomstufe
+	 * @param src
+	 *            der Ausschnitt in Pixeln des Bitmaps
+	 */
+	public void setPlaceholder(Bitmap bitmap, Rect src) {
+		releasePlaceholder();
+		if (placeholderDrawable == null) {
+			placeholderDrawable = new PlaceholderDrawable();
+		}
+		TilePlaceholder.acquire(bitmap);
+		placeholderDrawable.set(bitmap, src);
+		this.placeholder = true;
+		if (this.getDrawable() != placeholderDrawable) {
+			super.setImageDrawable(placeholderDrawable);
+		}
+	}
+
+	/**
+	 * Zeigt das <code>Bitmap</code> der Kachel an, ein eventueller
+	 * Platzhalter wird dabei ersetzt.
 	 */
-	public Tile getTile() {
-		return tile;
+	@Override
+	public void setImageBitmap(Bitmap bitmap) {
+		releasePlaceholder();
+		super.setImageBitmap(bitmap);
 	}
 
 	/**
-	 * @param tile
-	 *            the tile to set
+	 * Gibt das <code>Bitmap</code> eines angezeigten Platzhalters wieder frei,
+	 * sodass es wiederverwendet werden kann.
+	 */
+	private void releasePlaceholder() {
+		if (placeholder) {
+			TilePlaceholder.release(placeholderDrawable.getBitmap());
+			placeholderDrawable.set(null, null);
+			this.placeholder = false;
+		}
+	}
+
+	/**
+	 * Prüft, ob der <code>TileView</code> gerade das übergebene
+	 * <code>Bitmap</code> anzeigt.
+	 * 
+	 * @param bitmap
+	 * @return boolean true wenn das Bitmap angezeigt wird
 	 */
-	public void setTile(Tile tile) {
-		this.tile = tile;
+	public boolean isShowing(Bitmap bitmap) {
+		Drawable drawable = this.getDrawable();
+		return drawable instanceof BitmapDrawable
+				&& ((BitmapDrawable) drawable).getBitmap() == bitmap;
 	}
 
 }
@@ -11,12 +11,12 @@ import android.widget.ScrollView;
 
 /**
  * Die Klasse <code>VScroll</code> erbt von <code>ScrollView</code> und
- * gewhrleistet das vertikale Scrollen in der Anwendung, die Klasse muss
- * spezialisiert werden, da das onTouchEvent berschrieben werden muss, um das
- * diagonale Scrollen zu gewhrleisten, denn nicht der einzelne ScrollView darf
- * das Event verarbeiten (sonst ist nur das Scrollen in eine Richtung mglich
- * und erst mit der nchsten Bildschirm-Berhrung in die Andere), sondern eine
- * berklasse, die dann an beide ScrollViews die gleiche Information weitergibt.
+ * gewährleistet das vertikale Scrollen in der Anwendung, die Klasse muss
+ * spezialisiert werden, da das onTouchEvent überschrieben werden muss, um das
+ * diagonale Scrollen zu gewährleisten, denn nicht der einzelne ScrollView darf
+ * das Event verarbeiten (sonst ist nur das Scrollen in eine Richtung möglich
+ * und erst mit der nächsten Bildschirm-Berührung in die Andere), sondern eine
+ * Überklasse, die dann an beide ScrollViews die gleiche Information weitergibt.
  * 
  * @author Stefan Hettich
  * 
@@ -38,10 +38,10 @@ public class VScroll extends ScrollView {
 	}
 
 	/**
-	 * Das TouchEvent wird nicht hier aufgerufen, sondern in der ausfhrbaren
+	 * Das TouchEvent wird nicht hier aufgerufen, sondern in der ausführbaren
 	 * Klasse.
 	 * 
-	 * Dadurch wird das diagonale Scrollen ermglicht.
+	 * Dadurch wird das diagonale Scrollen ermöglicht.
 	 */
 	@Override
 	public boolean onTouchEvent(MotionEvent ev) {
@@ -0,0 +1,449 @@
+/**
+ * @(#)PyramidBuilder.java
+ * 1.0, 2013-03-04
+ */
+package de.hdm.hettich.studienarbeit.tools;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Der <code>PyramidBuilder</code> erstellt aus einem einzigen Bild des Plans
+ * alle Zoomstufen eines <code>Drawing</code>s. Er läuft ohne Android auf
+ * einer normalen JVM (ab Java 7, wegen Fork/Join), z.B. auf dem
+ * Build-Server:
+ *
+ * <pre>
+ * java de.hdm.hettich.studienarbeit.tools.PyramidBuilder plan.png ausgabe 256 0.5,1,2 [--archive]
+ * </pre>
+ *
+ * Das übergebene Bild entspricht der detailliertesten Zoomstufe (größter
+ * Skalierungsfaktor), jede gröbere Zoomstufe wird aus der nächst feineren
+ * verkleinert. Jede Zoomstufe wird anschließend in Kacheln der übergebenen
+ * Größe zerschnitten, Kacheln am Rand werden auf die volle Größe aufgefüllt.
+ * Verkleinern und Zerschneiden werden mit Fork/Join auf alle Prozessorkerne
+ * verteilt.
+ * <p>
+ * Die Kacheln werden als <code>zoomstufe/x_y.png</code> in den
+ * Ausgabeordner geschrieben oder mit <code>--archive</code> in ein
+ * <code>TileArchive</code> (<code>plan.tiles</code>) gepackt. Zusätzlich wird
+ * die Beschreibung <code>drawing.json</code> geschrieben, die
+ * <code>DrawingCreator.createDrawing(URI)</code> direkt laden kann.
+ *
+ * @author Stefan Hettich
+ *
+ * @version 1.0, 2013-03-04
+ *
+ */
+public class PyramidBuilder {
+
+	/**
+	 * Name der geschriebenen Beschreibung des <code>Drawing</code>s.
+	 */
+	public final static String DESCRIPTOR_NAME = "drawing.json";
+
+	/**
+	 * Name des geschriebenen Archivs.
+	 */
+	public final static String ARCHIVE_NAME = "plan.tiles";
+
+	/**
+	 * Anzahl der Bildzeilen bzw. Kacheln, ab der eine Aufgabe nicht weiter
+	 * aufgeteilt wird.
+	 */
+	private final static int THRESHOLD = 64;
+
+	/**
+	 * Das Bild der detailliertesten Zoomstufe.
+	 */
+	private BufferedImage master;
+
+	/**
+	 * Kantenlänge der Kacheln in Pixeln.
+	 */
+	private int tileSize;
+
+	/**
+	 * Skalierungsfaktoren der Zoomstufen, aufsteigend sortiert.
+	 */
+	private float[] scaleFactors;
+
+	/**
+	 * Gibt an, ob das Bild keine Transparenz enthält.
+	 */
+	private boolean opaque;
+
+	/**
+	 * Verteilt die Aufgaben auf alle Prozessorkerne.
+	 */
+	private ForkJoinPool pool = new ForkJoinPool();
+
+	/**
+	 * Konstruktor, der einen neuen <code>PyramidBuilder</code> erstellt.
+	 *
+	 * @param master
+	 *            das Bild der detailliertesten Zoomstufe
+	 * @param tileSize
+	 * @param scaleFactors
+	 */
+	public PyramidBuilder(BufferedImage master, int tileSize,
+			float[] scaleFactors) {
+		this.master = master;
+		this.tileSize = tileSize;
+		this.scaleFactors = scaleFactors.clone();
+		Arrays.sort(this.scaleFactors);
+		this.opaque = !master.getColorModel().hasAlpha();
+	}
+
+	/**
+	 * Erstellt alle Zoomstufen und schreibt Kacheln und Beschreibung in den
+	 * übergebenen Ordner.
+	 *
+	 * @param output
+	 * @param archive
+	 *            true, wenn die Kacheln in ein TileArchive gepackt werden
+	 * @throws IOException
+	 */
+	public void build(File output, boolean archive) throws IOException {
+		File tileDir = archive ? new File(output, "tiles.tmp") : output;
+		int levelCount = scaleFactors.length;
+		int[][] dimensions = new int[levelCount][];
+
+		/*
+		 * Von der detailliertesten zur gröbsten Zoomstufe, jede Zoomstufe wird
+		 * aus der vorherigen verkleinert.
+		 */
+		BufferedImage image = master;
+		float maxScale = scaleFactors[levelCount - 1];
+		for (int level = levelCount - 1; level >= 0; level--) {
+			int width = Math.max(1,
+					Math.round(master.getWidth() * scaleFactors[level]
+							/ maxScale));
+			int height = Math.max(1,
+					Math.round(master.getHeight() * scaleFactors[level]
+							/ maxScale));
+			if (image.getWidth() != width || image.getHeight() != height) {
+				image = scale(image, width, height);
+			}
+
+			File levelDir = new File(tileDir, String.valueOf(level));
+			if (!levelDir.isDirectory() && !levelDir.mkdirs()) {
+				throw new IOException("Ordner kann nicht erstellt werden: "
+						+ levelDir);
+			}
+			int columns = (width + tileSize - 1) / tileSize;
+			int rows = (height + tileSize - 1) / tileSize;
+			dimensions[level] = new int[] { columns, rows };
+
+			CutTask task = new CutTask(image, levelDir, columns, 0, columns
+					* rows);
+			pool.invoke(task);
+			if (task.error != null) {
+				throw task.error;
+			}
+			System.out.println("Zoomstufe " + level + ": " + width + " x "
+					+ height + " Pixel, " + columns + " x " + rows
+					+ " Kacheln");
+		}
+
+		if (archive) {
+			TileArchiveBuilder builder = new TileArchiveBuilder();
+			for (int level = 0; level < levelCount; level++) {
+				builder.addLevel(new File(tileDir, String.valueOf(level)));
+			}
+			builder.write(new File(output, ARCHIVE_NAME));
+			delete(tileDir);
+		}
+
+		writeDescriptor(new File(output, DESCRIPTOR_NAME), dimensions,
+				archive);
+	}
+
+	/**
+	 * Verkleinert ein Bild. Bei starker Verkleinerung wird das Bild zuerst
+	 * schrittweise halbiert, damit keine Details verloren gehen. Das Zielbild
+	 * wird in waagrechte Streifen aufgeteilt, die parallel gezeichnet werden.
+	 *
+	 * @param source
+	 * @param width
+	 * @param height
+	 * @return BufferedImage das verkleinerte Bild
+	 */
+	private BufferedImage scale(BufferedImage source, int width, int height) {
+		while (source.getWidth() / 2 > width
+				&& source.getHeight() / 2 > height) {
+			source = scale(source, source.getWidth() / 2,
+					source.getHeight() / 2);
+		}
+		BufferedImage target = new BufferedImage(width, height,
+				opaque ? BufferedImage.TYPE_INT_RGB
+						: BufferedImage.TYPE_INT_ARGB);
+		pool.invoke(new ScaleTask(source, target, 0, height));
+		return target;
+	}
+
+	/**
+	 * Schreibt die Beschreibung des <code>Drawing</code>s (siehe
+	 * <code>DrawingDescriptor</code>).
+	 *
+	 * @param file
+	 * @param dimensions
+	 * @param archive
+	 * @throws IOException
+	 */
+	private void writeDescriptor(File file, int[][] dimensions,
+			boolean archive) throws IOException {
+		StringBuilder json = new StringBuilder();
+		json.append("{\n  \"version\": 1,\n");
+		json.append("  \"initialLevel\": ").append(findInitialLevel())
+				.append(",\n");
+		if (archive) {
+			json.append("  \"archive\": \"").append(ARCHIVE_NAME)
+					.append("\",\n");
+		}
+		json.append("  \"levels\": [\n");
+		for (int level = 0; level < dimensions.length; level++) {
+			json.append("    {\"scaleFactor\": ").append(scaleFactors[level]);
+			json.append(", \"tileWidth\": ").append(tileSize);
+			json.append(", \"tileHeight\": ").append(tileSize);
+			json.append(", \"columns\": ").append(dimensions[level][0]);
+			json.append(", \"rows\": ").append(dimensions[level][1]);
+			json.append(", \"opaque\": ").append(opaque);
+			if (!archive) {
+				json.append(", \"tiles\": \"").append(level)
+						.append("/{x}_{y}.png\"");
+			}
+			json.append(level < dimensions.length - 1 ? "},\n" : "}\n");
+		}
+		json.append("  ]\n}\n");
+
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file),
+				"UTF-8");
+		try {
+			writer.write(json.toString());
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Die initiale Zoomstufe ist die mit dem Skalierungsfaktor 1, gibt es
+	 * keine, die mit dem nächstgelegenen.
+	 *
+	 * @return int Index der initialen Zoomstufe
+	 */
+	private int findInitialLevel() {
+		int initial = 0;
+		for (int level = 1; level < scaleFactors.length; level++) {
+			if (Math.abs(Math.log(scaleFactors[level])) < Math.abs(Math
+					.log(scaleFactors[initial]))) {
+				initial = level;
+			}
+		}
+		return initial;
+	}
+
+	/**
+	 * Löscht einen Ordner mit seinem Inhalt.
+	 *
+	 * @param file
+	 */
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	/**
+	 * Zeichnet einen Streifen des verkleinerten Bilds, ist der Streifen zu
+	 * hoch, wird er in zwei Hälften geteilt.
+	 */
+	private static class ScaleTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private BufferedImage source;
+
+		private BufferedImage target;
+
+		private int top;
+
+		private int bottom;
+
+		private ScaleTask(BufferedImage source, BufferedImage target, int top,
+				int bottom) {
+			this.source = source;
+			this.target = target;
+			this.top = top;
+			this.bottom = bottom;
+		}
+
+		@Override
+		protected void compute() {
+			if (bottom - top > THRESHOLD) {
+				int middle = (top + bottom) / 2;
+				invokeAll(new ScaleTask(source, target, top, middle),
+						new ScaleTask(source, target, middle, bottom));
+				return;
+			}
+
+			/*
+			 * Jeder Streifen zeichnet in einen eigenen Ausschnitt des
+			 * Zielbilds, die Streifen überschneiden sich nicht.
+			 */
+			BufferedImage band = target.getSubimage(0, top,
+					target.getWidth(), bottom - top);
+			Graphics2D g = band.createGraphics();
+			try {
+				g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+						RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+				g.setRenderingHint(RenderingHints.KEY_RENDERING,
+						RenderingHints.VALUE_RENDER_QUALITY);
+				g.translate(0, -top);
+				g.drawImage(source, 0, 0, target.getWidth(),
+						target.getHeight(), null);
+			} finally {
+				g.dispose();
+			}
+		}
+	}
+
+	/**
+	 * Schneidet einen Bereich der Kacheln einer Zoomstufe aus und schreibt
+	 * sie, ist der Bereich zu groß, wird er in zwei Hälften geteilt. Die
+	 * Kacheln sind zeilenweise durchnummeriert.
+	 */
+	private class CutTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private BufferedImage image;
+
+		private File levelDir;
+
+		private int columns;
+
+		private int from;
+
+		private int to;
+
+		/**
+		 * Der erste aufgetretene Fehler, wird nach dem Ende aller Aufgaben
+		 * geworfen.
+		 */
+		private volatile IOException error;
+
+		private CutTask(BufferedImage image, File levelDir, int columns,
+				int from, int to) {
+			this.image = image;
+			this.levelDir = levelDir;
+			this.columns = columns;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > THRESHOLD) {
+				int middle = (from + to) / 2;
+				CutTask first = new CutTask(image, levelDir, columns, from,
+						middle);
+				CutTask second = new CutTask(image, levelDir, columns, middle,
+						to);
+				invokeAll(first, second);
+				error = first.error != null ? first.error : second.error;
+				return;
+			}
+
+			for (int i = from; i < to && error == null; i++) {
+				try {
+					writeTile(i % columns, i / columns);
+				} catch (IOException e) {
+					error = e;
+				}
+			}
+		}
+
+		/**
+		 * Schreibt eine Kachel, Kacheln am Rand werden aufgefüllt.
+		 *
+		 * @param x
+		 * @param y
+		 * @throws IOException
+		 */
+		private void writeTile(int x, int y) throws IOException {
+			int left = x * tileSize;
+			int top = y * tileSize;
+			int width = Math.min(tileSize, image.getWidth() - left);
+			int height = Math.min(tileSize, image.getHeight() - top);
+
+			BufferedImage tile = new BufferedImage(tileSize, tileSize,
+					opaque ? BufferedImage.TYPE_INT_RGB
+							: BufferedImage.TYPE_INT_ARGB);
+			Graphics2D g = tile.createGraphics();
+			try {
+				if (opaque) {
+					g.setColor(Color.WHITE);
+					g.fillRect(0, 0, tileSize, tileSize);
+				}
+				g.drawImage(image.getSubimage(left, top, width, height), 0, 0,
+						null);
+			} finally {
+				g.dispose();
+			}
+			if (!ImageIO.write(tile, "png", new File(levelDir, x + "_" + y
+					+ ".png"))) {
+				throw new IOException("PNG kann nicht geschrieben werden.");
+			}
+		}
+	}
+
+	/**
+	 * Einstiegspunkt: Bild, Ausgabeordner, Kachelgröße, Skalierungsfaktoren
+	 * (mit Komma getrennt) und optional <code>--archive</code>.
+	 *
+	 * @param args
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 4) {
+			System.err.println("Aufruf: PyramidBuilder <bild> <ausgabeordner> "
+					+ "<kachelgröße> <faktor,faktor,...> [--archive]");
+			System.exit(1);
+		}
+		BufferedImage master = ImageIO.read(new File(args[0]));
+		if (master == null) {
+			throw new IOException("Bild kann nicht gelesen werden: " + args[0]);
+		}
+
+		String[] parts = args[3].split(",");
+		float[] scaleFactors = new float[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			scaleFactors[i] = Float.parseFloat(parts[i].trim());
+		}
+
+		File output = new File(args[1]);
+		boolean archive = args.length > 4 && "--archive".equals(args[4]);
+		new PyramidBuilder(master, Integer.parseInt(args[2]), scaleFactors)
+				.build(output, archive);
+		System.out.println("Beschreibung erstellt: "
+				+ new File(output, DESCRIPTOR_NAME));
+	}
+
+}
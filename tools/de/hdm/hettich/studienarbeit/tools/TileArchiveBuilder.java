@@ -0,0 +1,218 @@
+/**
+ * @(#)TileArchiveBuilder.java
+ * 1.0, 2013-03-04
+ */
+package de.hdm.hettich.studienarbeit.tools;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Der <code>TileArchiveBuilder</code> packt die Kacheln eines Plans, die als
+ * einzelne Dateien vorliegen, in ein <code>TileArchive</code>. Er läuft ohne
+ * Android auf einer normalen JVM, z.B. auf dem Build-Server:
+ *
+ * <pre>
+ * java de.hdm.hettich.studienarbeit.tools.TileArchiveBuilder plan.tiles ebene0 ebene1 ebene2
+ * </pre>
+ *
+ * Jeder übergebene Ordner enthält die Kacheln einer Zoomstufe, beginnend mit
+ * der gröbsten, benannt nach ihrer Position als <code>x_y.png</code> (oder
+ * <code>.jpg</code>). Die Anzahl der Spalten und Zeilen einer Zoomstufe ergibt
+ * sich aus der größten Position, fehlende Kacheln erhalten einen leeren
+ * Eintrag.
+ * <p>
+ * Das Dateiformat ist in <code>TileArchive</code> beschrieben, die Konstanten
+ * {@link #MAGIC} und {@link #VERSION} müssen denen in
+ * <code>TileArchive</code> entsprechen.
+ *
+ * @author Stefan Hettich
+ *
+ * @version 1.0, 2013-03-04
+ *
+ */
+public class TileArchiveBuilder {
+
+	/**
+	 * Kennung am Anfang jedes Archivs ("TARC").
+	 */
+	public final static int MAGIC = 0x54415243;
+
+	/**
+	 * Version des Dateiformats.
+	 */
+	public final static int VERSION = 1;
+
+	/**
+	 * Muster der Dateinamen der Kacheln.
+	 */
+	private final static Pattern TILE_NAME = Pattern.compile(
+			"(\\d+)_(\\d+)\\.(png|jpg|jpeg)", Pattern.CASE_INSENSITIVE);
+
+	/**
+	 * Die Dateien der Kacheln jeder Zoomstufe, Index [x][y], fehlende Kacheln
+	 * sind <code>null</code>.
+	 */
+	private ArrayList<File[][]> levels = new ArrayList<File[][]>();
+
+	/**
+	 * Fügt eine Zoomstufe hinzu, deren Kacheln im übergebenen Ordner liegen.
+	 *
+	 * @param directory
+	 * @throws IOException
+	 *             wenn der Ordner keine Kacheln enthält
+	 */
+	public void addLevel(File directory) throws IOException {
+		File[] files = directory.listFiles();
+		if (files == null) {
+			throw new IOException("Kein Ordner: " + directory);
+		}
+
+		// Zuerst die Anzahl der Spalten und Zeilen bestimmen.
+		int columns = 0;
+		int rows = 0;
+		for (File file : files) {
+			Matcher matcher = TILE_NAME.matcher(file.getName());
+			if (matcher.matches()) {
+				columns = Math.max(columns,
+						Integer.parseInt(matcher.group(1)) + 1);
+				rows = Math.max(rows, Integer.parseInt(matcher.group(2)) + 1);
+			}
+		}
+		if (columns == 0) {
+			throw new IOException("Keine Kacheln in: " + directory);
+		}
+
+		File[][] tiles = new File[columns][rows];
+		for (File file : files) {
+			Matcher matcher = TILE_NAME.matcher(file.getName());
+			if (matcher.matches()) {
+				tiles[Integer.parseInt(matcher.group(1))][Integer
+						.parseInt(matcher.group(2))] = file;
+			}
+		}
+		levels.add(tiles);
+	}
+
+	/**
+	 * Fügt eine Zoomstufe hinzu, deren Kacheldateien bereits bekannt sind.
+	 *
+	 * @param tiles
+	 *            die Dateien der Kacheln, Index [x][y]
+	 */
+	public void addLevel(File[][] tiles) {
+		levels.add(tiles);
+	}
+
+	/**
+	 * Schreibt das Archiv in die übergebene Datei.
+	 *
+	 * @param output
+	 * @throws IOException
+	 */
+	public void write(File output) throws IOException {
+		// Größe von Kopf und Index, dahinter beginnen die Kacheln.
+		long offset = 12 + levels.size() * 8;
+		for (File[][] tiles : levels) {
+			offset += tiles.length * tiles[0].length * 8;
+		}
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(output), 64 * 1024));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(levels.size());
+			for (File[][] tiles : levels) {
+				out.writeInt(tiles.length);
+				out.writeInt(tiles[0].length);
+			}
+
+			// Index, die Kacheln liegen in derselben Reihenfolge dahinter.
+			for (File[][] tiles : levels) {
+				for (int x = 0; x < tiles.length; x++) {
+					for (int y = 0; y < tiles[x].length; y++) {
+						long length = tiles[x][y] != null ? tiles[x][y]
+								.length() : 0;
+						/*
+						 * Das Archiv wird als MappedByteBuffer eingeblendet,
+						 * der nur int-Positionen kennt.
+						 */
+						if (offset + length > Integer.MAX_VALUE) {
+							throw new IOException(
+									"Das Archiv ist größer als 2 GB.");
+						}
+						out.writeInt((int) offset);
+						out.writeInt((int) length);
+						offset += length;
+					}
+				}
+			}
+
+			byte[] buffer = new byte[64 * 1024];
+			for (File[][] tiles : levels) {
+				for (int x = 0; x < tiles.length; x++) {
+					for (int y = 0; y < tiles[x].length; y++) {
+						if (tiles[x][y] != null) {
+							copy(tiles[x][y], out, buffer);
+						}
+					}
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Kopiert den Inhalt einer Datei in den übergebenen Stream.
+	 *
+	 * @param file
+	 * @param out
+	 * @param buffer
+	 * @throws IOException
+	 */
+	private static void copy(File file, DataOutputStream out, byte[] buffer)
+			throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Einstiegspunkt: erster Parameter ist das zu erstellende Archiv, danach
+	 * folgen die Ordner der Zoomstufen.
+	 *
+	 * @param args
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Aufruf: TileArchiveBuilder <archiv> "
+					+ "<ordner zoomstufe 0> [<ordner zoomstufe 1> ...]");
+			System.exit(1);
+		}
+		TileArchiveBuilder builder = new TileArchiveBuilder();
+		for (int i = 1; i < args.length; i++) {
+			builder.addLevel(new File(args[i]));
+		}
+		builder.write(new File(args[0]));
+		System.out.println("Archiv erstellt: " + args[0] + " ("
+				+ (args.length - 1) + " Zoomstufen)");
+	}
+
+}
@@ -0,0 +1,772 @@
+/**
+ * @(#)TileSpiralBenchmark.java
+ * 1.0, 2013-03-04
+ */
+package de.hdm.hettich.studienarbeit.tools;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+import de.hdm.hettich.studienarbeit.bo.Tile;
+import de.hdm.hettich.studienarbeit.bo.TileMap;
+import de.hdm.hettich.studienarbeit.loading.TileKey;
+import de.hdm.hettich.studienarbeit.loading.TileSpiral;
+import de.hdm.hettich.studienarbeit.utile.Coordinate;
+import de.hdm.hettich.studienarbeit.utile.Tools;
+
+/**
+ * Der <code>TileSpiralBenchmark</code> vergleicht die Reihenfolge, in der der
+ * <code>LazyLoader</code> die Kacheln des zu ladenden Bereichs durchläuft:
+ * die bisherige Berechnung als Liste von <code>Coordinate</code>s (ein
+ * temporäres Objekt und eine Kopie pro Position, eine
+ * <code>ArrayList</code> pro Ring) und die <code>TileSpiral</code>. Er läuft
+ * ohne Android auf einer normalen JVM, benötigt aber die übersetzten Klassen
+ * <code>TileSpiral</code> und <code>Coordinate</code> aus <code>src</code>:
+ *
+ * <pre>
+ * java -cp bin:tools de.hdm.hettich.studienarbeit.tools.TileSpiralBenchmark [durchläufe]
+ * </pre>
+ *
+ * Jeder Durchlauf entspricht einem Aufruf von <code>LazyLoader.load()</code>
+ * nach einer Verschiebung: zufällige Mitte in einem Plan mit 200 x 200
+ * Kacheln, sichtbarer Bereich 5 x 8 Kacheln, ein Vorlade-Rand von einer
+ * Kachel und bis zu drei Kacheln in Bewegungsrichtung. Vor der Messung wird
+ * geprüft, dass beide Varianten dieselben Kacheln in derselben Reihenfolge
+ * liefern. Ausgegeben werden die Zeit und, sofern die JVM sie misst, die
+ * erzeugten Bytes pro Durchlauf.
+ * <p>
+ * Zusätzlich wird die ganze Ladeschleife verglichen, die bei jedem Aufruf von
+ * <code>LazyLoader.load()</code> durchlaufen wird, wenn sich der Bereich
+ * verändert hat: die Berechnung des sichtbaren und des zu ladenden Bereichs,
+ * der mittleren Kachel sowie für jede Kachel die Abfrage des gebundenen
+ * <code>TileView</code>s und des <code>TileCache</code>s. Die bisherige
+ * Variante erstellt dafür <code>Coordinate</code>s, <code>TileKey</code>s
+ * und <code>Integer</code>-Schlüssel, die neue verwendet dieselben Objekte
+ * wieder. Die Klassen, die Android benötigen, werden dabei nachgebildet:
+ * der <code>TileCache</code> durch eine <code>HashMap</code> und die
+ * <code>SparseArray</code> der gebundenen <code>TileView</code>s durch ein
+ * Array. <code>TileKey</code>, <code>TileMap</code> und
+ * <code>TileSpiral</code> sind die Klassen aus <code>src</code>. Kacheln, die
+ * neu geladen werden müssen, erstellen in beiden Varianten einen
+ * <code>TileKey</code> und einen <code>BitmapConverter</code> und werden hier
+ * nicht mitgezählt.
+ * <p>
+ * Vor der Ladeschleife ruft der <code>LazyLoader</code>
+ * <code>TileMapView.bindViewport(Viewport)</code> auf, auch dies wird in
+ * beiden Varianten nachgebildet (siehe <code>ViewportBinder</code>): Die
+ * bisherige Variante erstellt für jeden neu gebundenen <code>TileView</code>
+ * eine <code>Coordinate</code> und über die <code>TileMap</code> eine
+ * <code>Tile</code> samt <code>URI</code>, die neue bindet ihn nur über die
+ * Position der Kachel und die Kachelgröße.
+ *
+ * @author Stefan Hettich
+ *
+ * @version 1.0, 2013-03-04
+ *
+ */
+public class TileSpiralBenchmark {
+
+	/**
+	 * Dimension des Plans in Kacheln.
+	 */
+	private final static Coordinate DIMENSION = new Coordinate(200, 200);
+
+	/**
+	 * Verzeichnis, relativ zu dem die Dateien der Kacheln aufgelöst werden.
+	 */
+	private final static URI BASE = URI.create("file:///sdcard/drawing/");
+
+	/**
+	 * Anzahl der Durchläufe, wenn keine übergeben wird.
+	 */
+	private final static int DEFAULT_RUNS = 200000;
+
+	/**
+	 * Größe einer Kachel in Pixeln.
+	 */
+	private final static int TILE_SIZE = 256;
+
+	/**
+	 * Größe des Viewports in Pixeln, dies sind 5 x 8 Kacheln.
+	 */
+	private final static int VIEWPORT_WIDTH = 5 * TILE_SIZE;
+	private final static int VIEWPORT_HEIGHT = 8 * TILE_SIZE;
+
+	/**
+	 * Die zu ladenden Bereiche, je Durchlauf mittlere Kachel, linke, obere
+	 * und rechte, untere Kachel.
+	 */
+	private Coordinate[][] areas;
+
+	/**
+	 * Die Position des Viewports in Pixeln und die Kacheln, um die der
+	 * Vorlade-Rand in Bewegungsrichtung erweitert wird, je Durchlauf.
+	 */
+	private int[][] loads;
+
+	/**
+	 * Die <code>TileMap</code> der Ladeschleife.
+	 */
+	private TileMap tileMap;
+
+	/**
+	 * Nachbildung des <code>TileCache</code>s, jede zweite Kachel ist
+	 * geladen.
+	 */
+	private HashMap<TileKey, Object> cache = new HashMap<TileKey, Object>();
+
+	/**
+	 * Die gebundenen <code>TileView</code>s der bisherigen Variante, mit dem
+	 * Index der Kachel als <code>Integer</code>-Schlüssel.
+	 */
+	private HashMap<Integer, Object> boundViewsMap = new HashMap<Integer, Object>();
+
+	/**
+	 * Die gebundenen <code>TileView</code>s der neuen Variante, nach dem
+	 * Index der Kachel (anstelle der <code>SparseArray</code>).
+	 */
+	private Object[] boundViews;
+
+	/**
+	 * Nachbildung von <code>TileMapView.bindViewport(Viewport)</code> für die
+	 * bisherige und die neue Variante.
+	 */
+	private ViewportBinder binderOld;
+	private ViewportBinder binder;
+
+	/*
+	 * Die wiederverwendeten Objekte der neuen Variante, wie im LazyLoader.
+	 */
+	private TileSpiral spiral = new TileSpiral();
+	private TileKey lookupKey = new TileKey();
+	private Coordinate visibleFirst = new Coordinate();
+	private Coordinate visibleLast = new Coordinate();
+	private Coordinate first = new Coordinate();
+	private Coordinate last = new Coordinate();
+	private Coordinate centerTile = new Coordinate();
+	private Coordinate predictedCenterTile = new Coordinate();
+
+	/**
+	 * Verhindert, dass die JVM die Schleifen als wirkungslos entfernt.
+	 */
+	private long checksum;
+
+	/**
+	 * Konstruktor, der die Bereiche für die übergebene Anzahl an Durchläufen
+	 * zufällig, aber reproduzierbar erstellt.
+	 *
+	 * @param runs
+	 */
+	public TileSpiralBenchmark(int runs) {
+		Random random = new Random(42);
+		areas = new Coordinate[runs][];
+		for (int i = 0; i < runs; i++) {
+			int centerX = random.nextInt(DIMENSION.getX());
+			int centerY = random.nextInt(DIMENSION.getY());
+			int lookaheadX = random.nextInt(7) - 3;
+			int lookaheadY = random.nextInt(7) - 3;
+			int firstX = centerX - 2 - 1 + Math.min(0, lookaheadX);
+			int firstY = centerY - 4 - 1 + Math.min(0, lookaheadY);
+			int lastX = centerX + 2 + 1 + Math.max(0, lookaheadX);
+			int lastY = centerY + 3 + 1 + Math.max(0, lookaheadY);
+			areas[i] = new Coordinate[] {
+					new Coordinate(centerX, centerY),
+					new Coordinate(Math.max(0, firstX), Math.max(0, firstY)),
+					new Coordinate(Math.min(DIMENSION.getX() - 1, lastX),
+							Math.min(DIMENSION.getY() - 1, lastY)) };
+		}
+
+		loads = new int[runs][];
+		for (int i = 0; i < runs; i++) {
+			loads[i] = new int[] {
+					random.nextInt(DIMENSION.getX() * TILE_SIZE - VIEWPORT_WIDTH),
+					random.nextInt(DIMENSION.getY() * TILE_SIZE - VIEWPORT_HEIGHT),
+					random.nextInt(7) - 3, random.nextInt(7) - 3 };
+		}
+
+		tileMap = new TileMap(new Coordinate(DIMENSION.getX(),
+				DIMENSION.getY()), new Coordinate(TILE_SIZE, TILE_SIZE), 1f,
+				new TileMap.TileSource() {
+
+					@Override
+					public URI createTileUri(int x, int y) {
+						// Wie im LevelDescriptor über ein Muster.
+						return BASE.resolve("tiles/" + x + "_" + y + ".png");
+					}
+				});
+		boundViews = new Object[tileMap.getTileCount()];
+		binderOld = new ViewportBinder(tileMap, cache, true);
+		binder = new ViewportBinder(tileMap, cache, false);
+		Object view = new Object();
+		for (int x = 0; x < DIMENSION.getX(); x++) {
+			for (int y = 0; y < DIMENSION.getY(); y++) {
+				if ((x + y) % 2 == 0) {
+					cache.put(new TileKey(tileMap, x, y), view);
+				}
+				if (x % 3 != 0) {
+					boundViewsMap.put(tileMap.indexOf(x, y), view);
+					boundViews[tileMap.indexOf(x, y)] = view;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Berechnet die Anzahl der Ringe, die den Bereich abdecken (wie in
+	 * <code>LazyLoader.load()</code>).
+	 *
+	 * @param area
+	 * @return int Anzahl der Ringe
+	 */
+	private static int calculateLoadingLevel(Coordinate[] area) {
+		Coordinate center = area[0];
+		return Math.max(
+				Math.max(center.getX() - area[1].getX(), area[2].getX()
+						- center.getX()),
+				Math.max(center.getY() - area[1].getY(), area[2].getY()
+						- center.getY()));
+	}
+
+	/**
+	 * Durchläuft alle Bereiche mit der bisherigen Berechnung.
+	 */
+	public void runList() {
+		long sum = 0;
+		for (Coordinate[] area : areas) {
+			for (Coordinate tilePos : calculateNeighbours(area[0], DIMENSION,
+					calculateLoadingLevel(area))) {
+				if (isInArea(tilePos.getX(), tilePos.getY(), area[1], area[2])) {
+					sum += tilePos.getX() * DIMENSION.getY() + tilePos.getY();
+				}
+			}
+		}
+		checksum += sum;
+	}
+
+	/**
+	 * Durchläuft alle Bereiche mit der <code>TileSpiral</code>.
+	 */
+	public void runSpiral() {
+		long sum = 0;
+		TileSpiral spiral = new TileSpiral();
+		for (Coordinate[] area : areas) {
+			spiral.reset(area[0].getX(), area[0].getY(), area[1], area[2],
+					calculateLoadingLevel(area), DIMENSION.getY());
+			while (spiral.next()) {
+				sum += spiral.getIndex();
+			}
+		}
+		checksum += sum;
+	}
+
+	/**
+	 * Durchläuft alle Ladevorgänge so, wie der <code>LazyLoader</code> dies
+	 * bisher getan hat: neue <code>Coordinate</code>s für die Bereiche und
+	 * die mittlere Kachel, eine Kopie der Dimension, pro Kachel ein
+	 * <code>TileKey</code>, für die Abfrage des <code>TileView</code>s eine
+	 * <code>Coordinate</code>, eine Kopie der Dimension und ein
+	 * <code>Integer</code> und für den <code>TileGarbageService</code> eine
+	 * weitere <code>Coordinate</code>. Zuvor werden die
+	 * <code>TileView</code>s wie bisher gebunden.
+	 */
+	public void runLoadOld() {
+		long sum = 0;
+		for (int[] load : loads) {
+			Coordinate dimension = tileMap.getDimension();
+			Coordinate tileSize = tileMap.getTileSize();
+			Coordinate visibleFirst = new Coordinate(load[0] / TILE_SIZE,
+					load[1] / TILE_SIZE);
+			Coordinate visibleLast = new Coordinate(Math.min(
+					(load[0] + VIEWPORT_WIDTH - 1) / tileSize.getX(),
+					dimension.getX() - 1), Math.min(
+					(load[1] + VIEWPORT_HEIGHT - 1) / tileSize.getY(),
+					dimension.getY() - 1));
+			sum += binderOld.bind(visibleFirst.getX(), visibleFirst.getY(),
+					visibleLast.getX(), visibleLast.getY());
+			Coordinate[] area = new Coordinate[] {
+					new Coordinate(Math.max(0, visibleFirst.getX() - 1
+							+ Math.min(0, load[2])), Math.max(0,
+							visibleFirst.getY() - 1 + Math.min(0, load[3]))),
+					new Coordinate(Math.min(dimension.getX() - 1,
+							visibleLast.getX() + 1 + Math.max(0, load[2])),
+							Math.min(dimension.getY() - 1, visibleLast.getY()
+									+ 1 + Math.max(0, load[3]))) };
+			Coordinate size = tileMap.getSize();
+			Coordinate center = new Coordinate(load[0]
+					+ Math.min(size.getX(), VIEWPORT_WIDTH) / 2, load[1]
+					+ Math.min(size.getY(), VIEWPORT_HEIGHT) / 2);
+			Coordinate centerTile = new Coordinate(center.getX()
+					/ tileSize.getX(), center.getY() / tileSize.getY());
+			Coordinate predictedCenterTile = new Coordinate(centerTile.getX()
+					+ load[2], centerTile.getY() + load[3]);
+
+			spiral.reset(centerTile.getX(), centerTile.getY(), area[0],
+					area[1], calculateLoadingLevel(centerTile, area[0],
+							area[1]), dimension.getY());
+			while (spiral.next()) {
+				int x = spiral.getX();
+				int y = spiral.getY();
+				sum += calculatePriority(x, y,
+						isInArea(x, y, visibleFirst, visibleLast) ? centerTile
+								: predictedCenterTile);
+				TileKey key = new TileKey(tileMap, x, y);
+				Object view = boundViewsMap.get(Tools.convertMatrixPos2Int(
+						new Coordinate(key.getX(), key.getY()),
+						tileMap.getDimension()));
+				Object cached = cache.get(key);
+				if (view == null && cached == null) {
+					Coordinate tilePos = new Coordinate(x, y);
+					sum += tilePos.getX();
+				}
+			}
+		}
+		checksum += sum;
+	}
+
+	/**
+	 * Durchläuft alle Ladevorgänge so, wie der <code>LazyLoader</code> dies
+	 * jetzt tut: dieselben <code>Coordinate</code>s und derselbe
+	 * <code>TileKey</code> werden für jeden Ladevorgang wiederverwendet, der
+	 * <code>TileView</code> wird über den Index der Kachel gefunden. Zuvor
+	 * werden die <code>TileView</code>s nur über ihre Position gebunden.
+	 */
+	public void runLoad() {
+		long sum = 0;
+		for (int[] load : loads) {
+			int columns = tileMap.getColumns();
+			int rows = tileMap.getRows();
+			Coordinate tileSize = tileMap.getTileSize();
+			visibleFirst.set(load[0] / TILE_SIZE, load[1] / TILE_SIZE);
+			visibleLast.set(Math.min((load[0] + VIEWPORT_WIDTH - 1)
+					/ tileSize.getX(), columns - 1), Math.min(
+					(load[1] + VIEWPORT_HEIGHT - 1) / tileSize.getY(),
+					rows - 1));
+			sum += binder.bind(visibleFirst.getX(), visibleFirst.getY(),
+					visibleLast.getX(), visibleLast.getY());
+			first.set(Math.max(0, visibleFirst.getX() - 1
+					+ Math.min(0, load[2])), Math.max(0, visibleFirst.getY()
+					- 1 + Math.min(0, load[3])));
+			last.set(Math.min(columns - 1, visibleLast.getX() + 1
+					+ Math.max(0, load[2])), Math.min(rows - 1,
+					visibleLast.getY() + 1 + Math.max(0, load[3])));
+			int centerX = load[0]
+					+ Math.min(columns * tileSize.getX(), VIEWPORT_WIDTH) / 2;
+			int centerY = load[1]
+					+ Math.min(rows * tileSize.getY(), VIEWPORT_HEIGHT) / 2;
+			centerTile.set(centerX / tileSize.getX(), centerY
+					/ tileSize.getY());
+			predictedCenterTile.set(centerTile.getX() + load[2],
+					centerTile.getY() + load[3]);
+
+			spiral.reset(centerTile.getX(), centerTile.getY(), first, last,
+					calculateLoadingLevel(centerTile, first, last), rows);
+			while (spiral.next()) {
+				int x = spiral.getX();
+				int y = spiral.getY();
+				sum += calculatePriority(x, y,
+						isInArea(x, y, visibleFirst, visibleLast) ? centerTile
+								: predictedCenterTile);
+				TileKey key = lookupKey.set(tileMap, x, y);
+				Object view = boundViews[tileMap.indexOf(key.getX(),
+						key.getY())];
+				Object cached = cache.get(key);
+				if (view == null && cached == null) {
+					sum += x;
+				}
+			}
+		}
+		checksum += sum;
+	}
+
+	/**
+	 * Berechnet die Anzahl der Ringe um die mittlere Kachel, die den Bereich
+	 * abdecken.
+	 *
+	 * @param centerTile
+	 * @param first
+	 * @param last
+	 * @return int Anzahl der Ringe
+	 */
+	private static int calculateLoadingLevel(Coordinate centerTile,
+			Coordinate first, Coordinate last) {
+		return Math.max(
+				Math.max(centerTile.getX() - first.getX(), last.getX()
+						- centerTile.getX()),
+				Math.max(centerTile.getY() - first.getY(), last.getY()
+						- centerTile.getY()));
+	}
+
+	/**
+	 * Berechnet die Priorität wie <code>LazyLoader</code>.
+	 *
+	 * @param x
+	 * @param y
+	 * @param centerTile
+	 * @return int der quadrierte Abstand zur mittleren Kachel
+	 */
+	private static int calculatePriority(int x, int y, Coordinate centerTile) {
+		int dx = x - centerTile.getX();
+		int dy = y - centerTile.getY();
+		return dx * dx + dy * dy;
+	}
+
+	/**
+	 * Prüft, dass beide Varianten für jeden Bereich dieselben Kacheln in
+	 * derselben Reihenfolge liefern.
+	 *
+	 * @throws IllegalStateException
+	 *             wenn sich die Reihenfolge unterscheidet
+	 */
+	public void verify() {
+		TileSpiral spiral = new TileSpiral();
+		for (Coordinate[] area : areas) {
+			spiral.reset(area[0].getX(), area[0].getY(), area[1], area[2],
+					calculateLoadingLevel(area), DIMENSION.getY());
+			for (Coordinate tilePos : calculateNeighbours(area[0], DIMENSION,
+					calculateLoadingLevel(area))) {
+				if (!isInArea(tilePos.getX(), tilePos.getY(), area[1], area[2])) {
+					continue;
+				}
+				if (!spiral.next() || spiral.getX() != tilePos.getX()
+						|| spiral.getY() != tilePos.getY()) {
+					throw new IllegalStateException("Abweichung bei Mitte "
+							+ area[0] + ", erwartet " + tilePos);
+				}
+			}
+			if (spiral.next()) {
+				throw new IllegalStateException("Zusätzliche Kachel bei Mitte "
+						+ area[0]);
+			}
+		}
+	}
+
+	/**
+	 * Misst eine Variante und gibt Zeit und erzeugte Bytes pro Durchlauf aus.
+	 *
+	 * @param name
+	 * @param variant
+	 *            0 für die bisherige Berechnung, 1 für die TileSpiral, 2 für
+	 *            die bisherige und 3 für die neue Ladeschleife
+	 */
+	private void measure(String name, int variant) {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		long bytesBefore = allocatedBytes(threads);
+		long start = System.nanoTime();
+		switch (variant) {
+		case 0:
+			runList();
+			break;
+		case 1:
+			runSpiral();
+			break;
+		case 2:
+			runLoadOld();
+			break;
+		default:
+			runLoad();
+			break;
+		}
+		long nanos = System.nanoTime() - start;
+		long bytes = allocatedBytes(threads) - bytesBefore;
+
+		StringBuilder result = new StringBuilder();
+		result.append(String.format("%-16s %8.1f ns/load", name,
+				(double) nanos / areas.length));
+		if (bytesBefore >= 0) {
+			result.append(String.format(", %8.1f B/load", (double) bytes
+					/ areas.length));
+		}
+		System.out.println(result);
+	}
+
+	/**
+	 * Gibt die bisher vom aktuellen Thread erzeugten Bytes zurück, sofern die
+	 * JVM dies unterstützt (HotSpot).
+	 *
+	 * @param threads
+	 * @return long die erzeugten Bytes oder -1
+	 */
+	private static long allocatedBytes(ThreadMXBean threads) {
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threads)
+					.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+	/**
+	 * Prüft, ob eine Kachel innerhalb des Bereichs liegt.
+	 *
+	 * @param x
+	 * @param y
+	 * @param first
+	 * @param last
+	 * @return boolean true wenn die Kachel im Bereich liegt
+	 */
+	private static boolean isInArea(int x, int y, Coordinate first,
+			Coordinate last) {
+		return x >= first.getX() && x <= last.getX() && y >= first.getY()
+				&& y <= last.getY();
+	}
+
+	/**
+	 * Die bisherige Berechnung aus <code>LazyLoader</code>: die mittlere
+	 * Kachel und alle Ringe bis zum übergebenen Level als Liste.
+	 *
+	 * @param centerTile
+	 * @param dimension
+	 * @param level
+	 * @return ArrayList<Coordinate> die Nachbarn bis zum übergebenen Level
+	 */
+	private static ArrayList<Coordinate> calculateNeighbours(
+			Coordinate centerTile, Coordinate dimension, int level) {
+		ArrayList<Coordinate> neighbours = new ArrayList<Coordinate>();
+		neighbours.add(centerTile);
+		for (int i = 1; i <= level; i++) {
+			neighbours.addAll(calculateNeighboursOfLevel(centerTile, dimension,
+					i));
+		}
+		return neighbours;
+	}
+
+	/**
+	 * Die bisherige Berechnung aus <code>LazyLoader</code>: ein Ring um die
+	 * mittlere Kachel, beginnend an der rechten, oberen Ecke.
+	 *
+	 * @param centerTile
+	 * @param dimension
+	 * @param level
+	 * @return ArrayList<Coordinate> die Nachbarn auf dem übergebenen Level
+	 */
+	private static ArrayList<Coordinate> calculateNeighboursOfLevel(
+			Coordinate centerTile, Coordinate dimension, int level) {
+		ArrayList<Coordinate> neighbours = new ArrayList<Coordinate>();
+		int x = level;
+		int y = -level;
+		Coordinate tempCoordinate;
+		for (; y < level; y++) {
+			tempCoordinate = new Coordinate(x + centerTile.getX(), y
+					+ centerTile.getY());
+			if (checkCoordinate(tempCoordinate, dimension)) {
+				neighbours.add(new Coordinate(tempCoordinate.getX(),
+						tempCoordinate.getY()));
+			}
+		}
+		for (; x > -level; x--) {
+			tempCoordinate = new Coordinate(x + centerTile.getX(), y
+					+ centerTile.getY());
+			if (checkCoordinate(tempCoordinate, dimension)) {
+				neighbours.add(new Coordinate(tempCoordinate.getX(),
+						tempCoordinate.getY()));
+			}
+		}
+		for (; y > -level; y--) {
+			tempCoordinate = new Coordinate(x + centerTile.getX(), y
+					+ centerTile.getY());
+			if (checkCoordinate(tempCoordinate, dimension)) {
+				neighbours.add(new Coordinate(tempCoordinate.getX(),
+						tempCoordinate.getY()));
+			}
+		}
+		for (; x < level; x++) {
+			tempCoordinate = new Coordinate(x + centerTile.getX(), y
+					+ centerTile.getY());
+			if (checkCoordinate(tempCoordinate, dimension)) {
+				neighbours.add(new Coordinate(tempCoordinate.getX(),
+						tempCoordinate.getY()));
+			}
+		}
+		return neighbours;
+	}
+
+	/**
+	 * Prüft, ob eine Koordinate im Plan liegt.
+	 *
+	 * @param tempCoordinate
+	 * @param dimension
+	 * @return boolean true wenn die Koordinate im Plan liegt
+	 */
+	private static boolean checkCoordinate(Coordinate tempCoordinate,
+			Coordinate dimension) {
+		return (tempCoordinate.getX() < dimension.getX()
+				&& tempCoordinate.getY() < dimension.getY()
+				&& tempCoordinate.getX() >= 0 && tempCoordinate.getY() >= 0);
+	}
+
+	/**
+	 * Nachbildung eines <code>TileView</code>s mit den Feldern, die beim
+	 * Binden gesetzt werden.
+	 */
+	private static class BoundView {
+
+		/*
+		 * Position der Kachel, die Felder der neuen Variante.
+		 */
+		private int tileX = -1;
+		private int tileY = -1;
+
+		/*
+		 * Tile und Position, die Felder der bisherigen Variante.
+		 */
+		private Tile tile;
+		private Coordinate position;
+
+		/*
+		 * Die Translation des TileViews.
+		 */
+		private float translationX;
+		private float translationY;
+	}
+
+	/**
+	 * Nachbildung von <code>TileMapView.bindViewport(Viewport)</code>: Die
+	 * <code>TileView</code>s, deren Kachel den Bereich verlassen hat, werden
+	 * freigegeben und für neu hinzugekommene Kacheln wiederverwendet, für jede
+	 * neu gebundene Kachel wird der <code>TileCache</code> abgefragt. Die
+	 * <code>SparseArray</code> der gebundenen <code>TileView</code>s wird durch
+	 * ein Array nach dem Index der Kachel und eine Liste der belegten Indizes
+	 * ersetzt.
+	 */
+	private static class ViewportBinder {
+
+		private final TileMap tileMap;
+		private final HashMap<TileKey, Object> cache;
+
+		/**
+		 * true für die bisherige Variante mit <code>Tile</code> und
+		 * <code>Coordinate</code>.
+		 */
+		private final boolean old;
+
+		private final BoundView[] boundViews;
+		private final int[] boundIndices;
+		private int boundCount;
+		private final ArrayList<BoundView> freeViews = new ArrayList<BoundView>();
+		private final TileKey lookupKey = new TileKey();
+
+		/**
+		 * Konstruktor, der einen neuen <code>ViewportBinder</code> ohne
+		 * gebundene <code>TileView</code>s erstellt.
+		 *
+		 * @param tileMap
+		 * @param cache
+		 * @param old
+		 */
+		private ViewportBinder(TileMap tileMap, HashMap<TileKey, Object> cache,
+				boolean old) {
+			this.tileMap = tileMap;
+			this.cache = cache;
+			this.old = old;
+			this.boundViews = new BoundView[tileMap.getTileCount()];
+			this.boundIndices = new int[tileMap.getTileCount()];
+		}
+
+		/**
+		 * Bindet die <code>TileView</code>s an den sichtbaren Bereich plus
+		 * einen Rand von einer Kachel.
+		 *
+		 * @param visibleFirstX
+		 * @param visibleFirstY
+		 * @param visibleLastX
+		 * @param visibleLastY
+		 * @return long Prüfsumme der neu gebundenen Kacheln
+		 */
+		private long bind(int visibleFirstX, int visibleFirstY,
+				int visibleLastX, int visibleLastY) {
+			int rows = tileMap.getRows();
+			Coordinate tileSize = tileMap.getTileSize();
+			int firstX = Math.max(0, visibleFirstX - 1);
+			int firstY = Math.max(0, visibleFirstY - 1);
+			int lastX = Math.min(tileMap.getColumns() - 1, visibleLastX + 1);
+			int lastY = Math.min(rows - 1, visibleLastY + 1);
+
+			// TileViews außerhalb des Bereichs freigeben.
+			int kept = 0;
+			for (int i = 0; i < boundCount; i++) {
+				int index = boundIndices[i];
+				int x = index / rows;
+				int y = index % rows;
+				if (x < firstX || x > lastX || y < firstY || y > lastY) {
+					BoundView view = boundViews[index];
+					view.tileX = -1;
+					view.tileY = -1;
+					view.tile = null;
+					view.position = null;
+					freeViews.add(view);
+					boundViews[index] = null;
+				} else {
+					boundIndices[kept++] = index;
+				}
+			}
+			boundCount = kept;
+
+			// Neu hinzugekommene Kacheln binden.
+			long sum = 0;
+			for (int x = firstX; x <= lastX; x++) {
+				for (int y = firstY; y <= lastY; y++) {
+					int index = tileMap.indexOf(x, y);
+					if (boundViews[index] != null) {
+						continue;
+					}
+					BoundView view = freeViews.isEmpty() ? new BoundView()
+							: freeViews.remove(freeViews.size() - 1);
+					if (old) {
+						// Bisher: TileView.bind(Tile, Coordinate).
+						view.tile = tileMap.getTile(x, y);
+						view.position = new Coordinate(x, y);
+						view.translationX = view.position.getX()
+								* view.tile.getSize().getX();
+						view.translationY = view.position.getY()
+								* view.tile.getSize().getY();
+					} else {
+						// Jetzt: TileView.bind(int, int, Coordinate).
+						view.tileX = x;
+						view.tileY = y;
+						view.translationX = x * tileSize.getX();
+						view.translationY = y * tileSize.getY();
+					}
+					if (cache.get(lookupKey.set(tileMap, x, y)) != null) {
+						sum += index;
+					}
+					sum += (long) view.translationX;
+					boundViews[index] = view;
+					boundIndices[boundCount++] = index;
+				}
+			}
+			return sum;
+		}
+	}
+
+	/**
+	 * Startet den Vergleich.
+	 *
+	 * @param args
+	 *            optional die Anzahl der Durchläufe
+	 */
+	public static void main(String[] args) {
+		int runs = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_RUNS;
+		TileSpiralBenchmark benchmark = new TileSpiralBenchmark(runs);
+		benchmark.verify();
+
+		// Aufwärmen, damit alle Varianten vom JIT übersetzt sind.
+		for (int i = 0; i < 5; i++) {
+			benchmark.runList();
+			benchmark.runSpiral();
+			benchmark.runLoadOld();
+			benchmark.runLoad();
+		}
+
+		for (int i = 0; i < 3; i++) {
+			benchmark.measure("ArrayList", 0);
+			benchmark.measure("TileSpiral", 1);
+			benchmark.measure("Ladeschleife alt", 2);
+			benchmark.measure("Ladeschleife", 3);
+		}
+		System.out.println("Prüfsumme: " + benchmark.checksum);
+	}
+
+}